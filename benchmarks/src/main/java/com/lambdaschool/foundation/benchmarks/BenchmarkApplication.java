@@ -0,0 +1,50 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.config.DataSourceConfig;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * The persistence layer of the application without the web, security or seed data parts.
+ * Only the models, repositories, services and helper functions are loaded, against an in memory H2 database.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {SecurityAutoConfiguration.class, UserDetailsServiceAutoConfiguration.class})
+@EnableJpaAuditing
+@EntityScan(basePackages = "com.lambdaschool.foundation.models")
+@EnableJpaRepositories(basePackages = "com.lambdaschool.foundation.repository")
+@ComponentScan(basePackages = {"com.lambdaschool.foundation.services", "com.lambdaschool.foundation.handlers"})
+@Import(DataSourceConfig.class)
+public class BenchmarkApplication
+{
+    /**
+     * Settings that replace the ones in the application.properties of the application.
+     * Passed as command line arguments so they win over that file.
+     */
+    private static final String[] SETTINGS = {"--local.run.db=H2",
+        "--spring.jpa.hibernate.ddl-auto=create",
+        "--spring.jpa.open-in-view=false",
+        "--spring.main.banner-mode=off",
+        "--logging.level.root=WARN"};
+
+    /**
+     * Starts the persistence layer. Each JMH fork is its own JVM so each gets its own in memory database.
+     *
+     * @return the running application context
+     */
+    public static ConfigurableApplicationContext start()
+    {
+        return new SpringApplicationBuilder(BenchmarkApplication.class).web(WebApplicationType.NONE)
+                .run(SETTINGS);
+    }
+}
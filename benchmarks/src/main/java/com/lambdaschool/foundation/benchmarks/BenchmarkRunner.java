@@ -0,0 +1,51 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks. Takes the usual JMH command line options, for example
+ * <pre>
+ * mvn exec:exec -Djmh.args="-p users=1000 -p items=100000 ItemServiceBenchmark"
+ * </pre>
+ * The gc profiler is always on, so every result also reports the allocation rate.
+ * Unless another result file is asked for, results are written as JSON to target/jmh-result.json.
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Runs the benchmarks
+     *
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options cannot be read
+     * @throws RunnerException            if a benchmark fails
+     */
+    public static void main(String[] args)
+            throws
+            CommandLineOptionException,
+            RunnerException
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+                .addProfiler(GCProfiler.class);
+
+        if (!commandLine.getResultFormat()
+                .hasValue())
+        {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult()
+                .hasValue())
+        {
+            options.result("target/jmh-result.json");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
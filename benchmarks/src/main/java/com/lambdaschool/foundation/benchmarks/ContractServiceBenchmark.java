@@ -0,0 +1,101 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.services.ContractService;
+import com.lambdaschool.foundation.services.ItemService;
+import com.lambdaschool.foundation.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating a contract and having the lender accept it.
+ * Saving adds a new contract neither side has accepted on every call, so the contracts table grows during the
+ * measurement but the item is never booked twice for the same days. Accepting is measured on one contract both
+ * sides accepted during setup, which holds the only booking of the item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3,
+        time = 2)
+@Measurement(iterations = 5,
+        time = 2)
+public class ContractServiceBenchmark
+{
+    private ContractService contractService;
+
+    private UserService userService;
+
+    private Item item;
+
+    private User rentee;
+
+    private String lendername;
+
+    private long contractid;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication application)
+    {
+        contractService = application.getBean(ContractService.class);
+        userService = application.getBean(UserService.class);
+
+        item = application.getBean(ItemService.class)
+                .findAll(0,
+                         1)
+                .getItems()
+                .get(0);
+        lendername = item.getLender()
+                .getUsername();
+
+        // save only needs the username of the rentee
+        rentee = new User();
+        rentee.setUsername("admin");
+
+        Contract accepted = newContract();
+        accepted.setLenderaccept(true);
+        accepted.setRenteeaccept(true);
+        contractid = contractService.save(accepted)
+                .getContractid();
+    }
+
+    private Contract newContract()
+    {
+        Contract contract = new Contract(7);
+        contract.setItem(item);
+        contract.setRentee(rentee);
+        return contract;
+    }
+
+    @Benchmark
+    public Contract save()
+    {
+        return contractService.save(newContract());
+    }
+
+    @Benchmark
+    public Contract update()
+    {
+        Contract contract = new Contract();
+        contract.setLenderaccept(true);
+
+        return contractService.update(contract,
+                                      contractid,
+                                      userService.findByName(lendername),
+                                      null);
+    }
+}
@@ -0,0 +1,119 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.models.ImportReport;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.services.ItemImportService;
+import com.lambdaschool.foundation.services.ItemService;
+import com.lambdaschool.foundation.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares adding items one at a time, each in its own transaction, with importing the same items from a CSV file,
+ * written in batched transactions. Scores are per item, so the two can be compared directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3,
+        time = 2)
+@Measurement(iterations = 5,
+        time = 2)
+public class ItemImportBenchmark
+{
+    /**
+     * The number of items added by one call of a benchmark method
+     */
+    private static final int ITEMS = 1000;
+
+    private ItemService itemService;
+
+    private ItemImportService itemImportService;
+
+    private User lender;
+
+    private User importer;
+
+    private List<Item> items;
+
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication application)
+    {
+        itemService = application.getBean(ItemService.class);
+        itemImportService = application.getBean(ItemImportService.class);
+
+        // saving an item only needs the username of the lender, an import is given the lender as signed in
+        lender = new User();
+        lender.setUsername(SeededApplication.username(0));
+        importer = application.getBean(UserService.class)
+                .findByName(SeededApplication.username(0));
+
+        SplittableRandom random = new SplittableRandom(11);
+        items = new ArrayList<>();
+        StringBuilder rows = new StringBuilder("itemname,itemtype,itemdescr,itemlocat,isavailable,itemrate,itemimg\n");
+        for (int i = 0; i < ITEMS; i++)
+        {
+            Item item = SeededApplication.newItem(random,
+                                                  lender);
+            items.add(item);
+            rows.append(item.getItemname())
+                    .append(',')
+                    .append(item.getItemtype())
+                    .append(',')
+                    .append(item.getItemdescr())
+                    .append(',')
+                    .append(item.getItemlocat())
+                    .append(',')
+                    .append(item.getIsavailable())
+                    .append(',')
+                    .append(item.getItemrate())
+                    .append(',')
+                    .append(item.getItemimg())
+                    .append('\n');
+        }
+        csv = rows.toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public long saveEach()
+    {
+        long last = 0;
+        for (Item item : items)
+        {
+            last = itemService.save(item)
+                    .getItemid();
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public ImportReport importAll()
+    {
+        return itemImportService.importCsv(new ByteArrayInputStream(csv),
+                                           importer);
+    }
+}
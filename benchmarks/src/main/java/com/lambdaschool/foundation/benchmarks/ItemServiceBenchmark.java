@@ -0,0 +1,105 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemPage;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.services.ItemService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks paging through, searching and saving items.
+ * Saving adds a new item on every call so the items table grows during the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3,
+        time = 2)
+@Measurement(iterations = 5,
+        time = 2)
+public class ItemServiceBenchmark
+{
+    /**
+     * The number of items on a page, the default page size of /items/items
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * What is searched for, from whole names to the first few letters of a word
+     */
+    private static final String[] QUERIES = {"cordless drill", "camera", "portab", "heavy ladder", "telescope boise", "kayk"};
+
+    private ItemService itemService;
+
+    private long middleCursor;
+
+    private int nextQuery;
+
+    private SplittableRandom random;
+
+    private User lender;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication application)
+    {
+        itemService = application.getBean(ItemService.class);
+        middleCursor = itemService.findAll(0,
+                                           Math.max(1,
+                                                    application.items / 2))
+                .getItems()
+                .stream()
+                .mapToLong(Item::getItemid)
+                .max()
+                .orElse(0);
+        random = new SplittableRandom(7);
+
+        // save only needs the username of the lender
+        lender = new User();
+        lender.setUsername(SeededApplication.username(0));
+    }
+
+    @Benchmark
+    public ItemPage findAllFirstPage()
+    {
+        return itemService.findAll(0,
+                                   PAGE_SIZE);
+    }
+
+    @Benchmark
+    public ItemPage findAllMiddlePage()
+    {
+        return itemService.findAll(middleCursor,
+                                   PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Item> findByNameContaining()
+    {
+        String query = QUERIES[nextQuery++ % QUERIES.length];
+        return itemService.findByNameContaining(query,
+                                                0,
+                                                PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Item save()
+    {
+        return itemService.save(SeededApplication.newItem(random,
+                                                          lender));
+    }
+}
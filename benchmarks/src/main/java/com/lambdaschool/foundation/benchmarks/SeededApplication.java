@@ -0,0 +1,213 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.Role;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.models.UserRoles;
+import com.lambdaschool.foundation.repository.ItemRepository;
+import com.lambdaschool.foundation.repository.RoleRepository;
+import com.lambdaschool.foundation.repository.UserRepository;
+import com.lambdaschool.foundation.services.ItemSearchIndex;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The application started once per fork and seeded with the number of users and items given by the parameters.
+ * <p>
+ * The data is built from a fixed random seed so every run works against the same rows.
+ * Every user shares one password, encrypted once, since encrypting a password is slow on purpose.
+ */
+@State(Scope.Benchmark)
+public class SeededApplication
+{
+    /**
+     * Words used to build item names and descriptions, and to search for items
+     */
+    static final String[] ADJECTIVES = {"cordless", "electric", "portable", "digital", "heavy", "compact", "wireless", "vintage", "folding", "rotary"};
+
+    static final String[] NOUNS = {"drill", "camera", "ladder", "projector", "speaker", "tent", "sander", "kayak", "mixer", "telescope"};
+
+    static final String[] TOWNS = {"portland", "seattle", "boise", "denver", "austin", "fresno", "tucson", "omaha"};
+
+    /**
+     * The password of every seeded user
+     */
+    static final String PASSWORD = "password";
+
+    /**
+     * Items are saved this many at a time, each group in its own transaction
+     */
+    private static final int CHUNK = 1000;
+
+    @Param({"100"})
+    public int users;
+
+    @Param({"10000"})
+    public int items;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Starts the application, seeds the database and signs in as the admin
+     */
+    @Setup(Level.Trial)
+    public void start()
+    {
+        context = BenchmarkApplication.start();
+        transactionTemplate = new TransactionTemplate(getBean(PlatformTransactionManager.class));
+
+        // jmh runs the benchmark on other threads than the setup, so every thread shares the one sign in
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken("admin",
+                                                                           PASSWORD,
+                                                                           Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        seed();
+        getBean(ItemSearchIndex.class).rebuild();
+    }
+
+    /**
+     * Stops the application
+     */
+    @TearDown(Level.Trial)
+    public void stop()
+    {
+        context.close();
+    }
+
+    private void seed()
+    {
+        RoleRepository rolerepos = getBean(RoleRepository.class);
+        UserRepository userrepos = getBean(UserRepository.class);
+        ItemRepository itemrepos = getBean(ItemRepository.class);
+        String encrypted = new BCryptPasswordEncoder().encode(PASSWORD);
+
+        List<Long> lenders = new ArrayList<>();
+        transactionTemplate.execute(status ->
+                                    {
+                                        Role admin = rolerepos.save(new Role("admin"));
+                                        Role lender = rolerepos.save(new Role("lender"));
+                                        Role user = rolerepos.save(new Role("user"));
+
+                                        userrepos.save(newUser("admin",
+                                                               encrypted,
+                                                               admin,
+                                                               lender,
+                                                               user));
+                                        for (int i = 0; i < users; i++)
+                                        {
+                                            lenders.add(userrepos.save(newUser(username(i),
+                                                                               encrypted,
+                                                                               lender,
+                                                                               user))
+                                                                .getUserid());
+                                        }
+                                        return null;
+                                    });
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int start = 0; start < items; start += CHUNK)
+        {
+            int count = Math.min(CHUNK,
+                                 items - start);
+            transactionTemplate.execute(status ->
+                                        {
+                                            List<Item> chunk = new ArrayList<>();
+                                            for (int i = 0; i < count; i++)
+                                            {
+                                                User lender = userrepos.findById(lenders.get(random.nextInt(lenders.size())))
+                                                        .orElseThrow(IllegalStateException::new);
+                                                chunk.add(newItem(random,
+                                                                  lender));
+                                            }
+                                            itemrepos.saveAll(chunk);
+                                            return null;
+                                        });
+        }
+    }
+
+    private static User newUser(
+            String username,
+            String encrypted,
+            Role... roles)
+    {
+        User user = new User();
+        user.setUsername(username);
+        user.setPasswordNoEncrypt(encrypted);
+        user.setPrimaryemail(username + "@lambdaschool.local");
+        for (Role role : roles)
+        {
+            user.getRoles()
+                    .add(new UserRoles(user,
+                                       role));
+        }
+        return user;
+    }
+
+    /**
+     * Builds an unsaved item with a name, description and location made from the word lists
+     *
+     * @param random where the words are picked from
+     * @param lender the user lending the item
+     * @return the new item
+     */
+    static Item newItem(
+            SplittableRandom random,
+            User lender)
+    {
+        String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+        String noun = NOUNS[random.nextInt(NOUNS.length)];
+
+        Item item = new Item();
+        item.setItemname(adjective + " " + noun);
+        item.setItemtype(noun);
+        item.setItemdescr("a " + adjective + " " + noun + " in good shape, lightly used");
+        item.setItemlocat(TOWNS[random.nextInt(TOWNS.length)]);
+        item.setIsavailable(true);
+        // quarters are exact as a float, so the rate always passes the two decimal place check
+        item.setItemrate((1 + random.nextInt(200)) * 0.25f);
+        item.setItemimg("https://example.com/" + noun + ".jpg");
+        item.setLender(lender);
+        return item;
+    }
+
+    /**
+     * The username of the seeded user with the given number
+     *
+     * @param i the number (int) of the user, from 0 to users - 1
+     * @return the username (String) of the user
+     */
+    static String username(int i)
+    {
+        return "user" + i;
+    }
+
+    <T> T getBean(Class<T> type)
+    {
+        return context.getBean(type);
+    }
+
+    TransactionTemplate getTransactionTemplate()
+    {
+        return transactionTemplate;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lambdaschool.foundation.benchmarks;
+
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.services.SecurityUserServiceImpl;
+import com.lambdaschool.foundation.services.UserDetailsCache;
+import com.lambdaschool.foundation.services.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks finding users by name, both the way the controllers do and the way a login does.
+ * The uncached login throws the user out of the user cache first so every call reads the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3,
+        time = 2)
+@Measurement(iterations = 5,
+        time = 2)
+public class UserServiceBenchmark
+{
+    private UserService userService;
+
+    private SecurityUserServiceImpl securityUserService;
+
+    private UserDetailsCache userCache;
+
+    private int users;
+
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication application)
+    {
+        userService = application.getBean(UserService.class);
+        securityUserService = application.getBean(SecurityUserServiceImpl.class);
+        userCache = application.getBean(UserDetailsCache.class);
+        users = application.users;
+    }
+
+    private String nextUsername()
+    {
+        return SeededApplication.username(nextUser++ % users);
+    }
+
+    @Benchmark
+    public User findByName()
+    {
+        return userService.findByName(nextUsername());
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsernameCached()
+    {
+        return securityUserService.loadUserByUsername(nextUsername());
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsernameUncached()
+    {
+        String username = nextUsername();
+        userCache.invalidate(username);
+        return securityUserService.loadUserByUsername(username);
+    }
+}
@@ -0,0 +1,562 @@
+package com.lambdaschool.foundation;
+
+import com.github.javafaker.Faker;
+import com.lambdaschool.foundation.models.Role;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.models.UserRoles;
+import com.lambdaschool.foundation.services.RoleService;
+import com.lambdaschool.foundation.services.EntityCache;
+import com.lambdaschool.foundation.services.ItemAvailability;
+import com.lambdaschool.foundation.services.LenderEarnings;
+import com.lambdaschool.foundation.services.PricingEngine;
+import com.lambdaschool.foundation.services.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BulkSeedData fills the database with generated data sized for load testing. It runs in place of SeedData
+ * when local.seed.mode=BULK.
+ * <p>
+ * The roles and the admin user are saved through the services as usual. Everything else is written with
+ * batched JDBC inserts on several threads. The rows are cut into chunks and each chunk draws from its own random
+ * numbers, made from local.seed.random and the chunk number, so the same settings always give the same data
+ * no matter which thread writes which chunk.
+ */
+@Component
+@ConditionalOnProperty(name = "local.seed.mode",
+        havingValue = "BULK")
+public class BulkSeedData
+        implements CommandLineRunner
+{
+    private static final Logger logger = LoggerFactory.getLogger(BulkSeedData.class);
+
+    /**
+     * The password of every generated user
+     */
+    private static final String PASSWORD = "password";
+
+    /**
+     * The number of batches written by a worker thread in one transaction
+     */
+    private static final int BATCHES_PER_CHUNK = 10;
+
+    private static final long DAY = 86_400_000L;
+
+    /**
+     * The longest contract generated, in days
+     */
+    private static final int MAX_CONTRACT_DAYS = 30;
+
+    /**
+     * The days of each slot of time the contracts of an item are dealt into, one contract a slot
+     */
+    private static final long SLOT_DAYS = 45;
+
+    /**
+     * The allocationSize of the id sequences of the entities
+     */
+    private static final long SEQUENCE_BLOCK = 50;
+
+    /**
+     * The number of names, houses, cities and so on made by Java Faker up front. Faker is too slow to call for every row.
+     */
+    private static final int POOL_SIZE = 1000;
+
+    /**
+     * Keeps the random numbers of each table apart
+     */
+    private static final int USERS = 1;
+
+    private static final int USERROLES = 2;
+
+    private static final int ITEMS = 3;
+
+    private static final int CONTRACTS = 4;
+
+    private static final int ITEM_RATES = 5;
+
+    private static final String USER_SQL = "INSERT INTO users (userid, username, password, primaryemail, created_by, created_date, last_modified_by, last_modified_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String USERROLE_SQL = "INSERT INTO userroles (userid, roleid, created_by, created_date, last_modified_by, last_modified_date) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String ITEM_SQL = "INSERT INTO items (itemid, itemname, itemtype, itemdescr, itemlocat, isavailable, itemratecents, itemimg, latitude, longitude, userid, created_by, created_date, last_modified_by, last_modified_date, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String CONTRACT_SQL = "INSERT INTO contracts (contractid, renteeaccept, lenderaccept, renteecomplete, lendercomplete, is_active, contractlength, contractfeecents, raw_contractstartdate, raw_contractenddate, userid, itemid, lenderid, created_by, created_date, last_modified_by, last_modified_date, version)" +
+        " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, (SELECT userid FROM items WHERE itemid = ?), ?, ?, ?, ?, 0)";
+
+    /**
+     * Connects the Role Service to this process
+     */
+    @Autowired
+    private RoleService roleService;
+
+    /**
+     * Connects the user service to this process
+     */
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Connects this process to the database for the bulk inserts
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to write each chunk of rows in its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Works out the fee of each contract the same way ContractService does
+     */
+    @Autowired
+    private PricingEngine pricing;
+
+    /**
+     * Recomputes the lender totals once the rows are written, as they are written around it
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Empties the second level cache once the rows are written, as they are written around it
+     */
+    @Autowired
+    private EntityCache entityCache;
+
+    /**
+     * Drops the bookings held in memory once the rows are written, as they are written around it
+     */
+    @Autowired
+    private ItemAvailability availability;
+
+    /**
+     * The seed all of the generated data is made from
+     */
+    @Value("${local.seed.random:42}")
+    private long seed;
+
+    @Value("${local.seed.users:100000}")
+    private long users;
+
+    @Value("${local.seed.items:1000000}")
+    private long items;
+
+    @Value("${local.seed.contracts:5000000}")
+    private long contracts;
+
+    /**
+     * The number of threads writing rows
+     */
+    @Value("${local.seed.threads:4}")
+    private int threads;
+
+    /**
+     * The number of rows sent to the database in one batch
+     */
+    @Value("${local.seed.batch:1000}")
+    private int batchSize;
+
+    /**
+     * Ids given to generated rows, and the time every generated row is created at. Set once at the start of run.
+     */
+    private long firstUserid;
+
+    private long firstItemid;
+
+    private long firstContractid;
+
+    private long lenderid;
+
+    private long userid;
+
+    private Timestamp now;
+
+    private String encryptedPassword;
+
+    private String[] usernames;
+
+    private String[] characters;
+
+    private String[] houses;
+
+    private String[] cities;
+
+    private String[] pokemon;
+
+    /**
+     * Generates the load test data
+     *
+     * @param args The parameter is required by the parent interface but is not used in this process.
+     */
+    @Override
+    public void run(String... args)
+            throws
+            Exception
+    {
+        Role admin = roleService.save(new Role("admin"));
+        Role lender = roleService.save(new Role("lender"));
+        Role user = roleService.save(new Role("user"));
+        lenderid = lender.getRoleid();
+        userid = user.getRoleid();
+
+        ArrayList<UserRoles> admins = new ArrayList<>();
+        admins.add(new UserRoles(new User(),
+                                 admin));
+        admins.add(new UserRoles(new User(),
+                                 lender));
+        admins.add(new UserRoles(new User(),
+                                 user));
+        userService.save(new User("admin",
+                                  PASSWORD,
+                                  "admin@lambdaschool.local",
+                                  admins));
+
+        // the generated rows take their ids from the top of each id sequence, which is then moved past them
+        firstUserid = nextval("users_seq");
+        firstItemid = nextval("items_seq");
+        firstContractid = nextval("contracts_seq");
+        now = new Timestamp(System.currentTimeMillis());
+        encryptedPassword = new BCryptPasswordEncoder().encode(PASSWORD);
+
+        Faker faker = new Faker(new Locale("en-US"),
+                                new Random(seed));
+        usernames = new String[POOL_SIZE];
+        characters = new String[POOL_SIZE];
+        houses = new String[POOL_SIZE];
+        cities = new String[POOL_SIZE];
+        pokemon = new String[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++)
+        {
+            usernames[i] = faker.name()
+                    .username()
+                    .toLowerCase();
+            characters[i] = faker.gameOfThrones()
+                    .character()
+                    .toLowerCase();
+            houses[i] = faker.gameOfThrones()
+                    .house()
+                    .toLowerCase();
+            cities[i] = faker.gameOfThrones()
+                    .city();
+            pokemon[i] = faker.pokemon()
+                    .name();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            long start = System.currentTimeMillis();
+            long rows = insert(executor,
+                               "users",
+                               USER_SQL,
+                               USERS,
+                               users,
+                               this::userRow);
+            rows += insert(executor,
+                           "userroles",
+                           USERROLE_SQL,
+                           USERROLES,
+                           users,
+                           this::userRoleRows);
+            rows += insert(executor,
+                           "items",
+                           ITEM_SQL,
+                           ITEMS,
+                           items,
+                           this::itemRow);
+            rows += insert(executor,
+                           "contracts",
+                           CONTRACT_SQL,
+                           CONTRACTS,
+                           contracts,
+                           this::contractRow);
+            report("rows in all",
+                   rows,
+                   start);
+        } finally
+        {
+            executor.shutdownNow();
+        }
+
+        restart("users_seq",
+                firstUserid + users);
+        restart("items_seq",
+                firstItemid + items);
+        restart("contracts_seq",
+                firstContractid + contracts);
+        earnings.reconcile();
+        entityCache.evictAll();
+        availability.clear();
+    }
+
+    private long nextval(String sequence)
+    {
+        return jdbcTemplate.queryForObject("SELECT nextval('" + sequence + "')",
+                                           Long.class);
+    }
+
+    /**
+     * Moves the sequence so Hibernate only hands out ids from nextid on. Hibernate hands out the
+     * SEQUENCE_BLOCK ids up to and including the value it reads from the sequence.
+     */
+    private void restart(
+            String sequence,
+            long nextid)
+    {
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (nextid + SEQUENCE_BLOCK - 1));
+    }
+
+    /**
+     * Writes the rows of one table, a chunk at a time on the worker threads
+     *
+     * @param executor the worker threads
+     * @param table    the name of the table, for the report
+     * @param sql      the insert statement
+     * @param salt     keeps the random numbers of this table apart from the other tables
+     * @param count    the number of rows to generate
+     * @param maker    generates the rows for one index
+     * @return the number of rows written
+     */
+    private long insert(
+            ExecutorService executor,
+            String table,
+            String sql,
+            int salt,
+            long count,
+            RowMaker maker)
+            throws
+            InterruptedException,
+            ExecutionException
+    {
+        long start = System.currentTimeMillis();
+        long chunkSize = (long) batchSize * BATCHES_PER_CHUNK;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        List<Callable<Long>> chunks = new ArrayList<>();
+        for (long from = 0; from < count; from += chunkSize)
+        {
+            long chunk = from / chunkSize;
+            long first = from;
+            long last = Math.min(count,
+                                 from + chunkSize);
+            chunks.add(() -> transactionTemplate.execute(status ->
+                                                         {
+                                                             SplittableRandom random = new SplittableRandom(mix(seed ^ mix(((long) salt << 32) + chunk)));
+
+                                                             long written = 0;
+                                                             List<Object[]> batch = new ArrayList<>(batchSize + 1);
+                                                             for (long i = first; i < last; i++)
+                                                             {
+                                                                 maker.make(i,
+                                                                            random,
+                                                                            batch);
+                                                                 if (batch.size() >= batchSize)
+                                                                 {
+                                                                     written += flush(sql,
+                                                                                      batch);
+                                                                 }
+                                                             }
+                                                             return written + flush(sql,
+                                                                                    batch);
+                                                         }));
+        }
+
+        long rows = 0;
+        for (Future<Long> written : executor.invokeAll(chunks))
+        {
+            rows += written.get();
+        }
+        report(table,
+               rows,
+               start);
+        return rows;
+    }
+
+    private long flush(
+            String sql,
+            List<Object[]> batch)
+    {
+        if (batch.isEmpty())
+        {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(sql,
+                                 batch);
+        long written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    private void report(
+            String what,
+            long rows,
+            long start)
+    {
+        long millis = Math.max(1,
+                               System.currentTimeMillis() - start);
+        logger.info("Seeded {} {} in {} ms, {} rows per second",
+                    rows,
+                    what,
+                    millis,
+                    rows * 1000 / millis);
+    }
+
+    private void userRow(
+            long i,
+            SplittableRandom random,
+            List<Object[]> batch)
+    {
+        // the number on the end keeps the generated usernames unique
+        String username = pick(usernames,
+                               random) + i;
+        batch.add(new Object[]{firstUserid + i, username, encryptedPassword, username + "@school.lambda", "SYSTEM", now, "SYSTEM", now});
+    }
+
+    private void userRoleRows(
+            long i,
+            SplittableRandom random,
+            List<Object[]> batch)
+    {
+        batch.add(new Object[]{firstUserid + i, userid, "SYSTEM", now, "SYSTEM", now});
+        if (isLender(i))
+        {
+            batch.add(new Object[]{firstUserid + i, lenderid, "SYSTEM", now, "SYSTEM", now});
+        }
+    }
+
+    private void itemRow(
+            long i,
+            SplittableRandom random,
+            List<Object[]> batch)
+    {
+        String url = "https://picsum.photos/seed/" + pick(pokemon,
+                                                          random) + "/300/300";
+        batch.add(new Object[]{firstItemid + i, pick(characters,
+                                                     random), pick(houses,
+                                                                   random), "this is a fake description of an item", pick(cities,
+                                                                                                                          random), true, itemRateCents(i), url, latitude(random), longitude(random), firstUserid + lender(random), "SYSTEM", now, "SYSTEM", now});
+    }
+
+    private void contractRow(
+            long i,
+            SplittableRandom random,
+            List<Object[]> batch)
+    {
+        // the contracts of an item are dealt out in turn, the slot-th contract of an item going slot slots back in time
+        long item = i % items;
+        long slot = i / items;
+        long rentee = random.nextLong(users);
+        int length = 1 + random.nextInt(MAX_CONTRACT_DAYS);
+        long fee = pricing.fee(itemRateCents(item),
+                               length);
+
+        // one contract in ten has not been accepted yet so it has no dates
+        boolean accepted = random.nextInt(10) != 0;
+        Timestamp start = null;
+        Timestamp end = null;
+        boolean complete = false;
+        if (accepted)
+        {
+            // starts in the first SLOT_DAYS - MAX_CONTRACT_DAYS days of its slot so it ends before the next slot starts,
+            // and the bookings of an item never overlap. Only contracts in the newest slot can still be running.
+            long slotStart = now.getTime() - (slot + 1) * SLOT_DAYS * DAY + (SLOT_DAYS - MAX_CONTRACT_DAYS) * DAY;
+            start = new Timestamp(slotStart + random.nextLong((SLOT_DAYS - MAX_CONTRACT_DAYS) * DAY));
+            end = new Timestamp(start.getTime() + length * DAY);
+            complete = end.before(now);
+        }
+
+        batch.add(new Object[]{firstContractid + i, accepted, accepted, complete, complete, !complete, length, fee, start, end, firstUserid + rentee, firstItemid + item, firstItemid + item, "SYSTEM", now, "SYSTEM", now});
+    }
+
+    /**
+     * Somewhere in the lower 48 states, so the searches by distance have something to find
+     */
+    private static double latitude(SplittableRandom random)
+    {
+        return Math.round(random.nextDouble(25,
+                                            49) * 1e5) / 1e5;
+    }
+
+    private static double longitude(SplittableRandom random)
+    {
+        return Math.round(random.nextDouble(-124,
+                                            -67) * 1e5) / 1e5;
+    }
+
+    private static String pick(
+            String[] pool,
+            SplittableRandom random)
+    {
+        return pool[random.nextInt(pool.length)];
+    }
+
+    /**
+     * One user in four is a lender
+     */
+    private static boolean isLender(long i)
+    {
+        return i % 4 == 0;
+    }
+
+    private long lender(SplittableRandom random)
+    {
+        return 4 * random.nextLong((users + 3) / 4);
+    }
+
+    /**
+     * The rate of an item in cents, between 1.00 and 1000.00. Worked out from the item index
+     * so a contract can find the rate of its item without reading the item back.
+     */
+    private long itemRateCents(long i)
+    {
+        return 100 + Math.floorMod(mix(seed ^ mix(((long) ITEM_RATES << 32) + i)),
+                                   99_901L);
+    }
+
+    /**
+     * Scrambles the bits of a long, the same mixing step SplittableRandom uses
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generates the rows for one index into a batch
+     */
+    private interface RowMaker
+    {
+        void make(
+                long i,
+                SplittableRandom random,
+                    List<Object[]> batch);
+    }
+}
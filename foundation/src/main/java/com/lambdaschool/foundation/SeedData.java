@@ -9,6 +9,7 @@ import com.lambdaschool.foundation.services.RoleService;
 import com.lambdaschool.foundation.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,9 +21,14 @@ import java.util.Locale;
  * <p>
  * CoomandLineRunner: Spring Boot automatically runs the run method once and only once
  * after the application context has been loaded.
+ * <p>
+ * Runs unless local.seed.mode asks for another kind of seed data, see BulkSeedData.
  */
 @Transactional
 @Component
+@ConditionalOnProperty(name = "local.seed.mode",
+        havingValue = "DEMO",
+        matchIfMissing = true)
 public class SeedData
         implements CommandLineRunner
 {
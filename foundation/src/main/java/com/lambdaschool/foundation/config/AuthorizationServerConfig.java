@@ -1,6 +1,7 @@
 package com.lambdaschool.foundation.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -64,8 +65,10 @@ public class AuthorizationServerConfig
     /**
      * Tells how long in seconds the access code should be kept valid. After this timeout, the user has to sign on again.
      * set to -1 if you want the token to be valid forever. 1 * 60 * 60 would give us 1 hour.
+     * Read from local.token.validity
      */
-    static final int ACCESS_TOKEN_VALIDITY_SECONDS = -1;
+    @Value("${local.token.validity:-1}")
+    private int accessTokenValiditySeconds;
 
     /**
      * The token store is configured in Security Config. However, the authorization server manages it
@@ -106,7 +109,7 @@ public class AuthorizationServerConfig
                 .scopes(SCOPE_READ,
                         SCOPE_WRITE,
                         TRUST)
-                .accessTokenValiditySeconds(ACCESS_TOKEN_VALIDITY_SECONDS);
+                .accessTokenValiditySeconds(accessTokenValiditySeconds);
     }
 
     /**
@@ -0,0 +1,306 @@
+package com.lambdaschool.foundation.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.TokenStore;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps recently used access tokens in memory in front of the database token store, so checking a token
+ * does not read and deserialize the token on every request.
+ * <p>
+ * Tokens revoked on any node are read back from the database every few seconds and dropped from this cache,
+ * so signing out on one node signs out on all of them. Expired tokens are removed from the database in batches.
+ */
+public class CachingJdbcTokenStore
+        implements TokenStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(CachingJdbcTokenStore.class);
+
+    /**
+     * Revocations are read again starting this many milliseconds before the last one seen, so a revocation
+     * committed out of order on another node is not missed
+     */
+    private static final long REVOCATION_OVERLAP = 5000;
+
+    private final JdbcExpiringTokenStore delegate;
+
+    private final long ttlMillis;
+
+    private final int sweepBatchSize;
+
+    /**
+     * The cached tokens keyed off of the token key, in least recently used order. Guarded by itself.
+     */
+    private final LinkedHashMap<String, CachedToken> tokens;
+
+    /**
+     * The time of the last revocation seen in the database
+     */
+    private volatile Timestamp lastRevocation = new Timestamp(0);
+
+    /**
+     * Creates a caching token store in front of the given database token store
+     *
+     * @param delegate       the database token store
+     * @param maxSize        the most tokens held in memory
+     * @param ttlSeconds     how long in seconds a token is held in memory
+     * @param sweepBatchSize the most expired tokens removed from the database in one statement
+     */
+    public CachingJdbcTokenStore(
+            JdbcExpiringTokenStore delegate,
+            int maxSize,
+            long ttlSeconds,
+            int sweepBatchSize)
+    {
+        this.delegate = delegate;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.sweepBatchSize = sweepBatchSize;
+        this.tokens = new LinkedHashMap<String, CachedToken>(16,
+                                                             0.75f,
+                                                             true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private CachedToken cached(String key)
+    {
+        synchronized (tokens)
+        {
+            CachedToken cachedToken = tokens.get(key);
+            if (cachedToken != null && cachedToken.expires < System.currentTimeMillis())
+            {
+                tokens.remove(key);
+                cachedToken = null;
+            }
+            return cachedToken;
+        }
+    }
+
+    private void cache(
+            String key,
+            CachedToken cachedToken)
+    {
+        synchronized (tokens)
+        {
+            tokens.put(key,
+                       cachedToken);
+        }
+    }
+
+    private void evict(String key)
+    {
+        synchronized (tokens)
+        {
+            tokens.remove(key);
+        }
+    }
+
+    @Override
+    public OAuth2AccessToken readAccessToken(String tokenValue)
+    {
+        String key = delegate.tokenKey(tokenValue);
+        CachedToken cachedToken = cached(key);
+        if (cachedToken != null)
+        {
+            return cachedToken.token;
+        }
+
+        OAuth2AccessToken token = delegate.readAccessToken(tokenValue);
+        if (token != null)
+        {
+            cache(key,
+                  new CachedToken(token,
+                                  null,
+                                  expiresAt(token)));
+        }
+        return token;
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(OAuth2AccessToken token)
+    {
+        return readAuthentication(token.getValue());
+    }
+
+    @Override
+    public OAuth2Authentication readAuthentication(String tokenValue)
+    {
+        String key = delegate.tokenKey(tokenValue);
+        CachedToken cachedToken = cached(key);
+        if (cachedToken != null && cachedToken.authentication != null)
+        {
+            return cachedToken.authentication;
+        }
+
+        OAuth2Authentication authentication = delegate.readAuthentication(tokenValue);
+        if (authentication != null && cachedToken != null)
+        {
+            cache(key,
+                  new CachedToken(cachedToken.token,
+                                  authentication,
+                                  cachedToken.expires));
+        }
+        return authentication;
+    }
+
+    @Override
+    public void storeAccessToken(
+            OAuth2AccessToken token,
+            OAuth2Authentication authentication)
+    {
+        delegate.storeAccessToken(token,
+                                  authentication);
+        cache(delegate.tokenKey(token.getValue()),
+              new CachedToken(token,
+                              authentication,
+                              expiresAt(token)));
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token)
+    {
+        evict(delegate.tokenKey(token.getValue()));
+        delegate.removeAccessToken(token);
+    }
+
+    @Override
+    public void storeRefreshToken(
+            OAuth2RefreshToken refreshToken,
+            OAuth2Authentication authentication)
+    {
+        delegate.storeRefreshToken(refreshToken,
+                                   authentication);
+    }
+
+    @Override
+    public OAuth2RefreshToken readRefreshToken(String tokenValue)
+    {
+        return delegate.readRefreshToken(tokenValue);
+    }
+
+    @Override
+    public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token)
+    {
+        return delegate.readAuthenticationForRefreshToken(token);
+    }
+
+    @Override
+    public void removeRefreshToken(OAuth2RefreshToken token)
+    {
+        delegate.removeRefreshToken(token);
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken)
+    {
+        // the database store records the access tokens of the refresh token as revoked, which every node reads back
+        delegate.removeAccessTokenUsingRefreshToken(refreshToken);
+        refreshRevocations();
+    }
+
+    @Override
+    public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication)
+    {
+        return delegate.getAccessToken(authentication);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(
+            String clientId,
+            String userName)
+    {
+        return delegate.findTokensByClientIdAndUserName(clientId,
+                                                        userName);
+    }
+
+    @Override
+    public Collection<OAuth2AccessToken> findTokensByClientId(String clientId)
+    {
+        return delegate.findTokensByClientId(clientId);
+    }
+
+    /**
+     * Drops any token revoked on any node since the last check from the cache
+     */
+    @Scheduled(fixedDelayString = "${local.token.revocation.poll:2000}")
+    public void refreshRevocations()
+    {
+        List<JdbcExpiringTokenStore.Revocation> revocations = delegate.findRevocationsSince(new Timestamp(lastRevocation.getTime() - REVOCATION_OVERLAP));
+        for (JdbcExpiringTokenStore.Revocation revocation : revocations)
+        {
+            evict(revocation.getTokenKey());
+            if (revocation.getRevokedAt()
+                    .after(lastRevocation))
+            {
+                lastRevocation = revocation.getRevokedAt();
+            }
+        }
+    }
+
+    /**
+     * Removes expired tokens from the database, and the revocation records every node has already seen
+     */
+    @Scheduled(fixedDelayString = "${local.token.sweep.delay:60000}")
+    public void sweepExpired()
+    {
+        long now = System.currentTimeMillis();
+        int expired = delegate.deleteExpired(new Timestamp(now),
+                                             sweepBatchSize);
+        // a node caches a token for at most the ttl so after that a revocation record has done its job
+        delegate.deleteRevocationsBefore(new Timestamp(now - ttlMillis - REVOCATION_OVERLAP));
+        if (expired > 0)
+        {
+            logger.info("Removed {} expired access tokens",
+                        expired);
+        }
+    }
+
+    private long expiresAt(OAuth2AccessToken token)
+    {
+        long expires = System.currentTimeMillis() + ttlMillis;
+        if (token.getExpiration() != null)
+        {
+            expires = Math.min(expires,
+                               token.getExpiration()
+                                       .getTime());
+        }
+        return expires;
+    }
+
+    /**
+     * An access token held in memory. The authentication is filled in the first time it is read.
+     */
+    private static class CachedToken
+    {
+        private final OAuth2AccessToken token;
+
+        private final OAuth2Authentication authentication;
+
+        private final long expires;
+
+        CachedToken(
+                OAuth2AccessToken token,
+                OAuth2Authentication authentication,
+                long expires)
+        {
+            this.token = token;
+            this.authentication = authentication;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lambdaschool.foundation.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Gives the lists of items, contracts and users a weak ETag, a hash of the JSON sent, and answers If-None-Match on
+ * them with Not Modified so unchanged lists are not downloaded again.
+ * <p>
+ * A list has no version of its own, so it is still read and written out to be hashed, only not sent. Single items,
+ * contracts and users are checked before they are read, in their controllers. Streams and exports are left out, as
+ * the filter holds the whole response in memory.
+ */
+@Configuration
+public class CollectionETagConfig
+{
+    /**
+     * The list endpoints given a weak ETag
+     */
+    private static final String[] COLLECTIONS = {"/items/items",
+            "/items/item/name/like/*",
+            "/items/near",
+            "/items/within",
+            "/items/facets",
+            "/items/popular",
+            "/contracts/contracts",
+            "/contracts/search",
+            "/contracts/active",
+            "/contracts/ending",
+            "/contracts/started",
+            "/users/users",
+            "/users/user/name/like/*",
+            "/users/items"};
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> collectionETagFilter()
+    {
+        ShallowEtagHeaderFilter filter = new ShallowEtagHeaderFilter()
+        {
+            @Override
+            protected void doFilterInternal(
+                    HttpServletRequest request,
+                    HttpServletResponse response,
+                    FilterChain filterChain)
+                    throws
+                    ServletException,
+                    IOException
+            {
+                // clients may keep a list but must check it is current before using it
+                if (HttpMethod.GET.matches(request.getMethod()))
+                {
+                    response.setHeader(HttpHeaders.CACHE_CONTROL,
+                                       CacheControl.noCache()
+                                               .cachePrivate()
+                                               .getHeaderValue());
+                }
+                super.doFilterInternal(request,
+                                       response,
+                                       filterChain);
+            }
+        };
+        filter.setWriteWeakETag(true);
+
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns(COLLECTIONS);
+        return registration;
+    }
+}
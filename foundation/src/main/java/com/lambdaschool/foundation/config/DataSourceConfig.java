@@ -55,7 +55,8 @@ public class DataSourceConfig
                 System.exit(exitCode);
             }
 
-            myUrlString = "jdbc:postgresql://" + System.getenv("MYDBHOST") + ":5432/" + System.getenv("MYDBNAME");
+            // lets the driver send a batch of inserts as one multi row insert
+            myUrlString = "jdbc:postgresql://" + System.getenv("MYDBHOST") + ":5432/" + System.getenv("MYDBNAME") + "?reWriteBatchedInserts=true";
             myDriverClass = "org.postgresql.Driver";
             myDBUser = System.getenv("MYDBUSER");
             myDBPassword = System.getenv("MYDBPASSWORD");
@@ -0,0 +1,29 @@
+package com.lambdaschool.foundation.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Hands the second level cache of Hibernate to the entity manager. Whether the cache and the query cache are used is
+ * set in application.properties with the other Hibernate settings; this only supplies the regions, so their sizes
+ * are read from the application properties and their counts can be published as metrics.
+ */
+@Configuration
+public class EntityCacheConfig
+{
+    @Bean
+    public HeapRegionFactory heapRegionFactory(Environment environment)
+    {
+        return new HeapRegionFactory(environment);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(HeapRegionFactory heapRegionFactory)
+    {
+        return properties -> properties.put(AvailableSettings.CACHE_REGION_FACTORY,
+                                            heapRegionFactory);
+    }
+}
@@ -0,0 +1,369 @@
+package com.lambdaschool.foundation.config;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * The second level cache of Hibernate, kept in memory by this application. Each region, an entity, a collection or
+ * a cached query, holds at most entities.cache.{region}.maxsize entries for at most entities.cache.{region}.ttl
+ * seconds, falling back to entities.cache.default.maxsize and entities.cache.default.ttl. The least recently used
+ * entry is dropped once a region is full.
+ * <p>
+ * A region is split into stripes, each its own least recently used map with its own lock, so readers of different
+ * entries seldom wait on each other. The timestamps region, which says when each table last changed, is never trimmed,
+ * as dropping an entry from it would let a cached query return rows from before a change.
+ * <p>
+ * Built by EntityCacheConfig and handed to Hibernate, so the regions can be read by EntityCache for the metrics.
+ */
+public class HeapRegionFactory
+        extends RegionFactoryTemplate
+{
+    private static final String PREFIX = "entities.cache.";
+
+    /**
+     * The number of stripes each region is split into
+     */
+    private static final int STRIPES = 16;
+
+    private final Environment environment;
+
+    /**
+     * region name to the entries of the region
+     */
+    private final Map<String, HeapStorageAccess> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Told of each region as it is built. The regions of cached queries are only built when first used.
+     */
+    private volatile BiConsumer<String, HeapStorageAccess> listener = (name, region) ->
+    {
+    };
+
+    public HeapRegionFactory(Environment environment)
+    {
+        this.environment = environment;
+    }
+
+    /**
+     * The regions built so far, keyed off of their names
+     *
+     * @return the regions, read only
+     */
+    public Map<String, HeapStorageAccess> getRegions()
+    {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * Tells the listener of every region built from now on
+     *
+     * @param listener given the name and entries of each region built
+     */
+    public void setListener(BiConsumer<String, HeapStorageAccess> listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    protected void prepareForUse(
+            SessionFactoryOptions settings,
+            Map configValues)
+    {
+    }
+
+    @Override
+    protected void releaseFromUse()
+    {
+        for (HeapStorageAccess region : regions.values())
+        {
+            region.release();
+        }
+        regions.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+            DomainDataRegionConfig regionConfig,
+            DomainDataRegionBuildingContext buildingContext)
+    {
+        return region(regionConfig.getRegionName(),
+                      true);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(
+            String regionName,
+            SessionFactoryImplementor sessionFactory)
+    {
+        return region(regionName,
+                      true);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(
+            String regionName,
+            SessionFactoryImplementor sessionFactory)
+    {
+        return region(regionName,
+                      false);
+    }
+
+    private HeapStorageAccess region(
+            String name,
+            boolean bounded)
+    {
+        int maxSize = 0;
+        long ttlSeconds = 0;
+        if (bounded)
+        {
+            maxSize = environment.getProperty(PREFIX + name + ".maxsize",
+                                              Integer.class,
+                                              environment.getProperty(PREFIX + "default.maxsize",
+                                                                      Integer.class,
+                                                                      10000));
+            ttlSeconds = environment.getProperty(PREFIX + name + ".ttl",
+                                                 Long.class,
+                                                 environment.getProperty(PREFIX + "default.ttl",
+                                                                         Long.class,
+                                                                         3600L));
+        }
+        HeapStorageAccess region = new HeapStorageAccess(maxSize,
+                                                         ttlSeconds * 1000);
+        regions.put(name,
+                    region);
+        listener.accept(name,
+                        region);
+        return region;
+    }
+
+    /**
+     * The entries of one region
+     */
+    public static final class HeapStorageAccess
+            implements DomainDataStorageAccess
+    {
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        /**
+         * How long, in milliseconds, an entry is kept. 0 keeps it until it is dropped or evicted.
+         */
+        private final long ttlMillis;
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder puts = new LongAdder();
+
+        private final LongAdder evictions = new LongAdder();
+
+        HeapStorageAccess(
+                int maxSize,
+                long ttlMillis)
+        {
+            this.ttlMillis = ttlMillis;
+            // 0 is no limit
+            int stripeSize = maxSize <= 0 ? 0 : Math.max(1,
+                                                         (maxSize + STRIPES - 1) / STRIPES);
+            for (int i = 0; i < STRIPES; i++)
+            {
+                stripes[i] = new Stripe(stripeSize);
+            }
+        }
+
+        private Stripe stripe(Object key)
+        {
+            int hash = key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+
+        @Override
+        public Object getFromCache(
+                Object key,
+                SharedSessionContractImplementor session)
+        {
+            Object value = stripe(key).get(key);
+            if (value == null)
+            {
+                misses.increment();
+            } else
+            {
+                hits.increment();
+            }
+            return value;
+        }
+
+        @Override
+        public void putIntoCache(
+                Object key,
+                Object value,
+                SharedSessionContractImplementor session)
+        {
+            stripe(key).put(key,
+                            value,
+                            ttlMillis == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis);
+            puts.increment();
+        }
+
+        @Override
+        public boolean contains(Object key)
+        {
+            return stripe(key).get(key) != null;
+        }
+
+        @Override
+        public void evictData()
+        {
+            for (Stripe stripe : stripes)
+            {
+                stripe.clear();
+            }
+        }
+
+        @Override
+        public void evictData(Object key)
+        {
+            stripe(key).remove(key);
+        }
+
+        @Override
+        public void release()
+        {
+            evictData();
+        }
+
+        public long getHits()
+        {
+            return hits.sum();
+        }
+
+        public long getMisses()
+        {
+            return misses.sum();
+        }
+
+        public long getPuts()
+        {
+            return puts.sum();
+        }
+
+        /**
+         * The number of entries dropped to make room or because they were too old. Entries evicted because the data
+         * changed are not counted.
+         */
+        public long getEvictions()
+        {
+            return evictions.sum();
+        }
+
+        public int size()
+        {
+            int size = 0;
+            for (Stripe stripe : stripes)
+            {
+                size += stripe.size();
+            }
+            return size;
+        }
+
+        /**
+         * One part of a region, the entries in least recently used order. Guarded by this.
+         */
+        private final class Stripe
+        {
+            private final LinkedHashMap<Object, Entry> entries;
+
+            Stripe(int maxSize)
+            {
+                entries = new LinkedHashMap<Object, Entry>(16,
+                                                           0.75f,
+                                                           true)
+                {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest)
+                    {
+                        if (maxSize > 0 && size() > maxSize)
+                        {
+                            evictions.increment();
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+            }
+
+            synchronized Object get(Object key)
+            {
+                Entry entry = entries.get(key);
+                if (entry == null)
+                {
+                    return null;
+                }
+                if (entry.expires < System.currentTimeMillis())
+                {
+                    entries.remove(key);
+                    evictions.increment();
+                    return null;
+                }
+                return entry.value;
+            }
+
+            synchronized void put(
+                    Object key,
+                    Object value,
+                    long expires)
+            {
+                entries.put(key,
+                            new Entry(value,
+                                      expires));
+            }
+
+            synchronized void remove(Object key)
+            {
+                entries.remove(key);
+            }
+
+            synchronized void clear()
+            {
+                entries.clear();
+            }
+
+            synchronized int size()
+            {
+                return entries.size();
+            }
+        }
+    }
+
+    /**
+     * A cached value and when it expires
+     */
+    private static final class Entry
+    {
+        private final Object value;
+
+        private final long expires;
+
+        Entry(
+                Object value,
+                long expires)
+        {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
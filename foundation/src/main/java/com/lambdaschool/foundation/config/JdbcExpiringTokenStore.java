@@ -0,0 +1,187 @@
+package com.lambdaschool.foundation.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.store.JdbcTokenStore;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * A token store kept in the database so every node behind the load balancer sees the same tokens
+ * and a restart does not sign everyone out.
+ * <p>
+ * On top of the standard Spring tables this store records when each access token expires, so expired tokens
+ * can be removed in batches, and records each revoked token, so nodes caching tokens can drop them.
+ */
+public class JdbcExpiringTokenStore
+        extends JdbcTokenStore
+{
+    /**
+     * The tables and indexes used by this store. Written to work with both H2 and PostgreSQL.
+     */
+    private static final String[] SCHEMA = {"CREATE TABLE IF NOT EXISTS oauth_access_token (token_id VARCHAR(256) PRIMARY KEY, token BYTEA, authentication_id VARCHAR(256), user_name VARCHAR(256), client_id VARCHAR(256), authentication BYTEA, refresh_token VARCHAR(256), expiration TIMESTAMP)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_authentication ON oauth_access_token (authentication_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_user_client ON oauth_access_token (user_name, client_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_client ON oauth_access_token (client_id)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_refresh ON oauth_access_token (refresh_token)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_access_token_expiration ON oauth_access_token (expiration)",
+        "CREATE TABLE IF NOT EXISTS oauth_refresh_token (token_id VARCHAR(256) PRIMARY KEY, token BYTEA, authentication BYTEA)",
+        "CREATE TABLE IF NOT EXISTS oauth_revoked_token (token_id VARCHAR(256) NOT NULL, revoked_at TIMESTAMP NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS ix_oauth_revoked_token_revoked_at ON oauth_revoked_token (revoked_at)"};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates a token store using the given data source
+     *
+     * @param dataSource the data source holding the token tables
+     */
+    public JdbcExpiringTokenStore(DataSource dataSource)
+    {
+        super(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Creates the token tables and indexes if they do not already exist
+     */
+    public void createSchema()
+    {
+        for (String sql : SCHEMA)
+        {
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    /**
+     * The key the token is stored under. Tokens are stored under a hash of their value, never the value itself.
+     *
+     * @param value the value of the access token
+     * @return the key (String) the token is stored under
+     */
+    public String tokenKey(String value)
+    {
+        return extractTokenKey(value);
+    }
+
+    @Override
+    public void storeAccessToken(
+            OAuth2AccessToken token,
+            OAuth2Authentication authentication)
+    {
+        super.storeAccessToken(token,
+                               authentication);
+        if (token.getExpiration() != null)
+        {
+            jdbcTemplate.update("UPDATE oauth_access_token SET expiration = ? WHERE token_id = ?",
+                                new Timestamp(token.getExpiration()
+                                                      .getTime()),
+                                extractTokenKey(token.getValue()));
+        }
+    }
+
+    @Override
+    public void removeAccessToken(OAuth2AccessToken token)
+    {
+        removeAccessToken(token.getValue());
+    }
+
+    @Override
+    public void removeAccessToken(String tokenValue)
+    {
+        super.removeAccessToken(tokenValue);
+        jdbcTemplate.update("INSERT INTO oauth_revoked_token (token_id, revoked_at) VALUES (?, CURRENT_TIMESTAMP)",
+                            extractTokenKey(tokenValue));
+    }
+
+    @Override
+    public void removeAccessTokenUsingRefreshToken(String refreshToken)
+    {
+        // recorded before the tokens are removed, as afterwards there is no telling which tokens went with it
+        jdbcTemplate.update("INSERT INTO oauth_revoked_token (token_id, revoked_at) SELECT token_id, CURRENT_TIMESTAMP FROM oauth_access_token WHERE refresh_token = ?",
+                            extractTokenKey(refreshToken));
+        super.removeAccessTokenUsingRefreshToken(refreshToken);
+    }
+
+    /**
+     * Finds the tokens revoked, on any node, at or after the given time
+     *
+     * @param since the earliest revocation time wanted
+     * @return the revocations found, oldest first
+     */
+    public List<Revocation> findRevocationsSince(Timestamp since)
+    {
+        return jdbcTemplate.query("SELECT token_id, revoked_at FROM oauth_revoked_token WHERE revoked_at >= ? ORDER BY revoked_at",
+                                  (rs, rowNum) -> new Revocation(rs.getString(1),
+                                                                 rs.getTimestamp(2)),
+                                  since);
+    }
+
+    /**
+     * Removes access tokens that expired before the given time. Tokens are removed batchSize at a time
+     * so a large backlog never holds long locks on the table.
+     *
+     * @param now       tokens that expired before this time are removed
+     * @param batchSize the most tokens removed in one statement
+     * @return the number of tokens removed
+     */
+    public int deleteExpired(
+            Timestamp now,
+            int batchSize)
+    {
+        int total = 0;
+        int deleted;
+        do
+        {
+            deleted = jdbcTemplate.update("DELETE FROM oauth_access_token WHERE token_id IN (SELECT token_id FROM oauth_access_token WHERE expiration < ? LIMIT ?)",
+                                          now,
+                                          batchSize);
+            total += deleted;
+        } while (deleted >= batchSize);
+        return total;
+    }
+
+    /**
+     * Removes revocation records older than the given time. Once every node has had time to see
+     * a revocation, the record is no longer needed.
+     *
+     * @param before revocations recorded before this time are removed
+     * @return the number of revocation records removed
+     */
+    public int deleteRevocationsBefore(Timestamp before)
+    {
+        return jdbcTemplate.update("DELETE FROM oauth_revoked_token WHERE revoked_at < ?",
+                                   before);
+    }
+
+    /**
+     * A token revoked on some node
+     */
+    public static class Revocation
+    {
+        private final String tokenKey;
+
+        private final Timestamp revokedAt;
+
+        Revocation(
+                String tokenKey,
+                Timestamp revokedAt)
+        {
+            this.tokenKey = tokenKey;
+            this.revokedAt = revokedAt;
+        }
+
+        public String getTokenKey()
+        {
+            return tokenKey;
+        }
+
+        public Timestamp getRevokedAt()
+        {
+            return revokedAt;
+        }
+    }
+}
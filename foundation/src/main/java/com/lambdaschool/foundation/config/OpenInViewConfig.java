@@ -0,0 +1,52 @@
+package com.lambdaschool.foundation.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Keeps one EntityManager open for the whole of a web request, as spring.jpa.open-in-view does, but not for the
+ * Server-Sent Events of /contracts/stream. The EntityManager of a request holds its database connection until the
+ * request ends, and a stream stays open for contracts.stream.timeout, so every open stream would hold a connection.
+ * <p>
+ * Spring Boot registers the same interceptor for every path unless an application declares its own, as this one does.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.jpa",
+        name = "open-in-view",
+        havingValue = "true",
+        matchIfMissing = true)
+public class OpenInViewConfig
+        implements WebMvcConfigurer
+{
+    /**
+     * The paths left without an EntityManager of their own, so they read the database in short transactions
+     */
+    private static final String[] EXCLUDED = {"/contracts/stream"};
+
+    /**
+     * Opens the EntityManager of a request and closes it once the request is done
+     *
+     * @return the interceptor
+     */
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor()
+    {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    /**
+     * Adds the interceptor to every path but the excluded ones
+     *
+     * @param registry the interceptors of Spring MVC
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry)
+    {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns(EXCLUDED);
+    }
+}
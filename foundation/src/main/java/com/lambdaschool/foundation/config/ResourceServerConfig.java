@@ -51,8 +51,12 @@ public class ResourceServerConfig
                              "/swagger-ui.html",
                              "/v2/api-docs",
                              "/webjars/**",
-                             "/createnewuser")
+                             "/createnewuser",
+                             "/actuator/health",
+                             "/images/**")
                 .permitAll()
+                .antMatchers("/actuator/**")
+                .hasAnyRole("ADMIN")
                 .antMatchers(HttpMethod.POST,
                              "/users/**")
                 .hasAnyRole("ADMIN","LENDER","USER")
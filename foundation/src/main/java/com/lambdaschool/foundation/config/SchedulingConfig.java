@@ -0,0 +1,14 @@
+package com.lambdaschool.foundation.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on the running of scheduled background jobs, methods annotated with @Scheduled.
+ * The number of threads running these jobs is set by spring.task.scheduling.pool.size
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig
+{
+}
@@ -1,8 +1,10 @@
 package com.lambdaschool.foundation.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -15,6 +17,7 @@ import org.springframework.security.oauth2.provider.token.TokenStore;
 import org.springframework.security.oauth2.provider.token.store.InMemoryTokenStore;
 
 import javax.annotation.Resource;
+import javax.sql.DataSource;
 
 /**
  * This class allows us to set standard security protocols to be used throughout the application,
@@ -65,14 +68,54 @@ public class SecurityConfig
 
 
     /**
-     * We will store our token in memory. This way when the application exists all access tokens are invalidated.
+     * Used to read which token store to use
+     */
+    @Autowired
+    private Environment env;
+
+    /**
+     * The datasource holding our tables, used when tokens are stored in the database
+     */
+    @Autowired
+    @Qualifier("dsCustom")
+    private DataSource dataSource;
+
+    /**
+     * Where we store our tokens is set by local.token.store.
+     * <p>
+     * MEMORY: tokens are kept in memory. This way when the application exits all access tokens are invalidated.
+     * Only works when running a single copy of the application.
+     * <p>
+     * JDBC: tokens are kept in the database with a cache in memory in front of it.
+     * Tokens survive restarts and are shared by every copy of the application using the same database.
      *
-     * @return A token store configured to be used in memory
+     * @return A token store configured as set by local.token.store
      */
     @Bean
     public TokenStore tokenStore()
     {
-        return new InMemoryTokenStore();
+        String storeValue = env.getProperty("local.token.store",
+                                            "MEMORY");
+
+        if (storeValue.equalsIgnoreCase("JDBC"))
+        {
+            JdbcExpiringTokenStore jdbcTokenStore = new JdbcExpiringTokenStore(dataSource);
+            jdbcTokenStore.createSchema();
+
+            return new CachingJdbcTokenStore(jdbcTokenStore,
+                                             env.getProperty("local.token.cache.maxsize",
+                                                             Integer.class,
+                                                             10000),
+                                             env.getProperty("local.token.cache.ttl",
+                                                             Long.class,
+                                                             300L),
+                                             env.getProperty("local.token.sweep.batch",
+                                                             Integer.class,
+                                                             500));
+        } else
+        {
+            return new InMemoryTokenStore();
+        }
     }
 
     /**
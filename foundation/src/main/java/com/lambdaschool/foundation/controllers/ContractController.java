@@ -2,28 +2,40 @@ package com.lambdaschool.foundation.controllers;
 
 
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import com.lambdaschool.foundation.handlers.HelperFunctions;
 import com.lambdaschool.foundation.models.*;
 import com.lambdaschool.foundation.models.Contract;
 import com.lambdaschool.foundation.repository.ItemRepository;
+import com.lambdaschool.foundation.services.ContractExportService;
 import com.lambdaschool.foundation.services.ContractService;
 import com.lambdaschool.foundation.services.ItemService;
 import com.lambdaschool.foundation.services.UserService;
+import com.lambdaschool.foundation.views.Revision;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -33,13 +45,31 @@ public class ContractController
     @Autowired
     private ContractService contractService;
 
+    @Autowired
+    private ContractExportService contractExportService;
+
     @Autowired
     private ItemService itemService;
 
     @Autowired
     private UserService userservice;
+
+    @Autowired
+    private HelperFunctions helper;
     private @Valid Contract body;
 
+    /**
+     * The number of contracts returned by a range query when the client does not ask for a size
+     */
+    @Value("${contracts.page.size:50}")
+    private int defaultPageSize;
+
+    /**
+     * The most contracts a client may ask a range query for
+     */
+    @Value("${contracts.page.maxsize:500}")
+    private int maxPageSize;
+
     /**
      * Returns a list of all contracts
      * <br>Example: <a href="http://localhost:2019/contracts/contracts">http://localhost:2019/contracts/contracts</a>
@@ -60,19 +90,266 @@ public class ContractController
                 HttpStatus.OK);
     }
 
+    /**
+     * Returns one page of the contracts of the authenticated user, newest first, as summaries
+     * naming the item, lender and rentee instead of the whole item and users
+     * <br>Example: <a href="http://localhost:2019/contracts/search?as=lender&amp;active=true&amp;size=20">http://localhost:2019/contracts/search?as=lender&amp;active=true&amp;size=20</a>
+     *
+     * @param as             rentee for the contracts the user rents, lender for the contracts on items the user lends
+     * @param itemid         only contracts on this item. Leave off for any item
+     * @param active         only active or only inactive contracts. Leave off for both
+     * @param cursor         The next cursor from the previous page. Leave off for the first page
+     * @param size           The number of contracts wanted on this page. Defaults to contracts.page.size, capped at contracts.page.maxsize
+     * @param authentication The authenticated user
+     * @return JSON page of contract summaries, including the next cursor, with a status of OK
+     * @see ContractService#search(String, String, Long, Boolean, Long, int) ContractService.search(String, String, Long, Boolean, Long, int)
+     */
+    @ApiOperation(value = "returns one page of the Contracts of the authenticated user",
+            response = ContractPage.class)
+    @GetMapping(value = "/search",
+            produces = {"application/json"})
+    public ResponseEntity<?> searchContracts(
+            @ApiParam(value = "rentee or lender",
+                    example = "rentee")
+            @RequestParam(defaultValue = "rentee")
+                    String as,
+            @RequestParam(required = false)
+                    Long itemid,
+            @RequestParam(required = false)
+                    Boolean active,
+            @ApiParam(value = "next cursor from the previous page")
+            @RequestParam(required = false)
+                    Long cursor,
+            @RequestParam(required = false)
+                    Integer size,
+            Authentication authentication)
+    {
+        ContractPage myContracts = contractService.search(authentication.getName(),
+                                                          as,
+                                                          itemid,
+                                                          active,
+                                                          cursor,
+                                                          pageSize(size));
+        return new ResponseEntity<>(myContracts,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the dashboard of the authenticated user as a lender: their revenue, utilisation and active rentals,
+     * and their items earning the most. Read from running totals, so it costs the same however many contracts they have.
+     * <br>Example: <a href="http://localhost:2019/contracts/dashboard">http://localhost:2019/contracts/dashboard</a>
+     *
+     * @param authentication The authenticated user
+     * @return JSON dashboard with a status of OK
+     * @see ContractService#dashboard(String) ContractService.dashboard(String)
+     */
+    @ApiOperation(value = "returns the lender dashboard of the authenticated user",
+            response = LenderDashboard.class)
+    @GetMapping(value = "/dashboard",
+            produces = {"application/json"})
+    public ResponseEntity<?> getDashboard(Authentication authentication)
+    {
+        LenderDashboard dashboard = contractService.dashboard(authentication.getName());
+        return new ResponseEntity<>(dashboard,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Streams the changes to the contracts the authenticated user rents or lends as Server-Sent Events, each named
+     * after its outbox event type with the outbox event as its data. An open event comes first; read the contracts after
+     * it arrives to miss nothing. The stream closes if the client falls behind and after contracts.stream.timeout.
+     * <br>Example: <a href="http://localhost:2019/contracts/stream">http://localhost:2019/contracts/stream</a>
+     *
+     * @param contractid     Only changes to this contract. Leave off for all contracts of the user
+     * @param authentication The authenticated user
+     * @return An event stream, kept open
+     * @see ContractService#stream(String, Long) ContractService.stream(String, Long)
+     */
+    @ApiOperation(value = "streams changes to the contracts of the authenticated user as Server-Sent Events")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Stream Opened"), @ApiResponse(code = 404,
+            message = "Contract Not Found",
+            response = ErrorDetail.class), @ApiResponse(code = 400,
+            message = "Too Many Streams Open",
+            response = ErrorDetail.class)})
+    @GetMapping(value = "/stream",
+            produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public SseEmitter streamContracts(
+            @ApiParam(value = "only this contract")
+            @RequestParam(required = false)
+                    Long contractid,
+            Authentication authentication)
+    {
+        return contractService.stream(authentication.getName(),
+                                      contractid);
+    }
+
+    /**
+     * Returns the active contracts running at a given time, soonest ending first
+     * <br>Example: <a href="http://localhost:2019/contracts/active?at=2020-06-01T12:00:00Z">http://localhost:2019/contracts/active?at=2020-06-01T12:00:00Z</a>
+     *
+     * @param at   The time the contracts are running at. Leave off for now
+     * @param size The most contracts wanted. Defaults to contracts.page.size, capped at contracts.page.maxsize
+     * @return JSON list of contracts with a status of OK
+     * @see ContractService#findActiveAt(Instant, int) ContractService.findActiveAt(Instant, int)
+     */
+    @ApiOperation(value = "returns the active Contracts running at a given time",
+            response = Contract.class,
+            responseContainer = "List")
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping(value = "/active",
+            produces = {"application/json"})
+    public ResponseEntity<?> listActiveContracts(
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    Instant at,
+            @RequestParam(required = false)
+                    Integer size)
+    {
+        List<Contract> myContracts = contractService.findActiveAt(at == null ? Instant.now() : at,
+                                                                  pageSize(size));
+        return new ResponseEntity<>(myContracts,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the active contracts ending within a number of days from now, soonest ending first
+     * <br>Example: <a href="http://localhost:2019/contracts/ending?days=7">http://localhost:2019/contracts/ending?days=7</a>
+     *
+     * @param days The number of days to look ahead
+     * @param size The most contracts wanted. Defaults to contracts.page.size, capped at contracts.page.maxsize
+     * @return JSON list of contracts with a status of OK
+     * @see ContractService#findEndingWithin(int, int) ContractService.findEndingWithin(int, int)
+     */
+    @ApiOperation(value = "returns the active Contracts ending within a number of days",
+            response = Contract.class,
+            responseContainer = "List")
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping(value = "/ending",
+            produces = {"application/json"})
+    public ResponseEntity<?> listEndingContracts(
+            @RequestParam
+                    int days,
+            @RequestParam(required = false)
+                    Integer size)
+    {
+        List<Contract> myContracts = contractService.findEndingWithin(days,
+                                                                      pageSize(size));
+        return new ResponseEntity<>(myContracts,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the contracts started from one time up to another, earliest first
+     * <br>Example: <a href="http://localhost:2019/contracts/started?from=2020-01-01T00:00:00Z&amp;to=2020-02-01T00:00:00Z">http://localhost:2019/contracts/started?from=2020-01-01T00:00:00Z&amp;to=2020-02-01T00:00:00Z</a>
+     *
+     * @param from The earliest start
+     * @param to   The start the contracts must start before
+     * @param size The most contracts wanted. Defaults to contracts.page.size, capped at contracts.page.maxsize
+     * @return JSON list of contracts with a status of OK
+     * @see ContractService#findStartedBetween(Instant, Instant, int) ContractService.findStartedBetween(Instant, Instant, int)
+     */
+    @ApiOperation(value = "returns the Contracts started between two times",
+            response = Contract.class,
+            responseContainer = "List")
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping(value = "/started",
+            produces = {"application/json"})
+    public ResponseEntity<?> listStartedContracts(
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    Instant from,
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    Instant to,
+            @RequestParam(required = false)
+                    Integer size)
+    {
+        List<Contract> myContracts = contractService.findStartedBetween(from,
+                                                                        to,
+                                                                        pageSize(size));
+        return new ResponseEntity<>(myContracts,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Writes the contracts matching the given filters, one per line, as they are read from the database.
+     * Meant for reporting on every contract, however many there are.
+     * <br>Example: <a href="http://localhost:2019/contracts/export/ndjson?from=2020-01-01&amp;to=2020-12-31&amp;active=true">http://localhost:2019/contracts/export/ndjson?from=2020-01-01&amp;to=2020-12-31&amp;active=true</a>
+     *
+     * @param format   ndjson for newline delimited JSON or csv for CSV with a header line
+     * @param from     only contracts starting on or after this day (yyyy-MM-dd). Leave off for no limit
+     * @param to       only contracts starting on or before this day (yyyy-MM-dd). Leave off for no limit
+     * @param active   only active or only inactive contracts. Leave off for both
+     * @param response the response the contracts are written to
+     * @throws IOException if the contracts could not be written to the response
+     * @see ContractExportService#exportNdjson(LocalDate, LocalDate, Boolean, OutputStream) ContractExportService.exportNdjson(LocalDate, LocalDate, Boolean, OutputStream)
+     */
+    @ApiOperation(value = "writes all matching Contracts as newline delimited JSON or CSV")
+    @PreAuthorize("hasAnyRole('ADMIN')")
+    @GetMapping(value = "/export/{format}")
+    public void exportContracts(
+            @PathVariable
+                    String format,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate from,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate to,
+            @RequestParam(required = false)
+                    Boolean active,
+            HttpServletResponse response)
+            throws
+            IOException
+    {
+        switch (format.toLowerCase())
+        {
+            case "ndjson":
+                response.setContentType("application/x-ndjson");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                                   "attachment; filename=contracts.ndjson");
+                contractExportService.exportNdjson(from,
+                                                   to,
+                                                   active,
+                                                   response.getOutputStream());
+                break;
+            case "csv":
+                response.setContentType("text/csv");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                                   "attachment; filename=contracts.csv");
+                contractExportService.exportCsv(from,
+                                                to,
+                                                active,
+                                                response.getOutputStream());
+                break;
+            default:
+                throw new ResourceNotFoundException("Export format " + format + " not found!");
+        }
+    }
+
     /**
      * Returns a single contract based off a contract id number
      * <br>Example: <a href="http://localhost:2019/contracts/contract/7">http://localhost:2019/contracts/contract/7</a>
      *
-     * @param contractId The primary key of the contract you seek
-     * @return JSON object of the contract you seek
+     * If the If-None-Match or If-Modified-Since header shows the client already has this version of the contract,
+     * Not Modified is returned without reading the contract.
+     * <p>
+     * The contract is sent with its rentee and its item, so the ETag is made from the last change to any of them
+     * and how many contracts the item has. Marked weak, as it stands for the contract rather than the exact bytes sent.
+     *
+     * @param contractId      The primary key of the contract you seek
+     * @param ifNoneMatch     The ETag of the contract as last read
+     * @param ifModifiedSince The Last-Modified of the contract as last read
+     * @return JSON object of the contract you seek with a weak ETag header
      * @see ContractService#findContractById(long) ContractService.findContractById(long)
      */
     @ApiOperation(value = "Retrieve a contract based off of contract id",
             response = Contract.class)
     @ApiResponses(value = {@ApiResponse(code = 200,
             message = "Contract Found",
-            response = Contract.class), @ApiResponse(code = 404,
+            response = Contract.class), @ApiResponse(code = 304,
+            message = "Contract Not Modified"), @ApiResponse(code = 404,
             message = "Contract Not Found",
             response = ErrorDetail.class)})
     @GetMapping(value = "/contract/{contractId}",
@@ -82,11 +359,39 @@ public class ContractController
                     required = true,
                     example = "4")
             @PathVariable
-                    Long contractId)
+                    Long contractId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                    required = false)
+                    String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE,
+                    required = false)
+                    String ifModifiedSince)
     {
+        Revision revision = contractService.findContractRevision(contractId);
+        if (revision.getLastmodified() == null)
+        {
+            // rows written without their audit fields cannot be told apart, so the contract is always sent
+            return new ResponseEntity<>(contractService.findContractById(contractId),
+                                        HttpStatus.OK);
+        }
+        String eTag = helper.weakETag(revision.getLastmodified()
+                                              .getTime() + "-" + revision.getRowcount());
+        if (helper.isNotModified(ifNoneMatch,
+                                 ifModifiedSince,
+                                 eTag,
+                                 revision.getLastmodified()))
+        {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(helper.validators(eTag,
+                                               revision.getLastmodified()))
+                    .build();
+        }
+
         Contract u = contractService.findContractById(contractId);
-        return new ResponseEntity<>(u,
-                HttpStatus.OK);
+        return ResponseEntity.ok()
+                .headers(helper.validators(eTag,
+                                           revision.getLastmodified()))
+                .body(u);
     }
     /*
     @ApiResponses(value = {@ApiResponse(code = 200,
@@ -163,17 +468,50 @@ public class ContractController
         return new ResponseEntity<>("Contract with ID#" + newContract.getContractid() + " created!", responseHeaders, HttpStatus.CREATED);
     }
 
+    /**
+     * Prices renting a list of items, each for its own number of days, without making any contracts
+     * <br> Example: <a href="http://localhost:2019/contracts/quote">http://localhost:2019/contracts/quote</a>
+     *
+     * @param quotes a list of itemid and contractlength pairs
+     * @return JSON list of the same pairs with the itemrate and contractfee of each filled in, with a status of OK
+     * @see ContractService#quote(List) ContractService.quote(List)
+     */
+    @ApiOperation(value = "prices renting each item in the request body for its contract length",
+            response = Quote.class,
+            responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Items Priced",
+            response = Quote.class,
+            responseContainer = "List"), @ApiResponse(code = 404,
+            message = "Item Not Found",
+            response = ErrorDetail.class)})
+    @PostMapping(value = "/quote",
+            consumes = {"application/json"},
+            produces = {"application/json"})
+    public ResponseEntity<?> quoteContracts(
+            @ApiParam(value = "itemid: long, contractlength: int",
+                    required = true)
+            @RequestBody
+                    List<Quote> quotes)
+    {
+        return new ResponseEntity<>(contractService.quote(quotes),
+                                    HttpStatus.OK);
+    }
+
     /**
      * Given a complete Contract Object
      * Given the contract id, primary key, is in the Contract table,
      * replace the Contract record
      * <br> Example: <a href="http://localhost:2019/contracts/contract/15">http://localhost:2019/contracts/contract/15</a>
      *
+     * If the If-Match header is given, the contract is only replaced if it is still at that version.
+     *
      * @param updateContract A complete Contract to be used to
      *                   replace the Contract.
      * @param contractid     The primary key of the contract you wish to replace.
-     * @return status of OK
-     * @see ContractService#save(Contract) ContractService.save(Contract)
+     * @param ifMatch        The ETag of the contract as last read. Leave off to replace whatever version is current
+     * @return status of OK with the new version of the contract as the ETag header
+     * @see ContractService#save(Contract, Long) ContractService.save(Contract, Long)
      */
 
     @ApiOperation(value = "updates a contract given in the request body",
@@ -195,12 +533,18 @@ public class ContractController
                     required = true,
                     example = "4")
             @PathVariable
-                    long contractid)
+                    long contractid,
+            @RequestHeader(value = HttpHeaders.IF_MATCH,
+                    required = false)
+                    String ifMatch)
     {
         updateContract.setContractid(contractid);
-        contractService.save(updateContract);
+        Contract updated = contractService.save(updateContract,
+                helper.ifMatchVersion(ifMatch));
 
-        return new ResponseEntity<>(HttpStatus.OK);
+        return ResponseEntity.ok()
+                .eTag(helper.eTag(updated.getVersion()))
+                .build();
     }
 
     /*
@@ -268,6 +612,18 @@ public class ContractController
     }
 
 
+    /**
+     * Records a change of mind on the contract by the rentee or the lender of the contract.
+     * If the If-Match header is given, the contract is only changed if it is still at that version.
+     * <br> Example: <a href="http://localhost:2019/contracts/contract/agree/7">http://localhost:2019/contracts/contract/agree/7</a>
+     *
+     * @param body           not used
+     * @param contractid     The primary key of the contract
+     * @param ifMatch        The ETag of the contract as last read. Leave off to change whatever version is current
+     * @param authentication the user making the change
+     * @return A location header with the URI to the contract and the new version of the contract as the ETag header
+     * @see ContractService#agree(long, User, Long) ContractService.agree(long, User, Long)
+     */
     @ApiOperation(value = "set agree to contract true",
             response = Void.class)
     @ApiResponses(value = {@ApiResponse(code = 200,
@@ -284,23 +640,14 @@ public class ContractController
                                                     example = "4")
                                             @PathVariable
                                                     long contractid,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH,
+                                                    required = false)
+                                                    String ifMatch,
                                             Authentication authentication){
 
-        Contract c = contractService.findContractById(contractid);
-
-            if (userservice.findByName(authentication.getName()) == c.getRentee()){
-                c.setRenteeaccept(false);
-                c.setRenteecomplete(false);
-                contractService.save(c);
-                System.out.println("plz work");
-            }else if (userservice.findByName(authentication.getName()) == c.getItem().getLender()){
-                c.setLenderaccept(!c.isLenderaccept());
-                c.setLendercomplete(!c.isLendercomplete());
-                contractService.save(c);
-                System.out.println("plz work 2");
-            }else {
-                throw new ResourceNotFoundException("You must be the lender or rentee to change this value");
-            }
+        Contract c = contractService.agree(contractid,
+                                           userservice.findByName(authentication.getName()),
+                                           helper.ifMatchVersion(ifMatch));
 
         HttpHeaders responseHeaders = new HttpHeaders();
         URI newContractURI = ServletUriComponentsBuilder.fromCurrentRequest()
@@ -308,6 +655,7 @@ public class ContractController
                 .buildAndExpand(c.getContractid())
                 .toUri();
         responseHeaders.setLocation(newContractURI);
+        responseHeaders.setETag(helper.eTag(c.getVersion()));
 
         return new ResponseEntity<>("Contract with ID#" + c.getContractid() + " updated!", responseHeaders, HttpStatus.CREATED);
     }
@@ -316,10 +664,13 @@ public class ContractController
      * Updates the contrat record associated with the given contract id with the provided data. Only the provided fields are affected.
      * <br> Example: <a href="http://localhost:2019/items/item/7">http://localhost:2019/items/item/7</a>
      *
+     * If the If-Match header is given, the contract is only updated if it is still at that version.
+     *
      * @param contractUpdate An object containing values for just the fields that are being updated. All other fields are left NULL.
      * @param contractid         The primary key of the item you wish to update.
-     * @return A status of OK
-     * @see ContractService#update(Contract, long, User) ContractService.update(Contract, long, User)
+     * @param ifMatch            The ETag of the contract as last read. Leave off to update whatever version is current
+     * @return A status of OK with the new version of the contract as the ETag header
+     * @see ContractService#update(Contract, long, User, Long) ContractService.update(Contract, long, User, Long)
      */
     @ApiOperation(value = "updates a contract with the information given in the request body",
             response = Void.class)
@@ -341,12 +692,22 @@ public class ContractController
                     example = "4")
             @PathVariable
                     long contractid,
+            @RequestHeader(value = HttpHeaders.IF_MATCH,
+                    required = false)
+                    String ifMatch,
             Authentication auth)
     {
         //get user who is making update request
         User u = userservice.findByName(auth.getName());
-        contractService.update(contractUpdate, contractid, u);
-        return new ResponseEntity<>(HttpStatus.OK);
+        Contract updated = contractService.update(contractUpdate, contractid, u, helper.ifMatchVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(helper.eTag(updated.getVersion()))
+                .build();
     }
 
+    private int pageSize(Integer size)
+    {
+        return (size == null || size < 1) ? defaultPageSize : Math.min(size,
+                                                                       maxPageSize);
+    }
 }
@@ -0,0 +1,240 @@
+package com.lambdaschool.foundation.controllers;
+
+import com.lambdaschool.foundation.services.ImageStore;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The entry point for clients to load the item images stored on this server. Open to everyone, so the images can be
+ * shown with a plain img tag.
+ * <p>
+ * The file is handed to Tomcat to send straight from the page cache with sendfile when the connector supports it,
+ * and otherwise written with FileChannel.transferTo, so image bytes are never copied into the heap as a whole.
+ */
+@RestController
+@RequestMapping("/images")
+public class ImageController
+{
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * A stored image never changes, so it may be cached for a year
+     */
+    private static final String CACHE_FOREVER = "public, max-age=31536000, immutable";
+
+    /**
+     * A full image standing in for a thumbnail not made yet is only cached for a minute
+     */
+    private static final String CACHE_BRIEFLY = "public, max-age=60";
+
+    /**
+     * Connects this controller to the images stored on this server
+     */
+    @Autowired
+    private ImageStore imageStore;
+
+    /**
+     * Returns a stored image, or a thumbnail of it. Answers If-None-Match with Not Modified and a single byte
+     * Range with Partial Content.
+     * <br>Example: <a href="http://localhost:2019/images/0a1b...ff.jpg?size=300">http://localhost:2019/images/0a1b...ff.jpg?size=300</a>
+     *
+     * @param name     The name of the image, from the image URL of the item
+     * @param size     The size of the thumbnail wanted, one of images.thumbnail.sizes. Leave off for the full image
+     * @param request  The request, for its conditional and Range headers
+     * @param response The response the image is written to
+     * @throws IOException if the image could not be sent
+     */
+    @ApiOperation(value = "returns a stored item image or one of its thumbnails")
+    @GetMapping(value = "/{name:.+}")
+    public void getImage(
+            @ApiParam(value = "image name",
+                    required = true)
+            @PathVariable
+                    String name,
+            @ApiParam(value = "thumbnail size")
+            @RequestParam(required = false)
+                    Integer size,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws
+            IOException
+    {
+        ImageStore.StoredImage image = imageStore.find(name,
+                                                       size);
+        long length = Files.size(image.getPath());
+
+        response.setHeader(HttpHeaders.ETAG,
+                           image.getETag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                           image.isImmutable() ? CACHE_FOREVER : CACHE_BRIEFLY);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES,
+                           "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH),
+                    image.getETag()))
+        {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.equals(image.getETag()))
+        {
+            long[] range = range(request.getHeader(HttpHeaders.RANGE),
+                                 length);
+            if (range != null && range.length == 0)
+            {
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                                   "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (range != null)
+            {
+                start = range[0];
+                end = range[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                                   "bytes " + start + "-" + (end - 1) + "/" + length);
+            }
+        }
+
+        response.setContentType(image.getContentType());
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod()))
+        {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+        {
+            // Tomcat sends the file itself once this method returns
+            request.setAttribute(SENDFILE_FILENAME,
+                                 image.getPath()
+                                         .toString());
+            request.setAttribute(SENDFILE_START,
+                                 start);
+            request.setAttribute(SENDFILE_END,
+                                 end);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(image.getPath(),
+                                                 StandardOpenOption.READ))
+        {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end)
+            {
+                position += file.transferTo(position,
+                                            end - position,
+                                            out);
+            }
+        }
+    }
+
+    /**
+     * Whether an If-None-Match header names the ETag. Weak ETags match their strong form, as the header asks.
+     */
+    private static boolean matches(
+            String ifNoneMatch,
+            String eTag)
+    {
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+            {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a single byte range. Anything else, including several ranges, is ignored and the whole file sent.
+     *
+     * @return the first byte and one past the last, null to send the whole file, or an empty array if the range
+     * starts past the end of the file
+     */
+    private static long[] range(
+            String header,
+            long length)
+    {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0)
+        {
+            return null;
+        }
+        String spec = header.substring(6)
+                .trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+        {
+            return null;
+        }
+        String first = spec.substring(0,
+                                      dash)
+                .trim();
+        String last = spec.substring(dash + 1)
+                .trim();
+        try
+        {
+            if (first.isEmpty())
+            {
+                // the last so many bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0)
+                {
+                    return new long[0];
+                }
+                return new long[]{Math.max(0,
+                                           length - suffix), length};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last) + 1;
+            if (start < 0 || end <= start)
+            {
+                return null;
+            }
+            if (start >= length)
+            {
+                return new long[0];
+            }
+            return new long[]{start, Math.min(end,
+                                              length)};
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package com.lambdaschool.foundation.controllers;
 
 
+import com.lambdaschool.foundation.handlers.HelperFunctions;
 import com.lambdaschool.foundation.models.*;
 import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.services.ItemAvailability;
+import com.lambdaschool.foundation.services.ItemImportService;
 import com.lambdaschool.foundation.services.ItemService;
 import com.lambdaschool.foundation.services.UserService;
+import com.lambdaschool.foundation.views.Revision;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -19,8 +25,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Date;
 import java.util.List;
 
 @RestController
@@ -33,22 +43,55 @@ public class ItemController
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ItemImportService itemImportService;
+
+    @Autowired
+    private ItemAvailability availability;
+
+    @Autowired
+    private HelperFunctions helper;
+
+    /**
+     * The number of items on a page when the client does not ask for a size
+     */
+    @Value("${items.page.size:50}")
+    private int defaultPageSize;
+
     /**
-     * Returns a list of all items
-     * <br>Example: <a href="http://localhost:2019/items/items">http://localhost:2019/items/items</a>
+     * The largest page of items a client may ask for
+     */
+    @Value("${items.page.maxsize:500}")
+    private int maxPageSize;
+
+    /**
+     * Returns one page of items ordered by item id
+     * <br>Example: <a href="http://localhost:2019/items/items?cursor=0&amp;size=50">http://localhost:2019/items/items?cursor=0&amp;size=50</a>
      *
-     * @return JSON list of all items with a status of OK
-     * @see ItemService#findAll() ItemService.findAll()
+     * @param cursor The next cursor from the previous page. Leave off for the first page
+     * @param size   The number of items wanted on this page. Defaults to items.page.size, capped at items.page.maxsize
+     * @return JSON page of items, including the next cursor, with a status of OK
+     * @see ItemService#findAll(long, int) ItemService.findAll(long, int)
      */
-    @ApiOperation(value = "returns all Items",
-            response = Item.class,
-            responseContainer = "List")
+    @ApiOperation(value = "returns one page of Items",
+            response = ItemPage.class)
     @GetMapping(value = "/items",
             produces = {"application/json"})
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN','ROLE_LENDER','ROLE_USER')")
-    public ResponseEntity<?> listAllItems()
+    public ResponseEntity<?> listAllItems(
+            @ApiParam(value = "next cursor from the previous page",
+                    example = "0")
+            @RequestParam(value = "cursor",
+                    defaultValue = "0")
+                    long cursor,
+            @ApiParam(value = "page size",
+                    example = "50")
+            @RequestParam(value = "size",
+                    required = false)
+                    Integer size)
     {
-        List<Item> myItems = itemService.findAll();
+        ItemPage myItems = itemService.findAll(cursor,
+                                               pageSize(size));
         return new ResponseEntity<>(myItems,
                 HttpStatus.OK);
     }
@@ -57,15 +100,25 @@ public class ItemController
      * Returns a single item based off a item id number
      * <br>Example: <a href="http://localhost:2019/items/item/7">http://localhost:2019/items/item/7</a>
      *
-     * @param itemId The primary key of the item you seek
-     * @return JSON object of the item you seek
-     * @see ItemService#findItemById(long) ItemService.findItemById(long)
+     * If the If-None-Match or If-Modified-Since header shows the client already has this version of the item,
+     * Not Modified is returned without reading the item. Otherwise the view is counted.
+     * <p>
+     * The item is sent with its lender and contracts, so the ETag is made from the last change to any of them and
+     * how many contracts there are. Its number of views and rentals change without changing that, so the ETag is
+     * marked weak. A client checking a copy it already has is not counted again.
+     *
+     * @param itemId          The primary key of the item you seek
+     * @param ifNoneMatch     The ETag of the item as last read
+     * @param ifModifiedSince The Last-Modified of the item as last read
+     * @return JSON object of the item you seek with a weak ETag header
+     * @see ItemService#viewItem(long) ItemService.viewItem(long)
      */
     @ApiOperation(value = "Retrieve a item based of off item id",
             response = Item.class)
     @ApiResponses(value = {@ApiResponse(code = 200,
             message = "Item Found",
-            response = Item.class), @ApiResponse(code = 404,
+            response = Item.class), @ApiResponse(code = 304,
+            message = "Item Not Modified"), @ApiResponse(code = 404,
             message = "Item Not Found",
             response = ErrorDetail.class)})
     @GetMapping(value = "/item/{itemId}",
@@ -75,11 +128,125 @@ public class ItemController
                     required = true,
                     example = "4")
             @PathVariable
-                    Long itemId)
+                    Long itemId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                    required = false)
+                    String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE,
+                    required = false)
+                    String ifModifiedSince)
     {
-        Item u = itemService.findItemById(itemId);
-        return new ResponseEntity<>(u,
-                HttpStatus.OK);
+        Revision revision = itemService.findItemRevision(itemId);
+        if (revision.getLastmodified() == null)
+        {
+            // rows written without their audit fields cannot be told apart, so the item is always sent
+            return new ResponseEntity<>(itemService.viewItem(itemId),
+                                        HttpStatus.OK);
+        }
+        String eTag = helper.weakETag(revision.getLastmodified()
+                                              .getTime() + "-" + revision.getRowcount());
+        if (helper.isNotModified(ifNoneMatch,
+                                 ifModifiedSince,
+                                 eTag,
+                                 revision.getLastmodified()))
+        {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(helper.validators(eTag,
+                                               revision.getLastmodified()))
+                    .build();
+        }
+
+        Item u = itemService.viewItem(itemId);
+        return ResponseEntity.ok()
+                .headers(helper.validators(eTag,
+                                           revision.getLastmodified()))
+                .body(u);
+    }
+
+    /**
+     * Given a JPEG, PNG or GIF image as the request body, stores it on this server and makes it the image of the item.
+     * Thumbnails of the image are made in the background and served from the same URL with ?size= added.
+     * <br>Example: <a href="http://localhost:2019/items/item/7/image">http://localhost:2019/items/item/7/image</a>
+     *
+     * @param itemid The primary key of the item
+     * @param body   The image
+     * @return JSON object of the item with its new image URL, and its version as the ETag header
+     * @see ItemService#saveImage(long, InputStream, String) ItemService.saveImage(long, InputStream, String)
+     */
+    @ApiOperation(value = "stores the image in the request body as the image of the item",
+            response = Item.class)
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Image Stored",
+            response = Item.class), @ApiResponse(code = 400,
+            message = "Not An Image Or Too Big",
+            response = ErrorDetail.class), @ApiResponse(code = 404,
+            message = "Item Not Found",
+            response = ErrorDetail.class)})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_LENDER')")
+    @PutMapping(value = "/item/{itemid}/image",
+            consumes = {"image/jpeg", "image/png", "image/gif"},
+            produces = {"application/json"})
+    public ResponseEntity<?> putItemImage(
+            @ApiParam(value = "Item id",
+                    required = true,
+                    example = "4")
+            @PathVariable
+                    long itemid,
+            InputStream body)
+    {
+        Item item = itemService.saveImage(itemid,
+                                          body,
+                                          ServletUriComponentsBuilder.fromCurrentContextPath()
+                                                  .path("/images/")
+                                                  .toUriString());
+        return ResponseEntity.ok()
+                .eTag(helper.eTag(item.getVersion()))
+                .body(item);
+    }
+
+    /**
+     * Returns the times between two days when an item is not booked by an active contract
+     * <br>Example: <a href="http://localhost:2019/items/item/7/free?from=2020-08-01&amp;to=2020-08-31">http://localhost:2019/items/item/7/free?from=2020-08-01&amp;to=2020-08-31</a>
+     *
+     * @param itemId The primary key of the item
+     * @param from   The first day to look at (yyyy-MM-dd)
+     * @param to     The last day to look at (yyyy-MM-dd), not before from
+     * @return JSON list of the free windows in order, with a status of OK
+     * @see ItemAvailability#freeWindows(long, Date, Date) ItemAvailability.freeWindows(long, Date, Date)
+     */
+    @ApiOperation(value = "returns the times an item is free between two days",
+            response = TimeWindow.class,
+            responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Item Found",
+            response = TimeWindow.class,
+            responseContainer = "List"), @ApiResponse(code = 400,
+            message = "Last Day Before First Day",
+            response = ErrorDetail.class), @ApiResponse(code = 404,
+            message = "Item Not Found",
+            response = ErrorDetail.class)})
+    @GetMapping(value = "/item/{itemId}/free",
+            produces = {"application/json"})
+    public ResponseEntity<?> getItemFreeWindows(
+            @ApiParam(value = "Item id",
+                    required = true,
+                    example = "4")
+            @PathVariable
+                    Long itemId,
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate from,
+            @RequestParam
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                    LocalDate to)
+    {
+        itemService.findItemById(itemId);
+        List<TimeWindow> windows = availability.freeWindows(itemId,
+                                                            Timestamp.valueOf(from.atStartOfDay()),
+                                                            Timestamp.valueOf(to.plusDays(1)
+                                                                                      .atStartOfDay()));
+        return new ResponseEntity<>(windows,
+                                    HttpStatus.OK);
     }
 
     /**
@@ -112,14 +279,16 @@ public class ItemController
     }
 
     /**
-     * Returns a list of items whose itemname contains the given substring
-     * <br>Example: <a href="http://localhost:2019/items/item/name/like/da">http://localhost:2019/items/item/name/like/da</a>
+     * Returns a list of items best matching the given words. The name, type, description and location of each item are searched.
+     * <br>Example: <a href="http://localhost:2019/items/item/name/like/da?page=0&amp;size=20">http://localhost:2019/items/item/name/like/da?page=0&amp;size=20</a>
      *
-     * @param itemName Substring of the itemname for which you seek
-     * @return A JSON list of items you seek
-     * @see ItemService#findByNameContaining(String) ItemService.findByNameContaining(String)
+     * @param itemName The words to search for
+     * @param page     The page of results wanted, starting at 0
+     * @param size     The number of items wanted on a page. Defaults to items.page.size, capped at items.page.maxsize
+     * @return A JSON list of items you seek, best match first
+     * @see ItemService#findByNameContaining(String, int, int) ItemService.findByNameContaining(String, int, int)
      */
-    @ApiOperation(value = "returns all Items whose itemname contains the given substring",
+    @ApiOperation(value = "returns the Items best matching the given words",
             response = Item.class,
             responseContainer = "List")
     @ApiParam(value = "Item Name Substring",
@@ -130,13 +299,262 @@ public class ItemController
             produces = {"application/json"})
     public ResponseEntity<?> getItemLikeName(
             @PathVariable
-                    String itemName)
+                    String itemName,
+            @RequestParam(value = "page",
+                    defaultValue = "0")
+                    int page,
+            @RequestParam(value = "size",
+                    required = false)
+                    Integer size)
     {
-        List<Item> u = itemService.findByNameContaining(itemName);
+        List<Item> u = itemService.findByNameContaining(itemName,
+                                                        Math.max(page,
+                                                                 0),
+                                                        pageSize(size));
         return new ResponseEntity<>(u,
                 HttpStatus.OK);
     }
 
+    /**
+     * Returns the number of items of each item type and in each range of daily rates, for the filters of the browse
+     * page. The counts are kept as items change, so this does not read the items.
+     * <br>Example: <a href="http://localhost:2019/items/facets?available=true">http://localhost:2019/items/facets?available=true</a>
+     *
+     * @param itemtype  Narrow the price counts to items of this type. Leave off for any type
+     * @param available Only available or only unavailable items. Leave off for both
+     * @return JSON object of the counts of each item type, most first, and of each range of daily rates, cheapest first
+     * @see ItemService#findFacets(String, Boolean) ItemService.findFacets(String, Boolean)
+     */
+    @ApiOperation(value = "returns the number of Items of each item type and range of daily rates",
+            response = ItemFacets.class)
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN','ROLE_LENDER','ROLE_USER')")
+    @GetMapping(value = "/facets",
+            produces = {"application/json"})
+    public ResponseEntity<?> getItemFacets(
+            @RequestParam(required = false)
+                    String itemtype,
+            @RequestParam(required = false)
+                    Boolean available)
+    {
+        ItemFacets facets = itemService.findFacets(itemtype,
+                                                   available);
+        return new ResponseEntity<>(facets,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the items viewed the most, or rented the most, each with its number of views and rentals
+     * <br>Example: <a href="http://localhost:2019/items/popular?by=rentals&amp;size=10">http://localhost:2019/items/popular?by=rentals&amp;size=10</a>
+     *
+     * @param by   views or rentals, what the items are ordered by. Defaults to views
+     * @param size The number of items wanted. Defaults to items.page.size, capped at items.page.maxsize
+     * @return A JSON list of items, most viewed or rented first
+     * @see ItemService#findPopular(String, int) ItemService.findPopular(String, int)
+     */
+    @ApiOperation(value = "returns the Items viewed or rented the most",
+            response = Item.class,
+            responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Items Found",
+            response = Item.class,
+            responseContainer = "List"), @ApiResponse(code = 400,
+            message = "Not Ordered By Views Or Rentals",
+            response = ErrorDetail.class)})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN','ROLE_LENDER','ROLE_USER')")
+    @GetMapping(value = "/popular",
+            produces = {"application/json"})
+    public ResponseEntity<?> getPopularItems(
+            @ApiParam(value = "views or rentals",
+                    example = "views")
+            @RequestParam(value = "by",
+                    defaultValue = "views")
+                    String by,
+            @ApiParam(value = "number of items",
+                    example = "20")
+            @RequestParam(value = "size",
+                    required = false)
+                    Integer size)
+    {
+        List<Item> items = itemService.findPopular(by,
+                                                   pageSize(size));
+        return new ResponseEntity<>(items,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the items picked up within a distance of a point, nearest first, each with its distance in kilometres.
+     * Items lent without a latitude and longitude are not found.
+     * <br>Example: <a href="http://localhost:2019/items/near?lat=43.615&amp;lon=-116.202&amp;radius=25&amp;available=true">http://localhost:2019/items/near?lat=43.615&amp;lon=-116.202&amp;radius=25&amp;available=true</a>
+     *
+     * @param lat       The latitude searched from, in degrees
+     * @param lon       The longitude searched from, in degrees
+     * @param radius    The distance in kilometres, at most items.geo.maxradius
+     * @param itemtype  Only items of this type. Leave off for any type
+     * @param available Only available or only unavailable items. Leave off for both
+     * @param page      The page of results wanted, starting at 0
+     * @param size      The number of items wanted on a page. Defaults to items.page.size, capped at items.page.maxsize
+     * @return A JSON list of items with their distances, nearest first
+     * @see ItemService#findNear(double, double, double, String, Boolean, int, int) ItemService.findNear(double, double, double, String, Boolean, int, int)
+     */
+    @ApiOperation(value = "returns the Items within a distance of a point, nearest first",
+            response = NearbyItem.class,
+            responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Items Found",
+            response = NearbyItem.class,
+            responseContainer = "List"), @ApiResponse(code = 400,
+            message = "Point Or Radius Out Of Range, Or Page Too Far",
+            response = ErrorDetail.class)})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN','ROLE_LENDER','ROLE_USER')")
+    @GetMapping(value = "/near",
+            produces = {"application/json"})
+    public ResponseEntity<?> getItemsNear(
+            @RequestParam
+                    double lat,
+            @RequestParam
+                    double lon,
+            @RequestParam
+                    double radius,
+            @RequestParam(required = false)
+                    String itemtype,
+            @RequestParam(required = false)
+                    Boolean available,
+            @RequestParam(value = "page",
+                    defaultValue = "0")
+                    int page,
+            @RequestParam(value = "size",
+                    required = false)
+                    Integer size)
+    {
+        List<NearbyItem> items = itemService.findNear(lat,
+                                                      lon,
+                                                      radius,
+                                                      itemtype,
+                                                      available,
+                                                      Math.max(page,
+                                                               0),
+                                                      pageSize(size));
+        return new ResponseEntity<>(items,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Returns the items picked up inside a box, nearest the middle of the box first, for showing the items on a map.
+     * A box across the 180th meridian has its east edge less than its west edge.
+     * <br>Example: <a href="http://localhost:2019/items/within?south=43.5&amp;west=-116.4&amp;north=43.7&amp;east=-116.1">http://localhost:2019/items/within?south=43.5&amp;west=-116.4&amp;north=43.7&amp;east=-116.1</a>
+     *
+     * @param south     The southern edge of the box, latitude in degrees
+     * @param west      The western edge of the box, longitude in degrees
+     * @param north     The northern edge of the box, latitude in degrees
+     * @param east      The eastern edge of the box, longitude in degrees
+     * @param itemtype  Only items of this type. Leave off for any type
+     * @param available Only available or only unavailable items. Leave off for both
+     * @param page      The page of results wanted, starting at 0
+     * @param size      The number of items wanted on a page. Defaults to items.page.size, capped at items.page.maxsize
+     * @return A JSON list of items with their distances from the middle of the box, nearest first
+     * @see ItemService#findWithin(double, double, double, double, String, Boolean, int, int) ItemService.findWithin(double, double, double, double, String, Boolean, int, int)
+     */
+    @ApiOperation(value = "returns the Items inside a box, nearest its middle first",
+            response = NearbyItem.class,
+            responseContainer = "List")
+    @ApiResponses(value = {@ApiResponse(code = 200,
+            message = "Items Found",
+            response = NearbyItem.class,
+            responseContainer = "List"), @ApiResponse(code = 400,
+            message = "Box Out Of Range, Or Page Too Far",
+            response = ErrorDetail.class)})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN','ROLE_LENDER','ROLE_USER')")
+    @GetMapping(value = "/within",
+            produces = {"application/json"})
+    public ResponseEntity<?> getItemsWithin(
+            @RequestParam
+                    double south,
+            @RequestParam
+                    double west,
+            @RequestParam
+                    double north,
+            @RequestParam
+                    double east,
+            @RequestParam(required = false)
+                    String itemtype,
+            @RequestParam(required = false)
+                    Boolean available,
+            @RequestParam(value = "page",
+                    defaultValue = "0")
+                    int page,
+            @RequestParam(value = "size",
+                    required = false)
+                    Integer size)
+    {
+        List<NearbyItem> items = itemService.findWithin(south,
+                                                        west,
+                                                        north,
+                                                        east,
+                                                        itemtype,
+                                                        available,
+                                                        Math.max(page,
+                                                                 0),
+                                                        pageSize(size));
+        return new ResponseEntity<>(items,
+                HttpStatus.OK);
+    }
+
+    /**
+     * Given a JSON array of complete Item Objects, adds all of them lent by the authenticated user.
+     * Meant for loading many items at once. The body is read one item at a time, so it may be as large as needed.
+     * <br> Example: <a href="http://localhost:2019/items/import">http://localhost:2019/items/import</a>
+     *
+     * @param body the JSON array of new items
+     * @param auth the authenticated user, who becomes the lender of the items
+     * @return a report of how many items were imported and why any were not, with a status of OK
+     * @see ItemImportService#importJson(InputStream, User) ItemImportService.importJson(InputStream, User)
+     */
+    @ApiOperation(value = "adds all of the items in the JSON array in the request body",
+            response = ImportReport.class)
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_LENDER')")
+    // http://localhost:2019/items/import
+    @PostMapping(value = "/import",
+            consumes = {"application/json"},
+            produces = {"application/json"})
+    public ResponseEntity<?> importItems(
+            InputStream body,
+            Authentication auth)
+    {
+        User u = userService.findByName(auth.getName());
+        ImportReport report = itemImportService.importJson(body,
+                                                           u);
+        return new ResponseEntity<>(report,
+                                    HttpStatus.OK);
+    }
+
+    /**
+     * Given a CSV file of items, with a header line naming the columns, adds all of them lent by the authenticated user.
+     * The body is read one line at a time, so it may be as large as needed.
+     * <br> Example: <a href="http://localhost:2019/items/import">http://localhost:2019/items/import</a>
+     *
+     * @param body the CSV file of new items
+     * @param auth the authenticated user, who becomes the lender of the items
+     * @return a report of how many items were imported and why any were not, with a status of OK
+     * @see ItemImportService#importCsv(InputStream, User) ItemImportService.importCsv(InputStream, User)
+     */
+    @ApiOperation(value = "adds all of the items in the CSV file in the request body",
+            response = ImportReport.class)
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_LENDER')")
+    // http://localhost:2019/items/import
+    @PostMapping(value = "/import",
+            consumes = {"text/csv"},
+            produces = {"application/json"})
+    public ResponseEntity<?> importItemsCsv(
+            InputStream body,
+            Authentication auth)
+    {
+        User u = userService.findByName(auth.getName());
+        ImportReport report = itemImportService.importCsv(body,
+                                                          u);
+        return new ResponseEntity<>(report,
+                                    HttpStatus.OK);
+    }
+
     /**
      * Given a complete Item Object, create a new Item record and accompanying itememail records
      * and item role records.
@@ -262,10 +680,13 @@ public class ItemController
      * Updates the item record associated with the given id with the provided data. Only the provided fields are affected.
      * <br> Example: <a href="http://localhost:2019/items/item/7">http://localhost:2019/items/item/7</a>
      *
+     * If the If-Match header is given, the item is only updated if it is still at that version.
+     *
      * @param updateItem An object containing values for just the fields that are being updated. All other fields are left NULL.
      * @param id         The primary key of the item you wish to update.
-     * @return A status of OK
-     * @see ItemService#update(Item, long) ItemService.update(Item, long)
+     * @param ifMatch    The ETag of the item as last read. Leave off to update whatever version is current
+     * @return A status of OK with the new version of the item as the ETag header
+     * @see ItemService#update(Item, long, Long) ItemService.update(Item, long, Long)
      */
     @ApiOperation(value = "updates a item with the information given in the request body",
             response = Void.class)
@@ -273,6 +694,8 @@ public class ItemController
             message = "Item Found",
             response = Item.class), @ApiResponse(code = 404,
             message = "Item Not Found",
+            response = ErrorDetail.class), @ApiResponse(code = 412,
+            message = "Item Changed Since The ETag Given",
             response = ErrorDetail.class)})
     @PreAuthorize("hasAnyRole('ADMIN','LENDER')")
     @PatchMapping(value = "/item/{id}",
@@ -287,15 +710,21 @@ public class ItemController
                     example = "4")
             @PathVariable
                     long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH,
+                    required = false)
+                    String ifMatch,
             Authentication auth)
     {
         //get user who is making update request
         User u = userService.findByName(auth.getName());
         //if item object does not contain a lender set the lender to the user who is making the request
         if(updateItem.getLender() == null){updateItem.setLender(u);}
-        itemService.update(updateItem,
-                id);
-        return new ResponseEntity<>(HttpStatus.OK);
+        Item updated = itemService.update(updateItem,
+                id,
+                helper.ifMatchVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(helper.eTag(updated.getVersion()))
+                .build();
     }
 
     /**
@@ -325,5 +754,15 @@ public class ItemController
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-
+    /**
+     * The page size to use given the size the client asked for
+     *
+     * @param size the size asked for, may be null
+     * @return the default page size if none was asked for, otherwise the size asked for capped at the largest page allowed
+     */
+    private int pageSize(Integer size)
+    {
+        return (size == null || size < 1) ? defaultPageSize : Math.min(size,
+                                                                       maxPageSize);
+    }
 }
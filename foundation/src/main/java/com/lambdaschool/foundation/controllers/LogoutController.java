@@ -45,7 +45,11 @@ public class LogoutController
                     .trim();
             // and remove it!
             OAuth2AccessToken accessToken = tokenStore.readAccessToken(tokenValue);
-            tokenStore.removeAccessToken(accessToken);
+            // another node may have already removed it
+            if (accessToken != null)
+            {
+                tokenStore.removeAccessToken(accessToken);
+            }
         }
     }
 }
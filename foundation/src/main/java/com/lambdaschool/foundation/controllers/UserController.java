@@ -1,9 +1,12 @@
 package com.lambdaschool.foundation.controllers;
 
+import com.lambdaschool.foundation.handlers.HelperFunctions;
 import com.lambdaschool.foundation.models.ErrorDetail;
 import com.lambdaschool.foundation.models.Item;
 import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.models.UserView;
 import com.lambdaschool.foundation.services.UserService;
+import com.lambdaschool.foundation.views.UserRevision;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
@@ -21,6 +24,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
@@ -43,22 +47,28 @@ public class UserController
     @Autowired
     private UserService userService;
 
+    /**
+     * Connects this controller to the helper functions, for conditional requests
+     */
+    @Autowired
+    private HelperFunctions helper;
+
     /**
      * Returns a list of all users
      * <br>Example: <a href="http://localhost:2019/users/users">http://localhost:2019/users/users</a>
      *
      * @return JSON list of all users with a status of OK
-     * @see UserService#findAll() UserService.findAll()
+     * @see UserService#findAllViews() UserService.findAllViews()
      */
     @ApiOperation(value = "returns all Users",
-            response = User.class,
+            response = UserView.class,
             responseContainer = "List")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN')")
     @GetMapping(value = "/users",
             produces = {"application/json"})
     public ResponseEntity<?> listAllUsers()
     {
-        List<User> myUsers = userService.findAll();
+        List<UserView> myUsers = userService.findAllViews();
         return new ResponseEntity<>(myUsers,
                                     HttpStatus.OK);
     }
@@ -68,7 +78,13 @@ public class UserController
      * Returns a single user based off a user id number
      * <br>Example: <a href="http://localhost:2019/users/user/7">http://localhost:2019/users/user/7</a>
      *
-     * @param userId The primary key of the user you seek
+     * Users have no version, so the ETag is weak, made from when the user or anything shown with it last changed.
+     * If the If-None-Match or If-Modified-Since header shows the client already has the user as it is now,
+     * Not Modified is returned without reading the user.
+     *
+     * @param userId          The primary key of the user you seek
+     * @param ifNoneMatch     The ETag of the user as last read
+     * @param ifModifiedSince The Last-Modified of the user as last read
      * @return JSON object of the user you seek
      * @see UserService#findUserById(long) UserService.findUserById(long)
      */
@@ -76,7 +92,8 @@ public class UserController
             response = User.class)
     @ApiResponses(value = {@ApiResponse(code = 200,
             message = "User Found",
-            response = User.class), @ApiResponse(code = 404,
+            response = User.class), @ApiResponse(code = 304,
+            message = "User Not Modified"), @ApiResponse(code = 404,
             message = "User Not Found",
             response = ErrorDetail.class)})
     @GetMapping(value = "/user/{userId}",
@@ -86,11 +103,39 @@ public class UserController
                     required = true,
                     example = "4")
             @PathVariable
-                    Long userId)
+                    Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                    required = false)
+                    String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE,
+                    required = false)
+                    String ifModifiedSince)
     {
+        UserRevision revision = userService.findUserRevision(userId);
+        if (revision.getLastmodified() == null)
+        {
+            // rows written without their audit fields cannot be told apart, so the user is always sent
+            return new ResponseEntity<>(userService.findUserById(userId),
+                                        HttpStatus.OK);
+        }
+        String eTag = helper.weakETag(revision.getLastmodified()
+                                              .getTime() + "-" + revision.getRowcount());
+        if (helper.isNotModified(ifNoneMatch,
+                                 ifModifiedSince,
+                                 eTag,
+                                 revision.getLastmodified()))
+        {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(helper.validators(eTag,
+                                               revision.getLastmodified()))
+                    .build();
+        }
+
         User u = userService.findUserById(userId);
-        return new ResponseEntity<>(u,
-                                    HttpStatus.OK);
+        return ResponseEntity.ok()
+                .headers(helper.validators(eTag,
+                                           revision.getLastmodified()))
+                .body(u);
     }
 
     /**
@@ -364,15 +409,15 @@ public class UserController
      *
      * @param authentication The authenticated user object provided by Spring Security
      * @return JSON of the current user. Status of OK
-     * @see UserService#findByName(String) UserService.findByName(authenticated user)
+     * @see UserService#findViewByName(String) UserService.findViewByName(authenticated user)
      */
     @ApiOperation(value = "returns the currently authenticated user",
-            response = User.class)
+            response = UserView.class)
     @GetMapping(value = "/getuserinfo",
             produces = {"application/json"})
     public ResponseEntity<?> getCurrentUserInfo(Authentication authentication)
     {
-        User u = userService.findByName(authentication.getName());
+        UserView u = userService.findViewByName(authentication.getName());
         return new ResponseEntity<>(u,
                                     HttpStatus.OK);
     }
@@ -0,0 +1,13 @@
+package com.lambdaschool.foundation.exceptions;
+
+/**
+ * A custom exception to be used when a resource has changed since the version the client says it is changing
+ */
+public class PreconditionFailedException
+        extends RuntimeException
+{
+    public PreconditionFailedException(String message)
+    {
+        super("Error from a Lambda School Application " + message);
+    }
+}
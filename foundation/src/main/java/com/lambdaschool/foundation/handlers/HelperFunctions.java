@@ -1,7 +1,10 @@
 package com.lambdaschool.foundation.handlers;
 
+import com.lambdaschool.foundation.exceptions.PreconditionFailedException;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
 import com.lambdaschool.foundation.models.ValidationError;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -9,7 +12,11 @@ import org.springframework.stereotype.Component;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -81,4 +88,151 @@ public class HelperFunctions
         }
         return listVE;
     }
+
+    /**
+     * The ETag sent to clients for a version of a resource
+     *
+     * @param version the version of the resource
+     * @return the ETag (String), the version in quotes
+     */
+    public String eTag(long version)
+    {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The weak ETag sent to clients for a resource that has no version of its own
+     *
+     * @param value what changes whenever the resource does
+     * @return the weak ETag (String), the value in quotes marked weak
+     */
+    public String weakETag(String value)
+    {
+        return "W/\"" + value + "\"";
+    }
+
+    /**
+     * The headers that let a client ask for a resource again only if it has changed. Clients are told to check
+     * before using a copy they kept, as these resources change at any time.
+     *
+     * @param eTag         the ETag of the resource
+     * @param lastModified when the resource last changed, may be null
+     * @return the ETag, Last-Modified and Cache-Control headers
+     */
+    public HttpHeaders validators(
+            String eTag,
+            Date lastModified)
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        if (lastModified != null)
+        {
+            headers.setLastModified(lastModified.getTime());
+        }
+        headers.setCacheControl(CacheControl.noCache()
+                                        .cachePrivate());
+        return headers;
+    }
+
+    /**
+     * Checks whether the copy of a resource a client has is still current. If-None-Match is used when given,
+     * comparing weakly as a GET should, and If-Modified-Since otherwise.
+     *
+     * @param ifNoneMatch     the If-None-Match header, may be null
+     * @param ifModifiedSince the If-Modified-Since header, may be null
+     * @param eTag            the ETag of the resource now
+     * @param lastModified    when the resource last changed, may be null
+     * @return true if the client's copy is current and the resource need not be sent again
+     */
+    public boolean isNotModified(
+            String ifNoneMatch,
+            String ifModifiedSince,
+            String eTag,
+            Date lastModified)
+    {
+        if (ifNoneMatch != null)
+        {
+            String current = opaqueTag(eTag);
+            for (String tag : ifNoneMatch.split(","))
+            {
+                tag = tag.trim();
+                if (tag.equals("*") || opaqueTag(tag).equals(current))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (ifModifiedSince == null || lastModified == null)
+        {
+            return false;
+        }
+        try
+        {
+            // HTTP dates are to the second
+            long since = ZonedDateTime.parse(ifModifiedSince.trim(),
+                                             DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toEpochSecond();
+            return lastModified.getTime() / 1000 <= since;
+        } catch (DateTimeParseException e)
+        {
+            // a date that cannot be read is ignored
+            return false;
+        }
+    }
+
+    private static String opaqueTag(String tag)
+    {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Reads the version a client expects from an If-Match header
+     *
+     * @param ifMatch the If-Match header, may be null
+     * @return the version (Long) the client expects, or null if any version will do
+     * @throws PreconditionFailedException if the header does not name a version this application sent
+     */
+    public Long ifMatchVersion(String ifMatch)
+    {
+        if (ifMatch == null || ifMatch.trim()
+                .equals("*"))
+        {
+            return null;
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/"))
+        {
+            tag = tag.substring(2);
+        }
+        try
+        {
+            return Long.parseLong(tag.replace("\"",
+                                              ""));
+        } catch (NumberFormatException e)
+        {
+            throw new PreconditionFailedException("If-Match " + ifMatch + " does not match the current version");
+        }
+    }
+
+    /**
+     * Checks that a resource is still at the version the client expects
+     *
+     * @param resource        what is being changed, for the message
+     * @param current         the version of the resource now
+     * @param expectedVersion the version the client expects, or null if any version will do
+     * @throws PreconditionFailedException if the versions differ
+     */
+    public void checkVersion(
+            String resource,
+            long current,
+            Long expectedVersion)
+    {
+        if (expectedVersion != null && expectedVersion != current)
+        {
+            throw new PreconditionFailedException(resource + " has changed, it is now at version " + current);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.lambdaschool.foundation.handlers;
 
+import com.lambdaschool.foundation.exceptions.PreconditionFailedException;
 import com.lambdaschool.foundation.exceptions.ResourceFoundException;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
 import com.lambdaschool.foundation.models.ErrorDetail;
@@ -8,6 +9,7 @@ import org.springframework.beans.TypeMismatchException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -103,6 +105,52 @@ public class RestExceptionHandler
                                     HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Our custom handling of PreconditionFailedExceptions. This gets thrown when an If-Match header names an old version.
+     *
+     * @param pfe All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Precondition Failed.
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<?> handlePreconditionFailedException(PreconditionFailedException pfe)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.PRECONDITION_FAILED.value());
+        errorDetail.setTitle("Resource Changed");
+        errorDetail.setDetail(pfe.getMessage());
+        errorDetail.setDeveloperMessage(pfe.getClass()
+                                                .getName());
+        errorDetail.setErrors(helper.getConstraintViolation(pfe));
+
+        return new ResponseEntity<>(errorDetail,
+                                    null,
+                                    HttpStatus.PRECONDITION_FAILED);
+    }
+
+    /**
+     * Handles a change that kept running into changes made at the same time by other requests, even after trying again.
+     *
+     * @param olfe All the information about the exception that is thrown.
+     * @return The error details for displaying to the client plus the status Conflict.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<?> handleOptimisticLockingFailureException(OptimisticLockingFailureException olfe)
+    {
+        ErrorDetail errorDetail = new ErrorDetail();
+        errorDetail.setTimestamp(new Date());
+        errorDetail.setStatus(HttpStatus.CONFLICT.value());
+        errorDetail.setTitle("Conflicting Change");
+        errorDetail.setDetail("The resource was changed by another request at the same time, please try again");
+        errorDetail.setDeveloperMessage(olfe.getClass()
+                                                .getName());
+        errorDetail.setErrors(helper.getConstraintViolation(olfe));
+
+        return new ResponseEntity<>(errorDetail,
+                                    null,
+                                    HttpStatus.CONFLICT);
+    }
+
     /**
      * All other exceptions not handled elsewhere are handled by this method.
      *
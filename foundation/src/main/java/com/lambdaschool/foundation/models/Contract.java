@@ -1,7 +1,9 @@
 package com.lambdaschool.foundation.models;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +11,9 @@ import org.springframework.beans.factory.annotation.Value;
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import java.lang.String;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 
 /**
@@ -18,7 +22,14 @@ import java.util.Date;
 @ApiModel(value = "Contract",
         description = "Yes, this is an actual contract")
 @Entity
-@Table(name = "contracts")
+@Table(name = "contracts",
+        indexes = {@Index(name = "ix_contracts_item_start",
+                columnList = "itemid, raw_contractstartdate"), @Index(name = "ix_contracts_active_end",
+                columnList = "isActive, raw_contractenddate"), @Index(name = "ix_contracts_start",
+                columnList = "raw_contractstartdate"), @Index(name = "ix_contracts_rentee_active",
+                columnList = "userid, isActive, contractid DESC"), @Index(name = "ix_contracts_item_active",
+                columnList = "itemid, isActive, contractid DESC"), @Index(name = "ix_contracts_lender_active",
+                columnList = "lenderid, isActive, contractid DESC")})
 public class Contract
         extends Auditable {
 
@@ -30,7 +41,11 @@ public class Contract
             required = false,
             example = "1")
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "contracts_seq")
+    @SequenceGenerator(name = "contracts_seq",
+            sequenceName = "contracts_seq",
+            allocationSize = 50)
     private long contractid;
 
     /**
@@ -86,16 +101,24 @@ public class Contract
     private boolean isActive;
 
     /**
-     * The contract fee (float). Cannot be null.
+     * The primary key of the user lending the item (long). Copied from the item, so the contracts
+     * on the items of a lender are read off of one index instead of item by item.
+     */
+    @Column(nullable = false)
+    @JsonIgnore
+    private long lenderid;
+
+    /**
+     * The contract fee in cents (long). Sent and received as contractfee, in dollars.
      */
     @ApiModelProperty(name = "Contract Fee",
             value = "Contract total fee.",
             required = false,
             example = "26.95")
-    @Digits(integer = 999, fraction = 2)
     @PositiveOrZero
     @Column
-    private float contractfee;
+    @JsonIgnore
+    private long contractfeecents;
 
     /**
      * The contract length (int). Cannot be null.
@@ -110,13 +133,35 @@ public class Contract
     @Column(nullable = false)
     private int contractlength;
 
-    private Date raw_contractstartdate;
+    /**
+     * The readable form of the contract dates. Formatters are immutable, so one is shared by every contract.
+     */
+    private static final DateTimeFormatter READABLE_DATE = DateTimeFormatter.ofPattern("EEEE MMMM yyyy hh:mm a z")
+            .withZone(ZoneId.systemDefault());
 
-    private Date raw_contractenddate;
+    /**
+     * When the contract starts (Instant). Null until both sides accept the contract.
+     */
+    @Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private Instant raw_contractstartdate;
 
-    private String contractstartdate;
+    /**
+     * When the contract ends (Instant). Null until both sides accept the contract.
+     */
+    @Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private Instant raw_contractenddate;
 
-    private String contractenddate;
+    /**
+     * Counts the changes to this contract so two changes made at the same time are caught. Sent to clients as the ETag.
+     */
+    @ApiModelProperty(name = "version",
+            value = "The number of times this contract has been changed",
+            required = false,
+            example = "0")
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
 
     // Relationships /////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -168,9 +213,17 @@ public class Contract
 
     public void setActive(boolean active) { isActive = active; }
 
-    public float getContractfee() { return contractfee; }
+    public long getLenderid() { return lenderid; }
+
+    public void setLenderid(long lenderid) { this.lenderid = lenderid; }
+
+    public float getContractfee() { return Money.toDollars(contractfeecents); }
+
+    public void setContractfee(float contractfee) { this.contractfeecents = Money.ofDollars(contractfee); }
+
+    public long getContractfeecents() { return contractfeecents; }
 
-    public void setContractfee(float contractfee) { this.contractfee = contractfee; }
+    public void setContractfeecents(long contractfeecents) { this.contractfeecents = contractfeecents; }
 
     public int getContractlength() { return contractlength; }
 
@@ -186,21 +239,23 @@ public class Contract
 
     public void setLenderaccept(boolean lenderaccept) { this.lenderaccept = lenderaccept; }
 
-    public Date getRaw_contractstartdate() { return raw_contractstartdate; }
+    public Instant getRaw_contractstartdate() { return raw_contractstartdate; }
 
-    public void setRaw_contractstartdate(Date raw_contractstartdate) { this.raw_contractstartdate = raw_contractstartdate; }
+    public void setRaw_contractstartdate(Instant raw_contractstartdate) { this.raw_contractstartdate = raw_contractstartdate; }
 
-    public Date getRaw_contractenddate() { return raw_contractenddate; }
+    public Instant getRaw_contractenddate() { return raw_contractenddate; }
 
-    public void setRaw_contractenddate(Date raw_contractenddate) { this.raw_contractenddate = raw_contractenddate; }
+    public void setRaw_contractenddate(Instant raw_contractenddate) { this.raw_contractenddate = raw_contractenddate; }
 
-    public String getContractstartdate() { return contractstartdate; }
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public String getContractstartdate() { return raw_contractstartdate == null ? null : READABLE_DATE.format(raw_contractstartdate); }
 
-    public void setContractstartdate(String contractstartdate) { this.contractstartdate = contractstartdate; }
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public String getContractenddate() { return raw_contractenddate == null ? null : READABLE_DATE.format(raw_contractenddate); }
 
-    public String getContractenddate() { return contractenddate; }
+    public long getVersion() { return version; }
 
-    public void setContractenddate(String contractenddate) { this.contractenddate = contractenddate; }
+    public void setVersion(long version) { this.version = version; }
 
 
     // Relationships /////////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,110 @@
+package com.lambdaschool.foundation.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model used to return one page of contract summaries. Pages are keyed off of the contract id, newest first, so
+ * the next page is requested by sending back the next cursor.
+ */
+public class ContractPage
+{
+    /**
+     * The contracts on this page, newest first
+     */
+    private List<ContractSummary> contracts = new ArrayList<>();
+
+    /**
+     * The number of contracts requested for this page
+     */
+    private int size;
+
+    /**
+     * The cursor to send back to get the next page. Null if this is the last page.
+     */
+    private Long next;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public ContractPage()
+    {
+    }
+
+    /**
+     * Given the params, create a new page of contracts
+     *
+     * @param contracts The contracts on this page
+     * @param size      The number of contracts requested for this page
+     * @param next      The cursor for the next page, null if there is no next page
+     */
+    public ContractPage(
+        List<ContractSummary> contracts,
+        int size,
+        Long next)
+    {
+        this.contracts = contracts;
+        this.size = size;
+        this.next = next;
+    }
+
+    /**
+     * Getter for the contracts on this page
+     *
+     * @return the list of contracts on this page
+     */
+    public List<ContractSummary> getContracts()
+    {
+        return contracts;
+    }
+
+    /**
+     * Setter for the contracts on this page
+     *
+     * @param contracts the new list of contracts on this page
+     */
+    public void setContracts(List<ContractSummary> contracts)
+    {
+        this.contracts = contracts;
+    }
+
+    /**
+     * Getter for the page size
+     *
+     * @return the number of contracts requested for this page
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Setter for the page size
+     *
+     * @param size the number of contracts requested for this page
+     */
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * Getter for the next cursor
+     *
+     * @return the contract id to send back as the cursor for the next page, null if this is the last page
+     */
+    public Long getNext()
+    {
+        return next;
+    }
+
+    /**
+     * Setter for the next cursor
+     *
+     * @param next the contract id to send back as the cursor for the next page
+     */
+    public void setNext(Long next)
+    {
+        this.next = next;
+    }
+}
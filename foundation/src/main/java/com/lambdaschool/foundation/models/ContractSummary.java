@@ -0,0 +1,171 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+
+/**
+ * A model used to return the fields of a contract with just the ids and names of its item, lender and rentee,
+ * instead of the whole item and users. Filled in straight from a query, so no contract is loaded to make one.
+ */
+@JsonPropertyOrder({"contractid", "itemid", "itemname", "lenderid", "renteeid", "rentee", "contractlength", "contractfee", "isactive", "renteeaccept", "lenderaccept", "renteecomplete", "lendercomplete", "contractstartdate", "contractenddate", "version"})
+public class ContractSummary
+{
+    private final long contractid;
+
+    private final long itemid;
+
+    private final String itemname;
+
+    private final long lenderid;
+
+    private final long renteeid;
+
+    private final String rentee;
+
+    private final int contractlength;
+
+    private final long contractfeecents;
+
+    private final boolean isactive;
+
+    private final boolean renteeaccept;
+
+    private final boolean lenderaccept;
+
+    private final boolean renteecomplete;
+
+    private final boolean lendercomplete;
+
+    private final Instant contractstartdate;
+
+    private final Instant contractenddate;
+
+    private final long version;
+
+    /**
+     * Given the params, create a new summary. The parameters are in the order the search query selects them.
+     */
+    public ContractSummary(
+        long contractid,
+        long itemid,
+        String itemname,
+        long lenderid,
+        long renteeid,
+        String rentee,
+        int contractlength,
+        long contractfeecents,
+        boolean isactive,
+        boolean renteeaccept,
+        boolean lenderaccept,
+        boolean renteecomplete,
+        boolean lendercomplete,
+        Instant contractstartdate,
+        Instant contractenddate,
+        long version)
+    {
+        this.contractid = contractid;
+        this.itemid = itemid;
+        this.itemname = itemname;
+        this.lenderid = lenderid;
+        this.renteeid = renteeid;
+        this.rentee = rentee;
+        this.contractlength = contractlength;
+        this.contractfeecents = contractfeecents;
+        this.isactive = isactive;
+        this.renteeaccept = renteeaccept;
+        this.lenderaccept = lenderaccept;
+        this.renteecomplete = renteecomplete;
+        this.lendercomplete = lendercomplete;
+        this.contractstartdate = contractstartdate;
+        this.contractenddate = contractenddate;
+        this.version = version;
+    }
+
+    public long getContractid()
+    {
+        return contractid;
+    }
+
+    public long getItemid()
+    {
+        return itemid;
+    }
+
+    public String getItemname()
+    {
+        return itemname;
+    }
+
+    public long getLenderid()
+    {
+        return lenderid;
+    }
+
+    public long getRenteeid()
+    {
+        return renteeid;
+    }
+
+    public String getRentee()
+    {
+        return rentee;
+    }
+
+    public int getContractlength()
+    {
+        return contractlength;
+    }
+
+    public float getContractfee()
+    {
+        return Money.toDollars(contractfeecents);
+    }
+
+    @JsonIgnore
+    public long getContractfeecents()
+    {
+        return contractfeecents;
+    }
+
+    public boolean getIsactive()
+    {
+        return isactive;
+    }
+
+    public boolean getRenteeaccept()
+    {
+        return renteeaccept;
+    }
+
+    public boolean getLenderaccept()
+    {
+        return lenderaccept;
+    }
+
+    public boolean getRenteecomplete()
+    {
+        return renteecomplete;
+    }
+
+    public boolean getLendercomplete()
+    {
+        return lendercomplete;
+    }
+
+    public Instant getContractstartdate()
+    {
+        return contractstartdate;
+    }
+
+    public Instant getContractenddate()
+    {
+        return contractenddate;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+}
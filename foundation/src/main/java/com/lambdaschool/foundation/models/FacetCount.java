@@ -0,0 +1,78 @@
+package com.lambdaschool.foundation.models;
+
+/**
+ * A model used to return one value of a facet and how many items have it
+ */
+public class FacetCount
+{
+    /**
+     * The value, for example an item type
+     */
+    private String name;
+
+    /**
+     * The number (long) of items with the value
+     */
+    private long count;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public FacetCount()
+    {
+    }
+
+    /**
+     * Given the params, create a new facet count
+     *
+     * @param name  The value
+     * @param count The number of items with the value
+     */
+    public FacetCount(
+            String name,
+            long count)
+    {
+        this.name = name;
+        this.count = count;
+    }
+
+    /**
+     * Getter for the value
+     *
+     * @return the value
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Setter for the value
+     *
+     * @param name the new value
+     */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Getter for the number of items with the value
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Setter for the number of items with the value
+     *
+     * @param count the new count
+     */
+    public void setCount(long count)
+    {
+        this.count = count;
+    }
+}
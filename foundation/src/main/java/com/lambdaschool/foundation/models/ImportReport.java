@@ -0,0 +1,178 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model used to report the outcome of a bulk import. Rows are numbered from 1 in the order
+ * they appear in the body, not counting a CSV header.
+ */
+@JsonPropertyOrder({"rows", "imported", "rejected", "complete", "errors"})
+public class ImportReport
+{
+    /**
+     * The number of rows read
+     */
+    private long rows;
+
+    /**
+     * The number of rows added to the database
+     */
+    private long imported;
+
+    /**
+     * The number of rows that were not added
+     */
+    private long rejected;
+
+    /**
+     * False if the body could not be read to the end. Rows read before that point are still imported.
+     */
+    private boolean complete = true;
+
+    /**
+     * The reasons rows were rejected, at most maxErrors of them
+     */
+    private List<RowError> errors = new ArrayList<>();
+
+    private final int maxErrors;
+
+    /**
+     * Creates an empty report
+     *
+     * @param maxErrors the most row errors to list. Rejected rows past this are still counted.
+     */
+    public ImportReport(int maxErrors)
+    {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Counts one more row read
+     *
+     * @return the number of the row
+     */
+    public long nextRow()
+    {
+        return ++rows;
+    }
+
+    /**
+     * Counts rows added to the database
+     *
+     * @param count the number of rows added
+     */
+    public void addImported(long count)
+    {
+        imported += count;
+    }
+
+    /**
+     * Counts a rejected row and, while there is room, lists why
+     *
+     * @param errors why the row was rejected, one entry for each bad field
+     */
+    public void reject(List<RowError> errors)
+    {
+        rejected++;
+        for (RowError error : errors)
+        {
+            if (this.errors.size() >= maxErrors)
+            {
+                break;
+            }
+            this.errors.add(error);
+        }
+    }
+
+    /**
+     * Records that reading stopped part way through the body
+     *
+     * @param row     the number of the row being read
+     * @param message why reading stopped
+     */
+    public void stop(
+        long row,
+        String message)
+    {
+        complete = false;
+        if (errors.size() < maxErrors)
+        {
+            errors.add(new RowError(row,
+                                    null,
+                                    message));
+        }
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public long getImported()
+    {
+        return imported;
+    }
+
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    public List<RowError> getErrors()
+    {
+        return errors;
+    }
+
+    /**
+     * Why a row, or one field of a row, was rejected
+     */
+    @JsonPropertyOrder({"row", "field", "message"})
+    public static class RowError
+    {
+        private final long row;
+
+        private final String field;
+
+        private final String message;
+
+        /**
+         * Creates a row error
+         *
+         * @param row     the number of the row
+         * @param field   the field at fault, null if it is the whole row
+         * @param message what was wrong
+         */
+        public RowError(
+            long row,
+            String field,
+            String message)
+        {
+            this.row = row;
+            this.field = field;
+            this.message = message;
+        }
+
+        public long getRow()
+        {
+            return row;
+        }
+
+        public String getField()
+        {
+            return field;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+    }
+}
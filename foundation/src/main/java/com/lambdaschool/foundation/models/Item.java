@@ -1,9 +1,14 @@
 package com.lambdaschool.foundation.models;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
@@ -16,8 +21,13 @@ import java.util.List;
  */
 @ApiModel(value = "Item",
         description = "Yes, this is an actual item")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "item")
 @Entity
-@Table(name = "items")
+@Table(name = "items",
+        indexes = {@Index(name = "ix_items_lender",
+                columnList = "userid, itemid")})
 public class Item
         extends Auditable {
 
@@ -29,7 +39,11 @@ public class Item
             required = true,
             example = "1")
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "items_seq")
+    @SequenceGenerator(name = "items_seq",
+            sequenceName = "items_seq",
+            allocationSize = 50)
     private long itemid;
 
     /**
@@ -97,17 +111,16 @@ public class Item
     private boolean isavailable;
 
     /**
-     * The item rate (float). Cannot be null.
+     * The item rate per day in cents (long). Sent and received as itemrate, in dollars.
      */
     @ApiModelProperty(name = "Item Rate",
             value = "Item cost per iteration.",
             required = true,
             example = "26.95")
-    @Digits(integer = 999, fraction = 2)
     @PositiveOrZero
-    @NotNull
     @Column(nullable = false)
-    private float itemrate;
+    @JsonIgnore
+    private long itemratecents;
 
     /**
      * The item image (String). Cannot be null.
@@ -122,7 +135,68 @@ public class Item
     @Column(nullable = false)
     private String itemimg;
 
+    /**
+     * Where the item is picked up, latitude in degrees (Double). Null if not given, and then the item is not
+     * found by the searches by distance.
+     */
+    @ApiModelProperty(name = "Latitude",
+            value = "Latitude of the pick up point, in degrees",
+            required = false,
+            example = "43.6150")
+    @DecimalMin(value = "-90.0",
+            message = "Latitude must be between -90 and 90 my dude.")
+    @DecimalMax(value = "90.0",
+            message = "Latitude must be between -90 and 90 my dude.")
+    private Double latitude;
+
+    /**
+     * Where the item is picked up, longitude in degrees (Double). Null if not given.
+     */
+    @ApiModelProperty(name = "Longitude",
+            value = "Longitude of the pick up point, in degrees",
+            required = false,
+            example = "-116.2023")
+    @DecimalMin(value = "-180.0",
+            message = "Longitude must be between -180 and 180 my dude.")
+    @DecimalMax(value = "180.0",
+            message = "Longitude must be between -180 and 180 my dude.")
+    private Double longitude;
+
+    /**
+     * Counts the changes to this item so two changes made at the same time are caught. Sent to clients as the ETag.
+     */
+    @ApiModelProperty(name = "version",
+            value = "The number of times this item has been changed",
+            required = false,
+            example = "0")
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
 
+    /**
+     * The number of times the item has been viewed (Long), from ItemCounters. Left out where the item was not counted.
+     */
+    @ApiModelProperty(name = "views",
+            value = "The number of times this item has been viewed",
+            required = false,
+            example = "3200")
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long views;
+
+    /**
+     * The number of times the item has been rented (Long), from ItemCounters. Left out where the item was not counted.
+     */
+    @ApiModelProperty(name = "rentals",
+            value = "The number of contracts for this item that have started",
+            required = false,
+            example = "41")
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long rentals;
 
     // Relationships /////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -184,7 +258,7 @@ public class Item
         this.itemdescr = itemdescr;
         this.itemlocat = itemlocat;
         this.isavailable = isavailable;
-        this.itemrate = itemrate;
+        this.itemratecents = Money.ofDollars(itemrate);
         this.itemimg = itemimg;
         this.lender = lender;
     }
@@ -213,14 +287,38 @@ public class Item
 
     public void setIsavailable(boolean isavailable) { this.isavailable = isavailable; }
 
-    public float getItemrate() { return itemrate; }
+    public float getItemrate() { return Money.toDollars(itemratecents); }
+
+    public void setItemrate(float itemrate) { this.itemratecents = Money.ofDollars(itemrate); }
+
+    public long getItemratecents() { return itemratecents; }
 
-    public void setItemrate(float itemrate) { this.itemrate = itemrate; }
+    public void setItemratecents(long itemratecents) { this.itemratecents = itemratecents; }
 
     public String getItemimg() { return itemimg; }
 
     public void setItemimg(String itemimg) { this.itemimg = itemimg; }
 
+    public Double getLatitude() { return latitude; }
+
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+
+    public Double getLongitude() { return longitude; }
+
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+
+    public long getVersion() { return version; }
+
+    public void setVersion(long version) { this.version = version; }
+
+    public Long getViews() { return views; }
+
+    public void setViews(Long views) { this.views = views; }
+
+    public Long getRentals() { return rentals; }
+
+    public void setRentals(Long rentals) { this.rentals = rentals; }
+
     // Relationships /////////////////////////////////////////////////////////////////////////////////////////////////
 
     public User getLender() { return lender; }
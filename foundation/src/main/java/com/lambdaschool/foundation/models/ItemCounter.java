@@ -0,0 +1,71 @@
+package com.lambdaschool.foundation.models;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * The entity allowing interaction with the itemcounters table, the number of times each item has been viewed and
+ * rented. The rows are kept by ItemCounters with plain SQL, a few seconds behind the counts held in memory.
+ * <p>
+ * An item without a row has not been viewed or rented since counting began.
+ */
+@Entity
+@Table(name = "itemcounters",
+        indexes = {@Index(name = "ix_itemcounters_views",
+                columnList = "views DESC, itemid"), @Index(name = "ix_itemcounters_rentals",
+                columnList = "rentals DESC, itemid")})
+public class ItemCounter
+{
+    /**
+     * The primary key (long) of the item counted
+     */
+    @Id
+    private long itemid;
+
+    /**
+     * The number of times the item has been read on its own
+     */
+    private long views;
+
+    /**
+     * The number of contracts for the item that have started
+     */
+    private long rentals;
+
+    /**
+     * Default constructor used primarily by the JPA.
+     */
+    public ItemCounter()
+    {
+    }
+
+    /**
+     * Given the params, create the counts of an item
+     */
+    public ItemCounter(
+            long itemid,
+            long views,
+            long rentals)
+    {
+        this.itemid = itemid;
+        this.views = views;
+        this.rentals = rentals;
+    }
+
+    public long getItemid()
+    {
+        return itemid;
+    }
+
+    public long getViews()
+    {
+        return views;
+    }
+
+    public long getRentals()
+    {
+        return rentals;
+    }
+}
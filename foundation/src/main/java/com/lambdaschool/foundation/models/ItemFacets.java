@@ -0,0 +1,109 @@
+package com.lambdaschool.foundation.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model used to return the counts the item browse page shows next to each filter
+ */
+public class ItemFacets
+{
+    /**
+     * The number (long) of items matching the filters asked for
+     */
+    private long total;
+
+    /**
+     * The number of items of each item type, most first
+     */
+    private List<FacetCount> itemtypes = new ArrayList<>();
+
+    /**
+     * The number of items in each range of daily rates, cheapest first
+     */
+    private List<PriceFacet> prices = new ArrayList<>();
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public ItemFacets()
+    {
+    }
+
+    /**
+     * Given the params, create a new set of facet counts
+     *
+     * @param total     The number of items matching the filters
+     * @param itemtypes The number of items of each item type
+     * @param prices    The number of items in each range of daily rates
+     */
+    public ItemFacets(
+            long total,
+            List<FacetCount> itemtypes,
+            List<PriceFacet> prices)
+    {
+        this.total = total;
+        this.itemtypes = itemtypes;
+        this.prices = prices;
+    }
+
+    /**
+     * Getter for the number of items matching the filters
+     *
+     * @return the total
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * Setter for the number of items matching the filters
+     *
+     * @param total the new total
+     */
+    public void setTotal(long total)
+    {
+        this.total = total;
+    }
+
+    /**
+     * Getter for the number of items of each item type
+     *
+     * @return the item type counts, most first
+     */
+    public List<FacetCount> getItemtypes()
+    {
+        return itemtypes;
+    }
+
+    /**
+     * Setter for the number of items of each item type
+     *
+     * @param itemtypes the new item type counts
+     */
+    public void setItemtypes(List<FacetCount> itemtypes)
+    {
+        this.itemtypes = itemtypes;
+    }
+
+    /**
+     * Getter for the number of items in each range of daily rates
+     *
+     * @return the price range counts, cheapest first
+     */
+    public List<PriceFacet> getPrices()
+    {
+        return prices;
+    }
+
+    /**
+     * Setter for the number of items in each range of daily rates
+     *
+     * @param prices the new price range counts
+     */
+    public void setPrices(List<PriceFacet> prices)
+    {
+        this.prices = prices;
+    }
+}
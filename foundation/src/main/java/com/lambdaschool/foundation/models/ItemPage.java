@@ -0,0 +1,110 @@
+package com.lambdaschool.foundation.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model used to return one page of items. Pages are keyed off of the item id so
+ * the next page is requested by sending back the next cursor.
+ */
+public class ItemPage
+{
+    /**
+     * The items on this page ordered by item id
+     */
+    private List<Item> items = new ArrayList<>();
+
+    /**
+     * The number of items requested for this page
+     */
+    private int size;
+
+    /**
+     * The cursor to send back to get the next page. Null if this is the last page.
+     */
+    private Long next;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public ItemPage()
+    {
+    }
+
+    /**
+     * Given the params, create a new page of items
+     *
+     * @param items The items on this page
+     * @param size  The number of items requested for this page
+     * @param next  The cursor for the next page, null if there is no next page
+     */
+    public ItemPage(
+        List<Item> items,
+        int size,
+        Long next)
+    {
+        this.items = items;
+        this.size = size;
+        this.next = next;
+    }
+
+    /**
+     * Getter for the items on this page
+     *
+     * @return the list of items on this page
+     */
+    public List<Item> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Setter for the items on this page
+     *
+     * @param items the new list of items on this page
+     */
+    public void setItems(List<Item> items)
+    {
+        this.items = items;
+    }
+
+    /**
+     * Getter for the page size
+     *
+     * @return the number of items requested for this page
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Setter for the page size
+     *
+     * @param size the number of items requested for this page
+     */
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+
+    /**
+     * Getter for the next cursor
+     *
+     * @return the item id to send back as the cursor for the next page, null if this is the last page
+     */
+    public Long getNext()
+    {
+        return next;
+    }
+
+    /**
+     * Setter for the next cursor
+     *
+     * @param next the item id to send back as the cursor for the next page
+     */
+    public void setNext(Long next)
+    {
+        this.next = next;
+    }
+}
@@ -0,0 +1,136 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.math.BigDecimal;
+
+/**
+ * The entity allowing interaction with the itemstats table, the running totals of the contracts of one item.
+ * The rows are kept by LenderEarnings with plain SQL, in the same transaction as the contracts they count.
+ * <p>
+ * A contract counts towards the revenue and booked days of its item once it has started, and as an active
+ * rental while it has started and is still active.
+ */
+@Entity
+@Table(name = "itemstats",
+        indexes = {@Index(name = "ix_itemstats_lender_revenue",
+                columnList = "lenderid, revenuecents DESC, itemid")})
+@JsonPropertyOrder({"itemid", "itemname", "contracts", "activecontracts", "revenue", "bookeddays"})
+public class ItemStats
+{
+    /**
+     * The primary key (long) of the item counted
+     */
+    @Id
+    private long itemid;
+
+    /**
+     * The user lending the item
+     */
+    @Column(nullable = false)
+    @JsonIgnore
+    private long lenderid;
+
+    /**
+     * The name of the item. Read from the items table for the dashboard, not stored.
+     */
+    @Transient
+    private String itemname;
+
+    /**
+     * The number of contracts for the item, started or not
+     */
+    private long contracts;
+
+    /**
+     * The number of started contracts still active
+     */
+    private long activecontracts;
+
+    /**
+     * The sum of the fees of the started contracts in cents
+     */
+    @JsonIgnore
+    private long revenuecents;
+
+    /**
+     * The sum of the lengths of the started contracts in days
+     */
+    private long bookeddays;
+
+    /**
+     * Default constructor used primarily by the JPA.
+     */
+    public ItemStats()
+    {
+    }
+
+    /**
+     * Given the params, create the totals of an item
+     */
+    public ItemStats(
+            long itemid,
+            long lenderid,
+            String itemname,
+            long contracts,
+            long activecontracts,
+            long revenuecents,
+            long bookeddays)
+    {
+        this.itemid = itemid;
+        this.lenderid = lenderid;
+        this.itemname = itemname;
+        this.contracts = contracts;
+        this.activecontracts = activecontracts;
+        this.revenuecents = revenuecents;
+        this.bookeddays = bookeddays;
+    }
+
+    public long getItemid()
+    {
+        return itemid;
+    }
+
+    public long getLenderid()
+    {
+        return lenderid;
+    }
+
+    public String getItemname()
+    {
+        return itemname;
+    }
+
+    public long getContracts()
+    {
+        return contracts;
+    }
+
+    public long getActivecontracts()
+    {
+        return activecontracts;
+    }
+
+    public BigDecimal getRevenue()
+    {
+        return Money.toDecimal(revenuecents);
+    }
+
+    @JsonIgnore
+    public long getRevenuecents()
+    {
+        return revenuecents;
+    }
+
+    public long getBookeddays()
+    {
+        return bookeddays;
+    }
+}
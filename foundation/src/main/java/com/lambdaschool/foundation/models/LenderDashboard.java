@@ -0,0 +1,62 @@
+package com.lambdaschool.foundation.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A model used to return the dashboard of a lender: the totals over all of their items,
+ * and the items earning the most.
+ */
+public class LenderDashboard
+{
+    /**
+     * The totals over all of the items of the lender
+     */
+    private LenderStats totals;
+
+    /**
+     * The totals of the items earning the most, most revenue first
+     */
+    private List<ItemStats> items = new ArrayList<>();
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public LenderDashboard()
+    {
+    }
+
+    /**
+     * Given the params, create a new dashboard
+     *
+     * @param totals the totals over all of the items of the lender
+     * @param items  the totals of the items earning the most
+     */
+    public LenderDashboard(
+            LenderStats totals,
+            List<ItemStats> items)
+    {
+        this.totals = totals;
+        this.items = items;
+    }
+
+    public LenderStats getTotals()
+    {
+        return totals;
+    }
+
+    public void setTotals(LenderStats totals)
+    {
+        this.totals = totals;
+    }
+
+    public List<ItemStats> getItems()
+    {
+        return items;
+    }
+
+    public void setItems(List<ItemStats> items)
+    {
+        this.items = items;
+    }
+}
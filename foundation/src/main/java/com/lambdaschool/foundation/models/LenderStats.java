@@ -0,0 +1,129 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+
+/**
+ * The entity allowing interaction with the lenderstats table, the running totals over all of the items of one lender.
+ * The rows are kept by LenderEarnings with plain SQL, in the same transaction as the items and contracts they count.
+ */
+@Entity
+@Table(name = "lenderstats")
+@JsonPropertyOrder({"lenderid", "items", "contracts", "activecontracts", "utilisation", "revenue", "bookeddays"})
+public class LenderStats
+{
+    /**
+     * The primary key (long) of the user lending the items
+     */
+    @Id
+    private long lenderid;
+
+    /**
+     * The number of items the user lends
+     */
+    private long items;
+
+    /**
+     * The number of contracts for those items, started or not
+     */
+    private long contracts;
+
+    /**
+     * The number of started contracts still active
+     */
+    private long activecontracts;
+
+    /**
+     * The sum of the fees of the started contracts in cents
+     */
+    @JsonIgnore
+    private long revenuecents;
+
+    /**
+     * The sum of the lengths of the started contracts in days
+     */
+    private long bookeddays;
+
+    /**
+     * Default constructor used primarily by the JPA.
+     */
+    public LenderStats()
+    {
+    }
+
+    /**
+     * Given the params, create the totals of a lender
+     */
+    public LenderStats(
+            long lenderid,
+            long items,
+            long contracts,
+            long activecontracts,
+            long revenuecents,
+            long bookeddays)
+    {
+        this.lenderid = lenderid;
+        this.items = items;
+        this.contracts = contracts;
+        this.activecontracts = activecontracts;
+        this.revenuecents = revenuecents;
+        this.bookeddays = bookeddays;
+    }
+
+    public long getLenderid()
+    {
+        return lenderid;
+    }
+
+    public long getItems()
+    {
+        return items;
+    }
+
+    public long getContracts()
+    {
+        return contracts;
+    }
+
+    public long getActivecontracts()
+    {
+        return activecontracts;
+    }
+
+    /**
+     * The percentage of the items of the lender out on a rental right now. An item is only ever booked by
+     * one contract at a time, so this is the active rentals over the items.
+     *
+     * @return the percentage, 0 to 100
+     */
+    public float getUtilisation()
+    {
+        if (items <= 0)
+        {
+            return 0;
+        }
+        return Math.min(activecontracts,
+                        items) * 100f / items;
+    }
+
+    public BigDecimal getRevenue()
+    {
+        return Money.toDecimal(revenuecents);
+    }
+
+    @JsonIgnore
+    public long getRevenuecents()
+    {
+        return revenuecents;
+    }
+
+    public long getBookeddays()
+    {
+        return bookeddays;
+    }
+}
@@ -0,0 +1,68 @@
+package com.lambdaschool.foundation.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts of money are held as a long number of cents, so adding and multiplying them is exact
+ * and never allocates. These are the conversions to and from the dollar amounts clients send and receive.
+ */
+public final class Money
+{
+    /**
+     * A basis point is one hundredth of a percent
+     */
+    public static final long BASIS_POINTS = 10_000;
+
+    private Money()
+    {
+    }
+
+    /**
+     * The number of cents in a dollar amount, rounded to the nearest cent
+     *
+     * @param dollars the amount in dollars
+     * @return the amount in cents
+     */
+    public static long ofDollars(double dollars)
+    {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * The dollar amount of a number of cents, as clients see it
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars
+     */
+    public static float toDollars(long cents)
+    {
+        return cents / 100f;
+    }
+
+    /**
+     * The exact dollar amount of a number of cents. Used for totals, which can be too large for a float to hold to the cent.
+     *
+     * @param cents the amount in cents
+     * @return the amount in dollars, with two decimal places
+     */
+    public static BigDecimal toDecimal(long cents)
+    {
+        return BigDecimal.valueOf(cents,
+                                  2);
+    }
+
+    /**
+     * Takes a discount off an amount, rounding half a cent up
+     *
+     * @param cents       the amount in cents, zero or more
+     * @param basisPoints the discount in basis points, 0 to 10000
+     * @return the discounted amount in cents
+     */
+    public static long discount(
+            long cents,
+            long basisPoints)
+    {
+        return (Math.multiplyExact(cents,
+                                   BASIS_POINTS - basisPoints) + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+}
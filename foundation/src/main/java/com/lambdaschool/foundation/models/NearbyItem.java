@@ -0,0 +1,78 @@
+package com.lambdaschool.foundation.models;
+
+/**
+ * A model used to return an item found by a search by distance, with how far it is from the point searched from
+ */
+public class NearbyItem
+{
+    /**
+     * The item found
+     */
+    private Item item;
+
+    /**
+     * The distance (double) to the item in kilometres, along the surface of the earth
+     */
+    private double distance;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public NearbyItem()
+    {
+    }
+
+    /**
+     * Given the params, create a new item found by distance
+     *
+     * @param item     The item found
+     * @param distance The distance to the item in kilometres
+     */
+    public NearbyItem(
+        Item item,
+        double distance)
+    {
+        this.item = item;
+        this.distance = distance;
+    }
+
+    /**
+     * Getter for the item found
+     *
+     * @return the item
+     */
+    public Item getItem()
+    {
+        return item;
+    }
+
+    /**
+     * Setter for the item found
+     *
+     * @param item the new item
+     */
+    public void setItem(Item item)
+    {
+        this.item = item;
+    }
+
+    /**
+     * Getter for the distance to the item, rounded to the metre
+     *
+     * @return the distance in kilometres
+     */
+    public double getDistance()
+    {
+        return Math.round(distance * 1000) / 1000.0;
+    }
+
+    /**
+     * Setter for the distance to the item
+     *
+     * @param distance the new distance in kilometres
+     */
+    public void setDistance(double distance)
+    {
+        this.distance = distance;
+    }
+}
@@ -0,0 +1,140 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * The entity allowing interaction with the outbox table. Each row is a change to a contract or an item, written
+ * in the same transaction as the change and removed once every OutboxSubscriber has handled it. See Outbox and OutboxRelay.
+ * <p>
+ * The event ids come from outbox_seq one at a time rather than in blocks, so events are numbered in the order
+ * they are written, whether written by this copy of the application or another.
+ */
+@Entity
+@Table(name = "outbox",
+        indexes = {@Index(name = "ix_outbox_failed",
+                columnList = "failed, eventid")})
+@JsonPropertyOrder({"eventid", "aggregatetype", "aggregateid", "eventtype", "createdat", "payload"})
+public class OutboxEvent
+{
+    /**
+     * The primary key (long) of the outbox table, in the order the events were written
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq",
+            sequenceName = "outbox_seq",
+            allocationSize = 1)
+    private long eventid;
+
+    /**
+     * What changed, contract or item
+     */
+    @Column(nullable = false)
+    private String aggregatetype;
+
+    /**
+     * The primary key of the contract or item that changed
+     */
+    private long aggregateid;
+
+    /**
+     * The change, for example contract.accepted
+     */
+    @Column(nullable = false)
+    private String eventtype;
+
+    /**
+     * The fields of the contract or item after the change, as JSON
+     */
+    @Column(nullable = false,
+            length = 4000)
+    private String payload;
+
+    /**
+     * When the change was made
+     */
+    @Column(nullable = false,
+            columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private Instant createdat;
+
+    /**
+     * Set once a subscriber has failed to handle the event too many times. Failed events are kept but not sent again.
+     */
+    @JsonIgnore
+    private boolean failed;
+
+    /**
+     * Default constructor used primarily by the JPA.
+     */
+    public OutboxEvent()
+    {
+    }
+
+    /**
+     * Given the params, create a new event
+     */
+    public OutboxEvent(
+            long eventid,
+            String aggregatetype,
+            long aggregateid,
+            String eventtype,
+            String payload,
+            Instant createdat)
+    {
+        this.eventid = eventid;
+        this.aggregatetype = aggregatetype;
+        this.aggregateid = aggregateid;
+        this.eventtype = eventtype;
+        this.payload = payload;
+        this.createdat = createdat;
+    }
+
+    public long getEventid()
+    {
+        return eventid;
+    }
+
+    public String getAggregatetype()
+    {
+        return aggregatetype;
+    }
+
+    public long getAggregateid()
+    {
+        return aggregateid;
+    }
+
+    public String getEventtype()
+    {
+        return eventtype;
+    }
+
+    @JsonRawValue
+    public String getPayload()
+    {
+        return payload;
+    }
+
+    public Instant getCreatedat()
+    {
+        return createdat;
+    }
+
+    public boolean isFailed()
+    {
+        return failed;
+    }
+}
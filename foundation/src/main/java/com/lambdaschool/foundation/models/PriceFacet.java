@@ -0,0 +1,106 @@
+package com.lambdaschool.foundation.models;
+
+/**
+ * A model used to return a range of daily rates and how many items are in it
+ */
+public class PriceFacet
+{
+    /**
+     * The lowest daily rate (float) in the range, in dollars
+     */
+    private float from;
+
+    /**
+     * The daily rate (Float) the range goes up to but does not include, in dollars. Null for the last range.
+     */
+    private Float to;
+
+    /**
+     * The number (long) of items in the range
+     */
+    private long count;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public PriceFacet()
+    {
+    }
+
+    /**
+     * Given the params, create a new price range count
+     *
+     * @param from  The lowest daily rate in the range
+     * @param to    The daily rate the range goes up to, null for no limit
+     * @param count The number of items in the range
+     */
+    public PriceFacet(
+            float from,
+            Float to,
+            long count)
+    {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+
+    /**
+     * Getter for the lowest daily rate in the range
+     *
+     * @return the lowest rate in dollars
+     */
+    public float getFrom()
+    {
+        return from;
+    }
+
+    /**
+     * Setter for the lowest daily rate in the range
+     *
+     * @param from the new lowest rate in dollars
+     */
+    public void setFrom(float from)
+    {
+        this.from = from;
+    }
+
+    /**
+     * Getter for the daily rate the range goes up to
+     *
+     * @return the rate in dollars, null for no limit
+     */
+    public Float getTo()
+    {
+        return to;
+    }
+
+    /**
+     * Setter for the daily rate the range goes up to
+     *
+     * @param to the new rate in dollars, null for no limit
+     */
+    public void setTo(Float to)
+    {
+        this.to = to;
+    }
+
+    /**
+     * Getter for the number of items in the range
+     *
+     * @return the count
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Setter for the number of items in the range
+     *
+     * @param count the new count
+     */
+    public void setCount(long count)
+    {
+        this.count = count;
+    }
+}
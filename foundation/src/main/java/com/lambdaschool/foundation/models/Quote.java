@@ -0,0 +1,110 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A model used to price renting an item for a number of days without making a contract.
+ * The client sends the item and the length, the fee is filled in.
+ */
+@JsonPropertyOrder({"itemid", "contractlength", "itemrate", "contractfee"})
+public class Quote
+{
+    /**
+     * The item to rent
+     */
+    private long itemid;
+
+    /**
+     * The number of days to rent it for
+     */
+    private int contractlength;
+
+    /**
+     * The rate per day of the item in cents
+     */
+    private long itemratecents;
+
+    /**
+     * The fee for the whole length in cents
+     */
+    private long contractfeecents;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public Quote()
+    {
+    }
+
+    /**
+     * Given the params, create a new quote to be priced
+     *
+     * @param itemid         The item to rent
+     * @param contractlength The number of days to rent it for
+     */
+    public Quote(
+        long itemid,
+        int contractlength)
+    {
+        this.itemid = itemid;
+        this.contractlength = contractlength;
+    }
+
+    public long getItemid()
+    {
+        return itemid;
+    }
+
+    public void setItemid(long itemid)
+    {
+        this.itemid = itemid;
+    }
+
+    public int getContractlength()
+    {
+        return contractlength;
+    }
+
+    public void setContractlength(int contractlength)
+    {
+        this.contractlength = contractlength;
+    }
+
+    @JsonProperty(value = "itemrate",
+        access = JsonProperty.Access.READ_ONLY)
+    public float getItemrate()
+    {
+        return Money.toDollars(itemratecents);
+    }
+
+    @JsonProperty(value = "contractfee",
+        access = JsonProperty.Access.READ_ONLY)
+    public float getContractfee()
+    {
+        return Money.toDollars(contractfeecents);
+    }
+
+    @JsonIgnore
+    public long getItemratecents()
+    {
+        return itemratecents;
+    }
+
+    public void setItemratecents(long itemratecents)
+    {
+        this.itemratecents = itemratecents;
+    }
+
+    @JsonIgnore
+    public long getContractfeecents()
+    {
+        return contractfeecents;
+    }
+
+    public void setContractfeecents(long contractfeecents)
+    {
+        this.contractfeecents = contractfeecents;
+    }
+}
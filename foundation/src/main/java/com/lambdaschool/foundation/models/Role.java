@@ -1,7 +1,10 @@
 package com.lambdaschool.foundation.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -9,6 +12,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
@@ -17,6 +21,9 @@ import java.util.List;
 /**
  * The entity allowing interaction with the roles table.
  */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "role")
 @Entity
 @Table(name = "roles")
 public class Role
@@ -26,7 +33,11 @@ public class Role
      * The primary key (long) of the roles table.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "roles_seq")
+    @SequenceGenerator(name = "roles_seq",
+            sequenceName = "roles_seq",
+            allocationSize = 50)
     private long roleid;
 
     /**
@@ -0,0 +1,60 @@
+package com.lambdaschool.foundation.models;
+
+import java.util.Date;
+
+/**
+ * A model used to return a span of time, from start up to end
+ */
+public class TimeWindow
+{
+    /**
+     * When the window opens
+     */
+    private Date start;
+
+    /**
+     * When the window closes
+     */
+    private Date end;
+
+    /**
+     * Default constructor used primarily by Jackson.
+     */
+    public TimeWindow()
+    {
+    }
+
+    /**
+     * Given the params, create a new window
+     *
+     * @param start When the window opens
+     * @param end   When the window closes
+     */
+    public TimeWindow(
+        Date start,
+        Date end)
+    {
+        this.start = start;
+        this.end = end;
+    }
+
+    public Date getStart()
+    {
+        return start;
+    }
+
+    public void setStart(Date start)
+    {
+        this.start = start;
+    }
+
+    public Date getEnd()
+    {
+        return end;
+    }
+
+    public void setEnd(Date end)
+    {
+        this.end = end;
+    }
+}
@@ -5,8 +5,11 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -14,6 +17,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotNull;
@@ -26,6 +30,9 @@ import java.util.List;
  */
 @ApiModel(value = "User",
         description = "Yes, this is an actual user")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "user")
 @Entity
 @Table(name = "users")
 public class User
@@ -39,7 +46,11 @@ public class User
             required = true,
             example = "1")
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "users_seq")
+    @SequenceGenerator(name = "users_seq",
+            sequenceName = "users_seq",
+            allocationSize = 50)
     private long userid;
 
     /**
@@ -96,6 +107,8 @@ public class User
             orphanRemoval = true)
     @JsonIgnoreProperties(value = "user",
             allowSetters = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+            region = "user.useremails")
     private List<Useremail> useremails = new ArrayList<>();
 
     /**
@@ -108,6 +121,8 @@ public class User
             cascade = CascadeType.ALL)
     @JsonIgnoreProperties(value = "user",
             allowSetters = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+            region = "user.roles")
     private List<UserRoles> roles = new ArrayList<>();
 
     /**
@@ -117,6 +132,8 @@ public class User
             cascade = CascadeType.ALL)
     @JsonIgnoreProperties(value = "lender",
             allowSetters = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+            region = "user.items")
     private List<Item> items = new ArrayList<>();
 
     /**
@@ -0,0 +1,313 @@
+package com.lambdaschool.foundation.models;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.lambdaschool.foundation.views.ItemSummary;
+import com.lambdaschool.foundation.views.UserRoleSummary;
+import com.lambdaschool.foundation.views.UserSummary;
+import com.lambdaschool.foundation.views.UseremailSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read only model of a user, with its emails, roles and items, used to return users as JSON.
+ * It is built from a few queries over whole tables instead of walking the lazy collections of each User,
+ * and the JSON it produces is the same as the JSON of a User.
+ */
+@JsonPropertyOrder({"userid", "username", "primaryemail", "useremails", "roles", "items"})
+public class UserView
+{
+    private long userid;
+
+    private String username;
+
+    private String primaryemail;
+
+    private List<Email> useremails = new ArrayList<>();
+
+    private List<RoleGrant> roles = new ArrayList<>();
+
+    private List<LentItem> items = new ArrayList<>();
+
+    /**
+     * Creates the view of a user from the fields of a user
+     *
+     * @param user the fields of the user
+     */
+    public UserView(UserSummary user)
+    {
+        this.userid = user.getUserid();
+        this.username = user.getUsername()
+                .toLowerCase();
+        this.primaryemail = user.getPrimaryemail()
+                .toLowerCase();
+    }
+
+    /**
+     * Creates the view of a user from a User. Useful when the user is already loaded.
+     *
+     * @param user the user to copy
+     */
+    public UserView(User user)
+    {
+        this.userid = user.getUserid();
+        this.username = user.getUsername();
+        this.primaryemail = user.getPrimaryemail();
+        for (Useremail ue : user.getUseremails())
+        {
+            useremails.add(new Email(ue.getUseremailid(),
+                                     ue.getUseremail()));
+        }
+        for (UserRoles ur : user.getRoles())
+        {
+            roles.add(new RoleGrant(ur.getRole()
+                                            .getRoleid(),
+                                    ur.getRole()
+                                            .getName()));
+        }
+        for (Item i : user.getItems())
+        {
+            items.add(new LentItem(i.getItemid(),
+                                   i.getItemname(),
+                                   i.getItemtype(),
+                                   i.getItemdescr(),
+                                   i.getItemlocat(),
+                                   i.getIsavailable(),
+                                   i.getItemrate(),
+                                   i.getItemimg()));
+        }
+    }
+
+    /**
+     * Adds an email to this user
+     *
+     * @param email the email to add
+     */
+    public void addEmail(UseremailSummary email)
+    {
+        useremails.add(new Email(email.getUseremailid(),
+                                 email.getUseremail()
+                                         .toLowerCase()));
+    }
+
+    /**
+     * Adds a role to this user
+     *
+     * @param role the role to add
+     */
+    public void addRole(UserRoleSummary role)
+    {
+        roles.add(new RoleGrant(role.getRoleid(),
+                                role.getName()
+                                        .toUpperCase()));
+    }
+
+    /**
+     * Adds an item lent by this user
+     *
+     * @param item the item to add
+     */
+    public void addItem(ItemSummary item)
+    {
+        items.add(new LentItem(item.getItemid(),
+                               item.getItemname(),
+                               item.getItemtype(),
+                               item.getItemdescr(),
+                               item.getItemlocat(),
+                               item.getIsavailable(),
+                               Money.toDollars(item.getItemratecents()),
+                               item.getItemimg()));
+    }
+
+    public long getUserid()
+    {
+        return userid;
+    }
+
+    public String getUsername()
+    {
+        return username;
+    }
+
+    public String getPrimaryemail()
+    {
+        return primaryemail;
+    }
+
+    public List<Email> getUseremails()
+    {
+        return useremails;
+    }
+
+    public List<RoleGrant> getRoles()
+    {
+        return roles;
+    }
+
+    public List<LentItem> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * An email of the user
+     */
+    @JsonPropertyOrder({"useremailid", "useremail"})
+    public static class Email
+    {
+        private final long useremailid;
+
+        private final String useremail;
+
+        Email(
+                long useremailid,
+                String useremail)
+        {
+            this.useremailid = useremailid;
+            this.useremail = useremail;
+        }
+
+        public long getUseremailid()
+        {
+            return useremailid;
+        }
+
+        public String getUseremail()
+        {
+            return useremail;
+        }
+    }
+
+    /**
+     * A role held by the user
+     */
+    public static class RoleGrant
+    {
+        private final RoleName role;
+
+        RoleGrant(
+                long roleid,
+                String name)
+        {
+            this.role = new RoleName(roleid,
+                                     name);
+        }
+
+        public RoleName getRole()
+        {
+            return role;
+        }
+    }
+
+    /**
+     * The id and name of a role
+     */
+    @JsonPropertyOrder({"roleid", "name"})
+    public static class RoleName
+    {
+        private final long roleid;
+
+        private final String name;
+
+        RoleName(
+                long roleid,
+                String name)
+        {
+            this.roleid = roleid;
+            this.name = name;
+        }
+
+        public long getRoleid()
+        {
+            return roleid;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * An item lent by the user
+     */
+    @JsonPropertyOrder({"itemid", "itemname", "itemtype", "itemdescr", "itemlocat", "isavailable", "itemrate", "itemimg"})
+    public static class LentItem
+    {
+        private final long itemid;
+
+        private final String itemname;
+
+        private final String itemtype;
+
+        private final String itemdescr;
+
+        private final String itemlocat;
+
+        private final boolean isavailable;
+
+        private final float itemrate;
+
+        private final String itemimg;
+
+        LentItem(
+                long itemid,
+                String itemname,
+                String itemtype,
+                String itemdescr,
+                String itemlocat,
+                boolean isavailable,
+                float itemrate,
+                String itemimg)
+        {
+            this.itemid = itemid;
+            this.itemname = itemname;
+            this.itemtype = itemtype;
+            this.itemdescr = itemdescr;
+            this.itemlocat = itemlocat;
+            this.isavailable = isavailable;
+            this.itemrate = itemrate;
+            this.itemimg = itemimg;
+        }
+
+        public long getItemid()
+        {
+            return itemid;
+        }
+
+        public String getItemname()
+        {
+            return itemname;
+        }
+
+        public String getItemtype()
+        {
+            return itemtype;
+        }
+
+        public String getItemdescr()
+        {
+            return itemdescr;
+        }
+
+        public String getItemlocat()
+        {
+            return itemlocat;
+        }
+
+        public boolean getIsavailable()
+        {
+            return isavailable;
+        }
+
+        public float getItemrate()
+        {
+            return itemrate;
+        }
+
+        public String getItemimg()
+        {
+            return itemimg;
+        }
+    }
+}
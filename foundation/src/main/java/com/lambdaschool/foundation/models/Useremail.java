@@ -1,7 +1,10 @@
 package com.lambdaschool.foundation.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -9,6 +12,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotNull;
@@ -18,6 +22,9 @@ import javax.validation.constraints.NotNull;
  * <p>
  * requires each combination of user and useremail to be unique. The same email cannot be assigned to the same user more than once.
  */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE,
+        region = "useremail")
 @Entity
 @Table(name = "useremails")
 public class Useremail
@@ -27,7 +34,11 @@ public class Useremail
      * The primary key (long) of the useremails table
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE,
+            generator = "useremails_seq")
+    @SequenceGenerator(name = "useremails_seq",
+            sequenceName = "useremails_seq",
+            allocationSize = 50)
     private long useremailid;
 
     /**
@@ -1,8 +1,108 @@
 package com.lambdaschool.foundation.repository;
 
 import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.views.Revision;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ContractRepository  extends CrudRepository<Contract, Long> {
+import java.time.Instant;
+import java.util.List;
 
+public interface ContractRepository  extends CrudRepository<Contract, Long>, ContractSearchRepository {
+
+    /**
+     * Find the active contracts running at the given time, soonest ending first.
+     * Read as a range of the is_active, raw_contractenddate index starting at the given time.
+     *
+     * @param at       the time (Instant) the contracts are running at
+     * @param pageable the number of contracts you seek. Only the first page of the pageable is used
+     * @return List of the active contracts started at or before the time and ending after it
+     */
+    @Query(value = "SELECT c FROM Contract c WHERE c.isActive = TRUE AND c.raw_contractenddate > :at AND c.raw_contractstartdate <= :at " +
+            "ORDER BY c.raw_contractenddate, c.contractid")
+    List<Contract> findActiveAt(Instant at,
+                                Pageable pageable);
+
+    /**
+     * Find the contracts a user rents, active or not
+     *
+     * @param userid the primary key (long) of the rentee
+     * @return List of the contracts of the rentee
+     */
+    @Query(value = "SELECT c FROM Contract c WHERE c.rentee.userid = :userid")
+    List<Contract> findByRentee(long userid);
+
+    /**
+     * Find the active contracts ending from one time up to another, soonest ending first.
+     * Read as a range of the is_active, raw_contractenddate index.
+     *
+     * @param from     the earliest end (Instant) you seek
+     * @param to       the end (Instant) the contracts must end before
+     * @param pageable the number of contracts you seek. Only the first page of the pageable is used
+     * @return List of the active contracts ending in that time
+     */
+    @Query(value = "SELECT c FROM Contract c WHERE c.isActive = TRUE AND c.raw_contractenddate >= :from AND c.raw_contractenddate < :to " +
+            "ORDER BY c.raw_contractenddate, c.contractid")
+    List<Contract> findActiveEndingBetween(Instant from,
+                                           Instant to,
+                                           Pageable pageable);
+
+    /**
+     * Find the contracts, active or not, started from one time up to another, earliest first.
+     * Read as a range of the raw_contractstartdate index.
+     *
+     * @param from     the earliest start (Instant) you seek
+     * @param to       the start (Instant) the contracts must start before
+     * @param pageable the number of contracts you seek. Only the first page of the pageable is used
+     * @return List of the contracts started in that time
+     */
+    @Query(value = "SELECT c FROM Contract c WHERE c.raw_contractstartdate >= :from AND c.raw_contractstartdate < :to " +
+            "ORDER BY c.raw_contractstartdate, c.contractid")
+    List<Contract> findStartedBetween(Instant from,
+                                      Instant to,
+                                      Pageable pageable);
+
+    /**
+     * Copies a new lender of an item onto the contracts of the item
+     *
+     * @param itemid   the primary key (long) of the item
+     * @param lenderid the primary key (long) of the user now lending the item
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE Contract c SET c.lenderid = :lenderid WHERE c.item.itemid = :itemid AND c.lenderid <> :lenderid")
+    void updateLenderid(long itemid,
+                        long lenderid);
+
+    /**
+     * Finds when a contract, or its rentee, its item or anything shown with the item, last changed and how many
+     * contracts the item has, without reading any of them. The contracts of the item are read off of the index on
+     * their itemid.
+     *
+     * @param contractid the primary key (long) of the contract
+     * @return the last change and row count of the contract, null if there is no such contract
+     */
+    @Query(value = "SELECT GREATEST(c.last_modified_date," +
+            " COALESCE((SELECT u.last_modified_date FROM users u WHERE u.userid = c.userid), c.last_modified_date)," +
+            " COALESCE((SELECT i.last_modified_date FROM items i WHERE i.itemid = c.itemid), c.last_modified_date)," +
+            " COALESCE((SELECT l.last_modified_date FROM users l WHERE l.userid = c.lenderid), c.last_modified_date)," +
+            " COALESCE((SELECT MAX(GREATEST(o.last_modified_date, r.last_modified_date)) FROM contracts o JOIN users r ON r.userid = o.userid WHERE o.itemid = c.itemid), c.last_modified_date)) AS lastmodified," +
+            " (SELECT COUNT(*) FROM contracts o WHERE o.itemid = c.itemid) AS rowcount" +
+            " FROM contracts c WHERE c.contractid = :contractid",
+            nativeQuery = true)
+    Revision findRevision(long contractid);
+
+    /**
+     * Tells whether a user rents or lends a contract without reading the contract
+     *
+     * @param contractid the primary key (long) of the contract
+     * @param userid     the primary key (long) of the user
+     * @return true if the contract exists and the user is its rentee or its lender
+     */
+    @Query(value = "SELECT COUNT(c) > 0 FROM Contract c WHERE c.contractid = :contractid AND (c.rentee.userid = :userid OR c.lenderid = :userid)")
+    boolean existsParty(long contractid,
+                        long userid);
 }
@@ -0,0 +1,30 @@
+package com.lambdaschool.foundation.repository;
+
+import com.lambdaschool.foundation.models.ContractSummary;
+
+import java.util.List;
+
+/**
+ * The contract search, added to ContractRepository. Only the filters given are part of the query,
+ * so each combination of filters is read off of the index made for it.
+ */
+public interface ContractSearchRepository
+{
+    /**
+     * Finds the summaries of the contracts matching every filter given, newest first
+     *
+     * @param renteeid only contracts rented by this user. Null for any rentee
+     * @param lenderid only contracts on items lent by this user. Null for any lender
+     * @param itemid   only contracts on this item. Null for any item
+     * @param active   only active or only inactive contracts. Null for both
+     * @param cursor   only contracts older than this contract id. Null to start from the newest
+     * @param limit    the most contracts to return
+     * @return List of at most limit contract summaries ordered by contract id, highest first
+     */
+    List<ContractSummary> search(Long renteeid,
+                                 Long lenderid,
+                                 Long itemid,
+                                 Boolean active,
+                                 Long cursor,
+                                 int limit);
+}
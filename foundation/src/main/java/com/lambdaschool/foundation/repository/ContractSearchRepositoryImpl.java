@@ -0,0 +1,167 @@
+package com.lambdaschool.foundation.repository;
+
+import com.lambdaschool.foundation.models.ContractSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the ContractSearchRepository Interface
+ * <p>
+ * Builds the query from just the filters given. Selects straight into ContractSummary, so no contract,
+ * item or user is loaded into the persistence context.
+ * <p>
+ * The rentee, lender and item indexes are each on the user or item, then isActive, then contractid newest first.
+ * The query orders by the same columns, so a page is read in order off of the front of the index range
+ * and no more rows than the page are read, however many contracts the user has. When both active and inactive
+ * contracts are wanted, the two ranges are read a page each and merged.
+ */
+public class ContractSearchRepositoryImpl
+        implements ContractSearchRepository
+{
+    private static final String SELECT = "SELECT new com.lambdaschool.foundation.models.ContractSummary(c.contractid, i.itemid, i.itemname, c.lenderid, " +
+            "r.userid, r.username, c.contractlength, c.contractfeecents, c.isActive, c.renteeaccept, c.lenderaccept, c.renteecomplete, c.lendercomplete, " +
+            "c.raw_contractstartdate, c.raw_contractenddate, c.version) FROM Contract c JOIN c.item i JOIN c.rentee r";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ContractSummary> search(
+            Long renteeid,
+            Long lenderid,
+            Long itemid,
+            Boolean active,
+            Long cursor,
+            int limit)
+    {
+        if (active != null)
+        {
+            return query(renteeid,
+                         lenderid,
+                         itemid,
+                         active,
+                         cursor,
+                         limit);
+        }
+
+        List<ContractSummary> activeContracts = query(renteeid,
+                                                      lenderid,
+                                                      itemid,
+                                                      true,
+                                                      cursor,
+                                                      limit);
+        List<ContractSummary> inactiveContracts = query(renteeid,
+                                                        lenderid,
+                                                        itemid,
+                                                        false,
+                                                        cursor,
+                                                        limit);
+        List<ContractSummary> merged = new ArrayList<>(limit);
+        int a = 0;
+        int b = 0;
+        while (merged.size() < limit && (a < activeContracts.size() || b < inactiveContracts.size()))
+        {
+            if (b >= inactiveContracts.size() || (a < activeContracts.size() && activeContracts.get(a)
+                    .getContractid() > inactiveContracts.get(b)
+                    .getContractid()))
+            {
+                merged.add(activeContracts.get(a++));
+            } else
+            {
+                merged.add(inactiveContracts.get(b++));
+            }
+        }
+        return merged;
+    }
+
+    private List<ContractSummary> query(
+            Long renteeid,
+            Long lenderid,
+            Long itemid,
+            boolean active,
+            Long cursor,
+            int limit)
+    {
+        StringBuilder jpql = new StringBuilder(SELECT);
+        Map<String, Object> params = new LinkedHashMap<>();
+        // the column the index is chosen by, the first filter of rentee, lender and item given
+        String lead = null;
+        if (renteeid != null)
+        {
+            lead = "c.rentee.userid";
+            where(jpql,
+                  params,
+                  "renteeid",
+                  renteeid,
+                  "c.rentee.userid = :renteeid");
+        }
+        if (lenderid != null)
+        {
+            lead = lead == null ? "c.lenderid" : lead;
+            where(jpql,
+                  params,
+                  "lenderid",
+                  lenderid,
+                  "c.lenderid = :lenderid");
+        }
+        if (itemid != null)
+        {
+            lead = lead == null ? "c.item.itemid" : lead;
+            where(jpql,
+                  params,
+                  "itemid",
+                  itemid,
+                  "c.item.itemid = :itemid");
+        }
+        where(jpql,
+              params,
+              "active",
+              active,
+              "c.isActive = :active");
+        if (cursor != null)
+        {
+            where(jpql,
+                  params,
+                  "cursor",
+                  cursor,
+                  "c.contractid < :cursor");
+        }
+
+        // ordering by the columns fixed by the filters does not change the order, but lets it match the index
+        jpql.append(" ORDER BY ");
+        if (lead != null)
+        {
+            jpql.append(lead)
+                    .append(", c.isActive, ");
+        }
+        jpql.append("c.contractid DESC");
+
+        TypedQuery<ContractSummary> query = entityManager.createQuery(jpql.toString(),
+                                                                      ContractSummary.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Adds a condition and its parameter, the first condition after WHERE and the rest after AND
+     */
+    private static void where(
+            StringBuilder jpql,
+            Map<String, Object> params,
+            String name,
+            Object value,
+            String condition)
+    {
+        jpql.append(params.isEmpty() ? " WHERE " : " AND ")
+                .append(condition);
+        params.put(name,
+                   value);
+    }
+}
@@ -1,15 +1,19 @@
 package com.lambdaschool.foundation.repository;
 
 import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.views.ItemSummary;
+import com.lambdaschool.foundation.views.ItemTerms;
 import com.lambdaschool.foundation.views.JustTheCount;
+import com.lambdaschool.foundation.views.Revision;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
-public interface ItemRepository  extends CrudRepository<Item, Long> {
+public interface ItemRepository  extends PagingAndSortingRepository<Item, Long> {
     /**
      * Find a item based off over itemname
      *
@@ -26,4 +30,57 @@ public interface ItemRepository  extends CrudRepository<Item, Long> {
      */
     List<Item> findByItemnameContainingIgnoreCase(String name);
 
+    /**
+     * Find one page of items whose item id comes after the given cursor. Items are ordered by item id
+     * so the page is read straight off of the primary key index no matter how deep the page is.
+     *
+     * @param itemid   the cursor, the last item id (long) from the previous page. Use 0 for the first page
+     * @param pageable the size of the page you seek. Only the first page of the pageable is used
+     * @return List of at most pageable size items whose item id is greater than the cursor
+     */
+    List<Item> findByItemidGreaterThanOrderByItemidAsc(long itemid,
+                                                       Pageable pageable);
+
+    /**
+     * Finds the fields, without the lender or contracts, of every item in one query
+     *
+     * @return List of every item, ordered by the userid of the lender
+     */
+    @Query(value = "SELECT i.lender.userid AS userid, i.itemid AS itemid, i.itemname AS itemname, i.itemtype AS itemtype, i.itemdescr AS itemdescr, " +
+            "i.itemlocat AS itemlocat, i.isavailable AS isavailable, i.itemratecents AS itemratecents, i.itemimg AS itemimg FROM Item i ORDER BY i.lender.userid, i.itemid")
+    List<ItemSummary> findAllSummaries();
+
+    /**
+     * Finds the fields, without the lender or contracts, of the items lent by the given user
+     *
+     * @param userid the primary key (long) of the lender
+     * @return List of the items lent by the user
+     */
+    @Query(value = "SELECT i.lender.userid AS userid, i.itemid AS itemid, i.itemname AS itemname, i.itemtype AS itemtype, i.itemdescr AS itemdescr, " +
+            "i.itemlocat AS itemlocat, i.isavailable AS isavailable, i.itemratecents AS itemratecents, i.itemimg AS itemimg FROM Item i WHERE i.lender.userid = :userid ORDER BY i.itemid")
+    List<ItemSummary> findSummariesByLender(long userid);
+
+    /**
+     * Finds the lender and the rate of an item without reading the item
+     *
+     * @param itemid the primary key (long) of the item
+     * @return the userid of the lender and the rate per day of the item, null if there is no such item
+     */
+    @Query(value = "SELECT i.lender.userid AS lenderid, i.itemratecents AS itemratecents FROM Item i WHERE i.itemid = :itemid")
+    ItemTerms findTerms(long itemid);
+
+    /**
+     * Finds when an item, or its lender or any of the contracts and rentees shown with it, last changed and how many
+     * contracts there are, without reading any of them. The contracts are read off of the index on their itemid.
+     *
+     * @param itemid the primary key (long) of the item
+     * @return the last change and row count of the item, null if there is no such item
+     */
+    @Query(value = "SELECT GREATEST(i.last_modified_date," +
+            " COALESCE((SELECT l.last_modified_date FROM users l WHERE l.userid = i.userid), i.last_modified_date)," +
+            " COALESCE((SELECT MAX(GREATEST(c.last_modified_date, r.last_modified_date)) FROM contracts c JOIN users r ON r.userid = c.userid WHERE c.itemid = i.itemid), i.last_modified_date)) AS lastmodified," +
+            " (SELECT COUNT(*) FROM contracts c WHERE c.itemid = i.itemid) AS rowcount" +
+            " FROM items i WHERE i.itemid = :itemid",
+            nativeQuery = true)
+    Revision findRevision(long itemid);
 }
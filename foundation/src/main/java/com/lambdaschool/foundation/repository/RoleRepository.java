@@ -3,9 +3,12 @@ package com.lambdaschool.foundation.repository;
 import com.lambdaschool.foundation.models.Role;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+
 /**
  * The CRUD Repository connecting Role to the rest of the application
  */
@@ -13,11 +16,15 @@ public interface RoleRepository
         extends CrudRepository<Role, Long>
 {
     /**
-     * JPA Query to find a role by name case insensitive search
+     * JPA Query to find a role by name case insensitive search. The answer is kept in the query cache until the
+     * roles table changes.
      *
      * @param name the name of the role which you seek
      * @return the first role matching the given name using a case insensitive search
      */
+    @QueryHints(value = {@QueryHint(name = "org.hibernate.cacheable",
+            value = "true"), @QueryHint(name = "org.hibernate.cacheRegion",
+            value = "query.role")})
     Role findByNameIgnoreCase(String name);
 
     /**
@@ -2,11 +2,17 @@ package com.lambdaschool.foundation.repository;
 
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.views.JustTheCount;
+import com.lambdaschool.foundation.views.UserRevision;
+import com.lambdaschool.foundation.views.UserRoleSummary;
+import com.lambdaschool.foundation.views.UserSummary;
+import com.lambdaschool.foundation.views.UseremailSummary;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 
 /**
@@ -16,11 +22,14 @@ public interface UserRepository
         extends CrudRepository<User, Long>
 {
     /**
-     * Find a user based off over username
+     * Find a user based off over username. The answer is kept in the query cache until the users table changes.
      *
      * @param username the name (String) of user you seek
      * @return the first user object with the name you seek
      */
+    @QueryHints(value = {@QueryHint(name = "org.hibernate.cacheable",
+            value = "true"), @QueryHint(name = "org.hibernate.cacheRegion",
+            value = "query.user")})
     User findByUsername(String username);
 
     /**
@@ -72,4 +81,77 @@ public interface UserRepository
             String uname,
             long userid,
             long roleid);
+
+    /**
+     * Finds the fields, none of the collections, of every user
+     *
+     * @return List of the fields of every user, ordered by userid
+     */
+    @Query(value = "SELECT u.userid AS userid, u.username AS username, u.primaryemail AS primaryemail FROM User u ORDER BY u.userid")
+    List<UserSummary> findAllSummaries();
+
+    /**
+     * Finds the fields, none of the collections, of the user with the given name
+     *
+     * @param username the name (String) of the user you seek, in lowercase
+     * @return the fields of the user, null if not found
+     */
+    @Query(value = "SELECT u.userid AS userid, u.username AS username, u.primaryemail AS primaryemail FROM User u WHERE u.username = :username")
+    UserSummary findSummaryByUsername(String username);
+
+    /**
+     * Finds the emails of every user in one query
+     *
+     * @return List of every email, ordered by userid
+     */
+    @Query(value = "SELECT ue.user.userid AS userid, ue.useremailid AS useremailid, ue.useremail AS useremail FROM Useremail ue ORDER BY ue.user.userid, ue.useremailid")
+    List<UseremailSummary> findAllUseremailSummaries();
+
+    /**
+     * Finds the emails of the given user
+     *
+     * @param userid the primary key (long) of the user
+     * @return List of the emails of the user
+     */
+    @Query(value = "SELECT ue.user.userid AS userid, ue.useremailid AS useremailid, ue.useremail AS useremail FROM Useremail ue WHERE ue.user.userid = :userid ORDER BY ue.useremailid")
+    List<UseremailSummary> findUseremailSummariesByUserid(long userid);
+
+    /**
+     * Finds the roles of every user in one query
+     *
+     * @return List of every user role combination, ordered by userid
+     */
+    @Query(value = "SELECT ur.user.userid AS userid, r.roleid AS roleid, r.name AS name FROM UserRoles ur JOIN ur.role r ORDER BY ur.user.userid, r.roleid")
+    List<UserRoleSummary> findAllUserRoleSummaries();
+
+    /**
+     * Finds the roles of the given user
+     *
+     * @param userid the primary key (long) of the user
+     * @return List of the roles of the user
+     */
+    @Query(value = "SELECT ur.user.userid AS userid, r.roleid AS roleid, r.name AS name FROM UserRoles ur JOIN ur.role r WHERE ur.user.userid = :userid ORDER BY r.roleid")
+    List<UserRoleSummary> findUserRoleSummariesByUserid(long userid);
+
+    /**
+     * Finds when a user, or any of the emails, roles, items and contracts shown with the user, last changed and how
+     * many of those rows there are, without reading any of them. Each part is read off of the index on its userid.
+     *
+     * @param userid the primary key (long) of the user
+     * @return the last change and row count of the user, null if there is no such user
+     */
+    @Query(value = "SELECT GREATEST(u.last_modified_date," +
+            " COALESCE((SELECT MAX(e.last_modified_date) FROM useremails e WHERE e.userid = u.userid), u.last_modified_date)," +
+            " COALESCE((SELECT MAX(GREATEST(ur.last_modified_date, r.last_modified_date)) FROM userroles ur JOIN roles r ON r.roleid = ur.roleid WHERE ur.userid = u.userid), u.last_modified_date)," +
+            " COALESCE((SELECT MAX(i.last_modified_date) FROM items i WHERE i.userid = u.userid), u.last_modified_date)," +
+            " COALESCE((SELECT MAX(c.last_modified_date) FROM contracts c WHERE c.userid = u.userid), u.last_modified_date)," +
+            " COALESCE((SELECT MAX(c.last_modified_date) FROM contracts c WHERE c.lenderid = u.userid), u.last_modified_date)) AS lastmodified," +
+            " (SELECT COUNT(*) FROM useremails e WHERE e.userid = u.userid)" +
+            " + (SELECT COUNT(*) FROM userroles ur WHERE ur.userid = u.userid)" +
+            " + (SELECT COUNT(*) FROM items i WHERE i.userid = u.userid)" +
+            " + (SELECT COUNT(*) FROM contracts c WHERE c.userid = u.userid)" +
+            " + (SELECT COUNT(*) FROM contracts c WHERE c.lenderid = u.userid) AS rowcount" +
+            " FROM users u WHERE u.userid = :userid",
+            nativeQuery = true)
+    UserRevision findRevision(long userid);
 }
@@ -0,0 +1,457 @@
+package com.lambdaschool.foundation.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.models.OutboxEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Pushes changes to contracts to the rentee and the lender of each contract as Server-Sent Events.
+ * <p>
+ * Each open stream is an SseEmitter, so an idle stream holds no servlet thread, only the connection and the few
+ * events waiting to be written to it. The events come from the outbox through OutboxRelay, which calls onEvent on one of
+ * its lane threads. The event is queued on the streams of the two users on the contract, at most contracts.stream.queue
+ * events per stream, and written by contracts.stream.threads threads of this class, so a slow client never holds up the
+ * relay. A stream whose queue is full is closed, and the client reconnects and reads the contract again.
+ * <p>
+ * A comment is written to every stream every contracts.stream.heartbeat milliseconds so proxies keep the connection
+ * open and dead connections are found. A user has at most contracts.stream.peruser streams, the oldest is closed when
+ * they open another, and there are at most contracts.stream.max streams in all.
+ */
+@Component
+public class ContractEventStream
+        implements OutboxSubscriber, MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ContractEventStream.class);
+
+    private static final String PARTIES_SQL = "SELECT userid, lenderid FROM contracts WHERE contractid = ?";
+
+    /**
+     * Events are queued as suppliers of builders, since a builder changes as it is sent and so cannot go to two streams
+     */
+    private static final Supplier<SseEmitter.SseEventBuilder> HEARTBEAT = () -> SseEmitter.event()
+            .comment("heartbeat");
+
+    private static final Supplier<SseEmitter.SseEventBuilder> OPENED = () -> SseEmitter.event()
+            .name("open")
+            .data("{}",
+                  MediaType.APPLICATION_JSON);
+
+    /**
+     * Connects the stream to the database to find the users on a contract the event does not name
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Reads the users on the contract from the event
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * How long, in milliseconds, a stream stays open before the client has to reconnect
+     */
+    @Value("${contracts.stream.timeout:1800000}")
+    private long timeout;
+
+    /**
+     * The most events waiting to be written to one stream
+     */
+    @Value("${contracts.stream.queue:100}")
+    private int queueSize;
+
+    /**
+     * The most streams open for one user
+     */
+    @Value("${contracts.stream.peruser:5}")
+    private int maxPerUser;
+
+    /**
+     * The most streams open in all
+     */
+    @Value("${contracts.stream.max:400}")
+    private int maxStreams;
+
+    /**
+     * The number of threads writing events to the streams
+     */
+    @Value("${contracts.stream.threads:2}")
+    private int threadCount;
+
+    /**
+     * The open streams of each user, oldest first
+     */
+    private final Map<Long, Deque<Stream>> streams = new ConcurrentHashMap<>();
+
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder overflowed = new LongAdder();
+
+    private volatile ExecutorService writers;
+
+    /**
+     * Opens a stream of the changes to the contracts of a user
+     *
+     * @param userid     the user, who must be the rentee or the lender of the contracts
+     * @param contractid only changes to this contract. Null for every contract of the user.
+     * @return the stream
+     * @throws ResourceFoundException if there are already contracts.stream.max streams open
+     */
+    public SseEmitter open(
+            long userid,
+            Long contractid)
+    {
+        if (open.incrementAndGet() > maxStreams)
+        {
+            open.decrementAndGet();
+            throw new ResourceFoundException("Too many contract streams are open, try again later");
+        }
+        Stream stream = new Stream(userid,
+                                   contractid,
+                                   new SseEmitter(timeout));
+        stream.emitter.onCompletion(stream::close);
+        stream.emitter.onTimeout(stream::close);
+        stream.emitter.onError(e -> stream.close());
+
+        Deque<Stream> mine = streams.compute(userid,
+                                             (id, theirs) ->
+                                             {
+                                                 Deque<Stream> added = theirs == null ? new ConcurrentLinkedDeque<>() : theirs;
+                                                 added.addLast(stream);
+                                                 return added;
+                                             });
+        Stream oldest;
+        while (mine.size() > maxPerUser && (oldest = mine.peekFirst()) != null)
+        {
+            oldest.complete();
+        }
+        // tell the client the stream is open, so it knows to read the contract once and then wait
+        stream.offer(OPENED);
+        return stream.emitter;
+    }
+
+    @Override
+    public void onEvent(OutboxEvent event)
+    {
+        if (!Outbox.CONTRACT.equals(event.getAggregatetype()) || streams.isEmpty())
+        {
+            return;
+        }
+        long[] parties = parties(event);
+        if (parties == null)
+        {
+            return;
+        }
+        Supplier<SseEmitter.SseEventBuilder> message = () -> SseEmitter.event()
+                .id(String.valueOf(event.getEventid()))
+                .name(event.getEventtype())
+                .data(event,
+                      MediaType.APPLICATION_JSON);
+        for (int i = 0; i < parties.length; i++)
+        {
+            // a user renting their own item would get the event twice
+            if (i > 0 && parties[i] == parties[0])
+            {
+                continue;
+            }
+            Deque<Stream> theirs = streams.get(parties[i]);
+            if (theirs == null)
+            {
+                continue;
+            }
+            for (Stream stream : theirs)
+            {
+                if (stream.contractid == null || stream.contractid == event.getAggregateid())
+                {
+                    stream.offer(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * The rentee and the lender of the contract of the event, from the event or else from the contract
+     */
+    private long[] parties(OutboxEvent event)
+    {
+        try
+        {
+            JsonNode payload = objectMapper.readTree(event.getPayload());
+            if (payload.hasNonNull("renteeid") && payload.hasNonNull("lenderid"))
+            {
+                return new long[]{payload.get("renteeid")
+                        .asLong(), payload.get("lenderid")
+                        .asLong()};
+            }
+        } catch (IOException e)
+        {
+            logger.warn("Could not read outbox event " + event.getEventid(),
+                        e);
+            return null;
+        }
+        List<long[]> found = jdbcTemplate.query(PARTIES_SQL,
+                                                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                                                event.getAggregateid());
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Writes a comment to every stream with nothing waiting to be written
+     */
+    @Scheduled(fixedDelayString = "${contracts.stream.heartbeat:15000}")
+    public void heartbeat()
+    {
+        for (Deque<Stream> theirs : streams.values())
+        {
+            for (Stream stream : theirs)
+            {
+                stream.offerIfIdle(HEARTBEAT);
+            }
+        }
+    }
+
+    /**
+     * Closes every stream when the application stops
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop()
+    {
+        for (Deque<Stream> theirs : streams.values())
+        {
+            for (Stream stream : theirs)
+            {
+                stream.complete();
+            }
+        }
+        ExecutorService executor = writers;
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService writers()
+    {
+        ExecutorService executor = writers;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                if (writers == null)
+                {
+                    AtomicInteger threads = new AtomicInteger();
+                    writers = Executors.newFixedThreadPool(threadCount,
+                                                           runnable ->
+                                                           {
+                                                               Thread thread = new Thread(runnable,
+                                                                                          "contract-stream-" + threads.getAndIncrement());
+                                                               thread.setDaemon(true);
+                                                               return thread;
+                                                           });
+                }
+                executor = writers;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * One open stream and the events waiting to be written to it
+     */
+    private final class Stream
+    {
+        private final long userid;
+
+        private final Long contractid;
+
+        private final SseEmitter emitter;
+
+        /**
+         * Guarded by this
+         */
+        private final Deque<Supplier<SseEmitter.SseEventBuilder>> queue = new ArrayDeque<>();
+
+        /**
+         * Whether a writer thread has been given this stream. Guarded by this.
+         */
+        private boolean writing;
+
+        private boolean closed;
+
+        Stream(
+                long userid,
+                Long contractid,
+                SseEmitter emitter)
+        {
+            this.userid = userid;
+            this.contractid = contractid;
+            this.emitter = emitter;
+        }
+
+        void offer(Supplier<SseEmitter.SseEventBuilder> message)
+        {
+            synchronized (this)
+            {
+                if (closed)
+                {
+                    return;
+                }
+                if (queue.size() < queueSize)
+                {
+                    queue.addLast(message);
+                    if (writing)
+                    {
+                        return;
+                    }
+                    writing = true;
+                    message = null;
+                }
+            }
+            if (message != null)
+            {
+                // the client is not keeping up. it reconnects and reads the contract again
+                overflowed.increment();
+                complete();
+                return;
+            }
+            writers().execute(this::write);
+        }
+
+        void offerIfIdle(Supplier<SseEmitter.SseEventBuilder> message)
+        {
+            synchronized (this)
+            {
+                if (!queue.isEmpty())
+                {
+                    return;
+                }
+            }
+            offer(message);
+        }
+
+        private void write()
+        {
+            while (true)
+            {
+                Supplier<SseEmitter.SseEventBuilder> message;
+                synchronized (this)
+                {
+                    message = queue.pollFirst();
+                    if (message == null || closed)
+                    {
+                        writing = false;
+                        return;
+                    }
+                }
+                try
+                {
+                    emitter.send(message.get());
+                    if (message != HEARTBEAT)
+                    {
+                        sent.increment();
+                    }
+                } catch (IOException | IllegalStateException e)
+                {
+                    // the client went away
+                    synchronized (this)
+                    {
+                        writing = false;
+                    }
+                    complete();
+                    return;
+                }
+            }
+        }
+
+        void complete()
+        {
+            close();
+            try
+            {
+                emitter.complete();
+            } catch (IllegalStateException e)
+            {
+                // already completed
+            }
+        }
+
+        void close()
+        {
+            synchronized (this)
+            {
+                closed = true;
+                queue.clear();
+            }
+            Deque<Stream> theirs = streams.get(userid);
+            if (theirs != null && theirs.remove(this))
+            {
+                open.decrementAndGet();
+                streams.computeIfPresent(userid,
+                                         (id, left) -> left.isEmpty() ? null : left);
+            }
+        }
+    }
+
+    /**
+     * The number of streams open
+     *
+     * @return the number of open streams
+     */
+    public int openStreams()
+    {
+        return open.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("contracts.stream.open",
+                      this,
+                      ContractEventStream::openStreams)
+                .description("contract event streams open")
+                .register(registry);
+        FunctionCounter.builder("contracts.stream.sent",
+                                this,
+                                s -> s.sent.sum())
+                .description("contract events written to streams")
+                .register(registry);
+        FunctionCounter.builder("contracts.stream.overflowed",
+                                this,
+                                s -> s.overflowed.sum())
+                .description("streams closed because their client fell more than contracts.stream.queue events behind")
+                .register(registry);
+    }
+}
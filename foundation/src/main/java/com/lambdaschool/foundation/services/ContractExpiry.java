@@ -0,0 +1,496 @@
+package com.lambdaschool.foundation.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ends active contracts once their end date has passed and makes their items available again.
+ * <p>
+ * The end dates coming up are held in a queue ordered by end date. The queue is filled a page at a time from the
+ * contracts index on is_active and raw_contractenddate, walking forward in end date order but never further than
+ * contracts.expiry.horizon seconds ahead of now and never holding more than contracts.expiry.queue.max end dates,
+ * so the contracts table is never read as a whole however many contracts there are. ContractService adds the end date
+ * of each contract it starts or changes once the change commits.
+ * <p>
+ * Contracts written without going through ContractService, by another node or straight to the database, are found
+ * when the queue is read again from the start of the index every contracts.expiry.rescan seconds.
+ * <p>
+ * Due contracts are ended contracts.expiry.batch at a time, each batch with a single UPDATE of the contracts and a single
+ * UPDATE of their items, taking them off the active rentals in the lender totals as well. The UPDATE only ends contracts
+ * that are still active and still past their end date, so an end date in the queue that has since changed, or a contract
+ * ended on another node, is skipped. A contract.expired event is written to the outbox for each contract ended.
+ */
+@Component
+public class ContractExpiry
+        implements MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ContractExpiry.class);
+
+    private static final String PAGE_SQL = "SELECT contractid, itemid, raw_contractenddate FROM contracts" +
+        " WHERE is_active = TRUE AND raw_contractenddate < ? AND (raw_contractenddate > ? OR (raw_contractenddate = ? AND contractid > ?))" +
+        " ORDER BY raw_contractenddate, contractid LIMIT ?";
+
+    private static final String DUE_SQL = "SELECT contractid, itemid FROM contracts" +
+        " WHERE is_active = TRUE AND raw_contractenddate <= ? AND contractid IN (%s) FOR UPDATE";
+
+    private static final String EXPIRE_SQL = "UPDATE contracts SET is_active = FALSE, version = version + 1, last_modified_by = ?, last_modified_date = ?" +
+        " WHERE contractid IN (%s)";
+
+    private static final String FREE_ITEMS_SQL = "UPDATE items SET isavailable = TRUE, version = version + 1, last_modified_by = ?, last_modified_date = ?" +
+        " WHERE isavailable = FALSE AND itemid IN (%s)" +
+        " AND NOT EXISTS (SELECT 1 FROM contracts c WHERE c.itemid = items.itemid AND c.is_active = TRUE AND c.raw_contractstartdate <= ?)";
+
+    /**
+     * The end dates to act on, soonest first. Guarded by this.
+     */
+    private final PriorityQueue<Deadline> queue = new PriorityQueue<>(Deadline.ORDER);
+
+    /**
+     * Every active contract ending at or before the cursor, in end date then contract id order, is in the queue
+     * or has already been ended. Guarded by this.
+     */
+    private long cursorEnd = 0;
+
+    private long cursorId = 0;
+
+    /**
+     * When the queue was last read from the start of the index. Only used by the thread running expireDue.
+     */
+    private long lastRescan;
+
+    private final LongAdder expired = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder batchNanos = new LongAdder();
+
+    /**
+     * Connects the expiry to the database
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to give each batch its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Connects the expiry to the bookings of each item
+     */
+    @Autowired
+    private ItemAvailability availability;
+
+    /**
+     * Connects the expiry to the running totals of each lender and item
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Connects the expiry to the outbox of changes sent to the subscribers
+     */
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Connects the expiry to the index of where each item is, which also knows whether each item is available
+     */
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    /**
+     * Connects the expiry to the counts of items by type, availability and price, as freed items become available
+     */
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    /**
+     * Connects the expiry to the second level cache, as freed items are changed with plain SQL
+     */
+    @Autowired
+    private EntityCache entityCache;
+
+    /**
+     * Connects the expiry to the user name used for the auditing fields
+     */
+    @Autowired
+    private UserAuditing userAuditing;
+
+    /**
+     * The most contracts ended by one statement
+     */
+    @Value("${contracts.expiry.batch:500}")
+    private int batchSize;
+
+    /**
+     * How far ahead, in seconds, end dates are read into the queue
+     */
+    @Value("${contracts.expiry.horizon:3600}")
+    private long horizonSeconds;
+
+    /**
+     * The most end dates read into the queue
+     */
+    @Value("${contracts.expiry.queue.max:100000}")
+    private int maxQueued;
+
+    /**
+     * How often, in seconds, the queue is read again from the start of the index
+     */
+    @Value("${contracts.expiry.rescan:600}")
+    private long rescanSeconds;
+
+    /**
+     * Adds the end date of the contract to the queue once the current transaction commits. Outside of a transaction
+     * it is added now. End dates past the part of the index read so far are left to be read from the database.
+     *
+     * @param contractid the contract
+     * @param itemid     the item the contract is for
+     * @param end        when the contract ends
+     */
+    public void scheduleAfterCommit(
+            long contractid,
+            long itemid,
+            Instant end)
+    {
+        Deadline deadline = new Deadline(contractid,
+                                         itemid,
+                                         end.toEpochMilli());
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    schedule(deadline);
+                }
+            });
+        } else
+        {
+            schedule(deadline);
+        }
+    }
+
+    private synchronized void schedule(Deadline deadline)
+    {
+        if (deadline.end < cursorEnd || (deadline.end == cursorEnd && deadline.contractid <= cursorId))
+        {
+            queue.add(deadline);
+        }
+    }
+
+    /**
+     * Ends every contract that is due, a batch at a time, reading more end dates from the database as the queue runs low
+     */
+    @Scheduled(fixedDelayString = "${contracts.expiry.delay:1000}")
+    public void expireDue()
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastRescan >= TimeUnit.SECONDS.toMillis(rescanSeconds))
+        {
+            synchronized (this)
+            {
+                queue.clear();
+                cursorEnd = 0;
+                cursorId = 0;
+            }
+            lastRescan = now;
+        }
+        while (true)
+        {
+            fill(now);
+            List<Deadline> due = takeDue(now);
+            if (due.isEmpty())
+            {
+                return;
+            }
+            try
+            {
+                expire(due,
+                       now);
+            } catch (RuntimeException e)
+            {
+                // put them back so the next run tries again
+                synchronized (this)
+                {
+                    queue.addAll(due);
+                }
+                logger.warn("Could not end " + due.size() + " expired contracts",
+                            e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads end dates from the index into the queue, up to the horizon or until the queue is full
+     */
+    private void fill(long now)
+    {
+        long until = now + TimeUnit.SECONDS.toMillis(horizonSeconds);
+        while (true)
+        {
+            long fromEnd;
+            long fromId;
+            int limit;
+            synchronized (this)
+            {
+                limit = Math.min(batchSize,
+                                 maxQueued - queue.size());
+                if (limit <= 0 || cursorEnd >= until)
+                {
+                    return;
+                }
+                fromEnd = cursorEnd;
+                fromId = cursorId;
+            }
+
+            Timestamp from = new Timestamp(fromEnd);
+            List<Deadline> page = jdbcTemplate.query(PAGE_SQL,
+                                                     (rs, rowNum) -> new Deadline(rs.getLong(1),
+                                                                                  rs.getLong(2),
+                                                                                  rs.getTimestamp(3)
+                                                                                          .getTime()),
+                                                     new Timestamp(until),
+                                                     from,
+                                                     from,
+                                                     fromId,
+                                                     limit);
+            synchronized (this)
+            {
+                queue.addAll(page);
+                if (page.size() < limit)
+                {
+                    // everything before the horizon has been read
+                    cursorEnd = until;
+                    cursorId = 0;
+                    return;
+                }
+                Deadline last = page.get(page.size() - 1);
+                cursorEnd = last.end;
+                cursorId = last.contractid;
+            }
+        }
+    }
+
+    /**
+     * Takes the next batch of due end dates off the queue, one per contract
+     */
+    private synchronized List<Deadline> takeDue(long now)
+    {
+        Map<Long, Deadline> due = new LinkedHashMap<>();
+        while (due.size() < batchSize && !queue.isEmpty() && queue.peek().end <= now)
+        {
+            Deadline deadline = queue.poll();
+            due.put(deadline.contractid,
+                    deadline);
+        }
+        return new ArrayList<>(due.values());
+    }
+
+    /**
+     * Ends the contracts in one transaction, frees their items and, once committed, their bookings
+     */
+    private void expire(
+            List<Deadline> due,
+            long now)
+    {
+        long started = System.nanoTime();
+        String auditor = userAuditing.getCurrentAuditor()
+                .orElse("SYSTEM");
+        Timestamp at = new Timestamp(now);
+        String contractids = placeholders(due.size());
+
+        int ended = new TransactionTemplate(transactionManager).execute(status ->
+                                                                        {
+                                                                            // only the contracts still running and due now are ended, and they are locked until
+                                                                            // this commits. Contracts already ended, or with their end date moved, are left alone.
+                                                                            List<Object> args = new ArrayList<>();
+                                                                            args.add(at);
+                                                                            for (Deadline deadline : due)
+                                                                            {
+                                                                                args.add(deadline.contractid);
+                                                                            }
+                                                                            List<Long> endedids = new ArrayList<>();
+                                                                            List<Long> endeditemids = new ArrayList<>();
+                                                                            jdbcTemplate.query(String.format(DUE_SQL,
+                                                                                                             contractids),
+                                                                                               rs ->
+                                                                                               {
+                                                                                                   endedids.add(rs.getLong(1));
+                                                                                                   endeditemids.add(rs.getLong(2));
+                                                                                               },
+                                                                                               args.toArray());
+                                                                            if (endedids.isEmpty())
+                                                                            {
+                                                                                return 0;
+                                                                            }
+
+                                                                            args.clear();
+                                                                            args.add(auditor);
+                                                                            args.add(at);
+                                                                            args.addAll(endedids);
+                                                                            jdbcTemplate.update(String.format(EXPIRE_SQL,
+                                                                                                              placeholders(endedids.size())),
+                                                                                                args.toArray());
+
+                                                                            Set<Long> itemids = new HashSet<>(endeditemids);
+                                                                            for (int i = 0; i < endedids.size(); i++)
+                                                                            {
+                                                                                availability.releaseAfterCommit(endeditemids.get(i),
+                                                                                                                endedids.get(i));
+                                                                            }
+                                                                            earnings.contractsEnded(endedids);
+                                                                            outbox.contractsExpired(endedids,
+                                                                                                    endeditemids);
+
+                                                                            args.clear();
+                                                                            args.add(auditor);
+                                                                            args.add(at);
+                                                                            args.addAll(itemids);
+                                                                            args.add(at);
+                                                                            jdbcTemplate.update(String.format(FREE_ITEMS_SQL,
+                                                                                                              placeholders(itemids.size())),
+                                                                                                args.toArray());
+                                                                            locationIndex.refreshAfterCommit(itemids);
+                                                                            facetCounts.refreshAfterCommit(itemids);
+                                                                            entityCache.evictItems(itemids);
+                                                                            return endedids.size();
+                                                                        });
+        expired.add(ended);
+        batches.increment();
+        batchNanos.add(System.nanoTime() - started);
+    }
+
+    private static String placeholders(int count)
+    {
+        return String.join(", ",
+                           Collections.nCopies(count,
+                                               "?"));
+    }
+
+    /**
+     * The number of contracts ended so far
+     *
+     * @return the number of contracts ended
+     */
+    public long getExpired()
+    {
+        return expired.sum();
+    }
+
+    /**
+     * The number of end dates waiting in the queue
+     *
+     * @return the number of queued end dates
+     */
+    public synchronized int pending()
+    {
+        return queue.size();
+    }
+
+    /**
+     * How far behind the expiry is, the time since the end of the most overdue contract in the queue
+     *
+     * @return the lag in milliseconds, 0 if nothing in the queue is due
+     */
+    public synchronized long lagMillis()
+    {
+        Deadline next = queue.peek();
+        return next == null ? 0 : Math.max(0,
+                                           System.currentTimeMillis() - next.end);
+    }
+
+    /**
+     * Publishes the number of contracts ended, the time spent ending them, the queue size and the lag
+     * to the metrics registry
+     *
+     * @param registry the metrics registry maintained by Spring
+     */
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("contracts.expiry.expired",
+                                this,
+                                ContractExpiry::getExpired)
+                .description("contracts ended because their end date passed")
+                .register(registry);
+        FunctionTimer.builder("contracts.expiry.batches",
+                              this,
+                              e -> e.batches.sum(),
+                              e -> e.batchNanos.sum(),
+                              TimeUnit.NANOSECONDS)
+                .description("batches of expired contracts ended and the time spent ending them")
+                .register(registry);
+        Gauge.builder("contracts.expiry.pending",
+                      this,
+                      ContractExpiry::pending)
+                .description("end dates waiting in the queue")
+                .register(registry);
+        TimeGauge.builder("contracts.expiry.lag",
+                          this,
+                          TimeUnit.MILLISECONDS,
+                          ContractExpiry::lagMillis)
+                .description("time since the end of the most overdue contract not yet ended")
+                .register(registry);
+    }
+
+    /**
+     * When one contract ends. Immutable.
+     */
+    private static class Deadline
+    {
+        private static final Comparator<Deadline> ORDER = Comparator.<Deadline>comparingLong(d -> d.end)
+                .thenComparingLong(d -> d.contractid);
+
+        private final long contractid;
+
+        private final long itemid;
+
+        private final long end;
+
+        Deadline(
+                long contractid,
+                long itemid,
+                long end)
+        {
+            this.contractid = contractid;
+            this.itemid = itemid;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.lambdaschool.foundation.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * The Service that works with exports of contracts written straight to a response body
+ * <p>
+ * Rows are written as they are read from the database, so the number of contracts does not matter.
+ * Every filter is optional, a null filter matches every contract.
+ */
+public interface ContractExportService
+{
+    /**
+     * Writes the matching contracts as newline delimited JSON, one contract object per line, ordered by contract id
+     *
+     * @param from   only contracts starting on or after this day
+     * @param to     only contracts starting on or before this day
+     * @param active only contracts with this activity status
+     * @param out    where the contracts are written
+     * @return the number (long) of contracts written
+     * @throws IOException if the contracts could not be written to out
+     */
+    long exportNdjson(
+        LocalDate from,
+        LocalDate to,
+        Boolean active,
+        OutputStream out)
+        throws
+        IOException;
+
+    /**
+     * Writes the matching contracts as CSV with a header line, one contract per line, ordered by contract id
+     *
+     * @param from   only contracts starting on or after this day
+     * @param to     only contracts starting on or before this day
+     * @param active only contracts with this activity status
+     * @param out    where the contracts are written
+     * @return the number (long) of contracts written
+     * @throws IOException if the contracts could not be written to out
+     */
+    long exportCsv(
+        LocalDate from,
+        LocalDate to,
+        Boolean active,
+        OutputStream out)
+        throws
+        IOException;
+}
@@ -0,0 +1,242 @@
+package com.lambdaschool.foundation.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.lambdaschool.foundation.models.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements the ContractExportService Interface
+ * <p>
+ * Contracts are read with a forward only JDBC cursor, fetchSize rows at a time, and each row is written out
+ * before the next is read. PostgreSQL only honors the fetch size inside a transaction, hence the read only transaction.
+ */
+@Transactional(readOnly = true)
+@Service(value = "contractExportService")
+public class ContractExportServiceImpl
+        implements ContractExportService
+{
+    /**
+     * The names of the exported fields, in the order they are selected
+     */
+    private static final String[] COLUMNS = {"contractid", "itemid", "itemname", "lenderid", "renteeid", "rentee", "contractlength", "contractfee", "isactive", "renteeaccept", "lenderaccept", "renteecomplete", "lendercomplete", "contractstartdate", "contractenddate"};
+
+    private static final String CONTRACT_SQL = "SELECT c.contractid, c.itemid, i.itemname, i.userid, c.userid, u.username, c.contractlength, c.contractfeecents, c.is_active, c.renteeaccept, c.lenderaccept, c.renteecomplete, c.lendercomplete, c.raw_contractstartdate, c.raw_contractenddate" +
+        " FROM contracts c JOIN items i ON i.itemid = c.itemid JOIN users u ON u.userid = c.userid";
+
+    /**
+     * Connects this service to the database the contracts are read from
+     */
+    @Autowired
+    @Qualifier("dsCustom")
+    private DataSource dataSource;
+
+    /**
+     * Writes the JSON lines the same way the other endpoints write JSON
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The number of rows read from the database at a time
+     */
+    @Value("${contracts.export.fetchsize:1000}")
+    private int fetchSize;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    @Override
+    public long exportNdjson(
+            LocalDate from,
+            LocalDate to,
+            Boolean active,
+            OutputStream out)
+            throws
+            IOException
+    {
+        try (JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(out))
+        {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // each object ends its own line instead of being separated from the next by a space
+            generator.setRootValueSeparator(null);
+            return export(from,
+                          to,
+                          active,
+                          values ->
+                          {
+                              generator.writeStartObject();
+                              for (int i = 0; i < COLUMNS.length; i++)
+                              {
+                                  generator.writeFieldName(COLUMNS[i]);
+                                  writeValue(generator,
+                                             values[i]);
+                              }
+                              generator.writeEndObject();
+                              generator.writeRaw('\n');
+                          });
+        }
+    }
+
+    @Override
+    public long exportCsv(
+            LocalDate from,
+            LocalDate to,
+            Boolean active,
+            OutputStream out)
+            throws
+            IOException
+    {
+        CsvSchema.Builder schema = CsvSchema.builder()
+                .setUseHeader(true);
+        for (String column : COLUMNS)
+        {
+            schema.addColumn(column);
+        }
+        try (SequenceWriter writer = csvMapper.writer(schema.build())
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValues(out))
+        {
+            return export(from,
+                          to,
+                          active,
+                          writer::write);
+        }
+    }
+
+    /**
+     * Reads the matching contracts in order and hands each one to the writer as soon as it is read
+     */
+    private long export(
+            LocalDate from,
+            LocalDate to,
+            Boolean active,
+            RowWriter writer)
+            throws
+            IOException
+    {
+        StringBuilder sql = new StringBuilder(CONTRACT_SQL);
+        List<Object> args = new ArrayList<>();
+        String where = " WHERE ";
+        if (from != null)
+        {
+            sql.append(where)
+                    .append("c.raw_contractstartdate >= ?");
+            args.add(Timestamp.valueOf(from.atStartOfDay()));
+            where = " AND ";
+        }
+        if (to != null)
+        {
+            sql.append(where)
+                    .append("c.raw_contractstartdate < ?");
+            args.add(Timestamp.valueOf(to.plusDays(1)
+                                               .atStartOfDay()));
+            where = " AND ";
+        }
+        if (active != null)
+        {
+            sql.append(where)
+                    .append("c.is_active = ?");
+            args.add(active);
+        }
+        sql.append(" ORDER BY c.contractid");
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+
+        long[] count = {0};
+        try
+        {
+            jdbcTemplate.query(sql.toString(),
+                               rs ->
+                               {
+                                   try
+                                   {
+                                       writer.write(values(rs));
+                                   } catch (IOException e)
+                                   {
+                                       throw new UncheckedIOException(e);
+                                   }
+                                   count[0]++;
+                               },
+                               args.toArray());
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    private static Object[] values(ResultSet rs)
+            throws
+            SQLException
+    {
+        return new Object[]{rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getLong(4), rs.getLong(5), rs.getString(6), rs.getInt(7), Money.toDollars(rs.getLong(8)), rs.getBoolean(9), rs.getBoolean(10), rs.getBoolean(11), rs.getBoolean(12), rs.getBoolean(13), instant(rs.getTimestamp(14)), instant(rs.getTimestamp(15))};
+    }
+
+    /**
+     * Writes one value of a row. Much cheaper than writeObject, which looks up a serializer for every value.
+     */
+    private static void writeValue(
+            JsonGenerator generator,
+            Object value)
+            throws
+            IOException
+    {
+        if (value == null)
+        {
+            generator.writeNull();
+        } else if (value instanceof String)
+        {
+            generator.writeString((String) value);
+        } else if (value instanceof Long)
+        {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Integer)
+        {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Float)
+        {
+            generator.writeNumber((Float) value);
+        } else
+        {
+            generator.writeBoolean((Boolean) value);
+        }
+    }
+
+    private static String instant(Timestamp timestamp)
+    {
+        return timestamp == null ? null : DateTimeFormatter.ISO_INSTANT.format(timestamp.toInstant());
+    }
+
+    /**
+     * Writes one exported row, given its values in the order of COLUMNS
+     */
+    @FunctionalInterface
+    private interface RowWriter
+    {
+        void write(Object[] values)
+                throws
+                IOException;
+    }
+}
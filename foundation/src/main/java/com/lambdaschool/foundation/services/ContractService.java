@@ -2,8 +2,14 @@ package com.lambdaschool.foundation.services;
 
 
 import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.ContractPage;
+import com.lambdaschool.foundation.models.LenderDashboard;
+import com.lambdaschool.foundation.models.Quote;
 import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.views.Revision;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface ContractService {
@@ -15,6 +21,69 @@ public interface ContractService {
      */
     List<Contract> findAll();
 
+    /**
+     * Returns the active contracts running at the given time, soonest ending first
+     *
+     * @param at   the time (Instant) the contracts are running at
+     * @param size the most contracts (int) to return
+     * @return List of Contracts. If no contracts, empty list.
+     */
+    List<Contract> findActiveAt(Instant at, int size);
+
+    /**
+     * Returns the active contracts ending from now until the given number of days from now, soonest ending first
+     *
+     * @param days the number of days (int) to look ahead
+     * @param size the most contracts (int) to return
+     * @return List of Contracts. If no contracts, empty list.
+     */
+    List<Contract> findEndingWithin(int days, int size);
+
+    /**
+     * Returns the contracts started from one time up to another, earliest first
+     *
+     * @param from the earliest start (Instant)
+     * @param to   the start (Instant) the contracts must start before
+     * @param size the most contracts (int) to return
+     * @return List of Contracts. If no contracts, empty list.
+     */
+    List<Contract> findStartedBetween(Instant from, Instant to, int size);
+
+    /**
+     * Returns one page of the contracts of a user, newest first, as summaries rather than whole contracts
+     *
+     * @param username the user (String) whose contracts you seek
+     * @param as       rentee for the contracts the user rents, lender for the contracts on items the user lends
+     * @param itemid   only contracts on this item. Null for any item
+     * @param active   only active or only inactive contracts. Null for both
+     * @param cursor   the next cursor from the previous page. Null for the first page
+     * @param size     the most contracts (int) on the page
+     * @return A page of contract summaries with the cursor for the next page. If no contracts, an empty page.
+     * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException if as is not rentee or lender
+     */
+    ContractPage search(String username, String as, Long itemid, Boolean active, Long cursor, int size);
+
+    /**
+     * Returns the dashboard of a lender, read from the running totals rather than from their items and contracts
+     *
+     * @param username the user (String) lending the items
+     * @return The totals of the lender and their items earning the most. All zero if they lend nothing.
+     * @throws com.lambdaschool.foundation.exceptions.ResourceNotFoundException if the user does not exist
+     */
+    LenderDashboard dashboard(String username);
+
+    /**
+     * Opens a stream of the changes to the contracts a user rents or lends, as Server-Sent Events
+     *
+     * @param username   the user (String) watching their contracts
+     * @param contractid only changes to this contract, which the user must rent or lend. Null for all their contracts
+     * @return the stream, kept open until the client goes away or contracts.stream.timeout passes
+     * @throws com.lambdaschool.foundation.exceptions.ResourceNotFoundException if the user or the contract does not
+     *                                                                          exist, or the user is not on the contract
+     * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException    if too many streams are open
+     */
+    SseEmitter stream(String username, Long contractid);
+
     /**
      * Returns the contract with the given primary key.
      *
@@ -23,6 +92,15 @@ public interface ContractService {
      */
     Contract findContractById(long id);
 
+    /**
+     * Returns the last change and row count of the contract with the given primary key and the rows shown with it,
+     * without reading the contract. Used to answer conditional requests.
+     *
+     * @param id The primary key (long) of the contract you seek.
+     * @return The last modified date and row count of the contract or throws an exception if not found.
+     */
+    Revision findContractRevision(long id);
+
     /**
      * Deletes the contract record the provided primary key
      *
@@ -40,16 +118,52 @@ public interface ContractService {
      */
     Contract save(Contract contract);
 
+    /**
+     * Same as save(contract), except an existing contract is only replaced if it is still at the expected version.
+     * If another change to the contract slips in while it is being replaced, the replacement is tried again.
+     *
+     * @param contract        the contract object to be saved
+     * @param expectedVersion the version the caller last saw the contract at, null to replace whatever version is current
+     * @return the saved contract object including any automatically generated fields
+     * @throws com.lambdaschool.foundation.exceptions.PreconditionFailedException if the contract is no longer at expectedVersion
+     */
+    Contract save(Contract contract, Long expectedVersion);
+
     /**
      * Updates the provided fields in the contract record referenced by the primary key.
      * <p>
      *
-     * @param contract just the contract fields to be updated.
-     * @param id   The primary key (long) of the contract to update
-     * @param user   The user making the update
+     * If another change to the contract slips in while it is being updated, the update is tried again.
+     *
+     * @param contract        just the contract fields to be updated.
+     * @param id              The primary key (long) of the contract to update
+     * @param user            The user making the update
+     * @param expectedVersion the version the caller last saw the contract at, null to update whatever version is current
      * @return the complete contract object that got updated
+     * @throws com.lambdaschool.foundation.exceptions.PreconditionFailedException if the contract is no longer at expectedVersion
+     */
+    Contract update(Contract contract, long id, User user, Long expectedVersion);
+
+    /**
+     * Records a change of mind on the contract by the given user. The rentee withdraws their acceptance and completion,
+     * the lender flips theirs. If another change to the contract slips in at the same time, the change is tried again.
+     *
+     * @param id              The primary key (long) of the contract
+     * @param user            The user changing their mind, the rentee or the lender of the contract
+     * @param expectedVersion the version the caller last saw the contract at, null for whatever version is current
+     * @return the complete contract object that got updated
+     * @throws com.lambdaschool.foundation.exceptions.PreconditionFailedException if the contract is no longer at expectedVersion
+     */
+    Contract agree(long id, User user, Long expectedVersion);
+
+    /**
+     * Prices renting each item for its length at the current rate of the item, without making or changing anything.
+     *
+     * @param quotes the items and lengths to price
+     * @return the same quotes with the rate and fee filled in
+     * @throws com.lambdaschool.foundation.exceptions.ResourceNotFoundException if an item does not exist
      */
-    Contract update(Contract contract, long id, User user);
+    List<Quote> quote(List<Quote> quotes);
 
 }
 
@@ -1,22 +1,31 @@
 package com.lambdaschool.foundation.services;
 
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
 import com.lambdaschool.foundation.handlers.HelperFunctions;
 import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.ContractPage;
+import com.lambdaschool.foundation.models.ContractSummary;
 import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.LenderDashboard;
+import com.lambdaschool.foundation.models.Quote;
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.repository.ContractRepository;
+import com.lambdaschool.foundation.repository.ItemRepository;
 import com.lambdaschool.foundation.repository.UserRepository;
+import com.lambdaschool.foundation.views.ItemTerms;
+import com.lambdaschool.foundation.views.Revision;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 
@@ -45,7 +54,7 @@ public class ContractServiceImpl
      * Connects this service to the Item table.
      */
     @Autowired
-    private UserRepository itemrepos;
+    private ItemRepository itemrepos;
 
 
     /**
@@ -54,6 +63,72 @@ public class ContractServiceImpl
     @Autowired
     private HelperFunctions helper;
 
+    /**
+     * Connects this service to the bookings of each item
+     */
+    @Autowired
+    private ItemAvailability availability;
+
+    /**
+     * Connects this service to the expiry of contracts past their end date
+     */
+    @Autowired
+    private ContractExpiry expiry;
+
+    /**
+     * Runs changes to existing contracts again if they lose a race with another change
+     */
+    @Autowired
+    private OptimisticRetry retry;
+
+    /**
+     * Connects this service to the fees charged for renting items
+     */
+    @Autowired
+    private PricingEngine pricing;
+
+    /**
+     * Connects this service to the cached user ids, so a search does not have to read the user
+     */
+    @Autowired
+    private UserDetailsCache userCache;
+
+    /**
+     * Connects this service to the running totals of each lender and item
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Connects this service to the outbox of changes sent to the subscribers
+     */
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Connects this service to the open streams of changes to contracts
+     */
+    @Autowired
+    private ContractEventStream eventStream;
+
+    /**
+     * Connects this service to the index of where each item is, which also knows whether each item is available
+     */
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    /**
+     * Connects this service to the counts of items by type, availability and price, as ending and starting contracts change availability
+     */
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    /**
+     * Connects this service to the counts of views and rentals of each item
+     */
+    @Autowired
+    private ItemCounters counters;
+
     public Contract findContractById(long id)
             throws
             ResourceNotFoundException
@@ -62,6 +137,19 @@ public class ContractServiceImpl
                 .orElseThrow(() -> new ResourceNotFoundException("Contract id " + id + " not found!"));
     }
 
+    @Override
+    public Revision findContractRevision(long id)
+            throws
+            ResourceNotFoundException
+    {
+        Revision revision = contractrepos.findRevision(id);
+        if (revision == null)
+        {
+            throw new ResourceNotFoundException("Contract id " + id + " not found!");
+        }
+        return revision;
+    }
+
     @Override
     public List<Contract> findAll()
     {
@@ -76,127 +164,300 @@ public class ContractServiceImpl
         return list;
     }
 
-    @Transactional
     @Override
-    public void delete(long id)
+    public List<Contract> findActiveAt(
+            Instant at,
+            int size)
     {
-        contractrepos.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Contract id " + id + " not found!"));
-        contractrepos.deleteById(id);
+        return contractrepos.findActiveAt(at,
+                                          PageRequest.of(0,
+                                                         size));
     }
 
-    @Transactional
     @Override
-    public Contract save(Contract contract)
+    public List<Contract> findEndingWithin(
+            int days,
+            int size)
+    {
+        if (days < 0)
+        {
+            throw new ResourceFoundException("Days must not be negative");
+        }
+        Instant now = Instant.now();
+        return contractrepos.findActiveEndingBetween(now,
+                                                     now.plus(days,
+                                                              ChronoUnit.DAYS),
+                                                     PageRequest.of(0,
+                                                                    size));
+    }
+
+    @Override
+    public List<Contract> findStartedBetween(
+            Instant from,
+            Instant to,
+            int size)
     {
-        Contract newContract = new Contract();
+        if (!from.isBefore(to))
+        {
+            throw new ResourceFoundException("From must be before to");
+        }
+        return contractrepos.findStartedBetween(from,
+                                                to,
+                                                PageRequest.of(0,
+                                                               size));
+    }
 
-        if (contract.getContractid() != 0) {
-            contractrepos.findById(contract.getContractid())
-                    .orElseThrow(() -> new ResourceNotFoundException("Contract id " + contract.getContractid() + " not found"));
-            newContract.setContractid(contract.getContractid());
+    @Override
+    public ContractPage search(
+            String username,
+            String as,
+            Long itemid,
+            Boolean active,
+            Long cursor,
+            int size)
+    {
+        long userid = findUserid(username);
+        Long renteeid = null;
+        Long lenderid = null;
+        if ("rentee".equalsIgnoreCase(as))
+        {
+            renteeid = userid;
+        } else if ("lender".equalsIgnoreCase(as))
+        {
+            lenderid = userid;
+        } else
+        {
+            throw new ResourceFoundException("Search as must be rentee or lender");
         }
 
-        newContract.setContractlength(contract.getContractlength());
-        newContract.setRentee(userrepos.findByUsername(contract.getRentee().getUsername()));
-        newContract.setItem(contract.getItem());
-        //really annoying math here to make sure we only have 2 decimal places on the itemrate * contractlength
-        float fee = (float)contract.getContractlength() * contract.getItem().getItemrate();
-        BigDecimal roundedFee = new BigDecimal(fee).setScale(2, RoundingMode.HALF_UP);
-        newContract.setContractfee(roundedFee.floatValue());
-
-        //unless the lender and the rentee have both agreed that the contract is complete set active true
-        newContract.setActive(true);
-        //
-        System.out.println("contract:");
-        System.out.println("rentee complete = " +  contract.isRenteecomplete() + "lender complete = " + contract.isLendercomplete());
-        System.out.println("newcontract:");
-        System.out.println("rentee complete = " +  newContract.isRenteecomplete() + "lender complete = " + newContract.isLendercomplete());
-        //
-        if(contract.isRenteecomplete() && contract.isLendercomplete()){newContract.setActive(false);}
-        //
-        System.out.println("contract:");
-        System.out.println("rentee accept = " +  contract.isRenteeaccept() + "lender accept = " + contract.isLenderaccept());
-        System.out.println("newcontract:");
-        System.out.println("rentee accept = " +  newContract.isRenteeaccept() + "lender accept = " + newContract.isLenderaccept());
-        //
-        if(contract.isLenderaccept() && contract.isRenteeaccept()){
-            System.out.println("we are in!");
-            //build dates
-            Date machineStart = new Date();
-            Date machineEnd = Date.from(machineStart.toInstant().plusSeconds(86400 * contract.getContractlength())); //just adding the contract length
-            SimpleDateFormat formatter = new SimpleDateFormat("EEEEE MMMMM yyyy hh:mm a z");
-
-            //set raw dates
-            newContract.setRaw_contractstartdate(machineStart);
-            newContract.setRaw_contractenddate(machineEnd);
-
-            //format readable dates
-            newContract.setContractenddate(formatter.format(machineEnd));
-            newContract.setContractstartdate(formatter.format(machineStart));
+        // ask for one more contract than the page size. if it comes back, there is a next page.
+        List<ContractSummary> list = contractrepos.search(renteeid,
+                                                          lenderid,
+                                                          itemid,
+                                                          active,
+                                                          cursor,
+                                                          size + 1);
+        Long next = null;
+        if (list.size() > size)
+        {
+            list = list.subList(0,
+                                size);
+            next = list.get(size - 1)
+                    .getContractid();
         }
+        return new ContractPage(list,
+                                size,
+                                next);
+    }
 
+    @Override
+    public LenderDashboard dashboard(String username)
+    {
+        return earnings.dashboard(findUserid(username));
+    }
 
-        //     use this if contract has children
-        /*
-        newCustomer.getOrders().clear();
-        for (Order o : customer.getOrders()) {
-            Order newOrder = new Order(
-                    o.getOrdamount(),
-                    o.getAdvanceamount(),
-                    o.getOrderdescription(),
-                    newCustomer);
-            newCustomer.getOrders().add(newOrder);
+    // no transaction, so each lookup gives its connection back before the stream is opened and held open
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public SseEmitter stream(
+            String username,
+            Long contractid)
+    {
+        long userid = findUserid(username);
+        if (contractid != null && !contractrepos.existsParty(contractid,
+                                                            userid))
+        {
+            // the same answer as a contract that does not exist, so the ids of others' contracts are not given away
+            throw new ResourceNotFoundException("Contract id " + contractid + " not found!");
         }
-        */
+        return eventStream.open(userid,
+                                contractid);
+    }
 
-        return contractrepos.save(newContract);
+    /**
+     * The primary key of the named user, from the user cache when it is there
+     */
+    private long findUserid(String username)
+    {
+        UserDetailsCache.CachedUser cachedUser = userCache.get(username);
+        if (cachedUser != null)
+        {
+            return cachedUser.getUserid();
+        }
+        User user = userrepos.findByUsername(username.toLowerCase());
+        if (user == null)
+        {
+            throw new ResourceNotFoundException("User name " + username + " not found!");
+        }
+        return user.getUserid();
     }
 
     @Transactional
     @Override
+    public void delete(long id)
+    {
+        Contract contract = contractrepos.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Contract id " + id + " not found!"));
+        LenderEarnings.Contribution before = LenderEarnings.Contribution.of(contract);
+        contractrepos.deleteById(id);
+        earnings.contractChanged(before,
+                                 LenderEarnings.Contribution.NONE);
+        outbox.contractDeleted(contract);
+        availability.releaseAfterCommit(contract.getItem()
+                                                .getItemid(),
+                                        id);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public Contract save(Contract contract)
+    {
+        return save(contract,
+                    null);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public Contract save(
+            Contract contract,
+            Long expectedVersion)
+    {
+        return retry.run(() ->
+                         {
+                             Contract newContract = new Contract();
+                             Item previousItem = null;
+                             LenderEarnings.Contribution before = LenderEarnings.Contribution.NONE;
+                             String beforeState = null;
+
+                             if (contract.getContractid() != 0) {
+                                 Contract currentContract = contractrepos.findById(contract.getContractid())
+                                         .orElseThrow(() -> new ResourceNotFoundException("Contract id " + contract.getContractid() + " not found"));
+                                 helper.checkVersion("Contract id " + contract.getContractid(),
+                                                     currentContract.getVersion(),
+                                                     expectedVersion);
+                                 previousItem = currentContract.getItem();
+                                 before = LenderEarnings.Contribution.of(currentContract);
+                                 beforeState = Outbox.stateOf(currentContract);
+                                 newContract.setContractid(contract.getContractid());
+                                 newContract.setVersion(currentContract.getVersion());
+                             }
+
+                             newContract.setContractlength(contract.getContractlength());
+                             newContract.setRentee(userrepos.findByUsername(contract.getRentee().getUsername()));
+                             newContract.setItem(contract.getItem());
+                             ItemTerms terms = itemrepos.findTerms(contract.getItem()
+                                                                           .getItemid());
+                             if (terms == null)
+                             {
+                                 throw new ResourceNotFoundException("Item id " + contract.getItem()
+                                         .getItemid() + " not found");
+                             }
+                             newContract.setLenderid(terms.getLenderid());
+                             // the fee is charged at the rate on file, never at one sent in with the contract
+                             newContract.setContractfeecents(pricing.fee(terms.getItemratecents(),
+                                                                         contract.getContractlength()));
+
+                             //unless the lender and the rentee have both agreed that the contract is complete set active true
+                             newContract.setActive(true);
+                             //
+                             System.out.println("contract:");
+                             System.out.println("rentee complete = " +  contract.isRenteecomplete() + "lender complete = " + contract.isLendercomplete());
+                             System.out.println("newcontract:");
+                             System.out.println("rentee complete = " +  newContract.isRenteecomplete() + "lender complete = " + newContract.isLendercomplete());
+                             //
+                             if(contract.isRenteecomplete() && contract.isLendercomplete()){newContract.setActive(false);}
+                             //
+                             System.out.println("contract:");
+                             System.out.println("rentee accept = " +  contract.isRenteeaccept() + "lender accept = " + contract.isLenderaccept());
+                             System.out.println("newcontract:");
+                             System.out.println("rentee accept = " +  newContract.isRenteeaccept() + "lender accept = " + newContract.isLenderaccept());
+                             //
+                             if(contract.isLenderaccept() && contract.isRenteeaccept()){
+                                 System.out.println("we are in!");
+                                 setDates(newContract);
+                             }
+
+
+                             //     use this if contract has children
+                             /*
+                             newCustomer.getOrders().clear();
+                             for (Order o : customer.getOrders()) {
+                                 Order newOrder = new Order(
+                                         o.getOrdamount(),
+                                         o.getAdvanceamount(),
+                                         o.getOrderdescription(),
+                                         newCustomer);
+                                 newCustomer.getOrders().add(newOrder);
+                             }
+                             */
+
+                             newContract = contractrepos.save(newContract);
+                             if (previousItem != null && previousItem.getItemid() != newContract.getItem()
+                                     .getItemid())
+                             {
+                                 availability.releaseAfterCommit(previousItem.getItemid(),
+                                                                 newContract.getContractid());
+                             }
+                             updateBooking(newContract);
+                             earnings.contractChanged(before,
+                                                      LenderEarnings.Contribution.of(newContract));
+                             outbox.contractChanged(beforeState,
+                                                    newContract);
+                             return newContract;
+                         });
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
     public Contract update(
             Contract contract,
             long id,
-            User currentuser)
+            User currentuser,
+            Long expectedVersion)
     {
-        //create blank contract
-        Contract updatecontract = contract;
-
-        //set blank contract to requested contract
-        updatecontract = contractrepos.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Contract id " + contract.getContractid() + " not found"));
-
         //check if currentuser is authorized
         if (helper.isAuthorizedToMakeChange(currentuser.getUsername()))
         {
-            //set contract id
-            updatecontract.setContractid(id);
-
-            //check if currentuser is lender
-            if(currentuser == updatecontract.getItem().getLender()){
-
-                //update individual items
-                if (contract.isLenderaccept()){ updatecontract.setLenderaccept(contract.isLenderaccept()); }
-                if (contract.isLendercomplete()){ updatecontract.setLendercomplete(contract.isLendercomplete()); }
-                //if (contract.getContractlength() != updatecontract.getContractlength()){  }
-
-                return contractrepos.save(updatecontract);
-
-                //check if currentuser is rentee
-            }else if(currentuser == updatecontract.getRentee()){
-
-                //update individual items
-                if (contract.isRenteeaccept()){ updatecontract.setRenteeaccept(contract.isRenteeaccept()); }
-                if (contract.isRenteecomplete()){ updatecontract.setRenteecomplete(contract.isRenteecomplete()); }
-
-                return contractrepos.save(updatecontract);
-
-                //if (contract.getContractlength() != updatecontract.getContractlength()){  }
-            }else{ throw new ResourceNotFoundException("HEY! What are you doing in this section of the databa.. WAIT! GET BACK HERE! YOU CANT RUN FROM ME!"); }
-
-
-
+            return retry.run(() ->
+                             {
+                                 //set blank contract to requested contract
+                                 Contract updatecontract = contractrepos.findById(id)
+                                         .orElseThrow(() -> new ResourceNotFoundException("Contract id " + id + " not found"));
+                                 helper.checkVersion("Contract id " + id,
+                                                     updatecontract.getVersion(),
+                                                     expectedVersion);
+                                 LenderEarnings.Contribution before = LenderEarnings.Contribution.of(updatecontract);
+                                 String beforeState = Outbox.stateOf(updatecontract);
+
+                                 //set contract id
+                                 updatecontract.setContractid(id);
+
+                                 //check if currentuser is lender
+                                 if (currentuser.getUserid() == updatecontract.getItem().getLender().getUserid()){
+
+                                     //update individual items
+                                     if (contract.isLenderaccept()){ updatecontract.setLenderaccept(contract.isLenderaccept()); }
+                                     if (contract.isLendercomplete()){ updatecontract.setLendercomplete(contract.isLendercomplete()); }
+                                     //if (contract.getContractlength() != updatecontract.getContractlength()){  }
+
+                                     //check if currentuser is rentee
+                                 }else if (currentuser.getUserid() == updatecontract.getRentee().getUserid()){
+
+                                     //update individual items
+                                     if (contract.isRenteeaccept()){ updatecontract.setRenteeaccept(contract.isRenteeaccept()); }
+                                     if (contract.isRenteecomplete()){ updatecontract.setRenteecomplete(contract.isRenteecomplete()); }
+
+                                     //if (contract.getContractlength() != updatecontract.getContractlength()){  }
+                                 }else{ throw new ResourceNotFoundException("HEY! What are you doing in this section of the databa.. WAIT! GET BACK HERE! YOU CANT RUN FROM ME!"); }
+
+                                 settle(updatecontract);
+                                 Contract saved = contractrepos.save(updatecontract);
+                                 earnings.contractChanged(before,
+                                                          LenderEarnings.Contribution.of(saved));
+                                 outbox.contractChanged(beforeState,
+                                                        saved);
+                                 return saved;
+                             });
         } else
         {
             {
@@ -207,9 +468,112 @@ public class ContractServiceImpl
         }
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public Contract agree(
+            long id,
+            User currentuser,
+            Long expectedVersion)
+    {
+        return retry.run(() ->
+                         {
+                             Contract contract = contractrepos.findById(id)
+                                     .orElseThrow(() -> new ResourceNotFoundException("Contract id " + id + " not found"));
+                             helper.checkVersion("Contract id " + id,
+                                                 contract.getVersion(),
+                                                 expectedVersion);
+                             LenderEarnings.Contribution before = LenderEarnings.Contribution.of(contract);
+                             String beforeState = Outbox.stateOf(contract);
+
+                             if (currentuser.getUserid() == contract.getRentee().getUserid())
+                             {
+                                 contract.setRenteeaccept(false);
+                                 contract.setRenteecomplete(false);
+                             } else if (currentuser.getUserid() == contract.getItem().getLender().getUserid())
+                             {
+                                 contract.setLenderaccept(!contract.isLenderaccept());
+                                 contract.setLendercomplete(!contract.isLendercomplete());
+                             } else
+                             {
+                                 throw new ResourceNotFoundException("You must be the lender or rentee to change this value");
+                             }
+
+                             settle(contract);
+                             Contract saved = contractrepos.save(contract);
+                             earnings.contractChanged(before,
+                                                      LenderEarnings.Contribution.of(saved));
+                             outbox.contractChanged(beforeState,
+                                                    saved);
+                             return saved;
+                         });
+    }
 
+    /**
+     * Starts the contract now and sets its end from the contract length
+     */
+    private void setDates(Contract contract)
+    {
+        Instant start = Instant.now();
+        contract.setRaw_contractstartdate(start);
+        contract.setRaw_contractenddate(start.plus(contract.getContractlength(),
+                                                   ChronoUnit.DAYS));
+    }
 
+    /**
+     * Starts the contract once both sides accept it and ends it once both sides complete it.
+     * The item is not available while the contract runs, and is only booked or freed as the contract starts or ends.
+     */
+    private void settle(Contract contract)
+    {
+        if (contract.isActive() && contract.isRenteecomplete() && contract.isLendercomplete())
+        {
+            contract.setActive(false);
+            contract.getItem()
+                    .setIsavailable(true);
+            updateBooking(contract);
+        } else if (contract.isActive() && contract.isRenteeaccept() && contract.isLenderaccept() && contract.getRaw_contractstartdate() == null)
+        {
+            setDates(contract);
+            contract.getItem()
+                    .setIsavailable(false);
+            counters.rentedAfterCommit(contract.getItem()
+                                               .getItemid());
+            updateBooking(contract);
+        }
+        locationIndex.indexAfterCommit(contract.getItem());
+        facetCounts.indexAfterCommit(contract.getItem());
+    }
 
+    /**
+     * Books the item for the dates of the contract while the contract is active, and frees it otherwise.
+     * An active contract is also queued to be ended once its end date passes.
+     *
+     * @throws ResourceFoundException if the item is already booked for part of the dates of the contract
+     */
+    private void updateBooking(Contract contract)
+    {
+        long itemid = contract.getItem()
+                .getItemid();
+        if (contract.isActive() && contract.getRaw_contractstartdate() != null && contract.getRaw_contractenddate() != null)
+        {
+            availability.book(itemid,
+                              contract.getContractid(),
+                              contract.getRaw_contractstartdate(),
+                              contract.getRaw_contractenddate());
+            expiry.scheduleAfterCommit(contract.getContractid(),
+                                       itemid,
+                                       contract.getRaw_contractenddate());
+        } else
+        {
+            availability.releaseAfterCommit(itemid,
+                                            contract.getContractid());
+        }
+    }
 
-
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public List<Quote> quote(List<Quote> quotes)
+    {
+        return pricing.quote(quotes);
+    }
 }
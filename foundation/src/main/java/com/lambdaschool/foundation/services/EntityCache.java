@@ -0,0 +1,225 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.config.HeapRegionFactory;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Evicts entities from the second level cache of Hibernate after they are changed with plain SQL, which Hibernate
+ * does not see, and publishes the hits, misses and evictions of each cache region as metrics.
+ * <p>
+ * Changes made through JPA keep the cache current on their own, as do JPQL and native updates, though a native update
+ * empties every region as Hibernate cannot tell which tables it changed. The one exception is the cached lists of a
+ * user: an item, email or role added or removed from its own side leaves the list of the user as it was, so the
+ * services making those changes evict the list here.
+ */
+@Component
+public class EntityCache
+        implements MeterBinder
+{
+    private static final String LENDER_ITEMS = User.class.getName() + ".items";
+
+    private static final String USER_EMAILS = User.class.getName() + ".useremails";
+
+    private static final String USER_ROLES = User.class.getName() + ".roles";
+
+    /**
+     * Connects the cache to the entity manager, whose session factory holds the cache
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Connects the cache to its regions, for the metrics
+     */
+    @Autowired
+    private HeapRegionFactory regionFactory;
+
+    private Cache cache()
+    {
+        return entityManagerFactory.unwrap(SessionFactory.class)
+                .getCache();
+    }
+
+    /**
+     * Evicts the items from the cache. Inside of a transaction they are evicted again once it completes, so a read
+     * in between cannot cache the rows from before the change.
+     *
+     * @param itemids the primary keys of the items changed
+     */
+    public void evictItems(Collection<Long> itemids)
+    {
+        if (itemids.isEmpty())
+        {
+            return;
+        }
+        Collection<Long> ids = new ArrayList<>(itemids);
+        afterCompletion(() ->
+                        {
+                            Cache cache = cache();
+                            for (long id : ids)
+                            {
+                                cache.evictEntityData(Item.class,
+                                                      id);
+                            }
+                        });
+    }
+
+    /**
+     * Evicts the list of items of the lenders from the cache, for items added or removed with plain SQL or on their
+     * own. Inside of a transaction they are evicted again once it completes.
+     *
+     * @param lenderids the primary keys of the users whose items changed
+     */
+    public void evictLenderItems(Collection<Long> lenderids)
+    {
+        evictLists(LENDER_ITEMS,
+                   lenderids);
+    }
+
+    /**
+     * Evicts the list of emails of the users from the cache, for emails added or removed on their own. Inside of a
+     * transaction they are evicted again once it completes.
+     *
+     * @param userids the primary keys of the users whose emails changed
+     */
+    public void evictUserEmails(Collection<Long> userids)
+    {
+        evictLists(USER_EMAILS,
+                   userids);
+    }
+
+    /**
+     * Evicts the list of roles of the users from the cache, for roles given or taken away on their own. Inside of a
+     * transaction they are evicted again once it completes.
+     *
+     * @param userids the primary keys of the users whose roles changed
+     */
+    public void evictUserRoles(Collection<Long> userids)
+    {
+        evictLists(USER_ROLES,
+                   userids);
+    }
+
+    private void evictLists(
+            String collection,
+            Collection<Long> ownerids)
+    {
+        if (ownerids.isEmpty())
+        {
+            return;
+        }
+        Collection<Long> ids = new ArrayList<>(ownerids);
+        afterCompletion(() ->
+                        {
+                            Cache cache = cache();
+                            for (long id : ids)
+                            {
+                                cache.evictCollectionData(collection,
+                                                          id);
+                            }
+                        });
+    }
+
+    /**
+     * Empties every region of the cache, for changes to many rows with plain SQL
+     */
+    public void evictAll()
+    {
+        afterCompletion(() -> cache().evictAll());
+    }
+
+    private void afterCompletion(Runnable evict)
+    {
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    evict.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Publishes the counts of each region, tagged with the region name. Hits over hits plus misses is the hit rate.
+     *
+     * @param registry the metrics registry maintained by Spring
+     */
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        // the regions of cached queries are built when first used, the rest with the entity manager
+        regionFactory.setListener((name, storage) -> bindRegion(registry,
+                                                                 name,
+                                                                 storage));
+        for (Map.Entry<String, HeapRegionFactory.HeapStorageAccess> region : regionFactory.getRegions()
+                .entrySet())
+        {
+            bindRegion(registry,
+                       region.getKey(),
+                       region.getValue());
+        }
+    }
+
+    private static void bindRegion(
+            MeterRegistry registry,
+            String name,
+            HeapRegionFactory.HeapStorageAccess storage)
+    {
+        FunctionCounter.builder("entities.cache.hits",
+                                storage,
+                                HeapRegionFactory.HeapStorageAccess::getHits)
+                .description("second level cache lookups found in the region")
+                .tag("region",
+                     name)
+                .register(registry);
+        FunctionCounter.builder("entities.cache.misses",
+                                storage,
+                                HeapRegionFactory.HeapStorageAccess::getMisses)
+                .description("second level cache lookups not found in the region")
+                .tag("region",
+                     name)
+                .register(registry);
+        FunctionCounter.builder("entities.cache.puts",
+                                storage,
+                                HeapRegionFactory.HeapStorageAccess::getPuts)
+                .description("entries written to the region")
+                .tag("region",
+                     name)
+                .register(registry);
+        FunctionCounter.builder("entities.cache.evictions",
+                                storage,
+                                HeapRegionFactory.HeapStorageAccess::getEvictions)
+                .description("entries dropped from the region to make room or as they were too old")
+                .tag("region",
+                     name)
+                .register(registry);
+        Gauge.builder("entities.cache.size",
+                      storage,
+                      HeapRegionFactory.HeapStorageAccess::size)
+                .description("entries held in the region")
+                .tag("region",
+                     name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,639 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps uploaded item images on local disk, each under a name made from the SHA-256 of its bytes, and the thumbnails
+ * made from them.
+ * <p>
+ * An upload is streamed to a temporary file under images.dir while it is hashed, checked to be a JPEG, PNG or GIF
+ * image of at most images.maxbytes bytes and images.maxpixels pixels, then moved to ab/cd/abcd...ef.jpg. The same
+ * image uploaded twice is kept once. Since the bytes under a name never change, a name can be cached forever.
+ * <p>
+ * Thumbnails fitting inside each of images.thumbnail.sizes pixels square are made by images.thumbnail.threads threads
+ * of this class, with at most images.thumbnail.queue images waiting. When the queue is full the thumbnails are made
+ * the first time one is asked for instead, and the full image is served until then.
+ */
+@Component
+public class ImageStore
+        implements MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+
+    /**
+     * A stored image, the hex SHA-256 of its bytes and the extension of its format
+     */
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif)");
+
+    /**
+     * The directory the images are kept under
+     */
+    @Value("${images.dir:images}")
+    private String directory;
+
+    /**
+     * The largest upload, in bytes
+     */
+    @Value("${images.maxbytes:10485760}")
+    private long maxBytes;
+
+    /**
+     * The most pixels an uploaded image may have, so a small file cannot take a great deal of memory to read
+     */
+    @Value("${images.maxpixels:40000000}")
+    private long maxPixels;
+
+    /**
+     * The width and height, in pixels, of the square each thumbnail fits inside
+     */
+    @Value("${images.thumbnail.sizes:150,300,600}")
+    private int[] sizes;
+
+    /**
+     * The number of threads making thumbnails
+     */
+    @Value("${images.thumbnail.threads:2}")
+    private int threadCount;
+
+    /**
+     * The most images waiting to have their thumbnails made
+     */
+    @Value("${images.thumbnail.queue:100}")
+    private int queueSize;
+
+    /**
+     * The images queued or being made into thumbnails, so one is not queued twice
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile ThreadPoolExecutor thumbnailer;
+
+    private final LongAdder stored = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder thumbnails = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * An image found on disk, and how it may be cached
+     */
+    public static final class StoredImage
+    {
+        private final Path path;
+
+        private final String contentType;
+
+        private final String eTag;
+
+        private final boolean immutable;
+
+        StoredImage(
+                Path path,
+                String contentType,
+                String eTag,
+                boolean immutable)
+        {
+            this.path = path;
+            this.contentType = contentType;
+            this.eTag = eTag;
+            this.immutable = immutable;
+        }
+
+        public Path getPath()
+        {
+            return path;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        /**
+         * The strong ETag of the bytes, made from their hash
+         */
+        public String getETag()
+        {
+            return eTag;
+        }
+
+        /**
+         * False when the full image stands in for a thumbnail not made yet, so it must not be cached for long
+         */
+        public boolean isImmutable()
+        {
+            return immutable;
+        }
+    }
+
+    /**
+     * Writes an uploaded image to disk and queues its thumbnails
+     *
+     * @param body the bytes of the image, read to the end but not closed
+     * @return the name (String) of the stored image, its hash and extension
+     * @throws ResourceFoundException if the upload is too big or not a JPEG, PNG or GIF image
+     */
+    public String store(InputStream body)
+    {
+        Path root = root();
+        Path temp = null;
+        try
+        {
+            Path uploads = Files.createDirectories(root.resolve("tmp"));
+            temp = Files.createTempFile(uploads,
+                                        "upload",
+                                        ".part");
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            long total = 0;
+            try (OutputStream out = Files.newOutputStream(temp))
+            {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = body.read(buffer)) != -1)
+                {
+                    total += read;
+                    if (total > maxBytes)
+                    {
+                        throw new ResourceFoundException("Images may be at most " + maxBytes + " bytes");
+                    }
+                    sha.update(buffer,
+                               0,
+                               read);
+                    out.write(buffer,
+                              0,
+                              read);
+                }
+            }
+            if (total == 0)
+            {
+                throw new ResourceFoundException("The request body must be the image");
+            }
+
+            String name = hex(sha.digest()) + "." + extension(temp);
+            Path target = path(name);
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target))
+            {
+                duplicates.increment();
+            } else
+            {
+                try
+                {
+                    Files.move(temp,
+                               target,
+                               StandardCopyOption.ATOMIC_MOVE);
+                    temp = null;
+                    stored.increment();
+                } catch (FileAlreadyExistsException e)
+                {
+                    // the same image uploaded at the same time
+                    duplicates.increment();
+                }
+            }
+            queueThumbnails(name);
+            return name;
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("Could not store the image",
+                                            e);
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        } finally
+        {
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e)
+                {
+                    logger.warn("Could not delete " + temp,
+                                e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a stored image or one of its thumbnails
+     *
+     * @param name the name (String) of the image, as returned by store
+     * @param size the size (Integer) of the thumbnail wanted, one of images.thumbnail.sizes. Null for the full image
+     * @return the file and how to serve it
+     * @throws ResourceNotFoundException if there is no such image or size
+     */
+    public StoredImage find(
+            String name,
+            Integer size)
+    {
+        if (!NAME.matcher(name)
+                .matches())
+        {
+            throw new ResourceNotFoundException("Image " + name + " not found!");
+        }
+        Path original = path(name);
+        if (!Files.isRegularFile(original))
+        {
+            throw new ResourceNotFoundException("Image " + name + " not found!");
+        }
+        String hash = name.substring(0,
+                                     64);
+        if (size == null)
+        {
+            return new StoredImage(original,
+                                   contentType(extension(name)),
+                                   "\"" + hash + "\"",
+                                   true);
+        }
+        if (!isSize(size))
+        {
+            throw new ResourceNotFoundException("Image size " + size + " not found!");
+        }
+        Path thumbnail = thumbnailPath(name,
+                                       size);
+        if (Files.isRegularFile(thumbnail))
+        {
+            return new StoredImage(thumbnail,
+                                   contentType(thumbnailExtension(name)),
+                                   "\"" + hash + "-" + size + "\"",
+                                   true);
+        }
+        queueThumbnails(name);
+        return new StoredImage(original,
+                               contentType(extension(name)),
+                               "\"" + hash + "\"",
+                               false);
+    }
+
+    private boolean isSize(int size)
+    {
+        for (int s : sizes)
+        {
+            if (s == size)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path root()
+    {
+        return Paths.get(directory)
+                .toAbsolutePath();
+    }
+
+    /**
+     * Images are spread over two levels of directories by the start of their hash, so no directory gets too big
+     */
+    private Path path(String name)
+    {
+        return root().resolve(name.substring(0,
+                                             2))
+                .resolve(name.substring(2,
+                                        4))
+                .resolve(name);
+    }
+
+    private Path thumbnailPath(
+            String name,
+            int size)
+    {
+        return path(name).resolveSibling(name.substring(0,
+                                                        64) + "-" + size + "." + thumbnailExtension(name));
+    }
+
+    private static String extension(String name)
+    {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Thumbnails of photos are JPEG, and of anything else PNG, to keep any transparency
+     */
+    private static String thumbnailExtension(String name)
+    {
+        return "jpg".equals(extension(name)) ? "jpg" : "png";
+    }
+
+    private static String contentType(String extension)
+    {
+        switch (extension)
+        {
+            case "jpg":
+                return "image/jpeg";
+            case "png":
+                return "image/png";
+            default:
+                return "image/gif";
+        }
+    }
+
+    /**
+     * Works out the format of an uploaded image from its header, without reading its pixels
+     */
+    private String extension(Path file)
+            throws
+            IOException
+    {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile()))
+        {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext())
+            {
+                throw new ResourceFoundException("Only JPEG, PNG and GIF images can be uploaded");
+            }
+            ImageReader reader = readers.next();
+            try
+            {
+                String format = reader.getFormatName()
+                        .toLowerCase();
+                String extension;
+                if ("jpeg".equals(format) || "jpg".equals(format))
+                {
+                    extension = "jpg";
+                } else if ("png".equals(format) || "gif".equals(format))
+                {
+                    extension = format;
+                } else
+                {
+                    throw new ResourceFoundException("Only JPEG, PNG and GIF images can be uploaded");
+                }
+                reader.setInput(in);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels)
+                {
+                    throw new ResourceFoundException("Images may have at most " + maxPixels + " pixels");
+                }
+                return extension;
+            } catch (IOException e)
+            {
+                throw new ResourceFoundException("The image could not be read");
+            } finally
+            {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static String hex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xf,
+                                          16))
+                    .append(Character.forDigit(b & 0xf,
+                                               16));
+        }
+        return hex.toString();
+    }
+
+    private void queueThumbnails(String name)
+    {
+        if (!pending.add(name))
+        {
+            return;
+        }
+        try
+        {
+            thumbnailer().execute(() ->
+                                  {
+                                      try
+                                      {
+                                          makeThumbnails(name);
+                                      } catch (IOException | RuntimeException e)
+                                      {
+                                          logger.warn("Could not make the thumbnails of image " + name,
+                                                      e);
+                                      } finally
+                                      {
+                                          pending.remove(name);
+                                      }
+                                  });
+        } catch (RejectedExecutionException e)
+        {
+            // made when a thumbnail is next asked for
+            pending.remove(name);
+            rejected.increment();
+        }
+    }
+
+    private void makeThumbnails(String name)
+            throws
+            IOException
+    {
+        BufferedImage image = null;
+        String extension = thumbnailExtension(name);
+        for (int size : sizes)
+        {
+            Path thumbnail = thumbnailPath(name,
+                                           size);
+            if (Files.exists(thumbnail))
+            {
+                continue;
+            }
+            if (image == null)
+            {
+                image = ImageIO.read(path(name).toFile());
+                if (image == null)
+                {
+                    return;
+                }
+            }
+            Path temp = Files.createTempFile(Files.createDirectories(root().resolve("tmp")),
+                                             "thumbnail",
+                                             ".part");
+            try
+            {
+                ImageIO.write(scale(image,
+                                    size,
+                                    "jpg".equals(extension)),
+                              "jpg".equals(extension) ? "jpeg" : "png",
+                              temp.toFile());
+                Files.move(temp,
+                           thumbnail,
+                           StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+                thumbnails.increment();
+            } finally
+            {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Shrinks the image to fit inside a square, halving it at a time for big reductions so it stays sharp.
+     * Images already small enough are only copied, never enlarged.
+     */
+    private static BufferedImage scale(
+            BufferedImage image,
+            int size,
+            boolean opaque)
+    {
+        double ratio = Math.min(1.0,
+                                (double) size / Math.max(image.getWidth(),
+                                                         image.getHeight()));
+        int width = Math.max(1,
+                             (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1,
+                              (int) Math.round(image.getHeight() * ratio));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do
+        {
+            w = Math.max(width,
+                         w / 2);
+            h = Math.max(height,
+                         h / 2);
+            BufferedImage next = new BufferedImage(w,
+                                                   h,
+                                                   type);
+            Graphics2D g = next.createGraphics();
+            try
+            {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                   RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                                   RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current,
+                            0,
+                            0,
+                            w,
+                            h,
+                            null);
+            } finally
+            {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private ThreadPoolExecutor thumbnailer()
+    {
+        ThreadPoolExecutor executor = thumbnailer;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                if (thumbnailer == null)
+                {
+                    AtomicInteger threads = new AtomicInteger();
+                    thumbnailer = new ThreadPoolExecutor(threadCount,
+                                                         threadCount,
+                                                         0,
+                                                         TimeUnit.MILLISECONDS,
+                                                         new ArrayBlockingQueue<>(queueSize),
+                                                         runnable ->
+                                                         {
+                                                             Thread thread = new Thread(runnable,
+                                                                                        "image-thumbnail-" + threads.getAndIncrement());
+                                                             thread.setDaemon(true);
+                                                             return thread;
+                                                         });
+                }
+                executor = thumbnailer;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Stops making thumbnails when the application stops. Any not made are made when next asked for.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop()
+    {
+        ThreadPoolExecutor executor = thumbnailer;
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The number of images waiting to have their thumbnails made, or being made
+     *
+     * @return the number of images pending
+     */
+    public int pending()
+    {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("images.stored",
+                                this,
+                                s -> s.stored.sum())
+                .description("images uploaded and written to disk")
+                .register(registry);
+        FunctionCounter.builder("images.duplicates",
+                                this,
+                                s -> s.duplicates.sum())
+                .description("images uploaded that were already stored")
+                .register(registry);
+        FunctionCounter.builder("images.thumbnails",
+                                this,
+                                s -> s.thumbnails.sum())
+                .description("thumbnails made")
+                .register(registry);
+        FunctionCounter.builder("images.thumbnails.rejected",
+                                this,
+                                s -> s.rejected.sum())
+                .description("images not queued for thumbnails because images.thumbnail.queue were already waiting")
+                .register(registry);
+        Gauge.builder("images.thumbnails.pending",
+                      this,
+                      ImageStore::pending)
+                .description("images waiting to have their thumbnails made")
+                .register(registry);
+    }
+}
@@ -0,0 +1,468 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.TimeWindow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the times each item is booked by an active contract, so overlapping contracts can be turned away
+ * and the free times of an item can be found without reading every contract.
+ * <p>
+ * The bookings of an item are read from the contracts table the first time the item is asked about, kept current by
+ * ContractService and dropped once the item has none. A new booking is checked against the bookings held here, found
+ * by start, and raises the version of the item, the same as any other change to it. The bookings remember the version
+ * of the item they were read at, so bookings made on another node since are seen before checking, and a booking made
+ * on another node while checking fails this one when it commits, to be tried again.
+ */
+@Component
+public class ItemAvailability
+{
+    private static final String VERSION_SQL = "SELECT version FROM items WHERE itemid = ?";
+
+    private static final String BOOKINGS_SQL = "SELECT contractid, raw_contractstartdate, raw_contractenddate FROM contracts" +
+        " WHERE itemid = ? AND is_active = TRUE AND raw_contractstartdate IS NOT NULL AND raw_contractenddate IS NOT NULL";
+
+    /**
+     * The bookings of each item asked about and booked, keyed off of the item id
+     */
+    private final Map<Long, Bookings> items = new ConcurrentHashMap<>();
+
+    /**
+     * Connects the index to the database to read the bookings of an item
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Connects the index to the items of the current transaction, whose versions are raised by each booking
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Connects the index to the second level cache, which would otherwise keep the version of an item from before a
+     * booking
+     */
+    @Autowired
+    private EntityCache entityCache;
+
+    /**
+     * Books the item for a contract, replacing any earlier booking of the same contract. Must be called inside of
+     * a transaction, which raises the version of the item as it commits. If the transaction does not commit, the
+     * bookings of the item are read again the next time it is asked about.
+     *
+     * @param itemid     the item being booked
+     * @param contractid the contract booking the item
+     * @param start      when the booking starts
+     * @param end        when the booking ends, after start
+     * @throws ResourceNotFoundException        if there is no item with that id
+     * @throws ResourceFoundException           if another contract has the item booked for any part of that time
+     * @throws OptimisticLockingFailureException if the item was read before a booking made since, to be tried again
+     */
+    public void book(
+            long itemid,
+            long contractid,
+            Instant start,
+            Instant end)
+            throws
+            ResourceNotFoundException,
+            ResourceFoundException,
+            OptimisticLockingFailureException
+    {
+        Booking booking = new Booking(contractid,
+                                      start.toEpochMilli(),
+                                      end.toEpochMilli());
+        Item item = entityManager.find(Item.class,
+                                       itemid);
+        if (item == null)
+        {
+            throw new ResourceNotFoundException("Item id " + itemid + " not found");
+        }
+        // a booking committed anywhere since the item was read makes this one fail as it commits
+        entityManager.lock(item,
+                           LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        entityCache.evictItems(Collections.singletonList(itemid));
+
+        Bookings bookings;
+        boolean reread = false;
+        while (true)
+        {
+            bookings = bookings(itemid);
+            synchronized (bookings)
+            {
+                if (bookings.dropped)
+                {
+                    continue;
+                }
+                boolean current = bookings.version == item.getVersion();
+                Booking overlap = bookings.overlap(booking.start,
+                                                   booking.end,
+                                                   contractid);
+                if (!reread && (!current || overlap != null))
+                {
+                    // booked since they were read, or the overlap may have ended on another node
+                    forget(itemid);
+                    reread = true;
+                    continue;
+                }
+                if (overlap != null)
+                {
+                    throw new ResourceFoundException("Item id " + itemid + " is already booked by contract id " + overlap.contractid + " from " + Instant.ofEpochMilli(overlap.start) + " to " + Instant.ofEpochMilli(overlap.end));
+                }
+                if (!current)
+                {
+                    // the item was read before the bookings were
+                    throw new ObjectOptimisticLockingFailureException(Item.class,
+                                                                      itemid);
+                }
+                bookings.add(booking);
+                break;
+            }
+        }
+
+        Bookings booked = bookings;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCompletion(int status)
+            {
+                if (status == STATUS_COMMITTED)
+                {
+                    // the version the item committed at, with this booking
+                    synchronized (booked)
+                    {
+                        booked.version = Math.max(booked.version,
+                                                  item.getVersion());
+                    }
+                } else
+                {
+                    forget(itemid);
+                }
+            }
+        });
+    }
+
+    /**
+     * Frees the item from a contract once the current transaction commits. Outside of a transaction it is freed now.
+     *
+     * @param itemid     the item booked
+     * @param contractid the contract that no longer books the item
+     */
+    public void releaseAfterCommit(
+            long itemid,
+            long contractid)
+    {
+        afterCommit(() ->
+                    {
+                        Bookings bookings = items.get(itemid);
+                        if (bookings != null)
+                        {
+                            synchronized (bookings)
+                            {
+                                bookings.remove(contractid);
+                                dropIfEmpty(itemid,
+                                            bookings);
+                            }
+                        }
+                    });
+    }
+
+    /**
+     * Drops every booking of the item held here once the current transaction commits, for an item deleted along with
+     * its contracts. Outside of a transaction they are dropped now.
+     *
+     * @param itemid the item
+     */
+    public void forgetAfterCommit(long itemid)
+    {
+        afterCommit(() -> forget(itemid));
+    }
+
+    /**
+     * Drops every booking held here, for contracts written or removed with plain SQL. They are read again as each
+     * item is asked about.
+     */
+    public void clear()
+    {
+        for (Long itemid : items.keySet())
+        {
+            forget(itemid);
+        }
+    }
+
+    private void forget(long itemid)
+    {
+        Bookings bookings = items.remove(itemid);
+        if (bookings != null)
+        {
+            synchronized (bookings)
+            {
+                bookings.dropped = true;
+            }
+        }
+    }
+
+    // must hold the lock of the bookings
+    private void dropIfEmpty(
+            long itemid,
+            Bookings bookings)
+    {
+        if (bookings.byStart.isEmpty() && items.remove(itemid,
+                                                       bookings))
+        {
+            bookings.dropped = true;
+        }
+    }
+
+    private void afterCommit(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+
+    /**
+     * Finds the times between from and to when the item is not booked
+     *
+     * @param itemid the item
+     * @param from   the start of the time to look at
+     * @param to     the end of the time to look at, after from
+     * @return the free windows in order, empty if the item is booked the whole time
+     * @throws ResourceFoundException if to is not after from
+     */
+    public List<TimeWindow> freeWindows(
+            long itemid,
+            Date from,
+            Date to)
+            throws
+            ResourceFoundException
+    {
+        if (!from.before(to))
+        {
+            throw new ResourceFoundException("The end of the time to look at must be after its start");
+        }
+        List<TimeWindow> windows = new ArrayList<>();
+        long free = from.getTime();
+        long until = to.getTime();
+        Bookings bookings = bookings(itemid);
+        synchronized (bookings)
+        {
+            for (Booking booking : bookings.startingBefore(free,
+                                                           until))
+            {
+                if (booking.start > free)
+                {
+                    windows.add(new TimeWindow(new Date(free),
+                                               new Date(booking.start)));
+                }
+                free = Math.max(free,
+                                booking.end);
+            }
+            dropIfEmpty(itemid,
+                        bookings);
+        }
+        if (free < until)
+        {
+            windows.add(new TimeWindow(new Date(free),
+                                       new Date(until)));
+        }
+        return windows;
+    }
+
+    /**
+     * The bookings of the item, read from the database if this is the first time the item is asked about
+     */
+    private Bookings bookings(long itemid)
+    {
+        Bookings bookings = items.computeIfAbsent(itemid,
+                                                  id -> new Bookings());
+        // loaded under the lock of the item, not of the map, so a slow read only holds up this item
+        synchronized (bookings)
+        {
+            if (!bookings.loaded)
+            {
+                // the version first, so a booking committed in between is read rather than missed
+                List<Long> version = jdbcTemplate.queryForList(VERSION_SQL,
+                                                               Long.class,
+                                                               itemid);
+                bookings.version = version.isEmpty() ? -1 : version.get(0);
+                jdbcTemplate.query(BOOKINGS_SQL,
+                                   rs ->
+                                   {
+                                       bookings.add(new Booking(rs.getLong(1),
+                                                                rs.getTimestamp(2)
+                                                                        .getTime(),
+                                                                rs.getTimestamp(3)
+                                                                        .getTime()));
+                                   },
+                                   itemid);
+                bookings.loaded = true;
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * The time an item is booked by one contract, from start up to but not including end, in milliseconds
+     */
+    private static class Booking
+    {
+        private static final Comparator<Booking> ORDER = Comparator.<Booking>comparingLong(b -> b.start)
+                .thenComparingLong(b -> b.contractid);
+
+        private final long contractid;
+
+        private final long start;
+
+        private final long end;
+
+        Booking(
+                long contractid,
+                long start,
+                long end)
+        {
+            this.contractid = contractid;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * The bookings of one item ordered by start. Guarded by itself.
+     * <p>
+     * New bookings never overlap, but contracts written before this check existed may, so lookups do not assume
+     * the bookings are disjoint. No booking is longer than longest, so every booking that overlaps a time
+     * starts less than longest before it, which bounds how far back a lookup has to go.
+     */
+    private static class Bookings
+    {
+        private final TreeSet<Booking> byStart = new TreeSet<>(Booking.ORDER);
+
+        private final Map<Long, Booking> byContract = new HashMap<>();
+
+        private long longest;
+
+        private boolean loaded;
+
+        /**
+         * The version of the item when these bookings were read, or last booked here
+         */
+        private long version;
+
+        /**
+         * Set once these bookings are no longer held for the item, so a booking is never added to them
+         */
+        private boolean dropped;
+
+        /**
+         * Adds the booking, replacing any booking of the same contract
+         */
+        void add(Booking booking)
+        {
+            Booking replaced = byContract.put(booking.contractid,
+                                              booking);
+            if (replaced != null)
+            {
+                byStart.remove(replaced);
+            }
+            byStart.add(booking);
+            longest = Math.max(longest,
+                               booking.end - booking.start);
+        }
+
+        void remove(long contractid)
+        {
+            Booking booking = byContract.remove(contractid);
+            if (booking != null)
+            {
+                removed(booking);
+            }
+        }
+
+        private void removed(Booking booking)
+        {
+            byStart.remove(booking);
+            // once the longest booking goes, lookups only need to go back as far as the longest left
+            if (booking.end - booking.start == longest)
+            {
+                longest = 0;
+                for (Booking left : byStart)
+                {
+                    longest = Math.max(longest,
+                                       left.end - left.start);
+                }
+            }
+        }
+
+        /**
+         * The bookings that could overlap the time from start to end, in order of start
+         */
+        Iterable<Booking> startingBefore(
+                long start,
+                long end)
+        {
+            return byStart.subSet(new Booking(Long.MIN_VALUE,
+                                              start - longest,
+                                              0),
+                                  true,
+                                  new Booking(Long.MIN_VALUE,
+                                              end,
+                                              0),
+                                  false);
+        }
+
+        /**
+         * A booking, other than one of the given contract, that overlaps the time from start to end
+         */
+        Booking overlap(
+                long start,
+                long end,
+                long contractid)
+        {
+            for (Booking booking : startingBefore(start,
+                                                  end))
+            {
+                if (booking.end > start && booking.contractid != contractid)
+                {
+                    return booking;
+                }
+            }
+            return null;
+        }
+    }
+}
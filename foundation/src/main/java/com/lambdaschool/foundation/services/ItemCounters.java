@@ -0,0 +1,474 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemCounter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the views and rentals of each item, for the item cards and the most popular items.
+ * <p>
+ * Counting a view only adds to a LongAdder held in memory for the item, so reading an item never waits on a row lock.
+ * Every items.counters.flush milliseconds the counts added since the last flush are written to the itemcounters table
+ * as batched UPDATEs, with an INSERT for items counted for the first time, and a counts write that fails is added back
+ * to be written with the next flush.
+ * <p>
+ * Counts not yet written are lost if the application stops without closing, so at most items.counters.flush
+ * milliseconds of counts are lost. The counts are written early once items.counters.maxpending items are waiting, so
+ * the counts held in memory stay small, and written once more as the application closes. Each copy of the
+ * application adds its own counts to the rows, so several copies may share the table.
+ */
+@Component
+public class ItemCounters
+        implements MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ItemCounters.class);
+
+    private static final String UPDATE_SQL = "UPDATE itemcounters SET views = views + ?, rentals = rentals + ? WHERE itemid = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO itemcounters (views, rentals, itemid) VALUES (?, ?, ?)";
+
+    private static final String SELECT_SQL = "SELECT itemid, views, rentals FROM itemcounters WHERE itemid IN (%s)";
+
+    private static final String DELETE_SQL = "DELETE FROM itemcounters WHERE itemid = ?";
+
+    /**
+     * Items deleted are left out. The order is by the stored counts only, as counts not yet written are a few seconds
+     * of views at most.
+     */
+    private static final String POPULAR_SQL = "SELECT c.itemid FROM itemcounters c JOIN items i ON i.itemid = c.itemid" +
+        " WHERE c.%1$s > 0 ORDER BY c.%1$s DESC, c.itemid LIMIT ?";
+
+    /**
+     * Connects the counters to the database
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to write each batch of counts in one transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The most items with counts waiting before they are written early
+     */
+    @Value("${items.counters.maxpending:10000}")
+    private int maxPending;
+
+    /**
+     * The most rows written by one batched statement
+     */
+    @Value("${items.counters.batch:500}")
+    private int batchSize;
+
+    /**
+     * The counts of one item added since they were last written. The LongAdders spread the additions of many threads
+     * over several cells, so threads counting the same item do not contend.
+     */
+    private static final class Pending
+    {
+        private final LongAdder views = new LongAdder();
+
+        private final LongAdder rentals = new LongAdder();
+    }
+
+    /**
+     * item id to the counts added since the last flush. Replaced by an empty map at each flush.
+     */
+    private volatile Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The map replaced by the last flush. It is drained again by the next flush, for a count added by a thread that
+     * read the map just before it was replaced.
+     */
+    private volatile Map<Long, Pending> draining = Collections.emptyMap();
+
+    /**
+     * Only one flush runs at a time
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Whether an early flush is already waiting to run
+     */
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    private volatile ExecutorService flusher;
+
+    private final LongAdder views = new LongAdder();
+
+    private final LongAdder rentals = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Counts one view of the item
+     *
+     * @param itemid the primary key (long) of the item viewed
+     */
+    public void viewed(long itemid)
+    {
+        pending(itemid).views.increment();
+        views.increment();
+    }
+
+    /**
+     * Counts one rental of the item once the current transaction commits. Outside of a transaction it is counted now.
+     *
+     * @param itemid the primary key (long) of the item rented
+     */
+    public void rentedAfterCommit(long itemid)
+    {
+        afterCommit(() ->
+                    {
+                        pending(itemid).rentals.increment();
+                        rentals.increment();
+                    });
+    }
+
+    /**
+     * Deletes the counts of the item, in the current transaction
+     *
+     * @param itemid the primary key (long) of the item deleted
+     */
+    public void delete(long itemid)
+    {
+        jdbcTemplate.update(DELETE_SQL,
+                            itemid);
+        pending.remove(itemid);
+        draining.remove(itemid);
+    }
+
+    private Pending pending(long itemid)
+    {
+        Map<Long, Pending> counts = pending;
+        Pending item = counts.get(itemid);
+        if (item == null)
+        {
+            item = counts.computeIfAbsent(itemid,
+                                          id -> new Pending());
+            if (counts.size() >= maxPending)
+            {
+                flushSoon();
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Sets the views and rentals of each item, the stored counts plus those not yet written
+     *
+     * @param items the items to count
+     */
+    public void fill(Collection<Item> items)
+    {
+        if (items.isEmpty())
+        {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (Item item : items)
+        {
+            ids.add(Long.toString(item.getItemid()));
+        }
+        Map<Long, ItemCounter> stored = new HashMap<>();
+        for (ItemCounter counter : jdbcTemplate.query(String.format(SELECT_SQL,
+                                                                    String.join(", ",
+                                                                                ids)),
+                                                      (rs, rowNum) -> new ItemCounter(rs.getLong(1),
+                                                                                      rs.getLong(2),
+                                                                                      rs.getLong(3))))
+        {
+            stored.put(counter.getItemid(),
+                       counter);
+        }
+
+        for (Item item : items)
+        {
+            long itemviews = 0;
+            long itemrentals = 0;
+            ItemCounter counter = stored.get(item.getItemid());
+            if (counter != null)
+            {
+                itemviews = counter.getViews();
+                itemrentals = counter.getRentals();
+            }
+            for (Map<Long, Pending> counts : List.of(pending,
+                                                     draining))
+            {
+                Pending waiting = counts.get(item.getItemid());
+                if (waiting != null)
+                {
+                    itemviews += waiting.views.sum();
+                    itemrentals += waiting.rentals.sum();
+                }
+            }
+            item.setViews(itemviews);
+            item.setRentals(itemrentals);
+        }
+    }
+
+    /**
+     * The items with the most views or rentals
+     *
+     * @param rentals true to order by rentals, false by views
+     * @param size    the most items returned
+     * @return the primary keys of the items, most counted first
+     */
+    public List<Long> popular(
+            boolean rentals,
+            int size)
+    {
+        return jdbcTemplate.queryForList(String.format(POPULAR_SQL,
+                                                       rentals ? "rentals" : "views"),
+                                         Long.class,
+                                         size);
+    }
+
+    /**
+     * Writes the counts added since the last flush to the itemcounters table
+     *
+     * @return the number of items written
+     */
+    @Scheduled(fixedDelayString = "${items.counters.flush:5000}",
+            initialDelayString = "${items.counters.flush:5000}")
+    public int flush()
+    {
+        flushLock.lock();
+        try
+        {
+            flushQueued.set(false);
+            Map<Long, Pending> previous = draining;
+            Map<Long, Pending> current = pending;
+            pending = new ConcurrentHashMap<>();
+            draining = current;
+
+            Map<Long, long[]> deltas = new HashMap<>();
+            take(previous,
+                 deltas);
+            take(current,
+                 deltas);
+            if (deltas.isEmpty())
+            {
+                return 0;
+            }
+
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Long, long[]> delta : deltas.entrySet())
+            {
+                rows.add(new Object[]{delta.getValue()[0], delta.getValue()[1], delta.getKey()});
+            }
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            for (int from = 0; from < rows.size(); from += batchSize)
+            {
+                List<Object[]> batch = rows.subList(from,
+                                                    Math.min(from + batchSize,
+                                                             rows.size()));
+                try
+                {
+                    transactionTemplate.execute(status -> write(batch));
+                    written.add(batch.size());
+                } catch (RuntimeException e)
+                {
+                    // keep the counts to write with the next flush
+                    failures.increment();
+                    logger.warn("Could not write the counts of {} items, keeping them for the next flush",
+                                batch.size(),
+                                e);
+                    for (Object[] row : batch)
+                    {
+                        // straight into the map, as a full map would only start another flush bound to fail
+                        Pending item = pending.computeIfAbsent((Long) row[2],
+                                                               id -> new Pending());
+                        item.views.add((Long) row[0]);
+                        item.rentals.add((Long) row[1]);
+                    }
+                }
+            }
+            return rows.size();
+        } finally
+        {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Takes the counts out of the map, adding them to the deltas of each item
+     */
+    private static void take(
+            Map<Long, Pending> counts,
+            Map<Long, long[]> deltas)
+    {
+        for (Map.Entry<Long, Pending> entry : counts.entrySet())
+        {
+            long itemviews = entry.getValue().views.sumThenReset();
+            long itemrentals = entry.getValue().rentals.sumThenReset();
+            if (itemviews != 0 || itemrentals != 0)
+            {
+                long[] delta = deltas.computeIfAbsent(entry.getKey(),
+                                                      id -> new long[2]);
+                delta[0] += itemviews;
+                delta[1] += itemrentals;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts to the rows there are, then inserts the rows there are not
+     */
+    private Void write(List<Object[]> batch)
+    {
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL,
+                                                 batch);
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++)
+        {
+            if (updated[i] == 0)
+            {
+                inserts.add(batch.get(i));
+            }
+        }
+        if (!inserts.isEmpty())
+        {
+            jdbcTemplate.batchUpdate(INSERT_SQL,
+                                     inserts);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the counts on a thread of their own, rather than on the request that found too many waiting
+     */
+    private void flushSoon()
+    {
+        if (flushQueued.compareAndSet(false,
+                                      true))
+        {
+            flusher().execute(this::flush);
+        }
+    }
+
+    private ExecutorService flusher()
+    {
+        ExecutorService executor = flusher;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                if (flusher == null)
+                {
+                    flusher = Executors.newSingleThreadExecutor(runnable ->
+                                                                {
+                                                                    Thread thread = new Thread(runnable,
+                                                                                               "item-counters");
+                                                                    thread.setDaemon(true);
+                                                                    return thread;
+                                                                });
+                }
+                executor = flusher;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Writes the counts not yet written before the application closes
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop()
+    {
+        ExecutorService executor = flusher;
+        if (executor != null)
+        {
+            executor.shutdown();
+        }
+        flush();
+    }
+
+    private void afterCommit(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+
+    private int pendingCount()
+    {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("items.counters.views",
+                                this,
+                                c -> c.views.sum())
+                .description("views of items counted")
+                .register(registry);
+        FunctionCounter.builder("items.counters.rentals",
+                                this,
+                                c -> c.rentals.sum())
+                .description("rentals of items counted")
+                .register(registry);
+        FunctionCounter.builder("items.counters.written",
+                                this,
+                                c -> c.written.sum())
+                .description("rows of item counts written to the itemcounters table")
+                .register(registry);
+        FunctionCounter.builder("items.counters.failures",
+                                this,
+                                c -> c.failures.sum())
+                .description("batches of item counts that could not be written and were kept for the next flush")
+                .register(registry);
+        Gauge.builder("items.counters.pending",
+                      this,
+                      ItemCounters::pendingCount)
+                .description("items with counts not yet written")
+                .register(registry);
+    }
+}
@@ -0,0 +1,537 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.FacetCount;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemFacets;
+import com.lambdaschool.foundation.models.Money;
+import com.lambdaschool.foundation.models.PriceFacet;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Running counts of the items of each item type, availability and price bucket, for the browse page to show how many
+ * items each filter would find.
+ * <p>
+ * Each facet, an item type with an availability and a price bucket, has its own counter and each item remembers the
+ * facet it is counted in, so a change to an item moves one count from its old facet to its new one. Reading the counts
+ * only adds up the facets, never the items. The price buckets are split at the daily rates in items.facets.prices.
+ * <p>
+ * The counts are rebuilt from the database at startup and kept current by ItemServiceImpl, ContractServiceImpl and
+ * ContractExpiry once a change to an item commits. Every items.facets.reconcile milliseconds they are checked
+ * against a GROUP BY of the items table and rebuilt if they have drifted, as a change that loses a race can be applied
+ * out of order.
+ */
+@Component
+public class ItemFacetCounts
+        implements MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(ItemFacetCounts.class);
+
+    /**
+     * The number of rows read from the database at a time while rebuilding
+     */
+    private static final int FETCH_SIZE = 500;
+
+    private static final String SELECT_SQL = "SELECT itemid, itemtype, isavailable, itemratecents FROM items";
+
+    private static final String GROUP_SQL = "SELECT itemtype, isavailable, %1$s, COUNT(*) FROM items" +
+        " GROUP BY itemtype, isavailable, %1$s";
+
+    /**
+     * Connects the counts to the database for rebuilding
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to run the rebuild in a read only transaction so the database can stream the rows
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The daily rates, in dollars, the price buckets are split at, lowest first
+     */
+    @Value("${items.facets.prices:10,25,50,100}")
+    private float[] prices;
+
+    /**
+     * Changes to single items share the read lock with each other, a rebuild takes the write lock
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * item id to the facet the item is counted in
+     */
+    private final Map<Long, Facet> items = new ConcurrentHashMap<>();
+
+    /**
+     * facet to the number of items in it. A facet emptied out is kept, at zero, until the next rebuild.
+     */
+    private final Map<Facet, LongAdder> counts = new ConcurrentHashMap<>();
+
+    private final LongAdder drifted = new LongAdder();
+
+    /**
+     * One item type, availability and price bucket
+     */
+    private static final class Facet
+    {
+        private final String itemtype;
+
+        private final boolean available;
+
+        private final int bucket;
+
+        Facet(
+                String itemtype,
+                boolean available,
+                int bucket)
+        {
+            this.itemtype = itemtype;
+            this.available = available;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Facet))
+            {
+                return false;
+            }
+            Facet facet = (Facet) o;
+            return available == facet.available && bucket == facet.bucket && Objects.equals(itemtype,
+                                                                                            facet.itemtype);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(itemtype,
+                                available,
+                                bucket);
+        }
+    }
+
+    /**
+     * Rebuilds the counts once the application, including any seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        rebuild();
+    }
+
+    /**
+     * Throws away the counts and counts every item again, reading the items a few rows at a time
+     */
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        lock.writeLock()
+                .lock();
+        try
+        {
+            items.clear();
+            counts.clear();
+            transactionTemplate.execute(status ->
+                                        {
+                                            jdbcTemplate.query(con ->
+                                                               {
+                                                                   PreparedStatement ps = con.prepareStatement(SELECT_SQL);
+                                                                   ps.setFetchSize(FETCH_SIZE);
+                                                                   return ps;
+                                                               },
+                                                               (ResultSet rs) -> put(rs));
+                                            return null;
+                                        });
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+        logger.info("Counted {} items in {} facets in {} ms",
+                    items.size(),
+                    counts.size(),
+                    System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Checks the counts against a GROUP BY of the items and rebuilds them if any differ
+     *
+     * @return true if the counts had drifted and were rebuilt
+     */
+    @Scheduled(fixedDelayString = "${items.facets.reconcile:600000}",
+            initialDelayString = "${items.facets.reconcile:600000}")
+    public boolean reconcile()
+    {
+        Map<Facet, Long> stored = new HashMap<>();
+        jdbcTemplate.query(String.format(GROUP_SQL,
+                                         bucketSql()),
+                           (ResultSet rs) ->
+                           {
+                               stored.put(new Facet(rs.getString(1),
+                                                    rs.getBoolean(2),
+                                                    rs.getInt(3)),
+                                          rs.getLong(4));
+                           });
+
+        Map<Facet, Long> counted = new HashMap<>();
+        counts.forEach((facet, count) ->
+                       {
+                           long sum = count.sum();
+                           if (sum != 0)
+                           {
+                               counted.put(facet,
+                                           sum);
+                           }
+                       });
+        if (counted.equals(stored))
+        {
+            return false;
+        }
+
+        // a change committed but not yet counted also shows up here, and a rebuild counts it the same way
+        drifted.increment();
+        logger.warn("Item facet counts drifted from the items table, rebuilding");
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Counts the item in the facet it is in now, moving it out of the one it was in
+     *
+     * @param item the item to count
+     */
+    public void index(Item item)
+    {
+        lock.readLock()
+                .lock();
+        try
+        {
+            put(item.getItemid(),
+                new Facet(item.getItemtype(),
+                          item.getIsavailable(),
+                          bucket(item.getItemratecents())));
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Stops counting the item
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void delete(long itemid)
+    {
+        lock.readLock()
+                .lock();
+        try
+        {
+            remove(itemid);
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Counts the item once the current transaction commits. Outside of a transaction the item is counted now.
+     *
+     * @param item the item to count
+     */
+    public void indexAfterCommit(Item item)
+    {
+        afterCommit(() -> index(item));
+    }
+
+    /**
+     * Counts the items once the current transaction commits. Outside of a transaction the items are counted now.
+     *
+     * @param items the items to count
+     */
+    public void indexAfterCommit(Collection<Item> items)
+    {
+        afterCommit(() ->
+                    {
+                        for (Item item : items)
+                        {
+                            index(item);
+                        }
+                    });
+    }
+
+    /**
+     * Stops counting the item once the current transaction commits. Outside of a transaction it is removed now.
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void deleteAfterCommit(long itemid)
+    {
+        afterCommit(() -> delete(itemid));
+    }
+
+    /**
+     * Reads the items back from the database once the current transaction commits, for items changed straight in
+     * the database. Outside of a transaction the items are read now.
+     *
+     * @param itemids the primary keys of the items changed
+     */
+    public void refreshAfterCommit(Collection<Long> itemids)
+    {
+        if (itemids.isEmpty())
+        {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(itemids);
+        afterCommit(() ->
+                    {
+                        String sql = SELECT_SQL + " WHERE itemid IN (" + String.join(", ",
+                                                                                     Collections.nCopies(ids.size(),
+                                                                                                         "?")) + ")";
+                        Set<Long> found = new HashSet<>();
+                        lock.readLock()
+                                .lock();
+                        try
+                        {
+                            jdbcTemplate.query(sql,
+                                               (ResultSet rs) ->
+                                               {
+                                                   found.add(rs.getLong(1));
+                                                   put(rs);
+                                               },
+                                               ids.toArray());
+                            // an item not read back was deleted
+                            for (long itemid : ids)
+                            {
+                                if (!found.contains(itemid))
+                                {
+                                    remove(itemid);
+                                }
+                            }
+                        } finally
+                        {
+                            lock.readLock()
+                                    .unlock();
+                        }
+                    });
+    }
+
+    private void afterCommit(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+
+    /**
+     * Adds up the facets into the counts shown on the browse page. As usual for facets, the item type counts are not
+     * narrowed by the item type asked for, so the page can show the other types to switch to.
+     *
+     * @param itemtype  narrow the price counts to this item type (String). Null for every type
+     * @param available narrow every count to available or unavailable items (Boolean). Null for both
+     * @return the number of items, then the number of each item type, most first, and of each price bucket, cheapest first
+     */
+    public ItemFacets facets(
+            String itemtype,
+            Boolean available)
+    {
+        Map<String, Long> itemtypes = new HashMap<>();
+        long[] buckets = new long[prices.length + 1];
+        long total = 0;
+        for (Map.Entry<Facet, LongAdder> entry : counts.entrySet())
+        {
+            Facet facet = entry.getKey();
+            long count = entry.getValue()
+                    .sum();
+            if (count <= 0 || (available != null && facet.available != available))
+            {
+                continue;
+            }
+            itemtypes.merge(facet.itemtype,
+                            count,
+                            Long::sum);
+            if (itemtype == null || itemtype.equalsIgnoreCase(facet.itemtype))
+            {
+                buckets[facet.bucket] += count;
+                total += count;
+            }
+        }
+
+        List<FacetCount> types = new ArrayList<>();
+        itemtypes.forEach((name, count) -> types.add(new FacetCount(name,
+                                                                   count)));
+        types.sort((a, b) -> a.getCount() != b.getCount() ? Long.compare(b.getCount(),
+                                                                        a.getCount()) : String.valueOf(a.getName())
+                .compareTo(String.valueOf(b.getName())));
+
+        List<PriceFacet> ranges = new ArrayList<>();
+        for (int bucket = 0; bucket < buckets.length; bucket++)
+        {
+            ranges.add(new PriceFacet(bucket == 0 ? 0 : prices[bucket - 1],
+                                      bucket < prices.length ? prices[bucket] : null,
+                                      buckets[bucket]));
+        }
+        return new ItemFacets(total,
+                              types,
+                              ranges);
+    }
+
+    /**
+     * The price bucket of a daily rate, the number of bucket edges at or below it
+     */
+    private int bucket(long ratecents)
+    {
+        int bucket = 0;
+        while (bucket < prices.length && ratecents >= Money.ofDollars(prices[bucket]))
+        {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * The same bucket worked out by the database
+     */
+    private String bucketSql()
+    {
+        StringBuilder sql = new StringBuilder("CASE");
+        for (int bucket = 0; bucket < prices.length; bucket++)
+        {
+            sql.append(" WHEN itemratecents < ")
+                    .append(Money.ofDollars(prices[bucket]))
+                    .append(" THEN ")
+                    .append(bucket);
+        }
+        return sql.append(" ELSE ")
+                .append(prices.length)
+                .append(" END")
+                .toString();
+    }
+
+    // must hold a lock
+    private void put(ResultSet rs)
+            throws
+            SQLException
+    {
+        put(rs.getLong(1),
+            new Facet(rs.getString(2),
+                      rs.getBoolean(3),
+                      bucket(rs.getLong(4))));
+    }
+
+    // must hold a lock
+    private void put(
+            long itemid,
+            Facet facet)
+    {
+        // computed under the entry of the item, so two changes to one item move its count one at a time
+        items.compute(itemid,
+                      (id, old) ->
+                      {
+                          if (!facet.equals(old))
+                          {
+                              if (old != null)
+                              {
+                                  counter(old).decrement();
+                              }
+                              counter(facet).increment();
+                          }
+                          return facet;
+                      });
+    }
+
+    // must hold a lock
+    private void remove(long itemid)
+    {
+        Facet old = items.remove(itemid);
+        if (old != null)
+        {
+            counter(old).decrement();
+        }
+    }
+
+    private LongAdder counter(Facet facet)
+    {
+        return counts.computeIfAbsent(facet,
+                                      f -> new LongAdder());
+    }
+
+    /**
+     * The number of facets holding at least one item
+     */
+    private long facetCount()
+    {
+        return counts.values()
+                .stream()
+                .filter(count -> count.sum() > 0)
+                .count();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        Gauge.builder("items.facets",
+                      this,
+                      ItemFacetCounts::facetCount)
+                .description("item type, availability and price facets holding items")
+                .register(registry);
+        FunctionCounter.builder("items.facets.drifted",
+                                this,
+                                c -> c.drifted.sum())
+                .description("reconciles that found the facet counts off from the items table and rebuilt them")
+                .register(registry);
+    }
+}
@@ -0,0 +1,39 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.ImportReport;
+import com.lambdaschool.foundation.models.User;
+
+import java.io.InputStream;
+
+/**
+ * The Service that works with bulk imports of items read straight from a request body
+ * <p>
+ * The body is read one row at a time, so the size of the body does not matter. Each row is checked against the
+ * constraints on Item, rows that pass are written to the database in batches and rows that fail are reported.
+ * Each batch is committed on its own, so if an import stops part way the rows before that point stay imported.
+ */
+public interface ItemImportService
+{
+    /**
+     * Imports the items in a JSON array, all lent by the same user
+     *
+     * @param body   the JSON array of items. Any item id or lender given is ignored.
+     * @param lender the user lending the items
+     * @return a report of how many rows were imported and why any were not
+     */
+    ImportReport importJson(
+        InputStream body,
+        User lender);
+
+    /**
+     * Imports the items in a CSV file, all lent by the same user. The first line names the columns,
+     * using the same names as the JSON fields of an item, for example itemname,itemtype,itemdescr,itemlocat,isavailable,itemrate,itemimg
+     *
+     * @param body   the CSV file. Any itemid column is ignored.
+     * @param lender the user lending the items
+     * @return a report of how many rows were imported and why any were not
+     */
+    ImportReport importCsv(
+        InputStream body,
+        User lender);
+}
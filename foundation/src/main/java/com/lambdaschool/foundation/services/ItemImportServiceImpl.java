@@ -0,0 +1,446 @@
+package com.lambdaschool.foundation.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.lambdaschool.foundation.models.ImportReport;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.User;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the ItemImportService Interface
+ * <p>
+ * Rows are written straight to the items table through JDBC, a batch per transaction, instead of through JPA.
+ * Not transactional as a whole on purpose, see ItemImportService.
+ */
+@Service(value = "itemImportService")
+public class ItemImportServiceImpl
+        implements ItemImportService
+{
+    private static final String ITEM_SQL = "INSERT INTO items (itemid, itemname, itemtype, itemdescr, itemlocat, isavailable, itemratecents, itemimg, latitude, longitude, userid, created_by, created_date, last_modified_by, last_modified_date, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    /**
+     * Connects this service to the database for the batched inserts
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Connects this service to the id generator mapped on Item, so imported items take their ids from the same
+     * blocks of items_seq as items saved through JPA
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Used to write each batch of rows in its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Connects this service to the item search index
+     */
+    @Autowired
+    private ItemSearchIndex searchIndex;
+
+    /**
+     * Connects this service to the index of where each item is
+     */
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    /**
+     * Connects this service to the counts of items by type, availability and price
+     */
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    /**
+     * Connects this service to the second level cache, as imported items are added with plain SQL
+     */
+    @Autowired
+    private EntityCache entityCache;
+
+    /**
+     * Connects this service to the running totals of each lender and item
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Connects this service to the outbox of changes sent to the subscribers
+     */
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Connects this service to the user name used for the auditing fields
+     */
+    @Autowired
+    private UserAuditing userAuditing;
+
+    /**
+     * Reads JSON rows the same way the request bodies of the other endpoints are read
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Checks each row against the constraints on Item
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * The number of rows written to the database in each transaction
+     */
+    @Value("${items.import.batch:1000}")
+    private int batchSize;
+
+    /**
+     * The most row errors listed in a report
+     */
+    @Value("${items.import.maxerrors:1000}")
+    private int maxErrors;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    @Override
+    public ImportReport importJson(
+            InputStream body,
+            User lender)
+    {
+        ItemImport itemImport = new ItemImport(lender);
+        try (JsonParser parser = objectMapper.getFactory()
+                .createParser(body))
+        {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+            {
+                itemImport.stop(1,
+                                "The body must be a JSON array of items");
+                return itemImport.finish();
+            }
+
+            JsonToken token;
+            while (!itemImport.failed && (token = parser.nextToken()) != JsonToken.END_ARRAY)
+            {
+                if (token == null)
+                {
+                    itemImport.stop(itemImport.report.getRows() + 1,
+                                    "The JSON array is not closed");
+                    break;
+                }
+
+                // only the current row is ever held as a tree
+                long row = itemImport.report.nextRow();
+                JsonNode node;
+                try
+                {
+                    node = objectMapper.readTree(parser);
+                } catch (IOException e)
+                {
+                    itemImport.stop(row,
+                                    message(e));
+                    break;
+                }
+                Item item;
+                try
+                {
+                    item = objectMapper.treeToValue(node,
+                                                    Item.class);
+                } catch (JsonProcessingException e)
+                {
+                    itemImport.reject(row,
+                                      e);
+                    continue;
+                }
+                itemImport.add(row,
+                               item);
+            }
+        } catch (IOException e)
+        {
+            itemImport.stop(itemImport.report.getRows() + 1,
+                            message(e));
+        }
+        return itemImport.finish();
+    }
+
+    @Override
+    public ImportReport importCsv(
+            InputStream body,
+            User lender)
+    {
+        ItemImport itemImport = new ItemImport(lender);
+        CsvSchema schema = CsvSchema.emptySchema()
+                .withHeader();
+        try (MappingIterator<Map<String, String>> rows = csvMapper.readerFor(Map.class)
+                .with(schema)
+                .readValues(body))
+        {
+            while (!itemImport.failed && rows.hasNextValue())
+            {
+                Map<String, String> values = rows.nextValue();
+                long row = itemImport.report.nextRow();
+
+                // an empty cell is a missing value, so it fails @NotNull instead of reading as an empty string
+                values.values()
+                        .removeIf(String::isEmpty);
+                Item item;
+                try
+                {
+                    item = objectMapper.convertValue(values,
+                                                     Item.class);
+                } catch (IllegalArgumentException e)
+                {
+                    itemImport.reject(row,
+                                      e);
+                    continue;
+                }
+                itemImport.add(row,
+                               item);
+            }
+        } catch (IOException e)
+        {
+            itemImport.stop(itemImport.report.getRows() + 1,
+                            message(e));
+        }
+        return itemImport.finish();
+    }
+
+    private static String message(Exception e)
+    {
+        if (e instanceof JsonProcessingException)
+        {
+            return ((JsonProcessingException) e).getOriginalMessage();
+        }
+        return e.getMessage();
+    }
+
+    /**
+     * The state of one import: the report, the batch waiting to be written and the block of ids being handed out
+     */
+    private class ItemImport
+    {
+        private final ImportReport report = new ImportReport(maxErrors);
+
+        private final User lender;
+
+        private final String auditor;
+
+        private List<Item> batch = new ArrayList<>();
+
+        /**
+         * The number of the row the waiting batch starts at
+         */
+        private long batchStart;
+
+        /**
+         * Set once a batch could not be written, which ends the import
+         */
+        private boolean failed;
+
+        ItemImport(User lender)
+        {
+            this.lender = lender;
+            this.auditor = userAuditing.getCurrentAuditor()
+                    .orElse("SYSTEM");
+        }
+
+        /**
+         * Checks a row and, if it passes, adds it to the waiting batch
+         */
+        void add(
+                long row,
+                Item item)
+        {
+            item.setLender(lender);
+            List<ImportReport.RowError> errors = new ArrayList<>();
+            for (ConstraintViolation<Item> violation : validator.validate(item))
+            {
+                errors.add(new ImportReport.RowError(row,
+                                                     violation.getPropertyPath()
+                                                             .toString(),
+                                                     violation.getMessage()));
+            }
+            if (!errors.isEmpty())
+            {
+                errors.sort(Comparator.comparing(ImportReport.RowError::getField));
+                report.reject(errors);
+                return;
+            }
+
+            item.setItemname(item.getItemname()
+                                     .toLowerCase());
+            item.setItemtype(item.getItemtype()
+                                     .toLowerCase());
+            if (batch.isEmpty())
+            {
+                batchStart = row;
+            }
+            batch.add(item);
+            if (batch.size() >= batchSize)
+            {
+                write();
+            }
+        }
+
+        /**
+         * Reports a row that could not be read as an item. Converting a CSV row wraps the Jackson exception.
+         */
+        void reject(
+                long row,
+                Exception e)
+        {
+            Throwable cause = e instanceof IllegalArgumentException && e.getCause() != null ? e.getCause() : e;
+            String field = null;
+            if (cause instanceof JsonMappingException && !((JsonMappingException) cause).getPath()
+                    .isEmpty())
+            {
+                field = ((JsonMappingException) cause).getPath()
+                        .get(0)
+                        .getFieldName();
+            }
+            List<ImportReport.RowError> errors = new ArrayList<>();
+            errors.add(new ImportReport.RowError(row,
+                                                 field,
+                                                 cause instanceof JsonProcessingException ? ((JsonProcessingException) cause).getOriginalMessage() : cause.getMessage()));
+            report.reject(errors);
+        }
+
+        void stop(
+                long row,
+                String message)
+        {
+            report.stop(row,
+                        message);
+        }
+
+        /**
+         * Writes the waiting batch in its own transaction and indexes it once committed
+         */
+        void write()
+        {
+            if (batch.isEmpty() || failed)
+            {
+                return;
+            }
+
+            List<Item> items = batch;
+            batch = new ArrayList<>();
+            try
+            {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> insert(items));
+            } catch (DataAccessException e)
+            {
+                failed = true;
+                stop(batchStart,
+                     "Rows from here on were not imported: " + e.getMostSpecificCause()
+                             .getMessage());
+                return;
+            }
+            report.addImported(items.size());
+        }
+
+        private void insert(List<Item> items)
+        {
+            SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+            IdentifierGenerator ids = session.getFactory()
+                    .getMetamodel()
+                    .entityPersister(Item.class)
+                    .getIdentifierGenerator();
+            for (Item item : items)
+            {
+                item.setItemid((Long) ids.generate(session,
+                                                   item));
+            }
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            jdbcTemplate.batchUpdate(ITEM_SQL,
+                                     items,
+                                     items.size(),
+                                     (ps, item) ->
+                                     {
+                                         ps.setLong(1,
+                                                    item.getItemid());
+                                         ps.setString(2,
+                                                      item.getItemname());
+                                         ps.setString(3,
+                                                      item.getItemtype());
+                                         ps.setString(4,
+                                                      item.getItemdescr());
+                                         ps.setString(5,
+                                                      item.getItemlocat());
+                                         ps.setBoolean(6,
+                                                       item.getIsavailable());
+                                         ps.setLong(7,
+                                                    item.getItemratecents());
+                                         ps.setString(8,
+                                                      item.getItemimg());
+                                         ps.setObject(9,
+                                                      item.getLatitude(),
+                                                      Types.DOUBLE);
+                                         ps.setObject(10,
+                                                      item.getLongitude(),
+                                                      Types.DOUBLE);
+                                         ps.setLong(11,
+                                                    lender.getUserid());
+                                         ps.setString(12,
+                                                      auditor);
+                                         ps.setTimestamp(13,
+                                                         now);
+                                         ps.setString(14,
+                                                      auditor);
+                                         ps.setTimestamp(15,
+                                                         now);
+                                     });
+            List<Long> itemids = new ArrayList<>();
+            for (Item item : items)
+            {
+                itemids.add(item.getItemid());
+            }
+            earnings.itemsAdded(lender.getUserid(),
+                                itemids);
+            outbox.itemsCreated(items);
+            searchIndex.indexAfterCommit(items);
+            locationIndex.indexAfterCommit(items);
+            facetCounts.indexAfterCommit(items);
+            entityCache.evictLenderItems(List.of(lender.getUserid()));
+        }
+
+        ImportReport finish()
+        {
+            write();
+            return report;
+        }
+    }
+}
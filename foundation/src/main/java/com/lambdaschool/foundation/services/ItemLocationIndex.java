@@ -0,0 +1,749 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in memory index of where each item is picked up, for finding the items near a point or inside a box.
+ * <p>
+ * The map is cut into a uniform grid of items.geo.cell degree cells and each item with a latitude and longitude is kept
+ * in the cell holding it, along with its type and whether it is available so those filters need no database read.
+ * A search only looks at the cells overlapping the bounding box of what is searched, measures each item in them with
+ * the haversine formula and keeps the nearest (page + 1) * size of them on a heap instead of sorting every match.
+ * <p>
+ * The index is rebuilt from the database at startup and kept current by ItemServiceImpl, ContractServiceImpl and
+ * ContractExpiry once a change to an item commits.
+ */
+@Component
+public class ItemLocationIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(ItemLocationIndex.class);
+
+    /**
+     * The mean radius of the earth in kilometres
+     */
+    static final double EARTH_RADIUS = 6371.0088;
+
+    /**
+     * Kilometres in one degree of latitude
+     */
+    private static final double KM_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+    /**
+     * The number of rows read from the database at a time while rebuilding
+     */
+    private static final int FETCH_SIZE = 500;
+
+    private static final String SELECT_SQL = "SELECT itemid, latitude, longitude, itemtype, isavailable FROM items" +
+        " WHERE latitude IS NOT NULL AND longitude IS NOT NULL";
+
+    /**
+     * Connects this index to the database for rebuilding
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to run the rebuild in a read only transaction so the database can stream the rows
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The width and height of a grid cell, in degrees
+     */
+    @Value("${items.geo.cell:0.25}")
+    private double cellSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * item id to where the item is. Guarded by lock.
+     */
+    private final Map<Long, Point> points = new HashMap<>();
+
+    /**
+     * cell number to the items in the cell, in no order. Guarded by lock.
+     */
+    private final Map<Long, List<Point>> cells = new HashMap<>();
+
+    /**
+     * An item found by a search and how far it is, in kilometres, from the point searched from
+     */
+    public static final class Match
+    {
+        private final long itemid;
+
+        private final double distance;
+
+        Match(
+                long itemid,
+                double distance)
+        {
+            this.itemid = itemid;
+            this.distance = distance;
+        }
+
+        public long getItemid()
+        {
+            return itemid;
+        }
+
+        public double getDistance()
+        {
+            return distance;
+        }
+    }
+
+    /**
+     * Where one item is, and what the searches filter on. Replaced rather than changed, so a search sees it whole.
+     */
+    private static final class Point
+    {
+        private final long itemid;
+
+        private final double latitude;
+
+        private final double longitude;
+
+        private final String itemtype;
+
+        private final boolean available;
+
+        private final long cell;
+
+        Point(
+                long itemid,
+                double latitude,
+                double longitude,
+                String itemtype,
+                boolean available,
+                long cell)
+        {
+            this.itemid = itemid;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.itemtype = itemtype;
+            this.available = available;
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * Rebuilds the index once the application, including any seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        rebuild();
+    }
+
+    /**
+     * Throws away the index and reads every item with a location back from the database a few rows at a time
+     */
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        lock.writeLock()
+                .lock();
+        try
+        {
+            points.clear();
+            cells.clear();
+            transactionTemplate.execute(status ->
+                                        {
+                                            jdbcTemplate.query(con ->
+                                                               {
+                                                                   PreparedStatement ps = con.prepareStatement(SELECT_SQL);
+                                                                   ps.setFetchSize(FETCH_SIZE);
+                                                                   return ps;
+                                                               },
+                                                               (ResultSet rs) -> add(rs));
+                                            return null;
+                                        });
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+        logger.info("Located {} items in {} ms",
+                    size(),
+                    System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Puts the item where it is now, or takes it out of the index if it has no location
+     *
+     * @param item the item to index
+     */
+    public void index(Item item)
+    {
+        lock.writeLock()
+                .lock();
+        try
+        {
+            put(item);
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Removes the item from the index
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void delete(long itemid)
+    {
+        lock.writeLock()
+                .lock();
+        try
+        {
+            remove(itemid);
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Indexes the item once the current transaction commits. Outside of a transaction the item is indexed now.
+     *
+     * @param item the item to index
+     */
+    public void indexAfterCommit(Item item)
+    {
+        afterCommit(() -> index(item));
+    }
+
+    /**
+     * Indexes the items once the current transaction commits, taking the lock once for all of them.
+     * Outside of a transaction the items are indexed now.
+     *
+     * @param items the items to index
+     */
+    public void indexAfterCommit(Collection<Item> items)
+    {
+        afterCommit(() ->
+                    {
+                        lock.writeLock()
+                                .lock();
+                        try
+                        {
+                            for (Item item : items)
+                            {
+                                put(item);
+                            }
+                        } finally
+                        {
+                            lock.writeLock()
+                                    .unlock();
+                        }
+                    });
+    }
+
+    /**
+     * Removes the item from the index once the current transaction commits. Outside of a transaction the item is removed now.
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void deleteAfterCommit(long itemid)
+    {
+        afterCommit(() -> delete(itemid));
+    }
+
+    /**
+     * Reads the items back from the database once the current transaction commits, for items changed straight in
+     * the database. Outside of a transaction the items are read now.
+     *
+     * @param itemids the primary keys of the items changed
+     */
+    public void refreshAfterCommit(Collection<Long> itemids)
+    {
+        if (itemids.isEmpty())
+        {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(itemids);
+        afterCommit(() ->
+                    {
+                        String sql = SELECT_SQL + " AND itemid IN (" + String.join(", ",
+                                                                                   Collections.nCopies(ids.size(),
+                                                                                                       "?")) + ")";
+                        lock.writeLock()
+                                .lock();
+                        try
+                        {
+                            // an item with its location taken away is not read back, so drop them all first
+                            for (long itemid : ids)
+                            {
+                                remove(itemid);
+                            }
+                            jdbcTemplate.query(sql,
+                                               (ResultSet rs) -> add(rs),
+                                               ids.toArray());
+                        } finally
+                        {
+                            lock.writeLock()
+                                    .unlock();
+                        }
+                    });
+    }
+
+    private void afterCommit(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+
+    /**
+     * Finds the items within a distance of a point, nearest first
+     *
+     * @param latitude  the latitude (double) searched from, in degrees
+     * @param longitude the longitude (double) searched from, in degrees
+     * @param radius    the distance (double) in kilometres
+     * @param itemtype  only items of this type (String). Null for any type
+     * @param available only available or only unavailable items (Boolean). Null for both
+     * @param page      the page (int) of results wanted, starting at 0
+     * @param size      the number (int) of results on a page
+     * @return the items on the requested page, nearest first. If nothing is in range, an empty list
+     */
+    public List<Match> near(
+            double latitude,
+            double longitude,
+            double radius,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size)
+    {
+        double dlat = radius / KM_PER_DEGREE;
+        double south = Math.max(-90,
+                                latitude - dlat);
+        double north = Math.min(90,
+                                latitude + dlat);
+        double west = -180;
+        double east = 180;
+        // the box is only narrower than the whole earth when it does not reach a pole
+        if (north < 90 && south > -90)
+        {
+            double dlon = Math.toDegrees(Math.asin(Math.min(1,
+                                                            Math.sin(radius / EARTH_RADIUS) / Math.cos(Math.toRadians(latitude)))));
+            if (dlon < 180)
+            {
+                west = wrap(longitude - dlon);
+                east = wrap(longitude + dlon);
+            }
+        }
+        return search(south,
+                      west,
+                      north,
+                      east,
+                      latitude,
+                      longitude,
+                      radius,
+                      itemtype,
+                      available,
+                      page,
+                      size);
+    }
+
+    /**
+     * Finds the items inside a box, nearest the middle of the box first
+     *
+     * @param south     the southern edge (double) of the box, latitude in degrees
+     * @param west      the western edge (double) of the box, longitude in degrees
+     * @param north     the northern edge (double) of the box, latitude in degrees
+     * @param east      the eastern edge (double) of the box, longitude in degrees. Less than west for a box across
+     *                  the 180th meridian
+     * @param itemtype  only items of this type (String). Null for any type
+     * @param available only available or only unavailable items (Boolean). Null for both
+     * @param page      the page (int) of results wanted, starting at 0
+     * @param size      the number (int) of results on a page
+     * @return the items on the requested page, nearest the middle first. If nothing is inside, an empty list
+     */
+    public List<Match> within(
+            double south,
+            double west,
+            double north,
+            double east,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size)
+    {
+        double width = east >= west ? east - west : east - west + 360;
+        return search(south,
+                      west,
+                      north,
+                      east,
+                      (south + north) / 2,
+                      wrap(west + width / 2),
+                      Double.POSITIVE_INFINITY,
+                      itemtype,
+                      available,
+                      page,
+                      size);
+    }
+
+    private List<Match> search(
+            double south,
+            double west,
+            double north,
+            double east,
+            double latitude,
+            double longitude,
+            double radius,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size)
+    {
+        long offset = (long) page * size;
+        long wanted = offset + size;
+        // the farthest of the nearest matches so far is on top, to be pushed out by a nearer one. The heap grows with
+        // the matches found rather than being sized for wanted up front, which may be far more than there are items
+        Comparator<Match> nearestFirst = Comparator.comparingDouble(Match::getDistance)
+                .thenComparingLong(Match::getItemid);
+        PriorityQueue<Match> nearest = new PriorityQueue<>(nearestFirst.reversed());
+        Search search = new Search(south,
+                                   west,
+                                   north,
+                                   east,
+                                   latitude,
+                                   longitude,
+                                   radius,
+                                   itemtype,
+                                   available,
+                                   nearest,
+                                   wanted);
+
+        int columns = columns();
+        lock.readLock()
+                .lock();
+        try
+        {
+            int firstRow = row(south);
+            int lastRow = row(north);
+            int firstColumn = column(west);
+            int lastColumn = column(east);
+            int columnCount = lastColumn >= firstColumn ? lastColumn - firstColumn + 1 : columns - firstColumn + lastColumn + 1;
+            long cellCount = (long) (lastRow - firstRow + 1) * columnCount;
+
+            if (cellCount > cells.size())
+            {
+                // the box covers more cells than hold items, so look at the cells holding items instead
+                for (List<Point> cell : cells.values())
+                {
+                    search.scan(cell);
+                }
+            } else
+            {
+                for (int row = firstRow; row <= lastRow; row++)
+                {
+                    for (int i = 0; i < columnCount; i++)
+                    {
+                        List<Point> cell = cells.get(cell(row,
+                                                          (firstColumn + i) % columns));
+                        if (cell != null)
+                        {
+                            search.scan(cell);
+                        }
+                    }
+                }
+            }
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+
+        List<Match> ranked = new ArrayList<>(nearest);
+        ranked.sort(nearestFirst);
+        if (offset >= ranked.size())
+        {
+            return Collections.emptyList();
+        }
+        return ranked.subList((int) offset,
+                              ranked.size());
+    }
+
+    /**
+     * The bounds and filters of one search, and the nearest matches found so far
+     */
+    private static final class Search
+    {
+        private final double south;
+
+        private final double west;
+
+        private final double north;
+
+        private final double east;
+
+        private final double latitude;
+
+        private final double longitude;
+
+        private final double radius;
+
+        private final String itemtype;
+
+        private final Boolean available;
+
+        private final PriorityQueue<Match> nearest;
+
+        private final long wanted;
+
+        Search(
+                double south,
+                double west,
+                double north,
+                double east,
+                double latitude,
+                double longitude,
+                double radius,
+                String itemtype,
+                Boolean available,
+                PriorityQueue<Match> nearest,
+                long wanted)
+        {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+            this.itemtype = itemtype;
+            this.available = available;
+            this.nearest = nearest;
+            this.wanted = wanted;
+        }
+
+        void scan(List<Point> cell)
+        {
+            for (Point point : cell)
+            {
+                if (point.latitude < south || point.latitude > north || !inside(point.longitude))
+                {
+                    continue;
+                }
+                if ((available != null && point.available != available) || (itemtype != null && !itemtype.equalsIgnoreCase(point.itemtype)))
+                {
+                    continue;
+                }
+                double distance = distance(latitude,
+                                           longitude,
+                                           point.latitude,
+                                           point.longitude);
+                if (distance > radius)
+                {
+                    continue;
+                }
+                if (nearest.size() < wanted)
+                {
+                    nearest.add(new Match(point.itemid,
+                                          distance));
+                } else if (distance < nearest.peek()
+                        .getDistance())
+                {
+                    nearest.poll();
+                    nearest.add(new Match(point.itemid,
+                                          distance));
+                }
+            }
+        }
+
+        private boolean inside(double lon)
+        {
+            return west <= east ? lon >= west && lon <= east : lon >= west || lon <= east;
+        }
+    }
+
+    /**
+     * The great circle distance between two points, by the haversine formula
+     *
+     * @return the distance in kilometres
+     */
+    static double distance(
+            double lat1,
+            double lon1,
+            double lat2,
+            double lon2)
+    {
+        double dlat = Math.toRadians(lat2 - lat1);
+        double dlon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dlat / 2) * Math.sin(dlat / 2) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dlon / 2) * Math.sin(dlon / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1,
+                                                     Math.sqrt(a)));
+    }
+
+    /**
+     * The number of items in the index
+     *
+     * @return the number of items with a location
+     */
+    public int size()
+    {
+        lock.readLock()
+                .lock();
+        try
+        {
+            return points.size();
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    private static double wrap(double longitude)
+    {
+        if (longitude < -180)
+        {
+            return longitude + 360;
+        }
+        return longitude > 180 ? longitude - 360 : longitude;
+    }
+
+    /**
+     * The number of cells around the earth, east to west
+     */
+    private int columns()
+    {
+        return (int) Math.ceil(360 / cellSize) + 1;
+    }
+
+    private int row(double latitude)
+    {
+        return (int) Math.floor((latitude + 90) / cellSize);
+    }
+
+    private int column(double longitude)
+    {
+        return (int) Math.floor((longitude + 180) / cellSize);
+    }
+
+    private long cell(
+            int row,
+            int column)
+    {
+        return (long) row * columns() + column;
+    }
+
+    // must hold the write lock
+    private void add(ResultSet rs)
+            throws
+            SQLException
+    {
+        add(rs.getLong(1),
+            rs.getDouble(2),
+            rs.getDouble(3),
+            rs.getString(4),
+            rs.getBoolean(5));
+    }
+
+    // must hold the write lock
+    private void put(Item item)
+    {
+        remove(item.getItemid());
+        if (item.getLatitude() != null && item.getLongitude() != null)
+        {
+            add(item.getItemid(),
+                item.getLatitude(),
+                item.getLongitude(),
+                item.getItemtype(),
+                item.getIsavailable());
+        }
+    }
+
+    // must hold the write lock
+    private void add(
+            long itemid,
+            double latitude,
+            double longitude,
+            String itemtype,
+            boolean available)
+    {
+        Point point = new Point(itemid,
+                                latitude,
+                                longitude,
+                                itemtype,
+                                available,
+                                cell(row(latitude),
+                                     column(longitude)));
+        points.put(itemid,
+                   point);
+        cells.computeIfAbsent(point.cell,
+                              c -> new ArrayList<>())
+                .add(point);
+    }
+
+    // must hold the write lock
+    private void remove(long itemid)
+    {
+        Point point = points.remove(itemid);
+        if (point == null)
+        {
+            return;
+        }
+        List<Point> cell = cells.get(point.cell);
+        // order in a cell does not matter, so fill the gap with the last point
+        int i = cell.indexOf(point);
+        Point last = cell.remove(cell.size() - 1);
+        if (last != point)
+        {
+            cell.set(i,
+                     last);
+        }
+        if (cell.isEmpty())
+        {
+            cells.remove(point.cell);
+        }
+    }
+}
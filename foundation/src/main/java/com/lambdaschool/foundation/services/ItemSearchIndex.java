@@ -0,0 +1,626 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in memory search index over the item name, type, description and location.
+ * <p>
+ * Each word is broken into trigrams, padded at the front so the first letters of a word can be searched.
+ * A search matches items sharing at least two thirds of the trigrams of the query and ranks them
+ * by how many trigrams match, weighted by which field they matched in.
+ * <p>
+ * The index is rebuilt from the database at startup and kept current by ItemServiceImpl
+ * once a change to an item commits.
+ */
+@Component
+public class ItemSearchIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(ItemSearchIndex.class);
+
+    /**
+     * Fields are recorded as bits in the postings so one trigram found in several fields counts each field
+     */
+    private static final int NAME = 1;
+
+    private static final int TYPE = 2;
+
+    private static final int DESCR = 4;
+
+    private static final int LOCAT = 8;
+
+    /**
+     * The weight of each field, indexed by the field bits
+     */
+    private static final int[] WEIGHTS = new int[16];
+
+    static
+    {
+        for (int fields = 0; fields < WEIGHTS.length; fields++)
+        {
+            WEIGHTS[fields] = ((fields & NAME) != 0 ? 8 : 0) + ((fields & TYPE) != 0 ? 4 : 0) + ((fields & DESCR) != 0 ? 1 : 0) + ((fields & LOCAT) != 0 ? 2 : 0);
+        }
+    }
+
+    /**
+     * The number of rows read from the database at a time while rebuilding
+     */
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * Connects this index to the database for rebuilding
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to run the rebuild in a read only transaction so the database can stream the rows
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Removed documents are only dropped from the postings once at least this many have piled up
+     */
+    private static final int MIN_DEAD_TO_COMPACT = 1000;
+
+    /**
+     * Marks a document number whose item was removed
+     */
+    private static final long DEAD = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Every item indexed is given a document number, counting up from 0, and the postings hold document numbers
+     * instead of item ids to save space. When an item is removed or indexed again its old document number is
+     * marked dead here, and dropped from the postings the next time they are compacted.
+     * <p>
+     * document number to item id, or DEAD. Guarded by lock.
+     */
+    private long[] itemids = new long[1024];
+
+    /**
+     * The next document number to hand out. Guarded by lock.
+     */
+    private int documentCount = 0;
+
+    /**
+     * The number of dead document numbers still found in the postings. Guarded by lock.
+     */
+    private int deadCount = 0;
+
+    /**
+     * item id to the document number of the item. Guarded by lock.
+     */
+    private final Map<Long, Integer> documents = new HashMap<>();
+
+    /**
+     * trigram to the postings of that trigram. Guarded by lock.
+     */
+    private final Map<String, Posting> postings = new HashMap<>();
+
+    /**
+     * Rebuilds the index once the application, including any seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        rebuild();
+    }
+
+    /**
+     * Throws away the index and reads every item back from the database a few rows at a time
+     */
+    public void rebuild()
+    {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        lock.writeLock()
+                .lock();
+        try
+        {
+            postings.clear();
+            documents.clear();
+            itemids = new long[1024];
+            documentCount = 0;
+            deadCount = 0;
+            transactionTemplate.execute(status ->
+                                        {
+                                            jdbcTemplate.query(con ->
+                                                               {
+                                                                   PreparedStatement ps = con.prepareStatement("SELECT itemid, itemname, itemtype, itemdescr, itemlocat FROM items");
+                                                                   ps.setFetchSize(FETCH_SIZE);
+                                                                   return ps;
+                                                               },
+                                                               rs ->
+                                                               {
+                                                                   add(rs.getLong(1),
+                                                                       rs.getString(2),
+                                                                       rs.getString(3),
+                                                                       rs.getString(4),
+                                                                       rs.getString(5));
+                                                               });
+                                            return null;
+                                        });
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+        logger.info("Indexed {} items in {} ms",
+                    size(),
+                    System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds the item to the index, replacing anything indexed for it before
+     *
+     * @param item the item to index
+     */
+    public void index(Item item)
+    {
+        lock.writeLock()
+                .lock();
+        try
+        {
+            remove(item.getItemid());
+            add(item.getItemid(),
+                item.getItemname(),
+                item.getItemtype(),
+                item.getItemdescr(),
+                item.getItemlocat());
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Removes the item from the index
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void delete(long itemid)
+    {
+        lock.writeLock()
+                .lock();
+        try
+        {
+            remove(itemid);
+        } finally
+        {
+            lock.writeLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * Indexes the item once the current transaction commits. Outside of a transaction the item is indexed now.
+     *
+     * @param item the item to index
+     */
+    public void indexAfterCommit(Item item)
+    {
+        afterCommit(() -> index(item));
+    }
+
+    /**
+     * Indexes the items once the current transaction commits, taking the lock once for all of them.
+     * Outside of a transaction the items are indexed now.
+     *
+     * @param items the items to index
+     */
+    public void indexAfterCommit(Collection<Item> items)
+    {
+        afterCommit(() ->
+                    {
+                        lock.writeLock()
+                                .lock();
+                        try
+                        {
+                            for (Item item : items)
+                            {
+                                remove(item.getItemid());
+                                add(item.getItemid(),
+                                    item.getItemname(),
+                                    item.getItemtype(),
+                                    item.getItemdescr(),
+                                    item.getItemlocat());
+                            }
+                        } finally
+                        {
+                            lock.writeLock()
+                                    .unlock();
+                        }
+                    });
+    }
+
+    /**
+     * Removes the item from the index once the current transaction commits. Outside of a transaction the item is removed now.
+     *
+     * @param itemid the primary key (long) of the item to remove
+     */
+    public void deleteAfterCommit(long itemid)
+    {
+        afterCommit(() -> delete(itemid));
+    }
+
+    private void afterCommit(Runnable change)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    change.run();
+                }
+            });
+        } else
+        {
+            change.run();
+        }
+    }
+
+    /**
+     * Finds the items matching the query, best match first
+     *
+     * @param query the words (String) to search for
+     * @param page  the page (int) of results wanted, starting at 0
+     * @param size  the number (int) of results on a page
+     * @return the item ids on the requested page, best match first. If nothing matches, an empty list
+     */
+    public List<Long> search(
+            String query,
+            int page,
+            int size)
+    {
+        Set<String> grams = trigrams(query,
+                                     false);
+        if (grams.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        // the trigrams ending a whole word only add to the score, so a word still being typed matches
+        Set<String> wholeWords = trigrams(query,
+                                          true);
+        wholeWords.removeAll(grams);
+
+        int required = (grams.size() * 2 + 2) / 3;
+        long wanted = ((long) page + 1) * size;
+        lock.readLock()
+                .lock();
+        try
+        {
+            // document number to the number of trigrams it matched and the weight of the fields they matched in,
+            // for only the documents found in the postings of the query
+            Map<Integer, int[]> scores = new HashMap<>();
+            for (String gram : grams)
+            {
+                Posting posting = postings.get(gram);
+                if (posting == null)
+                {
+                    continue;
+                }
+                for (int i = 0; i < posting.size; i++)
+                {
+                    int[] score = scores.computeIfAbsent(posting.documents[i],
+                                                         k -> new int[2]);
+                    score[0]++;
+                    score[1] += WEIGHTS[posting.fields[i]];
+                }
+            }
+            for (String gram : wholeWords)
+            {
+                Posting posting = postings.get(gram);
+                if (posting == null)
+                {
+                    continue;
+                }
+                for (int i = 0; i < posting.size; i++)
+                {
+                    int[] score = scores.get(posting.documents[i]);
+                    if (score != null)
+                    {
+                        score[1] += WEIGHTS[posting.fields[i]];
+                    }
+                }
+            }
+
+            // keep only the best wanted matches, the worst of them on top of the queue
+            Comparator<Map.Entry<Integer, int[]>> byRank = (a, b) ->
+            {
+                int byScore = Integer.compare(b.getValue()[1],
+                                              a.getValue()[1]);
+                return byScore != 0 ? byScore : Long.compare(itemids[a.getKey()],
+                                                             itemids[b.getKey()]);
+            };
+            PriorityQueue<Map.Entry<Integer, int[]>> best = new PriorityQueue<>(byRank.reversed());
+            for (Map.Entry<Integer, int[]> score : scores.entrySet())
+            {
+                if (score.getValue()[0] >= required && itemids[score.getKey()] != DEAD)
+                {
+                    best.add(score);
+                    if (best.size() > wanted)
+                    {
+                        best.poll();
+                    }
+                }
+            }
+
+            List<Map.Entry<Integer, int[]>> ranked = new ArrayList<>(best);
+            ranked.sort(byRank);
+            List<Long> ids = new ArrayList<>();
+            for (int i = (int) Math.min((long) page * size,
+                                        ranked.size()); i < ranked.size(); i++)
+            {
+                ids.add(itemids[ranked.get(i)
+                        .getKey()]);
+            }
+            return ids;
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    /**
+     * The number of items in the index
+     *
+     * @return the number of items indexed
+     */
+    public int size()
+    {
+        lock.readLock()
+                .lock();
+        try
+        {
+            return documents.size();
+        } finally
+        {
+            lock.readLock()
+                    .unlock();
+        }
+    }
+
+    // must hold the write lock
+    private void add(
+            long itemid,
+            String name,
+            String type,
+            String descr,
+            String locat)
+    {
+        Map<String, Integer> fields = new HashMap<>();
+        addField(fields,
+                 name,
+                 NAME);
+        addField(fields,
+                 type,
+                 TYPE);
+        addField(fields,
+                 descr,
+                 DESCR);
+        addField(fields,
+                 locat,
+                 LOCAT);
+
+        if (documentCount == itemids.length)
+        {
+            itemids = Arrays.copyOf(itemids,
+                                    itemids.length * 2);
+        }
+        int document = documentCount++;
+        itemids[document] = itemid;
+        documents.put(itemid,
+                      document);
+
+        for (Map.Entry<String, Integer> field : fields.entrySet())
+        {
+            postings.computeIfAbsent(field.getKey(),
+                                     k -> new Posting())
+                    .add(document,
+                         field.getValue());
+        }
+    }
+
+    private void addField(
+            Map<String, Integer> fields,
+            String text,
+            int field)
+    {
+        for (String gram : trigrams(text,
+                                    true))
+        {
+            fields.merge(gram,
+                         field,
+                         (a, b) -> a | b);
+        }
+    }
+
+    // must hold the write lock
+    private void remove(long itemid)
+    {
+        Integer document = documents.remove(itemid);
+        if (document == null)
+        {
+            return;
+        }
+        itemids[document] = DEAD;
+        deadCount++;
+        if (deadCount >= MIN_DEAD_TO_COMPACT && deadCount > documents.size())
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the dead documents from the postings and numbers the live documents again from 0.
+     * Must hold the write lock.
+     */
+    private void compact()
+    {
+        int[] renumbered = new int[documentCount];
+        long[] live = new long[Math.max(1024,
+                                        documents.size() * 2)];
+        int count = 0;
+        for (int document = 0; document < documentCount; document++)
+        {
+            if (itemids[document] == DEAD)
+            {
+                renumbered[document] = -1;
+            } else
+            {
+                renumbered[document] = count;
+                live[count] = itemids[document];
+                documents.put(itemids[document],
+                              count);
+                count++;
+            }
+        }
+
+        Iterator<Posting> iterator = postings.values()
+                .iterator();
+        while (iterator.hasNext())
+        {
+            Posting posting = iterator.next();
+            posting.renumber(renumbered);
+            if (posting.size == 0)
+            {
+                iterator.remove();
+            }
+        }
+
+        itemids = live;
+        documentCount = count;
+        deadCount = 0;
+    }
+
+    /**
+     * Breaks the text into lowercase words and each word into trigrams.
+     * Words are padded with two spaces in front so short prefixes of a word still make a trigram.
+     * Indexed words are also padded with a space at the end so whole words rank above parts of words. A query is
+     * matched without the end padding, since the last word is often only partly typed, and the trigrams ending its
+     * words only add to the score of items already matched.
+     *
+     * @param text      the text to break up
+     * @param wholeWord true to pad the end of each word
+     * @return the distinct trigrams in the text
+     */
+    static Set<String> trigrams(
+            String text,
+            boolean wholeWord)
+    {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text == null)
+        {
+            return grams;
+        }
+
+        for (String word : text.toLowerCase()
+                .split("[^\\p{L}\\p{N}]+"))
+        {
+            if (word.isEmpty())
+            {
+                continue;
+            }
+            String padded = "  " + word + (wholeWord ? " " : "");
+            for (int i = 0; i + 3 <= padded.length(); i++)
+            {
+                grams.add(padded.substring(i,
+                                           i + 3));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * The documents holding one trigram, with the fields each holds it in, in the order they were added.
+     * Kept in plain arrays since there are as many of these entries as there are trigrams in all items.
+     */
+    private static class Posting
+    {
+        private int[] documents = new int[4];
+
+        private byte[] fields = new byte[4];
+
+        private int size = 0;
+
+        void add(
+                int document,
+                int field)
+        {
+            if (size == documents.length)
+            {
+                documents = Arrays.copyOf(documents,
+                                          size * 2);
+                fields = Arrays.copyOf(fields,
+                                       size * 2);
+            }
+            documents[size] = document;
+            fields[size] = (byte) field;
+            size++;
+        }
+
+        /**
+         * Moves each document to its new number, dropping documents whose new number is -1
+         */
+        void renumber(int[] renumbered)
+        {
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+            {
+                int document = renumbered[documents[i]];
+                if (document >= 0)
+                {
+                    documents[kept] = document;
+                    fields[kept] = fields[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (size < documents.length / 4)
+            {
+                documents = Arrays.copyOf(documents,
+                                          Math.max(4,
+                                                   size));
+                fields = Arrays.copyOf(fields,
+                                       Math.max(4,
+                                                size));
+            }
+        }
+    }
+}
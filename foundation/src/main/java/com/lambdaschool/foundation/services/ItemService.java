@@ -1,26 +1,104 @@
 package com.lambdaschool.foundation.services;
 
 import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemFacets;
+import com.lambdaschool.foundation.models.ItemPage;
+import com.lambdaschool.foundation.models.NearbyItem;
 import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.views.Revision;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface ItemService {
 
         /**
-         * Returns a list of all the Items
+         * Returns one page of Items ordered by item id
          *
-         * @return List of Items. If no items, empty list.
+         * @param cursor The item id (long) of the last item on the previous page. Use 0 for the first page.
+         * @param size   The maximum number (int) of items to return on this page
+         * @return A page of Items with the cursor for the next page. If no items, an empty page.
          */
-        List<Item> findAll();
+        ItemPage findAll(
+            long cursor,
+            int size);
 
         /**
-         * A list of all items whose itemname contains the given substring
+         * A list of the items best matching the given words. The name, type, description and location
+         * of each item are searched, and part words match the start of a word.
          *
-         * @param itemname The substring (String) of the itemname of the Items you seek
-         * @return List of items whose itemname contains the given substring
+         * @param itemname The words (String) to search for
+         * @param page     The page (int) of results wanted, starting at 0
+         * @param size     The number (int) of items on a page
+         * @return List of items matching the given words, best match first
+         * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException if page times size is more than items.page.maxoffset
          */
-        List<Item> findByNameContaining(String itemname);
+        List<Item> findByNameContaining(
+            String itemname,
+            int page,
+            int size);
+
+        /**
+         * A list of the items picked up within a distance of a point, nearest first. Items without a
+         * latitude and longitude are never found.
+         *
+         * @param latitude  The latitude (double) searched from, in degrees
+         * @param longitude The longitude (double) searched from, in degrees
+         * @param radius    The distance (double) in kilometres, at most items.geo.maxradius
+         * @param itemtype  Only items of this type (String). Null for any type
+         * @param available Only available or only unavailable items (Boolean). Null for both
+         * @param page      The page (int) of results wanted, starting at 0
+         * @param size      The number (int) of items on a page
+         * @return List of items in range with the distance to each, nearest first
+         * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException if the point or radius is out of range,
+         *                                                                       or page times size is more than items.page.maxoffset
+         */
+        List<NearbyItem> findNear(
+            double latitude,
+            double longitude,
+            double radius,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size);
+
+        /**
+         * A list of the items picked up inside a box, nearest the middle of the box first
+         *
+         * @param south     The southern edge (double) of the box, latitude in degrees
+         * @param west      The western edge (double) of the box, longitude in degrees
+         * @param north     The northern edge (double) of the box, latitude in degrees
+         * @param east      The eastern edge (double) of the box, longitude in degrees. Less than west for a box
+         *                  across the 180th meridian
+         * @param itemtype  Only items of this type (String). Null for any type
+         * @param available Only available or only unavailable items (Boolean). Null for both
+         * @param page      The page (int) of results wanted, starting at 0
+         * @param size      The number (int) of items on a page
+         * @return List of items inside the box with the distance of each from the middle of the box
+         * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException if the box is out of range,
+         *                                                                       or page times size is more than items.page.maxoffset
+         */
+        List<NearbyItem> findWithin(
+            double south,
+            double west,
+            double north,
+            double east,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size);
+
+        /**
+         * The number of items of each item type and in each range of daily rates, read from running counts
+         * rather than the items. The item type counts are not narrowed by the item type asked for.
+         *
+         * @param itemtype  Narrow the price counts to items of this type (String). Null for any type
+         * @param available Only available or only unavailable items (Boolean). Null for both
+         * @return The counts of each item type, most first, and of each range of daily rates, cheapest first
+         */
+        ItemFacets findFacets(
+            String itemtype,
+            Boolean available);
 
         /**
          * Returns the item with the given primary key.
@@ -30,6 +108,36 @@ public interface ItemService {
          */
         Item findItemById(long id);
 
+        /**
+         * Returns the item with the given primary key for a client to look at, counting the view. The item comes with
+         * its number of views and rentals.
+         *
+         * @param id The primary key (long) of the item you seek.
+         * @return The given Item or throws an exception if not found.
+         */
+        Item viewItem(long id);
+
+        /**
+         * Returns the items viewed or rented the most, each with its number of views and rentals. The order is
+         * by the counts written to the database, a few seconds behind the counts shown.
+         *
+         * @param by   What to order by (String), views or rentals
+         * @param size The most items returned
+         * @return The items, most viewed or rented first, or throws an exception if not ordered by views or rentals
+         */
+        List<Item> findPopular(
+            String by,
+            int size);
+
+        /**
+         * Returns the last change and row count of the item with the given primary key and the rows shown with it,
+         * without reading the item. Used to answer conditional requests.
+         *
+         * @param id The primary key (long) of the item you seek.
+         * @return The last modified date and row count of the item or throws an exception if not found.
+         */
+        Revision findItemRevision(long id);
+
         /**
          * Returns the item with the given name
          *
@@ -55,17 +163,49 @@ public interface ItemService {
          */
         Item save(Item item);
 
+        /**
+         * Same as save(item), except an existing item is only replaced if it is still at the expected version.
+         * If another change to the item slips in while it is being replaced, the replacement is tried again.
+         *
+         * @param item            the item object to be saved
+         * @param expectedVersion the version the caller last saw the item at, null to replace whatever version is current
+         * @return the saved item object including any automatically generated fields
+         * @throws com.lambdaschool.foundation.exceptions.PreconditionFailedException if the item is no longer at expectedVersion
+         */
+        Item save(
+            Item item,
+            Long expectedVersion);
+
+        /**
+         * Stores an uploaded image on this server and makes it the image of the item.
+         * Only the lender of the item or an admin may change its image.
+         *
+         * @param id        The primary key (long) of the item
+         * @param image     The bytes of a JPEG, PNG or GIF image
+         * @param imagesUrl The URL (String) the stored images are served under, ending in a slash
+         * @return the item with its new image
+         * @throws com.lambdaschool.foundation.exceptions.ResourceFoundException if the image is too big or not an image
+         */
+        Item saveImage(
+            long id,
+            InputStream image,
+            String imagesUrl);
 
         /**
          * Updates the provided fields in the item record referenced by the primary key.
          * <p>
          *
-         * @param item just the item fields to be updated.
-         * @param id   The primary key (long) of the item to update
+         * If another change to the item slips in while it is being updated, the update is tried again.
+         *
+         * @param item            just the item fields to be updated.
+         * @param id              The primary key (long) of the item to update
+         * @param expectedVersion the version the caller last saw the item at, null to update whatever version is current
          * @return the complete item object that got updated
+         * @throws com.lambdaschool.foundation.exceptions.PreconditionFailedException if the item is no longer at expectedVersion
          */
         Item update(
             Item item,
-        long id);
+        long id,
+        Long expectedVersion);
 
 }
@@ -1,19 +1,32 @@
 package com.lambdaschool.foundation.services;
 
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
 import com.lambdaschool.foundation.handlers.HelperFunctions;
 import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemFacets;
+import com.lambdaschool.foundation.models.ItemPage;
+import com.lambdaschool.foundation.models.NearbyItem;
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.models.UserRoles;
 import com.lambdaschool.foundation.models.Useremail;
+import com.lambdaschool.foundation.repository.ContractRepository;
 import com.lambdaschool.foundation.repository.ItemRepository;
 import com.lambdaschool.foundation.repository.UserRepository;
+import com.lambdaschool.foundation.views.Revision;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -37,6 +50,12 @@ public class ItemServiceImpl
     @Autowired
     private UserRepository userrepos;
 
+    /**
+     * Connects this service to the Contract table, to keep the lender of each contract current
+     */
+    @Autowired
+    private ContractRepository contractrepos;
+
 
     /**
      * Connects this service to the helper functions for this application
@@ -44,6 +63,78 @@ public class ItemServiceImpl
     @Autowired
     private HelperFunctions helper;
 
+    /**
+     * Connects this service to the item search index
+     */
+    @Autowired
+    private ItemSearchIndex searchIndex;
+
+    /**
+     * Connects this service to the bookings of each item, which go when the item is deleted
+     */
+    @Autowired
+    private ItemAvailability availability;
+
+    /**
+     * Connects this service to the index of where each item is
+     */
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    /**
+     * Connects this service to the counts of items by type, availability and price
+     */
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    /**
+     * Connects this service to the counts of views and rentals of each item
+     */
+    @Autowired
+    private ItemCounters counters;
+
+    /**
+     * Connects this service to the images stored on this server
+     */
+    @Autowired
+    private ImageStore imageStore;
+
+    /**
+     * Runs changes to existing items again if they lose a race with another change
+     */
+    @Autowired
+    private OptimisticRetry retry;
+
+    /**
+     * Connects this service to the running totals of each lender and item
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Connects this service to the outbox of changes sent to the subscribers
+     */
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Connects this service to the second level cache, to evict the cached item lists of the lenders
+     */
+    @Autowired
+    private EntityCache entityCache;
+
+    /**
+     * The furthest into the results of a search, page times size, a client may page
+     */
+    @Value("${items.page.maxoffset:10000}")
+    private long maxOffset;
+
+    /**
+     * The largest radius, in kilometres, a search by distance may use
+     */
+    @Value("${items.geo.maxradius:500}")
+    private double maxRadius;
+
     public Item findItemById(long id)
             throws
             ResourceNotFoundException
@@ -53,32 +144,240 @@ public class ItemServiceImpl
     }
 
     @Override
-    public List<Item> findByNameContaining(String itemname)
+    public Item viewItem(long id)
+            throws
+            ResourceNotFoundException
     {
-        return itemrepos.findByItemnameContainingIgnoreCase(itemname.toLowerCase());
+        Item item = findItemById(id);
+        counters.viewed(id);
+        counters.fill(List.of(item));
+        return item;
     }
 
     @Override
-    public List<Item> findAll()
+    public List<Item> findPopular(
+            String by,
+            int size)
+    {
+        if (!"views".equals(by) && !"rentals".equals(by))
+        {
+            throw new ResourceFoundException("Items can only be ordered by views or rentals");
+        }
+        List<Item> list = inOrder(counters.popular(by.equals("rentals"),
+                                                   size));
+        counters.fill(list);
+        return list;
+    }
+
+    @Override
+    public ItemFacets findFacets(
+            String itemtype,
+            Boolean available)
+    {
+        return facetCounts.facets(itemtype,
+                                  available);
+    }
+
+    @Override
+    public Revision findItemRevision(long id)
+            throws
+            ResourceNotFoundException
+    {
+        Revision revision = itemrepos.findRevision(id);
+        if (revision == null)
+        {
+            throw new ResourceNotFoundException("Item id " + id + " not found!");
+        }
+        return revision;
+    }
+
+    @Override
+    public List<Item> findByNameContaining(
+            String itemname,
+            int page,
+            int size)
+    {
+        checkOffset(page,
+                    size);
+        List<Long> ids = searchIndex.search(itemname,
+                                            page,
+                                            size);
+        List<Item> list = inOrder(ids);
+        counters.fill(list);
+        return list;
+    }
+
+    /**
+     * Rejects pages further into the results than items.page.maxoffset, as a search keeps every result up to the
+     * end of the page asked for
+     */
+    private void checkOffset(
+            int page,
+            int size)
+    {
+        if ((long) page * size > maxOffset)
+        {
+            throw new ResourceFoundException("Page times size must be at most " + maxOffset);
+        }
+    }
+
+    /**
+     * Reads the items with the given primary keys, keeping them in the order given. Items not found are left out.
+     */
+    private List<Item> inOrder(List<Long> ids)
     {
+        // the database does not return the items in the order asked for, so put them back in order
+        Map<Long, Item> found = new HashMap<>();
+        for (Item item : itemrepos.findAllById(ids))
+        {
+            found.put(item.getItemid(),
+                      item);
+        }
+
         List<Item> list = new ArrayList<>();
+        for (long id : ids)
+        {
+            Item item = found.get(id);
+            if (item != null)
+            {
+                list.add(item);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public List<NearbyItem> findNear(
+            double latitude,
+            double longitude,
+            double radius,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size)
+    {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+        {
+            throw new ResourceFoundException("Latitude must be between -90 and 90 and longitude between -180 and 180");
+        }
+        if (!(radius > 0) || radius > maxRadius)
+        {
+            throw new ResourceFoundException("Radius must be more than 0 and at most " + maxRadius + " km");
+        }
+        checkOffset(page,
+                    size);
+        return load(locationIndex.near(latitude,
+                                       longitude,
+                                       radius,
+                                       itemtype,
+                                       available,
+                                       page,
+                                       size));
+    }
+
+    @Override
+    public List<NearbyItem> findWithin(
+            double south,
+            double west,
+            double north,
+            double east,
+            String itemtype,
+            Boolean available,
+            int page,
+            int size)
+    {
+        if (south < -90 || north > 90 || south > north || west < -180 || west > 180 || east < -180 || east > 180)
+        {
+            throw new ResourceFoundException("The box must have south no more than north, latitudes between -90 and 90 and longitudes between -180 and 180");
+        }
+        checkOffset(page,
+                    size);
+        return load(locationIndex.within(south,
+                                         west,
+                                         north,
+                                         east,
+                                         itemtype,
+                                         available,
+                                         page,
+                                         size));
+    }
+
+    /**
+     * Reads the items found by a search by distance, keeping them in the order found
+     */
+    private List<NearbyItem> load(List<ItemLocationIndex.Match> matches)
+    {
+        List<Long> ids = new ArrayList<>();
+        for (ItemLocationIndex.Match match : matches)
+        {
+            ids.add(match.getItemid());
+        }
+        Map<Long, Item> found = new HashMap<>();
+        for (Item item : itemrepos.findAllById(ids))
+        {
+            found.put(item.getItemid(),
+                      item);
+        }
+
+        List<NearbyItem> list = new ArrayList<>();
+        for (ItemLocationIndex.Match match : matches)
+        {
+            Item item = found.get(match.getItemid());
+            if (item != null)
+            {
+                list.add(new NearbyItem(item,
+                                        match.getDistance()));
+            }
+        }
+        counters.fill(found.values());
+        return list;
+    }
+
+    @Override
+    public ItemPage findAll(
+            long cursor,
+            int size)
+    {
         /*
-         * findAll returns an iterator set.
-         * iterate over the iterator set and add each element to an array list.
+         * ask for one more item than the page size.
+         * if it comes back, there is a next page and the last item on this page is the next cursor.
          */
-        itemrepos.findAll()
-                .iterator()
-                .forEachRemaining(list::add);
-        return list;
+        List<Item> list = itemrepos.findByItemidGreaterThanOrderByItemidAsc(cursor,
+                                                                           PageRequest.of(0,
+                                                                                          size + 1));
+        Long next = null;
+        if (list.size() > size)
+        {
+            list = list.subList(0,
+                                size);
+            next = list.get(size - 1)
+                    .getItemid();
+        }
+        counters.fill(list);
+        return new ItemPage(list,
+                            size,
+                            next);
     }
 
     @Transactional
     @Override
     public void delete(long id)
     {
-        itemrepos.findById(id)
+        Item item = itemrepos.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Item id " + id + " not found!"));
+        long lenderid = item.getLender()
+                .getUserid();
         itemrepos.deleteById(id);
+        earnings.itemDeleted(id,
+                             lenderid);
+        entityCache.evictLenderItems(List.of(lenderid));
+        outbox.itemChanged("item.deleted",
+                           item);
+        searchIndex.deleteAfterCommit(id);
+        locationIndex.deleteAfterCommit(id);
+        facetCounts.deleteAfterCommit(id);
+        availability.forgetAfterCommit(id);
+        counters.delete(id);
     }
 
     @Override
@@ -89,50 +388,102 @@ public class ItemServiceImpl
         {
             throw new ResourceNotFoundException("Item name " + name + " not found!");
         }
+        counters.fill(List.of(uu));
         return uu;
     }
 
 
 
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     @Override
     public Item save(Item item)
     {
-        Item newItem = new Item();
-
-        if (item.getItemid() != 0) {
-            System.out.println("item found, item id = "+ item.getItemid());
-            itemrepos.findById(item.getItemid())
-                    .orElseThrow(() -> new ResourceNotFoundException("Item id " + item.getItemid() + " not found"));
-            newItem.setItemid(item.getItemid());
-        }
-
-        newItem.setItemname(item.getItemname().toLowerCase());
-        newItem.setItemtype(item.getItemtype().toLowerCase());
-        newItem.setItemdescr(item.getItemdescr());
-        newItem.setItemlocat(item.getItemlocat());
-        newItem.setIsavailable(item.getIsavailable());
-        newItem.setItemrate(item.getItemrate());
-        newItem.setItemimg(item.getItemimg());
-        newItem.setLender(userrepos.findByUsername(item.getLender().getUsername()));
+        return save(item,
+                    null);
+    }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public Item save(
+            Item item,
+            Long expectedVersion)
+    {
+        return retry.run(() ->
+                         {
+                             Item newItem = new Item();
+                             Long previousLenderid = null;
 
+                             if (item.getItemid() != 0) {
+                                 System.out.println("item found, item id = "+ item.getItemid());
+                                 Item currentItem = itemrepos.findById(item.getItemid())
+                                         .orElseThrow(() -> new ResourceNotFoundException("Item id " + item.getItemid() + " not found"));
+                                 helper.checkVersion("Item id " + item.getItemid(),
+                                                     currentItem.getVersion(),
+                                                     expectedVersion);
+                                 newItem.setItemid(item.getItemid());
+                                 newItem.setVersion(currentItem.getVersion());
+                                 previousLenderid = currentItem.getLender()
+                                         .getUserid();
+                             }
 
+                             newItem.setItemname(item.getItemname().toLowerCase());
+                             newItem.setItemtype(item.getItemtype().toLowerCase());
+                             newItem.setItemdescr(item.getItemdescr());
+                             newItem.setItemlocat(item.getItemlocat());
+                             newItem.setIsavailable(item.getIsavailable());
+                             newItem.setItemratecents(item.getItemratecents());
+                             newItem.setItemimg(item.getItemimg());
+                             newItem.setLatitude(item.getLatitude());
+                             newItem.setLongitude(item.getLongitude());
+                             newItem.setLender(userrepos.findByUsername(item.getLender().getUsername()));
 
-        //     use this if item has children
-        /*
-        newCustomer.getOrders().clear();
-        for (Order o : customer.getOrders()) {
-            Order newOrder = new Order(
-                    o.getOrdamount(),
-                    o.getAdvanceamount(),
-                    o.getOrderdescription(),
-                    newCustomer);
-            newCustomer.getOrders().add(newOrder);
-        }
-        */
+                             newItem = itemrepos.save(newItem);
+                             long lenderid = newItem.getLender()
+                                     .getUserid();
+                             if (previousLenderid == null)
+                             {
+                                 earnings.itemsAdded(lenderid,
+                                                     Collections.singletonList(newItem.getItemid()));
+                                 entityCache.evictLenderItems(List.of(lenderid));
+                             } else if (previousLenderid != lenderid)
+                             {
+                                 contractrepos.updateLenderid(newItem.getItemid(),
+                                                              lenderid);
+                                 earnings.itemMoved(newItem.getItemid(),
+                                                    previousLenderid,
+                                                    lenderid);
+                                 entityCache.evictLenderItems(List.of(previousLenderid,
+                                                                      lenderid));
+                             }
+                             outbox.itemChanged(previousLenderid == null ? "item.created" : "item.updated",
+                                                newItem);
+                             searchIndex.indexAfterCommit(newItem);
+                             locationIndex.indexAfterCommit(newItem);
+                             facetCounts.indexAfterCommit(newItem);
+                             return newItem;
+                         });
+    }
 
-        return itemrepos.save(newItem);
+    @Transactional(propagation = Propagation.SUPPORTS)
+    @Override
+    public Item saveImage(
+            long id,
+            InputStream image,
+            String imagesUrl)
+    {
+        helper.isAuthorizedToMakeChange(findItemById(id).getLender()
+                                                .getUsername());
+        // written to disk before the item is changed, so no transaction is held open while the image uploads
+        String url = imagesUrl + imageStore.store(image);
+        return retry.run(() ->
+                         {
+                             Item item = findItemById(id);
+                             item.setItemimg(url);
+                             item = itemrepos.save(item);
+                             outbox.itemChanged("item.updated",
+                                                item);
+                             return item;
+                         });
     }
 
     /*
@@ -149,37 +500,50 @@ public class ItemServiceImpl
 
     }
     */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     @Override
     public Item update(
             Item item,
-            long id)
+            long id,
+            Long expectedVersion)
     {
-        User currentUser = userrepos.findByUsername(item.getLender().getUsername());
-        Item updateitem = item;
+        return retry.run(() ->
+                         {
+                             User currentUser = userrepos.findByUsername(item.getLender().getUsername());
 
-        if (helper.isAuthorizedToMakeChange(currentUser.getUsername()))
-        {
-            updateitem = itemrepos.findById(id)
-                    .orElseThrow(() -> new ResourceNotFoundException("Item id " + item.getItemid() + " not found"));
-
-            updateitem.setItemid(id);
-            if (item.getItemname() != null){ updateitem.setItemname(item.getItemname().toLowerCase()); }
-            if ( item.getItemtype() != null){ updateitem.setItemtype(item.getItemtype().toLowerCase()); }
-            if ( item.getItemdescr() != null){ updateitem.setItemdescr(item.getItemdescr()); }
-            if ( item.getItemlocat() != null){ updateitem.setItemlocat(item.getItemlocat()); }
-            if ( item.getIsavailable() ){ updateitem.setIsavailable(item.getIsavailable()); }
-            if ( item.getItemrate() != 0.0 ){ updateitem.setItemrate(item.getItemrate()); System.out.println("itemrate update");}
-            if ( item.getItemimg() != null){ updateitem.setItemimg(item.getItemimg()); }
-
-            return itemrepos.save(updateitem);
-        } else
-        {
-            {
-                // note we should never get to this line but is needed for the compiler
-                // to recognize that this exception can be thrown
-                throw new ResourceNotFoundException("You are not authorized to make changes on this item my dude.");
-            }
-        }
+                             if (helper.isAuthorizedToMakeChange(currentUser.getUsername()))
+                             {
+                                 Item updateitem = itemrepos.findById(id)
+                                         .orElseThrow(() -> new ResourceNotFoundException("Item id " + item.getItemid() + " not found"));
+                                 helper.checkVersion("Item id " + id,
+                                                     updateitem.getVersion(),
+                                                     expectedVersion);
+
+                                 updateitem.setItemid(id);
+                                 if (item.getItemname() != null){ updateitem.setItemname(item.getItemname().toLowerCase()); }
+                                 if ( item.getItemtype() != null){ updateitem.setItemtype(item.getItemtype().toLowerCase()); }
+                                 if ( item.getItemdescr() != null){ updateitem.setItemdescr(item.getItemdescr()); }
+                                 if ( item.getItemlocat() != null){ updateitem.setItemlocat(item.getItemlocat()); }
+                                 if ( item.getIsavailable() ){ updateitem.setIsavailable(item.getIsavailable()); }
+                                 if ( item.getItemratecents() != 0 ){ updateitem.setItemratecents(item.getItemratecents()); System.out.println("itemrate update");}
+                                 if ( item.getItemimg() != null){ updateitem.setItemimg(item.getItemimg()); }
+                                 if ( item.getLatitude() != null && item.getLongitude() != null ){ updateitem.setLatitude(item.getLatitude()); updateitem.setLongitude(item.getLongitude()); }
+
+                                 updateitem = itemrepos.save(updateitem);
+                                 outbox.itemChanged("item.updated",
+                                                    updateitem);
+                                 searchIndex.indexAfterCommit(updateitem);
+                                 locationIndex.indexAfterCommit(updateitem);
+                                 facetCounts.indexAfterCommit(updateitem);
+                                 return updateitem;
+                             } else
+                             {
+                                 {
+                                     // note we should never get to this line but is needed for the compiler
+                                     // to recognize that this exception can be thrown
+                                     throw new ResourceNotFoundException("You are not authorized to make changes on this item my dude.");
+                                 }
+                             }
+                         });
     }
 }
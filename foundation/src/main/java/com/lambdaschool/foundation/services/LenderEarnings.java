@@ -0,0 +1,516 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.ItemStats;
+import com.lambdaschool.foundation.models.LenderDashboard;
+import com.lambdaschool.foundation.models.LenderStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the running totals behind the lender dashboard: per item and per lender, the number of contracts,
+ * the active rentals, the revenue and the days booked. See ItemStats and LenderStats.
+ * <p>
+ * The totals are changed by the difference each change makes, with plain SQL on the connection of the transaction
+ * making the change, so they commit or roll back with it. ContractService passes the contribution of a contract
+ * before and after each change, ItemService and ItemImportService the items they add, move and delete,
+ * and ContractExpiry the contracts it ends. The lender row is always changed before the item row. A row not there
+ * yet is started by the same statement, a merge, which is run again should another transaction start the row first.
+ * <p>
+ * Anything written around these, by BulkSeedData, by deleting a user or straight to the database, is put right by
+ * reconcile, which recomputes every row from the items and contracts with set-based SQL. It runs every night on
+ * lenders.stats.reconcile.cron. It first locks every lender row, so a change already counting itself waits to commit
+ * before the recompute reads the contracts, and a change not yet counted waits for the recompute to commit.
+ */
+@Component
+public class LenderEarnings
+{
+    private static final Logger logger = LoggerFactory.getLogger(LenderEarnings.class);
+
+    private static final String LENDER_DELTA_SQL = "MERGE INTO lenderstats l USING (SELECT CAST(? AS BIGINT) AS items, CAST(? AS BIGINT) AS contracts," +
+        " CAST(? AS BIGINT) AS activecontracts, CAST(? AS BIGINT) AS revenuecents, CAST(? AS BIGINT) AS bookeddays, CAST(? AS BIGINT) AS lenderid) t" +
+        " ON l.lenderid = t.lenderid" +
+        " WHEN MATCHED THEN UPDATE SET items = l.items + t.items, contracts = l.contracts + t.contracts, activecontracts = l.activecontracts + t.activecontracts," +
+        " revenuecents = l.revenuecents + t.revenuecents, bookeddays = l.bookeddays + t.bookeddays" +
+        " WHEN NOT MATCHED THEN INSERT (lenderid, items, contracts, activecontracts, revenuecents, bookeddays)" +
+        " VALUES (t.lenderid, t.items, t.contracts, t.activecontracts, t.revenuecents, t.bookeddays)";
+
+    private static final String ITEM_DELTA_SQL = "MERGE INTO itemstats s USING (SELECT CAST(? AS BIGINT) AS contracts, CAST(? AS BIGINT) AS activecontracts," +
+        " CAST(? AS BIGINT) AS revenuecents, CAST(? AS BIGINT) AS bookeddays, CAST(? AS BIGINT) AS itemid, CAST(? AS BIGINT) AS lenderid) t" +
+        " ON s.itemid = t.itemid" +
+        " WHEN MATCHED THEN UPDATE SET contracts = s.contracts + t.contracts, activecontracts = s.activecontracts + t.activecontracts," +
+        " revenuecents = s.revenuecents + t.revenuecents, bookeddays = s.bookeddays + t.bookeddays" +
+        " WHEN NOT MATCHED THEN INSERT (itemid, lenderid, contracts, activecontracts, revenuecents, bookeddays)" +
+        " VALUES (t.itemid, t.lenderid, t.contracts, t.activecontracts, t.revenuecents, t.bookeddays)";
+
+    private static final String ITEM_INSERT_SQL = "INSERT INTO itemstats (contracts, activecontracts, revenuecents, bookeddays, itemid, lenderid) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String ITEM_SQL = "SELECT contracts, activecontracts, revenuecents, bookeddays FROM itemstats WHERE itemid = ?";
+
+    private static final String ITEM_LENDER_SQL = "UPDATE itemstats SET lenderid = ? WHERE itemid = ?";
+
+    private static final String ITEM_DELETE_SQL = "DELETE FROM itemstats WHERE itemid = ?";
+
+    private static final String ENDED_LENDERS_SQL = "UPDATE lenderstats SET activecontracts = activecontracts" +
+        " - (SELECT COUNT(*) FROM contracts c WHERE c.lenderid = lenderstats.lenderid AND c.raw_contractstartdate IS NOT NULL AND c.contractid IN (%1$s))" +
+        " WHERE lenderid IN (SELECT c.lenderid FROM contracts c WHERE c.contractid IN (%1$s))";
+
+    private static final String ENDED_ITEMS_SQL = "UPDATE itemstats SET activecontracts = activecontracts" +
+        " - (SELECT COUNT(*) FROM contracts c WHERE c.itemid = itemstats.itemid AND c.raw_contractstartdate IS NOT NULL AND c.contractid IN (%1$s))" +
+        " WHERE itemid IN (SELECT c.itemid FROM contracts c WHERE c.contractid IN (%1$s))";
+
+    private static final String LOCK_LENDERS_SQL = "UPDATE lenderstats SET items = items";
+
+    private static final String RECOMPUTE_ITEMS_SQL = "MERGE INTO itemstats s USING (" +
+        "SELECT i.itemid, i.userid AS lenderid, COUNT(c.contractid) AS contracts," +
+        " COALESCE(SUM(CASE WHEN c.is_active = TRUE AND c.raw_contractstartdate IS NOT NULL THEN 1 ELSE 0 END), 0) AS activecontracts," +
+        " COALESCE(SUM(CASE WHEN c.raw_contractstartdate IS NOT NULL THEN c.contractfeecents ELSE 0 END), 0) AS revenuecents," +
+        " COALESCE(SUM(CASE WHEN c.raw_contractstartdate IS NOT NULL THEN c.contractlength ELSE 0 END), 0) AS bookeddays" +
+        " FROM items i LEFT JOIN contracts c ON c.itemid = i.itemid GROUP BY i.itemid, i.userid) t ON s.itemid = t.itemid" +
+        " WHEN MATCHED THEN UPDATE SET lenderid = t.lenderid, contracts = t.contracts, activecontracts = t.activecontracts," +
+        " revenuecents = t.revenuecents, bookeddays = t.bookeddays" +
+        " WHEN NOT MATCHED THEN INSERT (itemid, lenderid, contracts, activecontracts, revenuecents, bookeddays)" +
+        " VALUES (t.itemid, t.lenderid, t.contracts, t.activecontracts, t.revenuecents, t.bookeddays)";
+
+    private static final String DELETE_STALE_ITEMS_SQL = "DELETE FROM itemstats WHERE NOT EXISTS (SELECT 1 FROM items i WHERE i.itemid = itemstats.itemid)";
+
+    private static final String RECOMPUTE_LENDERS_SQL = "MERGE INTO lenderstats l USING (" +
+        "SELECT lenderid, COUNT(*) AS items, SUM(contracts) AS contracts, SUM(activecontracts) AS activecontracts," +
+        " SUM(revenuecents) AS revenuecents, SUM(bookeddays) AS bookeddays FROM itemstats GROUP BY lenderid) t ON l.lenderid = t.lenderid" +
+        " WHEN MATCHED THEN UPDATE SET items = t.items, contracts = t.contracts, activecontracts = t.activecontracts," +
+        " revenuecents = t.revenuecents, bookeddays = t.bookeddays" +
+        " WHEN NOT MATCHED THEN INSERT (lenderid, items, contracts, activecontracts, revenuecents, bookeddays)" +
+        " VALUES (t.lenderid, t.items, t.contracts, t.activecontracts, t.revenuecents, t.bookeddays)";
+
+    private static final String DELETE_STALE_LENDERS_SQL = "DELETE FROM lenderstats WHERE NOT EXISTS (SELECT 1 FROM itemstats s WHERE s.lenderid = lenderstats.lenderid)";
+
+    private static final String LENDER_SQL = "SELECT lenderid, items, contracts, activecontracts, revenuecents, bookeddays FROM lenderstats WHERE lenderid = ?";
+
+    private static final String TOP_ITEMS_SQL = "SELECT s.itemid, s.lenderid, i.itemname, s.contracts, s.activecontracts, s.revenuecents, s.bookeddays" +
+        " FROM itemstats s JOIN items i ON i.itemid = s.itemid WHERE s.lenderid = ? ORDER BY s.lenderid, s.revenuecents DESC, s.itemid LIMIT ?";
+
+    /**
+     * Connects the totals to the database
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Used to run the reconciliation in its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The number of items listed on the dashboard
+     */
+    @Value("${lenders.dashboard.items:20}")
+    private int dashboardItems;
+
+    /**
+     * What a contract adds to the totals of its item and lender
+     */
+    public static final class Contribution
+    {
+        /**
+         * What a contract that does not exist adds
+         */
+        public static final Contribution NONE = new Contribution(0,
+                                                                 0,
+                                                                 0,
+                                                                 0,
+                                                                 0,
+                                                                 0,
+                                                                 0);
+
+        private final long itemid;
+
+        private final long lenderid;
+
+        private final long contracts;
+
+        private final long activecontracts;
+
+        private final long revenuecents;
+
+        private final long bookeddays;
+
+        private final long items;
+
+        private Contribution(
+                long itemid,
+                long lenderid,
+                long items,
+                long contracts,
+                long activecontracts,
+                long revenuecents,
+                long bookeddays)
+        {
+            this.itemid = itemid;
+            this.lenderid = lenderid;
+            this.items = items;
+            this.contracts = contracts;
+            this.activecontracts = activecontracts;
+            this.revenuecents = revenuecents;
+            this.bookeddays = bookeddays;
+        }
+
+        /**
+         * What the contract adds as it is now. The values are copied, so later changes to the contract do not change this.
+         *
+         * @param contract the contract, null for none
+         * @return the contribution of the contract
+         */
+        public static Contribution of(Contract contract)
+        {
+            if (contract == null)
+            {
+                return NONE;
+            }
+            boolean started = contract.getRaw_contractstartdate() != null;
+            return new Contribution(contract.getItem()
+                                            .getItemid(),
+                                    contract.getLenderid(),
+                                    0,
+                                    1,
+                                    started && contract.isActive() ? 1 : 0,
+                                    started ? contract.getContractfeecents() : 0,
+                                    started ? contract.getContractlength() : 0);
+        }
+
+        private Contribution minus(Contribution other)
+        {
+            return new Contribution(itemid,
+                                    lenderid,
+                                    items - other.items,
+                                    contracts - other.contracts,
+                                    activecontracts - other.activecontracts,
+                                    revenuecents - other.revenuecents,
+                                    bookeddays - other.bookeddays);
+        }
+
+        private Contribution negate()
+        {
+            return NONE.minus(this)
+                    .at(itemid,
+                        lenderid);
+        }
+
+        private Contribution at(
+                long itemid,
+                long lenderid)
+        {
+            return new Contribution(itemid,
+                                    lenderid,
+                                    items,
+                                    contracts,
+                                    activecontracts,
+                                    revenuecents,
+                                    bookeddays);
+        }
+
+        private Contribution withItems(long items)
+        {
+            return new Contribution(itemid,
+                                    lenderid,
+                                    items,
+                                    contracts,
+                                    activecontracts,
+                                    revenuecents,
+                                    bookeddays);
+        }
+
+        private boolean isZero()
+        {
+            return items == 0 && contracts == 0 && activecontracts == 0 && revenuecents == 0 && bookeddays == 0;
+        }
+    }
+
+    /**
+     * Moves the totals from what a contract added before a change to what it adds after it.
+     * Call in the transaction making the change, once the change is made.
+     *
+     * @param before the contribution of the contract before the change, NONE for a new contract
+     * @param after  the contribution of the contract after the change, NONE for a deleted contract
+     */
+    public void contractChanged(
+            Contribution before,
+            Contribution after)
+    {
+        if (before == Contribution.NONE && after == Contribution.NONE)
+        {
+            return;
+        }
+        if (before == Contribution.NONE)
+        {
+            apply(after);
+        } else if (after == Contribution.NONE)
+        {
+            apply(before.negate());
+        } else if (before.itemid == after.itemid && before.lenderid == after.lenderid)
+        {
+            apply(after.minus(before));
+        } else if (before.lenderid <= after.lenderid)
+        {
+            apply(before.negate());
+            apply(after);
+        } else
+        {
+            apply(after);
+            apply(before.negate());
+        }
+    }
+
+    /**
+     * Counts new items towards their lender, and starts the totals of each item at nothing.
+     * Call in the transaction adding the items.
+     *
+     * @param lenderid the user lending the items
+     * @param itemids  the primary keys of the new items
+     */
+    public void itemsAdded(
+            long lenderid,
+            Collection<Long> itemids)
+    {
+        if (itemids.isEmpty())
+        {
+            return;
+        }
+        changeLender(lenderid,
+                     Contribution.NONE.withItems(itemids.size()));
+        jdbcTemplate.batchUpdate(ITEM_INSERT_SQL,
+                                 itemids,
+                                 itemids.size(),
+                                 (ps, itemid) ->
+                                 {
+                                     ps.setLong(1,
+                                                0);
+                                     ps.setLong(2,
+                                                0);
+                                     ps.setLong(3,
+                                                0);
+                                     ps.setLong(4,
+                                                0);
+                                     ps.setLong(5,
+                                                itemid);
+                                     ps.setLong(6,
+                                                lenderid);
+                                 });
+    }
+
+    /**
+     * Moves the totals of an item from its old lender to its new one. Call in the transaction changing the lender.
+     *
+     * @param itemid       the item
+     * @param fromLenderid the user lending the item before
+     * @param toLenderid   the user lending the item now
+     */
+    public void itemMoved(
+            long itemid,
+            long fromLenderid,
+            long toLenderid)
+    {
+        Contribution item = find(itemid).at(itemid,
+                                            toLenderid)
+                .withItems(1);
+        if (fromLenderid <= toLenderid)
+        {
+            changeLender(fromLenderid,
+                         item.negate());
+            changeLender(toLenderid,
+                         item);
+        } else
+        {
+            changeLender(toLenderid,
+                         item);
+            changeLender(fromLenderid,
+                         item.negate());
+        }
+        jdbcTemplate.update(ITEM_LENDER_SQL,
+                            toLenderid,
+                            itemid);
+    }
+
+    /**
+     * Takes an item, and the contracts deleted with it, off the totals of its lender.
+     * Call in the transaction deleting the item.
+     *
+     * @param itemid   the item
+     * @param lenderid the user lending the item
+     */
+    public void itemDeleted(
+            long itemid,
+            long lenderid)
+    {
+        changeLender(lenderid,
+                     find(itemid).withItems(1)
+                             .negate());
+        jdbcTemplate.update(ITEM_DELETE_SQL,
+                            itemid);
+    }
+
+    /**
+     * Takes contracts just ended off the active rentals of their items and lenders, with one statement for the lenders
+     * and one for the items. Call in the transaction ending the contracts, once they are ended.
+     *
+     * @param contractids the contracts ended
+     */
+    public void contractsEnded(Collection<Long> contractids)
+    {
+        if (contractids.isEmpty())
+        {
+            return;
+        }
+        String placeholders = String.join(", ",
+                                          Collections.nCopies(contractids.size(),
+                                                              "?"));
+        List<Object> args = new ArrayList<>(contractids);
+        args.addAll(contractids);
+        jdbcTemplate.update(String.format(ENDED_LENDERS_SQL,
+                                          placeholders),
+                            args.toArray());
+        jdbcTemplate.update(String.format(ENDED_ITEMS_SQL,
+                                          placeholders),
+                            args.toArray());
+    }
+
+    /**
+     * Recomputes every total from the items and contracts in one transaction
+     */
+    @Scheduled(cron = "${lenders.stats.reconcile.cron:0 30 3 * * *}")
+    public void reconcile()
+    {
+        long start = System.currentTimeMillis();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                                                                         {
+                                                                             jdbcTemplate.update(LOCK_LENDERS_SQL);
+                                                                             jdbcTemplate.update(RECOMPUTE_ITEMS_SQL);
+                                                                             jdbcTemplate.update(DELETE_STALE_ITEMS_SQL);
+                                                                             jdbcTemplate.update(RECOMPUTE_LENDERS_SQL);
+                                                                             jdbcTemplate.update(DELETE_STALE_LENDERS_SQL);
+                                                                         });
+        logger.info("Reconciled lender totals in {} ms",
+                    System.currentTimeMillis() - start);
+    }
+
+    /**
+     * The dashboard of a lender, read from the totals: one row for the lender and a page of the item index
+     *
+     * @param lenderid the user lending the items
+     * @return the totals of the lender, all zero if they lend nothing, and their items earning the most
+     */
+    public LenderDashboard dashboard(long lenderid)
+    {
+        List<LenderStats> totals = jdbcTemplate.query(LENDER_SQL,
+                                                      (rs, rowNum) -> new LenderStats(rs.getLong(1),
+                                                                                      rs.getLong(2),
+                                                                                      rs.getLong(3),
+                                                                                      rs.getLong(4),
+                                                                                      rs.getLong(5),
+                                                                                      rs.getLong(6)),
+                                                      lenderid);
+        List<ItemStats> items = jdbcTemplate.query(TOP_ITEMS_SQL,
+                                                   (rs, rowNum) -> new ItemStats(rs.getLong(1),
+                                                                                 rs.getLong(2),
+                                                                                 rs.getString(3),
+                                                                                 rs.getLong(4),
+                                                                                 rs.getLong(5),
+                                                                                 rs.getLong(6),
+                                                                                 rs.getLong(7)),
+                                                   lenderid,
+                                                   dashboardItems);
+        return new LenderDashboard(totals.isEmpty() ? new LenderStats(lenderid,
+                                                                      0,
+                                                                      0,
+                                                                      0,
+                                                                      0,
+                                                                      0) : totals.get(0),
+                                   items);
+    }
+
+    /**
+     * The current totals of an item, nothing if it has none yet
+     */
+    private Contribution find(long itemid)
+    {
+        List<Contribution> found = jdbcTemplate.query(ITEM_SQL,
+                                                      (rs, rowNum) -> new Contribution(itemid,
+                                                                                       0,
+                                                                                       0,
+                                                                                       rs.getLong(1),
+                                                                                       rs.getLong(2),
+                                                                                       rs.getLong(3),
+                                                                                       rs.getLong(4)),
+                                                      itemid);
+        return found.isEmpty() ? Contribution.NONE.at(itemid,
+                                                      0) : found.get(0);
+    }
+
+    /**
+     * Adds the change to the lender and then to the item
+     */
+    private void apply(Contribution change)
+    {
+        if (change.isZero())
+        {
+            return;
+        }
+        changeLender(change.lenderid,
+                     change);
+        // starts the row of an item written without going through ItemService, not reconciled yet
+        upsert(ITEM_DELTA_SQL,
+               change.contracts,
+               change.activecontracts,
+               change.revenuecents,
+               change.bookeddays,
+               change.itemid,
+               change.lenderid);
+    }
+
+    private void changeLender(
+            long lenderid,
+            Contribution change)
+    {
+        upsert(LENDER_DELTA_SQL,
+               change.items,
+               change.contracts,
+               change.activecontracts,
+               change.revenuecents,
+               change.bookeddays,
+               lenderid);
+    }
+
+    /**
+     * Runs a merge adding to a row, or starting it. Two transactions can both find no row and both insert it, the
+     * second failing once the first commits. The merge is then run again, and this time adds to the row committed.
+     */
+    private void upsert(
+            String sql,
+            Object... args)
+    {
+        try
+        {
+            jdbcTemplate.update(sql,
+                                args);
+        } catch (DuplicateKeyException e)
+        {
+            jdbcTemplate.update(sql,
+                                args);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.lambdaschool.foundation.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a read-modify-write of versioned entities in its own transaction. If another request changed the same rows
+ * first, the version check fails when the transaction commits and the work is run again on fresh copies of the rows,
+ * a few times at most. Nothing is locked while the work runs.
+ * <p>
+ * The work must read everything it changes inside the work, so each try starts from what is in the database.
+ * Inside a transaction someone else started the work cannot be tried again, so it is run once as part of that transaction.
+ */
+@Component
+public class OptimisticRetry
+{
+    /**
+     * Used to give each try its own transaction
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The most times the work is tried
+     */
+    @Value("${local.optimistic.attempts:3}")
+    private int attempts;
+
+    /**
+     * Runs the work, trying again if it lost a race with another change to the same rows
+     *
+     * @param work the read-modify-write to run
+     * @param <T>  the type of what the work returns
+     * @return what the work returned on the try that committed
+     * @throws OptimisticLockingFailureException if every try lost a race
+     */
+    public <T> T run(Supplier<T> work)
+    {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++)
+        {
+            boolean[] joined = {false};
+            try
+            {
+                return transactionTemplate.execute(status ->
+                                                   {
+                                                       joined[0] = !status.isNewTransaction();
+                                                       return work.get();
+                                                   });
+            } catch (OptimisticLockingFailureException e)
+            {
+                if (joined[0] || attempt >= attempts)
+                {
+                    throw e;
+                }
+                // a short random wait so two requests that collided do not collide again
+                try
+                {
+                    Thread.sleep(ThreadLocalRandom.current()
+                                         .nextInt(5,
+                                                  20) * attempt);
+                } catch (InterruptedException ie)
+                {
+                    Thread.currentThread()
+                            .interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
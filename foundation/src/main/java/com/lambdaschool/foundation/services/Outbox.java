@@ -0,0 +1,283 @@
+package com.lambdaschool.foundation.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.Money;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes changes to contracts and items to the outbox table, in the transaction making the change, so an event is
+ * sent if and only if the change commits. OutboxRelay is woken once the transaction commits to send them on.
+ * <p>
+ * A contract goes through contract.created, contract.accepted once both sides accept it and it starts,
+ * and contract.completed once both sides complete it, or contract.expired if its end date passes first.
+ * Any other change is contract.updated. Items have item.created, item.updated and item.deleted.
+ */
+@Component
+@Transactional(propagation = Propagation.MANDATORY)
+public class Outbox
+{
+    public static final String CONTRACT = "contract";
+
+    public static final String ITEM = "item";
+
+    private static final String INSERT_SQL = "INSERT INTO outbox (eventid, aggregatetype, aggregateid, eventtype, payload, createdat, failed)" +
+        " VALUES (nextval('outbox_seq'), ?, ?, ?, ?, ?, FALSE)";
+
+    /**
+     * Connects the outbox to the database
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes the payloads the same way the response bodies of the endpoints are written
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Sends the events on once they commit
+     */
+    @Autowired
+    private OutboxRelay relay;
+
+    /**
+     * Where a contract is in its life, to tell which event a change to it is
+     *
+     * @param contract the contract, null for one not made yet
+     * @return null, pending, accepted or completed
+     */
+    public static String stateOf(Contract contract)
+    {
+        if (contract == null)
+        {
+            return null;
+        }
+        if (!contract.isActive())
+        {
+            return "completed";
+        }
+        return contract.getRaw_contractstartdate() == null ? "pending" : "accepted";
+    }
+
+    /**
+     * Records a change to a contract
+     *
+     * @param before   the state of the contract before the change, from stateOf. Null for a new contract.
+     * @param contract the contract after the change
+     */
+    public void contractChanged(
+            String before,
+            Contract contract)
+    {
+        String after = stateOf(contract);
+        String eventtype;
+        if (before == null)
+        {
+            eventtype = "contract.created";
+        } else if (!before.equals(after))
+        {
+            eventtype = "contract." + after;
+        } else
+        {
+            eventtype = "contract.updated";
+        }
+        record(CONTRACT,
+               contract.getContractid(),
+               eventtype,
+               payload(contract));
+    }
+
+    /**
+     * Records that a contract was deleted
+     *
+     * @param contract the contract as it was before it was deleted
+     */
+    public void contractDeleted(Contract contract)
+    {
+        record(CONTRACT,
+               contract.getContractid(),
+               "contract.deleted",
+               payload(contract));
+    }
+
+    /**
+     * Records contracts ended because their end date passed, in one batch
+     *
+     * @param contractids the contracts ended, with the item of each at the same position in itemids
+     * @param itemids     the item of each contract
+     */
+    public void contractsExpired(
+            List<Long> contractids,
+            List<Long> itemids)
+    {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object[][] rows = new Object[contractids.size()][];
+        for (int i = 0; i < rows.length; i++)
+        {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("contractid",
+                        contractids.get(i));
+            payload.put("itemid",
+                        itemids.get(i));
+            payload.put("isactive",
+                        false);
+            rows[i] = new Object[]{CONTRACT, contractids.get(i), "contract.expired", json(payload), now};
+        }
+        insert(rows);
+    }
+
+    /**
+     * Records a change to an item
+     *
+     * @param eventtype item.created, item.updated or item.deleted
+     * @param item      the item after the change, or before it for item.deleted
+     */
+    public void itemChanged(
+            String eventtype,
+            Item item)
+    {
+        record(ITEM,
+               item.getItemid(),
+               eventtype,
+               payload(item));
+    }
+
+    /**
+     * Records new items in one batch
+     *
+     * @param items the new items
+     */
+    public void itemsCreated(List<Item> items)
+    {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object[][] rows = new Object[items.size()][];
+        for (int i = 0; i < rows.length; i++)
+        {
+            Item item = items.get(i);
+            rows[i] = new Object[]{ITEM, item.getItemid(), "item.created", json(payload(item)), now};
+        }
+        insert(rows);
+    }
+
+    private void record(
+            String aggregatetype,
+            long aggregateid,
+            String eventtype,
+            Map<String, Object> payload)
+    {
+        insert(new Object[][]{{aggregatetype, aggregateid, eventtype, json(payload), new Timestamp(System.currentTimeMillis())}});
+    }
+
+    private void insert(Object[][] rows)
+    {
+        if (rows.length == 0)
+        {
+            return;
+        }
+        if (rows.length == 1)
+        {
+            jdbcTemplate.update(INSERT_SQL,
+                                rows[0]);
+        } else
+        {
+            jdbcTemplate.batchUpdate(INSERT_SQL,
+                                     Arrays.asList(rows));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCommit()
+                {
+                    relay.wake();
+                }
+            });
+        }
+    }
+
+    private static Map<String, Object> payload(Contract contract)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("contractid",
+                    contract.getContractid());
+        payload.put("itemid",
+                    contract.getItem()
+                            .getItemid());
+        payload.put("lenderid",
+                    contract.getLenderid());
+        payload.put("renteeid",
+                    contract.getRentee()
+                            .getUserid());
+        payload.put("contractlength",
+                    contract.getContractlength());
+        payload.put("contractfee",
+                    Money.toDollars(contract.getContractfeecents()));
+        payload.put("isactive",
+                    contract.isActive());
+        payload.put("renteeaccept",
+                    contract.isRenteeaccept());
+        payload.put("lenderaccept",
+                    contract.isLenderaccept());
+        payload.put("renteecomplete",
+                    contract.isRenteecomplete());
+        payload.put("lendercomplete",
+                    contract.isLendercomplete());
+        payload.put("contractstartdate",
+                    contract.getRaw_contractstartdate());
+        payload.put("contractenddate",
+                    contract.getRaw_contractenddate());
+        return payload;
+    }
+
+    private static Map<String, Object> payload(Item item)
+    {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("itemid",
+                    item.getItemid());
+        payload.put("lenderid",
+                    item.getLender()
+                            .getUserid());
+        payload.put("itemname",
+                    item.getItemname());
+        payload.put("itemtype",
+                    item.getItemtype());
+        payload.put("itemlocat",
+                    item.getItemlocat());
+        payload.put("isavailable",
+                    item.getIsavailable());
+        payload.put("itemrate",
+                    item.getItemrate());
+        return payload;
+    }
+
+    private String json(Map<String, Object> payload)
+    {
+        try
+        {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e)
+        {
+            throw new IllegalStateException("Could not write the outbox event",
+                                            e);
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.OutboxEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the events in the outbox table to every OutboxSubscriber, on threads of its own.
+ * <p>
+ * One thread reads the outbox in event id order, outbox.relay.batch events at a time, and hands each event to one of
+ * outbox.relay.lanes lanes picked from its contract or item, so the events of one contract or item always go through
+ * the same lane and arrive in order. Each lane has a thread of its own and holds at most outbox.relay.queue events.
+ * When the lane of an event is full, that event and every later event for the lane are left in the table until the
+ * next read, so a slow subscriber holds back the database reads instead of filling memory.
+ * <p>
+ * An event is deleted from the table once every subscriber has handled it. A subscriber that throws is called again,
+ * waiting outbox.relay.backoff milliseconds and twice as long after each failure. After outbox.relay.attempts calls the
+ * event is marked failed, kept in the table and not sent again. Events not yet deleted when the application stops
+ * are sent again when it starts, so every event is delivered at least once.
+ * <p>
+ * The outbox is read again as soon as a transaction writing to it commits, and every outbox.relay.delay milliseconds
+ * otherwise. Only one copy of the application sharing a database should run the relay, see outbox.relay.enabled.
+ */
+@Component
+public class OutboxRelay
+        implements MeterBinder
+{
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String POLL_SQL = "SELECT eventid, aggregatetype, aggregateid, eventtype, payload, createdat FROM outbox" +
+        " WHERE failed = FALSE ORDER BY failed, eventid LIMIT ?";
+
+    private static final String DELETE_SQL = "DELETE FROM outbox WHERE eventid IN (%s)";
+
+    private static final String FAIL_SQL = "UPDATE outbox SET failed = TRUE WHERE eventid IN (%s)";
+
+    /**
+     * Connects the relay to the database
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Everything the events are sent to
+     */
+    @Autowired(required = false)
+    private List<OutboxSubscriber> subscribers = Collections.emptyList();
+
+    /**
+     * Whether this copy of the application sends the events
+     */
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * How often, in milliseconds, the outbox is read when nothing wakes the relay
+     */
+    @Value("${outbox.relay.delay:1000}")
+    private long delay;
+
+    /**
+     * The most events read from the outbox at a time
+     */
+    @Value("${outbox.relay.batch:500}")
+    private int batchSize;
+
+    /**
+     * The number of lanes, each with its own thread
+     */
+    @Value("${outbox.relay.lanes:4}")
+    private int laneCount;
+
+    /**
+     * The most events waiting in one lane
+     */
+    @Value("${outbox.relay.queue:1000}")
+    private int queueSize;
+
+    /**
+     * The most times a subscriber is called with one event
+     */
+    @Value("${outbox.relay.attempts:5}")
+    private int attempts;
+
+    /**
+     * How long, in milliseconds, to wait before calling a subscriber again the first time
+     */
+    @Value("${outbox.relay.backoff:100}")
+    private long backoff;
+
+    private final Semaphore signal = new Semaphore(0);
+
+    /**
+     * The events handed to a lane and not yet deleted or marked failed. Only changed by the reading thread.
+     */
+    private final Set<Long> inflight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Events the lanes are done with, waiting to be deleted or marked failed by the reading thread
+     */
+    private final Queue<Long> handled = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Long> abandoned = new ConcurrentLinkedQueue<>();
+
+    private Lane[] lanes;
+
+    private ExecutorService executor;
+
+    private volatile boolean running;
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder deliveryMillis = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Starts the reading thread and the lanes once the application, including any seed data, is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start()
+    {
+        if (!enabled || running)
+        {
+            return;
+        }
+        running = true;
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(laneCount + 1,
+                                                runnable ->
+                                                {
+                                                    Thread thread = new Thread(runnable,
+                                                                               "outbox-relay-" + threads.getAndIncrement());
+                                                    thread.setDaemon(true);
+                                                    return thread;
+                                                });
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++)
+        {
+            lanes[i] = new Lane();
+            executor.execute(lanes[i]);
+        }
+        executor.execute(this::run);
+        logger.info("Relaying outbox events to {} subscribers on {} lanes",
+                    subscribers.size(),
+                    laneCount);
+    }
+
+    /**
+     * Stops the threads. Events not yet handled stay in the outbox for the next start.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop()
+    {
+        if (!running)
+        {
+            return;
+        }
+        running = false;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Has the outbox read now rather than at the next outbox.relay.delay
+     */
+    public void wake()
+    {
+        if (signal.availablePermits() == 0)
+        {
+            signal.release();
+        }
+    }
+
+    private void run()
+    {
+        while (running)
+        {
+            try
+            {
+                if (!relay())
+                {
+                    signal.tryAcquire(delay,
+                                      TimeUnit.MILLISECONDS);
+                }
+                signal.drainPermits();
+            } catch (InterruptedException e)
+            {
+                return;
+            } catch (RuntimeException e)
+            {
+                logger.warn("Could not relay outbox events",
+                            e);
+                try
+                {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted)
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the events the lanes are done with, then hands the next events in the outbox to their lanes
+     *
+     * @return true if there may be more events to read right away
+     */
+    private boolean relay()
+    {
+        settle();
+
+        int room = lanes.length * queueSize - inflight.size();
+        if (room <= 0)
+        {
+            return false;
+        }
+        // the events in flight are still in the table, so read past them
+        int limit = Math.min(batchSize,
+                             room) + inflight.size();
+        List<OutboxEvent> events = jdbcTemplate.query(POLL_SQL,
+                                                      (rs, rowNum) -> new OutboxEvent(rs.getLong(1),
+                                                                                      rs.getString(2),
+                                                                                      rs.getLong(3),
+                                                                                      rs.getString(4),
+                                                                                      rs.getString(5),
+                                                                                      rs.getTimestamp(6)
+                                                                                              .toInstant()),
+                                                      limit);
+
+        boolean[] full = new boolean[lanes.length];
+        int dispatched = 0;
+        for (OutboxEvent event : events)
+        {
+            if (inflight.contains(event.getEventid()))
+            {
+                continue;
+            }
+            int lane = Math.floorMod(Objects.hash(event.getAggregatetype(),
+                                                  event.getAggregateid()),
+                                     lanes.length);
+            // once a lane turns an event away, later events for it must wait too or they would overtake it
+            if (full[lane])
+            {
+                continue;
+            }
+            inflight.add(event.getEventid());
+            if (!lanes[lane].queue.offer(event))
+            {
+                inflight.remove(event.getEventid());
+                full[lane] = true;
+                continue;
+            }
+            dispatched++;
+        }
+        return dispatched > 0 && events.size() == limit;
+    }
+
+    /**
+     * Deletes the events handled and marks the events given up on, a batch at a time
+     */
+    private void settle()
+    {
+        update(DELETE_SQL,
+               handled);
+        update(FAIL_SQL,
+               abandoned);
+    }
+
+    private void update(
+            String sql,
+            Queue<Long> eventids)
+    {
+        List<Long> batch = new ArrayList<>();
+        while (true)
+        {
+            Long eventid;
+            while (batch.size() < batchSize && (eventid = eventids.poll()) != null)
+            {
+                batch.add(eventid);
+            }
+            if (batch.isEmpty())
+            {
+                return;
+            }
+            try
+            {
+                jdbcTemplate.update(String.format(sql,
+                                                  String.join(", ",
+                                                              Collections.nCopies(batch.size(),
+                                                                                  "?"))),
+                                    batch.toArray());
+            } catch (RuntimeException e)
+            {
+                // keep them for the next try
+                eventids.addAll(batch);
+                throw e;
+            }
+            inflight.removeAll(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Calls every subscriber with the event, trying again after a failure
+     */
+    private void deliver(OutboxEvent event)
+            throws
+            InterruptedException
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                for (OutboxSubscriber subscriber : subscribers)
+                {
+                    subscriber.onEvent(event);
+                }
+                delivered.increment();
+                deliveryMillis.add(Math.max(0,
+                                            System.currentTimeMillis() - event.getCreatedat()
+                                                    .toEpochMilli()));
+                handled.add(event.getEventid());
+                return;
+            } catch (RuntimeException e)
+            {
+                if (attempt >= attempts)
+                {
+                    logger.warn("Giving up on outbox event " + event.getEventid() + " " + event.getEventtype() + " after " + attempt + " attempts",
+                                e);
+                    failed.increment();
+                    abandoned.add(event.getEventid());
+                    return;
+                }
+                retries.increment();
+                Thread.sleep(backoff << (attempt - 1));
+            }
+        }
+    }
+
+    /**
+     * A queue of events and the thread handing them to the subscribers, one at a time
+     */
+    private final class Lane
+            implements Runnable
+    {
+        private final BlockingQueue<OutboxEvent> queue = new ArrayBlockingQueue<>(queueSize);
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (running)
+                {
+                    deliver(queue.take());
+                    if (queue.isEmpty())
+                    {
+                        // the lane is drained, so the reading thread can delete what it handled and hand it more
+                        wake();
+                    }
+                }
+            } catch (InterruptedException e)
+            {
+                // stopping. anything not handled is still in the outbox
+            }
+        }
+    }
+
+    /**
+     * The number of events handed to the subscribers and not yet deleted
+     *
+     * @return the number of events in flight
+     */
+    public int inflight()
+    {
+        return inflight.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionTimer.builder("outbox.delivered",
+                              this,
+                              r -> r.delivered.sum(),
+                              r -> r.deliveryMillis.sum(),
+                              TimeUnit.MILLISECONDS)
+                .description("events handled by every subscriber and the time from each change to its delivery")
+                .register(registry);
+        FunctionCounter.builder("outbox.retries",
+                                this,
+                                r -> r.retries.sum())
+                .description("events sent to the subscribers again after one of them failed")
+                .register(registry);
+        FunctionCounter.builder("outbox.failed",
+                                this,
+                                r -> r.failed.sum())
+                .description("events given up on after outbox.relay.attempts failures")
+                .register(registry);
+        Gauge.builder("outbox.inflight",
+                      this,
+                      OutboxRelay::inflight)
+                .description("events handed to the subscribers and not yet deleted")
+                .register(registry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.models.OutboxEvent;
+
+/**
+ * Reacts to changes to contracts and items. Every bean implementing this is handed each event by OutboxRelay.
+ * <p>
+ * Events for the same contract or item arrive one at a time in the order they were made. An event can arrive more
+ * than once, for example when the application stops before it is marked handled, so handling one must be safe to repeat.
+ */
+public interface OutboxSubscriber
+{
+    /**
+     * Handles one event. Throw to have it tried again, up to outbox.relay.attempts times in all.
+     *
+     * @param event the change
+     */
+    void onEvent(OutboxEvent event);
+}
@@ -0,0 +1,154 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import com.lambdaschool.foundation.models.Money;
+import com.lambdaschool.foundation.models.Quote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out what renting an item costs. Amounts are long cents throughout, see Money.
+ * <p>
+ * An item has a rate per day. A whole week costs contracts.pricing.week.days days at the daily rate less
+ * contracts.pricing.week.discount basis points, a whole month contracts.pricing.month.days days less
+ * contracts.pricing.month.discount. A length is charged as whole months, then the days left over as weeks and days,
+ * except that the days left over never cost more than one more week or one more month would.
+ */
+@Component
+public class PricingEngine
+{
+    private static final String RATES_SQL = "SELECT itemid, itemratecents FROM items WHERE itemid IN (%s)";
+
+    /**
+     * Connects the engine to the database to read the rates of quoted items
+     */
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The number of days in a week
+     */
+    @Value("${contracts.pricing.week.days:7}")
+    private int weekDays;
+
+    /**
+     * The number of days in a month
+     */
+    @Value("${contracts.pricing.month.days:30}")
+    private int monthDays;
+
+    /**
+     * The discount on a whole week, in basis points
+     */
+    @Value("${contracts.pricing.week.discount:0}")
+    private long weekDiscount;
+
+    /**
+     * The discount on a whole month, in basis points
+     */
+    @Value("${contracts.pricing.month.discount:0}")
+    private long monthDiscount;
+
+    /**
+     * The most items priced in one quote
+     */
+    @Value("${contracts.quote.maxitems:100}")
+    private int maxItems;
+
+    /**
+     * The fee for renting an item for a number of days
+     *
+     * @param dailyRateCents the rate per day of the item in cents
+     * @param days           the number of days, zero or more
+     * @return the fee in cents
+     */
+    public long fee(
+            long dailyRateCents,
+            int days)
+    {
+        long week = Money.discount(dailyRateCents * weekDays,
+                                   weekDiscount);
+        long month = Money.discount(dailyRateCents * monthDays,
+                                    monthDiscount);
+
+        int months = days / monthDays;
+        int rest = days % monthDays;
+        int weeks = rest / weekDays;
+        int extra = rest % weekDays;
+
+        long restFee = Math.min(weeks * week + extra * dailyRateCents,
+                                Math.min((weeks + 1) * week,
+                                         month));
+        return Math.addExact(Math.multiplyExact(months,
+                                                month),
+                             restFee);
+    }
+
+    /**
+     * Prices each quote at the current rate of its item. The rates are read straight from the items table
+     * in one query, so nothing is loaded into or changed in the persistence context.
+     *
+     * @param quotes the items and lengths to price. The rate and fee of each are filled in.
+     * @return the same quotes, priced
+     * @throws ResourceFoundException    if there are no quotes or too many, or a length is not positive
+     * @throws ResourceNotFoundException if an item does not exist
+     */
+    public List<Quote> quote(List<Quote> quotes)
+    {
+        if (quotes == null || quotes.isEmpty())
+        {
+            throw new ResourceFoundException("Nothing to quote");
+        }
+        if (quotes.size() > maxItems)
+        {
+            throw new ResourceFoundException("At most " + maxItems + " items can be quoted at once");
+        }
+
+        Set<Long> itemids = new LinkedHashSet<>();
+        for (Quote quote : quotes)
+        {
+            if (quote.getContractlength() <= 0)
+            {
+                throw new ResourceFoundException("Contract length for item id " + quote.getItemid() + " must be at least one day");
+            }
+            itemids.add(quote.getItemid());
+        }
+
+        Map<Long, Long> rates = new HashMap<>();
+        jdbcTemplate.query(String.format(RATES_SQL,
+                                         String.join(", ",
+                                                     Collections.nCopies(itemids.size(),
+                                                                         "?"))),
+                           rs ->
+                           {
+                               rates.put(rs.getLong(1),
+                                         rs.getLong(2));
+                           },
+                           itemids.toArray());
+
+        for (Quote quote : quotes)
+        {
+            Long rate = rates.get(quote.getItemid());
+            if (rate == null)
+            {
+                throw new ResourceNotFoundException("Item id " + quote.getItemid() + " not found");
+            }
+            quote.setItemratecents(rate);
+            quote.setContractfeecents(fee(rate,
+                                          quote.getContractlength()));
+        }
+        return quotes;
+    }
+}
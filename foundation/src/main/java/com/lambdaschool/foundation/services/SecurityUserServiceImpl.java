@@ -26,7 +26,14 @@ public class SecurityUserServiceImpl
     private UserRepository userrepos;
 
     /**
-     * Verifies that the user is correct and if so creates the authenticated user
+     * Holds recently authenticated users so a login does not have to go back to the database.
+     */
+    @Autowired
+    private UserDetailsCache userCache;
+
+    /**
+     * Verifies that the user is correct and if so creates the authenticated user.
+     * The user is read from the user cache when possible and added to it when not.
      *
      * @param s The user name we are look for
      * @return a security user detail that is now an authenticated user
@@ -38,13 +45,23 @@ public class SecurityUserServiceImpl
             throws
             ResourceNotFoundException
     {
-        User user = userrepos.findByUsername(s.toLowerCase());
-        if (user == null)
+        UserDetailsCache.CachedUser cachedUser = userCache.get(s);
+        if (cachedUser == null)
         {
-            throw new ResourceNotFoundException("Invalid username or password.");
+            long generation = userCache.generation();
+            User user = userrepos.findByUsername(s.toLowerCase());
+            if (user == null)
+            {
+                throw new ResourceNotFoundException("Invalid username or password.");
+            }
+            cachedUser = userCache.put(user.getUserid(),
+                                       user.getUsername(),
+                                       user.getPassword(),
+                                       user.getAuthority(),
+                                       generation);
         }
-        return new org.springframework.security.core.userdetails.User(user.getUsername(),
-                                                                      user.getPassword(),
-                                                                      user.getAuthority());
+        return new org.springframework.security.core.userdetails.User(cachedUser.getUsername(),
+                                                                      cachedUser.getPassword(),
+                                                                      cachedUser.getAuthorities());
     }
 }
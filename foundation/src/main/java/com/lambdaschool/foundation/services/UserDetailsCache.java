@@ -0,0 +1,279 @@
+package com.lambdaschool.foundation.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, in memory cache of the user information needed to authenticate a user.
+ * Entries are keyed off of the lowercase username, expire after users.cache.ttl seconds
+ * and the least recently used entry is dropped once users.cache.maxsize entries are held.
+ * <p>
+ * Any change to a user, its password or its roles must call invalidate so the next login reads the database.
+ */
+@Component
+public class UserDetailsCache
+        implements MeterBinder
+{
+    /**
+     * The maximum number of users held in the cache
+     */
+    @Value("${users.cache.maxsize:10000}")
+    private int maxSize;
+
+    /**
+     * How long, in seconds, an entry stays in the cache
+     */
+    @Value("${users.cache.ttl:300}")
+    private long ttlSeconds;
+
+    /**
+     * The cached users in least recently used order. Guarded by this.
+     */
+    private final LinkedHashMap<String, CachedUser> entries = new LinkedHashMap<String, CachedUser>(16,
+                                                                                                  0.75f,
+                                                                                                  true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest)
+        {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Bumped on every invalidation so a load that started before a change is never cached. Guarded by this.
+     */
+    private long generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the cached user with the given username
+     *
+     * @param username The username (String) of the user you seek
+     * @return the cached user or null if the user is not cached or the entry has expired
+     */
+    public CachedUser get(String username)
+    {
+        String key = username.toLowerCase();
+        CachedUser cachedUser;
+        synchronized (this)
+        {
+            cachedUser = entries.get(key);
+            if (cachedUser != null && cachedUser.expires < System.currentTimeMillis())
+            {
+                entries.remove(key);
+                cachedUser = null;
+            }
+        }
+
+        if (cachedUser == null)
+        {
+            misses.increment();
+        } else
+        {
+            hits.increment();
+        }
+        return cachedUser;
+    }
+
+    /**
+     * The current generation of the cache. Read this before loading a user from the database
+     * and hand it to put so a load racing with an invalidation is thrown away.
+     *
+     * @return the current generation (long) of the cache
+     */
+    public synchronized long generation()
+    {
+        return generation;
+    }
+
+    /**
+     * Adds a user to the cache
+     *
+     * @param userid      The primary key (long) of the user
+     * @param username    The username (String) of the user
+     * @param password    The encrypted password (String) of the user
+     * @param authorities The authorities granted to the user
+     * @param loadedAt    The generation of the cache read before the user was loaded
+     * @return the user as it will be cached
+     */
+    public CachedUser put(
+            long userid,
+            String username,
+            String password,
+            List<SimpleGrantedAuthority> authorities,
+            long loadedAt)
+    {
+        CachedUser cachedUser = new CachedUser(userid,
+                                               username.toLowerCase(),
+                                               password,
+                                               authorities,
+                                               System.currentTimeMillis() + (ttlSeconds * 1000));
+        synchronized (this)
+        {
+            if (loadedAt == generation)
+            {
+                entries.put(cachedUser.username,
+                            cachedUser);
+            }
+        }
+        return cachedUser;
+    }
+
+    /**
+     * Removes the user from the cache. If called inside of a transaction, the user is removed again
+     * once the transaction completes so a login in between cannot cache the old data.
+     *
+     * @param username The username (String) of the user that changed. Null is ignored.
+     */
+    public void invalidate(String username)
+    {
+        if (username == null)
+        {
+            return;
+        }
+
+        String key = username.toLowerCase();
+        evict(key);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    evict(key);
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(String key)
+    {
+        entries.remove(key);
+        generation++;
+    }
+
+    /**
+     * The number of lookups that found a user in the cache
+     *
+     * @return the number of cache hits
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups that did not find a user in the cache
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * The number of users currently held in the cache
+     *
+     * @return the number of cached users
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Publishes the hit and miss counters and the size of the cache to the metrics registry
+     *
+     * @param registry the metrics registry maintained by Spring
+     */
+    @Override
+    public void bindTo(MeterRegistry registry)
+    {
+        FunctionCounter.builder("users.cache.hits",
+                                this,
+                                UserDetailsCache::getHits)
+                .description("user lookups found in the cache")
+                .register(registry);
+        FunctionCounter.builder("users.cache.misses",
+                                this,
+                                UserDetailsCache::getMisses)
+                .description("user lookups not found in the cache")
+                .register(registry);
+        Gauge.builder("users.cache.size",
+                      this,
+                      UserDetailsCache::size)
+                .description("users held in the cache")
+                .register(registry);
+    }
+
+    /**
+     * The user information needed to authenticate a user. Immutable.
+     */
+    public static class CachedUser
+    {
+        private final long userid;
+
+        private final String username;
+
+        private final String password;
+
+        private final List<SimpleGrantedAuthority> authorities;
+
+        private final long expires;
+
+        CachedUser(
+                long userid,
+                String username,
+                String password,
+                List<SimpleGrantedAuthority> authorities,
+                long expires)
+        {
+            this.userid = userid;
+            this.username = username;
+            this.password = password;
+            this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+            this.expires = expires;
+        }
+
+        public long getUserid()
+        {
+            return userid;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        public String getPassword()
+        {
+            return password;
+        }
+
+        public List<SimpleGrantedAuthority> getAuthorities()
+        {
+            return authorities;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.lambdaschool.foundation.services;
 
 import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.models.UserView;
+import com.lambdaschool.foundation.views.UserRevision;
 
 import java.util.List;
 
@@ -20,6 +22,22 @@ public interface UserService
      */
     List<User> findAll();
 
+    /**
+     * Returns a read only view of all the Users, with their emails, roles and items.
+     * Runs the same small number of queries no matter how many users there are.
+     *
+     * @return List of UserViews. If no users, empty list.
+     */
+    List<UserView> findAllViews();
+
+    /**
+     * Returns a read only view of the user with the given name, with its emails, roles and items.
+     *
+     * @param name The full name (String) of the User you seek.
+     * @return The UserView of the User with the given name or throws an exception if not found.
+     */
+    UserView findViewByName(String name);
+
     /**
      * A list of all users whose username contains the given substring
      *
@@ -36,6 +54,15 @@ public interface UserService
      */
     User findUserById(long id);
 
+    /**
+     * Returns when the user with the given primary key, or anything shown with it, last changed, without reading the
+     * user. Used to answer conditional requests.
+     *
+     * @param id The primary key (long) of the user you seek.
+     * @return The last change and row count of the user or throws an exception if not found.
+     */
+    UserRevision findUserRevision(long id);
+
     /**
      * Returns the user with the given name
      *
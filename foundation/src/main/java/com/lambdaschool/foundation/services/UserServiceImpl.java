@@ -3,17 +3,29 @@ package com.lambdaschool.foundation.services;
 import com.lambdaschool.foundation.exceptions.ResourceFoundException;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
 import com.lambdaschool.foundation.handlers.HelperFunctions;
+import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.Item;
 import com.lambdaschool.foundation.models.Role;
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.models.UserRoles;
+import com.lambdaschool.foundation.models.UserView;
 import com.lambdaschool.foundation.models.Useremail;
+import com.lambdaschool.foundation.repository.ContractRepository;
+import com.lambdaschool.foundation.repository.ItemRepository;
 import com.lambdaschool.foundation.repository.UserRepository;
+import com.lambdaschool.foundation.views.ItemSummary;
+import com.lambdaschool.foundation.views.UserRevision;
+import com.lambdaschool.foundation.views.UserRoleSummary;
+import com.lambdaschool.foundation.views.UserSummary;
+import com.lambdaschool.foundation.views.UseremailSummary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implements the Userservice Interface
@@ -29,6 +41,12 @@ public class UserServiceImpl
     @Autowired
     private UserRepository userrepos;
 
+    /**
+     * Connects this service to the Item table, used to read the items of users.
+     */
+    @Autowired
+    private ItemRepository itemrepos;
+
     /**
      * Connects this service to the Role table
      */
@@ -47,6 +65,68 @@ public class UserServiceImpl
     @Autowired
     private HelperFunctions helper;
 
+    /**
+     * Connects this service to the cache of authenticated users so changes to a user are seen at the next login
+     */
+    @Autowired
+    private UserDetailsCache userCache;
+
+    /**
+     * Connects this service to the item search index, which drops the items of a deleted user
+     */
+    @Autowired
+    private ItemSearchIndex searchIndex;
+
+    /**
+     * Connects this service to the index of where each item is, which drops the items of a deleted user
+     */
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    /**
+     * Connects this service to the counts of items by type, availability and price, which drop the items of a deleted
+     * user
+     */
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    /**
+     * Connects this service to the counts of views and rentals of each item, which go with the items of a deleted user
+     */
+    @Autowired
+    private ItemCounters counters;
+
+    /**
+     * Connects this service to the bookings of each item, which are freed when a user is deleted
+     */
+    @Autowired
+    private ItemAvailability availability;
+
+    /**
+     * Connects this service to the running totals of each lender and item, which drop the items and contracts of a
+     * deleted user
+     */
+    @Autowired
+    private LenderEarnings earnings;
+
+    /**
+     * Connects this service to the outbox of changes sent to the subscribers
+     */
+    @Autowired
+    private Outbox outbox;
+
+    /**
+     * Connects this service to the Contract table, used to find the contracts a deleted user rents
+     */
+    @Autowired
+    private ContractRepository contractrepos;
+
+    /**
+     * Connects this service to the second level cache, to evict the cached role lists of the users
+     */
+    @Autowired
+    private EntityCache entityCache;
+
     public User findUserById(long id)
             throws
             ResourceNotFoundException
@@ -55,6 +135,19 @@ public class UserServiceImpl
                 .orElseThrow(() -> new ResourceNotFoundException("User id " + id + " not found!"));
     }
 
+    @Override
+    public UserRevision findUserRevision(long id)
+            throws
+            ResourceNotFoundException
+    {
+        UserRevision revision = userrepos.findRevision(id);
+        if (revision == null)
+        {
+            throw new ResourceNotFoundException("User id " + id + " not found!");
+        }
+        return revision;
+    }
+
     @Override
     public List<User> findByNameContaining(String username)
     {
@@ -75,18 +168,128 @@ public class UserServiceImpl
         return list;
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public List<UserView> findAllViews()
+    {
+        /*
+         * read each table once and hang the rows off of their user,
+         * rather than letting each user load its own collections.
+         */
+        Map<Long, UserView> views = new LinkedHashMap<>();
+        for (UserSummary us : userrepos.findAllSummaries())
+        {
+            views.put(us.getUserid(),
+                      new UserView(us));
+        }
+        for (UseremailSummary ue : userrepos.findAllUseremailSummaries())
+        {
+            UserView view = views.get(ue.getUserid());
+            if (view != null)
+            {
+                view.addEmail(ue);
+            }
+        }
+        for (UserRoleSummary ur : userrepos.findAllUserRoleSummaries())
+        {
+            UserView view = views.get(ur.getUserid());
+            if (view != null)
+            {
+                view.addRole(ur);
+            }
+        }
+        for (ItemSummary is : itemrepos.findAllSummaries())
+        {
+            UserView view = views.get(is.getUserid());
+            if (view != null)
+            {
+                view.addItem(is);
+            }
+        }
+        return new ArrayList<>(views.values());
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public UserView findViewByName(String name)
+    {
+        UserSummary us = userrepos.findSummaryByUsername(name.toLowerCase());
+        if (us == null)
+        {
+            throw new ResourceNotFoundException("User name " + name + " not found!");
+        }
+
+        UserView view = new UserView(us);
+        for (UseremailSummary ue : userrepos.findUseremailSummariesByUserid(us.getUserid()))
+        {
+            view.addEmail(ue);
+        }
+        for (UserRoleSummary ur : userrepos.findUserRoleSummariesByUserid(us.getUserid()))
+        {
+            view.addRole(ur);
+        }
+        for (ItemSummary is : itemrepos.findSummariesByLender(us.getUserid()))
+        {
+            view.addItem(is);
+        }
+        return view;
+    }
+
     @Transactional
     @Override
     public void delete(long id)
     {
-        userrepos.findById(id)
+        User oldUser = userrepos.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User id " + id + " not found!"));
+        userCache.invalidate(oldUser.getUsername());
+        // the items the user lends and the contracts the user rents go with the user, so they leave every index and total too
+        for (Item item : oldUser.getItems())
+        {
+            earnings.itemDeleted(item.getItemid(),
+                                 id);
+            outbox.itemChanged("item.deleted",
+                               item);
+            searchIndex.deleteAfterCommit(item.getItemid());
+            locationIndex.deleteAfterCommit(item.getItemid());
+            facetCounts.deleteAfterCommit(item.getItemid());
+            availability.forgetAfterCommit(item.getItemid());
+            counters.delete(item.getItemid());
+        }
+        for (Contract contract : contractrepos.findByRentee(id))
+        {
+            // the totals and events of contracts on the items of the user already went with the items
+            if (contract.getLenderid() != id)
+            {
+                earnings.contractChanged(LenderEarnings.Contribution.of(contract),
+                                         LenderEarnings.Contribution.NONE);
+                outbox.contractDeleted(contract);
+            }
+            if (contract.isActive())
+            {
+                availability.releaseAfterCommit(contract.getItem()
+                                                        .getItemid(),
+                                                contract.getContractid());
+            }
+        }
         userrepos.deleteById(id);
     }
 
     @Override
     public User findByName(String name)
     {
+        // a cached user gives us the primary key, which is a cheaper lookup than the username
+        UserDetailsCache.CachedUser cachedUser = userCache.get(name);
+        if (cachedUser != null)
+        {
+            User cached = userrepos.findById(cachedUser.getUserid())
+                    .orElse(null);
+            if (cached != null && cached.getUsername()
+                    .equals(cachedUser.getUsername()))
+            {
+                return cached;
+            }
+        }
+
         User uu = userrepos.findByUsername(name.toLowerCase());
         if (uu == null)
         {
@@ -105,6 +308,7 @@ public class UserServiceImpl
         {
             User oldUser = userrepos.findById(user.getUserid())
                     .orElseThrow(() -> new ResourceNotFoundException("User id " + user.getUserid() + " not found!"));
+            userCache.invalidate(oldUser.getUsername());
 
             // delete the roles for the old user we are replacing
             for (UserRoles ur : oldUser.getRoles())
@@ -119,6 +323,7 @@ public class UserServiceImpl
 
         newUser.setUsername(user.getUsername()
                                     .toLowerCase());
+        userCache.invalidate(newUser.getUsername());
         newUser.setPasswordNoEncrypt(user.getPassword());
         newUser.setPrimaryemail(user.getPrimaryemail()
                                         .toLowerCase());
@@ -167,6 +372,9 @@ public class UserServiceImpl
 
         if (helper.isAuthorizedToMakeChange(currentUser.getUsername()))
         {
+            userCache.invalidate(currentUser.getUsername());
+            userCache.invalidate(user.getUsername());
+
             if (user.getUsername() != null)
             {
                 currentUser.setUsername(user.getUsername()
@@ -235,9 +443,10 @@ public class UserServiceImpl
             long userid,
             long roleid)
     {
-        userrepos.findById(userid)
+        User user = userrepos.findById(userid)
                 .orElseThrow(() -> new ResourceNotFoundException("User id " + userid + " not found!"));
         roleService.findRoleById(roleid);
+        userCache.invalidate(user.getUsername());
 
         if (userrepos.checkUserRolesCombo(userid,
                                           roleid)
@@ -245,6 +454,7 @@ public class UserServiceImpl
         {
             userrepos.deleteUserRoles(userid,
                                       roleid);
+            entityCache.evictUserRoles(List.of(userid));
         } else
         {
             throw new ResourceNotFoundException("Role and User Combination Does Not Exists");
@@ -257,9 +467,10 @@ public class UserServiceImpl
             long userid,
             long roleid)
     {
-        userrepos.findById(userid)
+        User user = userrepos.findById(userid)
                 .orElseThrow(() -> new ResourceNotFoundException("User id " + userid + " not found!"));
         roleService.findRoleById(roleid);
+        userCache.invalidate(user.getUsername());
 
         if (userrepos.checkUserRolesCombo(userid,
                                           roleid)
@@ -269,6 +480,7 @@ public class UserServiceImpl
                                               .get(),
                                       userid,
                                       roleid);
+            entityCache.evictUserRoles(List.of(userid));
         } else
         {
             throw new ResourceFoundException("Role and User Combination Already Exists");
@@ -35,6 +35,12 @@ public class UseremailServiceImpl
     @Autowired
     private HelperFunctions helper;
 
+    /**
+     * Connects this service to the second level cache, to evict the cached email lists of the users
+     */
+    @Autowired
+    private EntityCache entityCache;
+
     @Override
     public List<Useremail> findAll()
     {
@@ -63,12 +69,13 @@ public class UseremailServiceImpl
         if (useremailrepos.findById(id)
                 .isPresent())
         {
-            if (helper.isAuthorizedToMakeChange(useremailrepos.findById(id)
-                                                        .get()
-                                                        .getUser()
-                                                        .getUsername()))
+            User user = useremailrepos.findById(id)
+                    .get()
+                    .getUser();
+            if (helper.isAuthorizedToMakeChange(user.getUsername()))
             {
                 useremailrepos.deleteById(id);
+                entityCache.evictUserEmails(List.of(user.getUserid()));
             }
         } else
         {
@@ -117,7 +124,9 @@ public class UseremailServiceImpl
         {
             Useremail newUserEmail = new Useremail(currentUser,
                                                    emailaddress);
-            return useremailrepos.save(newUserEmail);
+            newUserEmail = useremailrepos.save(newUserEmail);
+            entityCache.evictUserEmails(List.of(userid));
+            return newUserEmail;
         } else
         {
             // note we should never get to this line but is needed for the compiler
@@ -0,0 +1,70 @@
+package com.lambdaschool.foundation.views;
+
+/**
+ * Used when a custom query needs the fields of items, without their lender or contracts
+ */
+public interface ItemSummary
+{
+    /**
+     * The primary key of the user lending the item
+     *
+     * @return the userid (long) of the lender
+     */
+    long getUserid();
+
+    /**
+     * The primary key of the item
+     *
+     * @return the itemid (long)
+     */
+    long getItemid();
+
+    /**
+     * The name of the item
+     *
+     * @return the itemname (String)
+     */
+    String getItemname();
+
+    /**
+     * The type of the item
+     *
+     * @return the itemtype (String)
+     */
+    String getItemtype();
+
+    /**
+     * The description of the item
+     *
+     * @return the itemdescr (String)
+     */
+    String getItemdescr();
+
+    /**
+     * The location of the item
+     *
+     * @return the itemlocat (String)
+     */
+    String getItemlocat();
+
+    /**
+     * Whether the item can be rented
+     *
+     * @return isavailable (boolean)
+     */
+    boolean getIsavailable();
+
+    /**
+     * The rate charged for the item per day, in cents
+     *
+     * @return the itemratecents (long)
+     */
+    long getItemratecents();
+
+    /**
+     * The image of the item
+     *
+     * @return the itemimg (String)
+     */
+    String getItemimg();
+}
@@ -0,0 +1,21 @@
+package com.lambdaschool.foundation.views;
+
+/**
+ * Used when a custom query needs just what a contract takes from its item: who lends it and what it costs
+ */
+public interface ItemTerms
+{
+    /**
+     * The lender of the item
+     *
+     * @return the userid (long) of the lender
+     */
+    long getLenderid();
+
+    /**
+     * The rate of the item per day, in cents
+     *
+     * @return the rate (long) in cents
+     */
+    long getItemratecents();
+}
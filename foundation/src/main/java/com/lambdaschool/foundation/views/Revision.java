@@ -0,0 +1,24 @@
+package com.lambdaschool.foundation.views;
+
+import java.util.Date;
+
+/**
+ * Used when a custom query needs just enough of a row, and the rows shown with it, to tell whether a client's copy of
+ * it is current. A change to any of them is seen as a later date and a removal as fewer rows.
+ */
+public interface Revision
+{
+    /**
+     * When the row, or any of the rows shown with it, was last changed
+     *
+     * @return the last modified date (Date)
+     */
+    Date getLastmodified();
+
+    /**
+     * How many of the rows shown with it there are
+     *
+     * @return the count (long)
+     */
+    long getRowcount();
+}
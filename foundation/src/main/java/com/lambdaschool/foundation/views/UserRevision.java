@@ -0,0 +1,24 @@
+package com.lambdaschool.foundation.views;
+
+import java.util.Date;
+
+/**
+ * Used when a custom query needs just enough of a user, and the rows shown with it, to tell whether a client's copy
+ * of the user is current. Users have no version, so a change is seen as a later date and a removal as fewer rows.
+ */
+public interface UserRevision
+{
+    /**
+     * When the user, or any of its emails, roles, items or contracts, was last changed
+     *
+     * @return the last modified date (Date)
+     */
+    Date getLastmodified();
+
+    /**
+     * How many emails, roles, items and contracts are shown with the user
+     *
+     * @return the count (long)
+     */
+    long getRowcount();
+}
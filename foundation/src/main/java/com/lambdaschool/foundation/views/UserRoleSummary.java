@@ -0,0 +1,28 @@
+package com.lambdaschool.foundation.views;
+
+/**
+ * Used when a custom query needs the roles of one or more users
+ */
+public interface UserRoleSummary
+{
+    /**
+     * The primary key of the user holding the role
+     *
+     * @return the userid (long)
+     */
+    long getUserid();
+
+    /**
+     * The primary key of the role
+     *
+     * @return the roleid (long)
+     */
+    long getRoleid();
+
+    /**
+     * The name of the role
+     *
+     * @return the role name (String)
+     */
+    String getName();
+}
@@ -0,0 +1,28 @@
+package com.lambdaschool.foundation.views;
+
+/**
+ * Used when a custom query needs just the fields of a user, none of its collections
+ */
+public interface UserSummary
+{
+    /**
+     * The primary key of the user
+     *
+     * @return the userid (long)
+     */
+    long getUserid();
+
+    /**
+     * The name of the user
+     *
+     * @return the username (String)
+     */
+    String getUsername();
+
+    /**
+     * The primary email of the user
+     *
+     * @return the primary email (String)
+     */
+    String getPrimaryemail();
+}
@@ -0,0 +1,28 @@
+package com.lambdaschool.foundation.views;
+
+/**
+ * Used when a custom query needs the emails of one or more users
+ */
+public interface UseremailSummary
+{
+    /**
+     * The primary key of the user the email belongs to
+     *
+     * @return the userid (long)
+     */
+    long getUserid();
+
+    /**
+     * The primary key of the email
+     *
+     * @return the useremailid (long)
+     */
+    long getUseremailid();
+
+    /**
+     * The email address
+     *
+     * @return the useremail (String)
+     */
+    String getUseremail();
+}
@@ -1,5 +1,6 @@
 package com.lambdaschool.foundation.controllers;
 
+import com.lambdaschool.foundation.services.UserService;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
@@ -57,6 +58,9 @@ public class UserControllerIntegrationTest
     @Autowired
     private FilterChainProxy springSecurityFilterChain;
 
+    @Autowired
+    private UserService userService;
+
     private MockMvc mockMvc;
 
     String token;
@@ -97,6 +101,13 @@ public class UserControllerIntegrationTest
          */
     }
 
+    // ids come from a sequence per table, so look users up by name instead of counting on their ids
+    private long userid(String username)
+    {
+        return userService.findByName(username)
+                .getUserid();
+    }
+
     private String obtainAccessToken(String username, String password) throws Exception {
 
         MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
@@ -181,7 +192,7 @@ public class UserControllerIntegrationTest
     {
         String token = obtainAccessToken("admin", "password");
         this.mockMvc.perform(get("/users/user/{userid}",
-                                 14)
+                                 userid("misskitty"))
                                   .header("Authorization", "Bearer " + token))
 
                 .andDo(print())
@@ -257,7 +268,7 @@ public class UserControllerIntegrationTest
             Exception
     {
         mockMvc.perform(MockMvcRequestBuilders.delete("/users/user/{id}",
-                                                      13))
+                                                      userid("puttat")))
                 .andDo(print())
                 .andExpect(status().is2xxSuccessful());
     }
@@ -279,7 +290,7 @@ public class UserControllerIntegrationTest
             Exception
     {
         mockMvc.perform(MockMvcRequestBuilders.put("/users/user/{userid}",
-                                                   7)
+                                                   userid("cinnamon"))
                                 .content("{\"password\": \"EATEATEAT\"}")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .accept(MediaType.APPLICATION_JSON))
@@ -293,7 +304,7 @@ public class UserControllerIntegrationTest
             Exception
     {
         mockMvc.perform(MockMvcRequestBuilders.delete("/users/user/{userid}/role/{roleid}",
-                                                      7,
+                                                      userid("cinnamon"),
                                                       2))
                 .andDo(print())
                 .andExpect(status().is2xxSuccessful());
@@ -305,7 +316,7 @@ public class UserControllerIntegrationTest
             Exception
     {
         mockMvc.perform(post("/users/user/{userid}/role/{roleid}",
-                                                    7,
+                                                    userid("cinnamon"),
                                                     1))
                 .andDo(print())
                 .andExpect(status().is2xxSuccessful());
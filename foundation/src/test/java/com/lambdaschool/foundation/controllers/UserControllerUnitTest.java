@@ -4,8 +4,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lambdaschool.foundation.models.Role;
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.models.UserRoles;
+import com.lambdaschool.foundation.models.UserView;
 import com.lambdaschool.foundation.models.Useremail;
 import com.lambdaschool.foundation.services.UserService;
+import com.lambdaschool.foundation.views.UserRevision;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +30,7 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -167,8 +170,13 @@ public class UserControllerUnitTest
     {
         String apiUrl = "/users/users";
 
-        Mockito.when(userService.findAll())
-                .thenReturn(userList);
+        List<UserView> viewList = new ArrayList<>();
+        for (User u : userList)
+        {
+            viewList.add(new UserView(u));
+        }
+        Mockito.when(userService.findAllViews())
+                .thenReturn(viewList);
 
         RequestBuilder rb = MockMvcRequestBuilders.get(apiUrl)
                 .accept(MediaType.APPLICATION_JSON);
@@ -242,12 +250,23 @@ public class UserControllerUnitTest
         assertEquals("Rest API Returns List", er, tr);
     }
 
+    private static UserRevision revision()
+    {
+        UserRevision revision = Mockito.mock(UserRevision.class);
+        Mockito.when(revision.getLastmodified())
+                .thenReturn(new Date());
+        return revision;
+    }
+
     @Test
     public void getUserById() throws
             Exception
     {
         String apiUrl = "/users/user/12";
 
+        UserRevision revision = revision();
+        Mockito.when(userService.findUserRevision(12))
+                .thenReturn(revision);
         Mockito.when(userService.findUserById(12))
                 .thenReturn(userList.get(1));
 
@@ -273,6 +292,9 @@ public class UserControllerUnitTest
     {
         String apiUrl = "/users/user/77";
 
+        UserRevision revision = revision();
+        Mockito.when(userService.findUserRevision(77))
+                .thenReturn(revision);
         Mockito.when(userService.findUserById(77))
                 .thenReturn(null);
 
@@ -343,8 +365,8 @@ public class UserControllerUnitTest
     {
         String apiUrl = "/users/getuserinfo";
 
-        Mockito.when(userService.findByName(anyString()))
-                .thenReturn(userList.get(0));
+        Mockito.when(userService.findViewByName(anyString()))
+                .thenReturn(new UserView(userList.get(0)));
 
         RequestBuilder rb = MockMvcRequestBuilders.get(apiUrl)
                 .accept(MediaType.APPLICATION_JSON);
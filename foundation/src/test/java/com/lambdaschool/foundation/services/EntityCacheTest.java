@@ -0,0 +1,135 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.config.HeapRegionFactory;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.Useremail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class EntityCacheTest
+{
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private HeapRegionFactory regionFactory;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UseremailService useremailService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    private long hits(String region)
+    {
+        return regionFactory.getRegions()
+                .get(region)
+                .getHits();
+    }
+
+    @Test
+    public void itemsAreReadFromTheCacheUntilEvicted()
+    {
+        Item item = itemService.save(new Item("a kayak",
+                                              "cached kayak",
+                                              "a kayak for one",
+                                              "Boise",
+                                              true,
+                                              40f,
+                                              "https://example.com/kayak.png",
+                                              userService.findByName("admin")));
+        long itemid = item.getItemid();
+        itemService.findItemById(itemid);
+
+        long before = hits("item");
+        assertEquals("a kayak",
+                     itemService.findItemById(itemid)
+                             .getItemname());
+        assertTrue(hits("item") > before);
+
+        // changed behind the back of Hibernate, so the cached item is read until it is evicted
+        jdbcTemplate.update("UPDATE items SET itemname = 'a canoe' WHERE itemid = ?",
+                            itemid);
+        assertEquals("a kayak",
+                     itemService.findItemById(itemid)
+                             .getItemname());
+        entityCache.evictItems(List.of(itemid));
+        assertEquals("a canoe",
+                     itemService.findItemById(itemid)
+                             .getItemname());
+    }
+
+    @Test
+    public void rolesByNameComeFromTheQueryCache()
+    {
+        roleService.findByName("user");
+        long before = hits("query.role");
+        assertEquals("USER",
+                     roleService.findByName("user")
+                             .getName());
+        assertTrue(hits("query.role") > before);
+    }
+
+    private List<String> emails(long userid)
+    {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                                                                   {
+                                                                       List<String> emails = new ArrayList<>();
+                                                                       for (Useremail useremail : userService.findUserById(userid)
+                                                                               .getUseremails())
+                                                                       {
+                                                                           emails.add(useremail.getUseremail());
+                                                                       }
+                                                                       return emails;
+                                                                   });
+    }
+
+    @Test
+    @WithMockUser(username = "admin",
+            roles = {"ADMIN"})
+    public void listsOfAUserAreEvictedWhenChangedFromTheOtherSide()
+    {
+        long userid = userService.findByName("admin")
+                .getUserid();
+        // read once so the list is cached
+        emails(userid);
+
+        Useremail added = useremailService.save(userid,
+                                                "cached@lambdaschool.local");
+        assertTrue(emails(userid).contains("cached@lambdaschool.local"));
+
+        useremailService.delete(added.getUseremailid());
+        assertFalse(emails(userid).contains("cached@lambdaschool.local"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class,
+        properties = "images.dir=target/test-images")
+public class ImageStoreTest
+{
+    @Autowired
+    private ImageStore imageStore;
+
+    private static byte[] png(int rgb)
+            throws
+            IOException
+    {
+        BufferedImage image = new BufferedImage(640,
+                                                480,
+                                                BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 640; x++)
+        {
+            image.setRGB(x,
+                         x % 480,
+                         rgb);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image,
+                      "png",
+                      out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void sameImageIsStoredOnceAndThumbnailed()
+            throws
+            Exception
+    {
+        byte[] bytes = png(0x3366cc);
+        String name = imageStore.store(new ByteArrayInputStream(bytes));
+        assertTrue(name.matches("[0-9a-f]{64}\\.png"));
+        assertEquals(name,
+                     imageStore.store(new ByteArrayInputStream(bytes)));
+
+        ImageStore.StoredImage original = imageStore.find(name,
+                                                          null);
+        assertEquals("image/png",
+                     original.getContentType());
+        assertEquals(bytes.length,
+                     Files.size(original.getPath()));
+
+        ImageStore.StoredImage thumbnail = imageStore.find(name,
+                                                           150);
+        for (int i = 0; i < 50 && !thumbnail.isImmutable(); i++)
+        {
+            Thread.sleep(100);
+            thumbnail = imageStore.find(name,
+                                        150);
+        }
+        assertTrue(thumbnail.isImmutable());
+        assertEquals(150,
+                     ImageIO.read(thumbnail.getPath()
+                                          .toFile())
+                             .getWidth());
+    }
+
+    @Test(expected = ResourceFoundException.class)
+    public void notAnImage()
+    {
+        imageStore.store(new ByteArrayInputStream("not an image".getBytes()));
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void namesOutsideTheStoreAreNotFound()
+    {
+        imageStore.find("../application.properties",
+                        null);
+    }
+}
@@ -0,0 +1,218 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.TimeWindow;
+import com.lambdaschool.foundation.models.User;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class ItemAvailabilityTest
+{
+    @Autowired
+    private ItemAvailability availability;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void bookingsMadeElsewhereAreTurnedAway()
+    {
+        User admin = userService.findByName("admin");
+        Item item = itemService.save(new Item("a ladder",
+                                              "booked ladder",
+                                              "a ladder for the roof",
+                                              "Boise",
+                                              true,
+                                              5f,
+                                              "https://example.com/ladder.png",
+                                              admin));
+        Instant start = Instant.now()
+                .truncatedTo(ChronoUnit.SECONDS);
+        Instant end = start.plus(3,
+                                 ChronoUnit.DAYS);
+        Date from = Date.from(start.minus(1,
+                                          ChronoUnit.DAYS));
+        Date to = Date.from(end.plus(1,
+                                     ChronoUnit.DAYS));
+
+        // read into memory while the item is free
+        assertEquals(1,
+                     availability.freeWindows(item.getItemid(),
+                                              from,
+                                              to)
+                             .size());
+
+        // as if booked on another node, which this node does not hear about
+        jdbcTemplate.update("INSERT INTO contracts (contractid, renteeaccept, lenderaccept, renteecomplete, lendercomplete, is_active, contractlength, contractfeecents, raw_contractstartdate, raw_contractenddate, userid, itemid, lenderid, version)" +
+                                    " VALUES (990001, TRUE, TRUE, FALSE, FALSE, TRUE, 3, 1500, ?, ?, ?, ?, ?, 0)",
+                            Timestamp.from(start),
+                            Timestamp.from(end),
+                            admin.getUserid(),
+                            item.getItemid(),
+                            admin.getUserid());
+        bookedElsewhere(item.getItemid());
+        try
+        {
+            book(item.getItemid(),
+                 990002,
+                 start.plus(1,
+                            ChronoUnit.DAYS),
+                 end.plus(1,
+                          ChronoUnit.DAYS));
+            fail("booked an item already booked");
+        } catch (ResourceFoundException e)
+        {
+            // expected
+        }
+
+        // and the bookings held in memory are read again
+        List<TimeWindow> free = availability.freeWindows(item.getItemid(),
+                                                         from,
+                                                         to);
+        assertEquals(2,
+                     free.size());
+        assertEquals(Date.from(start),
+                     free.get(0)
+                             .getEnd());
+
+        // right after the other booking is fine
+        book(item.getItemid(),
+             990002,
+             end,
+             end.plus(1,
+                      ChronoUnit.DAYS));
+        availability.releaseAfterCommit(item.getItemid(),
+                                        990002);
+
+        // written around the lender totals, so leave no trace for the other tests
+        jdbcTemplate.update("DELETE FROM contracts WHERE contractid = 990001");
+        availability.releaseAfterCommit(item.getItemid(),
+                                        990001);
+    }
+
+    @Test
+    public void bookingsMadeElsewhereWhileBookingFailToCommit() throws
+                                                               Exception
+    {
+        User admin = userService.findByName("admin");
+        Item item = itemService.save(new Item("a canoe",
+                                              "booked canoe",
+                                              "a canoe for the lake",
+                                              "Boise",
+                                              true,
+                                              5f,
+                                              "https://example.com/canoe.png",
+                                              admin));
+        Instant start = Instant.now()
+                .truncatedTo(ChronoUnit.SECONDS);
+        Instant end = start.plus(3,
+                                 ChronoUnit.DAYS);
+        ExecutorService otherNode = Executors.newSingleThreadExecutor();
+        try
+        {
+            new TransactionTemplate(transactionManager).execute(status ->
+                                                                {
+                                                                    availability.book(item.getItemid(),
+                                                                                      990003,
+                                                                                      start,
+                                                                                      end);
+                                                                    // booked on another node before this booking commits
+                                                                    try
+                                                                    {
+                                                                        otherNode.submit(() -> bookedElsewhere(item.getItemid()))
+                                                                                .get();
+                                                                    } catch (Exception e)
+                                                                    {
+                                                                        throw new IllegalStateException(e);
+                                                                    }
+                                                                    return null;
+                                                                });
+            fail("committed a booking over one made meanwhile");
+        } catch (OptimisticLockingFailureException e)
+        {
+            // expected
+        } finally
+        {
+            otherNode.shutdown();
+        }
+
+        // the booking that failed is not held
+        assertEquals(1,
+                     availability.freeWindows(item.getItemid(),
+                                              Date.from(start),
+                                              Date.from(end))
+                             .size());
+    }
+
+    @Test(expected = ResourceFoundException.class)
+    public void timesEndingBeforeTheyStartAreTurnedAway()
+    {
+        Date now = new Date();
+        availability.freeWindows(1,
+                                 now,
+                                 now);
+    }
+
+    private void book(
+            long itemid,
+            long contractid,
+            Instant start,
+            Instant end)
+    {
+        new TransactionTemplate(transactionManager).execute(status ->
+                                                            {
+                                                                availability.book(itemid,
+                                                                                  contractid,
+                                                                                  start,
+                                                                                  end);
+                                                                return null;
+                                                            });
+    }
+
+    /**
+     * Raises the version of the item as a booking made on another node does
+     */
+    private void bookedElsewhere(long itemid)
+    {
+        jdbcTemplate.update("UPDATE items SET version = version + 1 WHERE itemid = ?",
+                            itemid);
+        entityCache.evictItems(Collections.singletonList(itemid));
+    }
+}
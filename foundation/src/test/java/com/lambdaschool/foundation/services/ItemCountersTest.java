@@ -0,0 +1,113 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.models.Item;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class ItemCountersTest
+{
+    @Autowired
+    private ItemCounters counters;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    private Item saveItem()
+    {
+        return itemService.save(new Item("a tent",
+                                         "counted tent",
+                                         "a tent for two",
+                                         "Boise",
+                                         true,
+                                         12f,
+                                         "https://example.com/tent.png",
+                                         userService.findByName("admin")));
+    }
+
+    private long stored(
+            String column,
+            long itemid)
+    {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM itemcounters WHERE itemid = ?",
+                                           Long.class,
+                                           itemid);
+    }
+
+    @Test
+    public void countsAreShownAtOnceAndWrittenByTheFlush()
+    {
+        Item seen = saveItem();
+        Item rented = saveItem();
+        for (int i = 0; i < 3; i++)
+        {
+            itemService.viewItem(seen.getItemid());
+        }
+        counters.rentedAfterCommit(rented.getItemid());
+        counters.rentedAfterCommit(rented.getItemid());
+
+        Item item = itemService.viewItem(seen.getItemid());
+        assertEquals(4L,
+                     (long) item.getViews());
+        assertEquals(0L,
+                     (long) item.getRentals());
+
+        counters.flush();
+        assertEquals(4,
+                     stored("views",
+                            seen.getItemid()));
+        assertEquals(2,
+                     stored("rentals",
+                            rented.getItemid()));
+
+        // the stored counts plus the one not yet written
+        item = itemService.viewItem(seen.getItemid());
+        assertEquals(5L,
+                     (long) item.getViews());
+        counters.flush();
+        assertEquals(5,
+                     stored("views",
+                            seen.getItemid()));
+
+        List<Item> popular = itemService.findPopular("rentals",
+                                                     500);
+        assertEquals(rented.getItemid(),
+                     popular.get(0)
+                             .getItemid());
+        assertEquals(2L,
+                     (long) popular.get(0)
+                             .getRentals());
+
+        itemService.delete(seen.getItemid());
+        assertEquals(0L,
+                     (long) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM itemcounters WHERE itemid = ?",
+                                                        Long.class,
+                                                        seen.getItemid()));
+    }
+
+    @Test(expected = ResourceFoundException.class)
+    public void popularOnlyByViewsOrRentals()
+    {
+        itemService.findPopular("price",
+                                10);
+    }
+}
@@ -0,0 +1,126 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.models.FacetCount;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.ItemFacets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class ItemFacetCountsTest
+{
+    @Autowired
+    private ItemFacetCounts facetCounts;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    private Item saveItem(
+            String type,
+            boolean available,
+            float rate)
+    {
+        return itemService.save(new Item("a lantern",
+                                         type,
+                                         "a lantern for camping out",
+                                         "Boise",
+                                         available,
+                                         rate,
+                                         "https://example.com/lantern.png",
+                                         userService.findByName("admin")));
+    }
+
+    private static long count(
+            ItemFacets facets,
+            String itemtype)
+    {
+        for (FacetCount facet : facets.getItemtypes())
+        {
+            if (facet.getName()
+                    .equals(itemtype))
+            {
+                return facet.getCount();
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void countsFollowChangesAndReconcile()
+    {
+        saveItem("facet lantern",
+                 true,
+                 4f);
+        Item pricey = saveItem("facet lantern",
+                               true,
+                               30f);
+        Item lent = saveItem("facet lantern",
+                             false,
+                             4f);
+
+        ItemFacets facets = itemService.findFacets("facet lantern",
+                                                   null);
+        assertEquals(3,
+                     facets.getTotal());
+        assertEquals(3,
+                     count(facets,
+                           "facet lantern"));
+        // split at 10, 25, 50 and 100 dollars a day
+        assertEquals(2,
+                     facets.getPrices()
+                             .get(0)
+                             .getCount());
+        assertEquals(1,
+                     facets.getPrices()
+                             .get(2)
+                             .getCount());
+        assertEquals(2,
+                     count(itemService.findFacets(null,
+                                                  true),
+                           "facet lantern"));
+
+        pricey.setItemrate(150f);
+        itemService.save(pricey);
+        itemService.delete(lent.getItemid());
+        facets = itemService.findFacets("facet lantern",
+                                        null);
+        assertEquals(2,
+                     facets.getTotal());
+        assertEquals(1,
+                     facets.getPrices()
+                             .get(4)
+                             .getCount());
+
+        // changed behind the back of the counts, found by the GROUP BY
+        jdbcTemplate.update("UPDATE items SET itemtype = 'facet lamp' WHERE itemid = ?",
+                            pricey.getItemid());
+        assertTrue(facetCounts.reconcile());
+        facets = itemService.findFacets(null,
+                                        null);
+        assertEquals(1,
+                     count(facets,
+                           "facet lantern"));
+        assertEquals(1,
+                     count(facets,
+                           "facet lamp"));
+        assertFalse(facetCounts.reconcile());
+    }
+}
@@ -0,0 +1,126 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.models.ImportReport;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.User;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class ItemImportServiceImplTest
+{
+    @Autowired
+    private ItemImportService itemImportService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    private static InputStream body(String text)
+    {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void importJson()
+    {
+        User lender = userService.findByName("admin");
+        ImportReport report = itemImportService.importJson(body("[" +
+                                                                "{\"itemname\":\"Json Drone\",\"itemtype\":\"Drone\",\"itemdescr\":\"a drone read from json\",\"itemlocat\":\"Boise\",\"isavailable\":true,\"itemrate\":12.5,\"itemimg\":\"drone.png\"}," +
+                                                                "{\"itemname\":\"x\",\"itemtype\":\"Drone\",\"itemdescr\":\"a name that is too short\",\"itemlocat\":\"Boise\",\"isavailable\":true,\"itemrate\":1,\"itemimg\":\"drone.png\"}," +
+                                                                "{\"itemname\":\"Bad Rate\",\"itemtype\":\"Drone\",\"itemdescr\":\"a rate that is not a number\",\"itemlocat\":\"Boise\",\"isavailable\":true,\"itemrate\":\"abc\",\"itemimg\":\"drone.png\"}" +
+                                                                "]"),
+                                                           lender);
+
+        assertEquals(3,
+                     report.getRows());
+        assertEquals(1,
+                     report.getImported());
+        assertEquals(2,
+                     report.getRejected());
+        assertEquals(2,
+                     report.getErrors()
+                             .get(0)
+                             .getRow());
+        assertEquals("itemname",
+                     report.getErrors()
+                             .get(0)
+                             .getField());
+        assertEquals("itemrate",
+                     report.getErrors()
+                             .get(1)
+                             .getField());
+
+        Item item = itemService.findByName("json drone");
+        assertEquals("drone",
+                     item.getItemtype());
+        assertEquals("admin",
+                     item.getLender()
+                             .getUsername());
+    }
+
+    @Test
+    public void importCsv()
+    {
+        User lender = userService.findByName("admin");
+        ImportReport report = itemImportService.importCsv(body("itemname,itemtype,itemdescr,itemlocat,isavailable,itemrate,itemimg\n" +
+                                                               "Csv Camera,Camera,a camera read from csv,Boise,true,7.25,camera.png\n" +
+                                                               "No Location,Camera,a camera with no location,,true,7.25,camera.png\n"),
+                                                          lender);
+
+        assertEquals(2,
+                     report.getRows());
+        assertEquals(1,
+                     report.getImported());
+        assertEquals("itemlocat",
+                     report.getErrors()
+                             .get(0)
+                             .getField());
+        assertEquals(7.25f,
+                     itemService.findByName("csv camera")
+                             .getItemrate());
+    }
+
+    @Test
+    public void importJsonNotAnArray()
+    {
+        ImportReport report = itemImportService.importJson(body("{\"itemname\":\"Lonely\"}"),
+                                                           userService.findByName("admin"));
+
+        assertFalse(report.isComplete());
+        assertEquals(0,
+                     report.getImported());
+    }
+
+    @Test
+    public void importItemWithoutAName()
+    {
+        ImportReport report = itemImportService.importJson(body("[" +
+                                                                "{\"itemtype\":\"Drone\",\"itemdescr\":\"a drone without a name\",\"itemlocat\":\"Boise\",\"isavailable\":true,\"itemrate\":10,\"itemimg\":\"drone.png\"}" +
+                                                                "]"),
+                                                           userService.findByName("admin"));
+
+        assertEquals(0,
+                     report.getImported());
+        assertEquals(1,
+                     report.getRejected());
+        assertEquals("itemname",
+                     report.getErrors()
+                             .get(0)
+                             .getField());
+    }
+}
@@ -0,0 +1,212 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.exceptions.ResourceFoundException;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.NearbyItem;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class ItemLocationIndexTest
+{
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ItemLocationIndex locationIndex;
+
+    private Item saveItem(
+            String name,
+            String type,
+            boolean available,
+            double latitude,
+            double longitude)
+    {
+        Item item = new Item(name,
+                             type,
+                             "a tent for camping out",
+                             "Nowhere",
+                             available,
+                             4f,
+                             "https://example.com/tent.png",
+                             userService.findByName("admin"));
+        item.setLatitude(latitude);
+        item.setLongitude(longitude);
+        return itemService.save(item);
+    }
+
+    private static List<String> names(List<NearbyItem> items)
+    {
+        List<String> names = new ArrayList<>();
+        for (NearbyItem item : items)
+        {
+            names.add(item.getItem()
+                              .getItemname());
+        }
+        return names;
+    }
+
+    @Test
+    public void nearestFirstAcrossTheDateLine()
+    {
+        // out in the Pacific where the seed data has nothing, either side of the 180th meridian
+        saveItem("east tent",
+                 "tent",
+                 true,
+                 -30.0,
+                 -179.99);
+        saveItem("west tent",
+                 "tent",
+                 true,
+                 -30.0,
+                 179.95);
+        saveItem("far tent",
+                 "tent",
+                 true,
+                 -30.5,
+                 179.9);
+        saveItem("lent tent",
+                 "tent",
+                 false,
+                 -30.0,
+                 179.98);
+        saveItem("near stove",
+                 "stove",
+                 true,
+                 -30.0,
+                 179.99);
+
+        List<NearbyItem> near = itemService.findNear(-30.0,
+                                                     179.97,
+                                                     20,
+                                                     "tent",
+                                                     true,
+                                                     0,
+                                                     10);
+        assertEquals(Arrays.asList("west tent",
+                                   "east tent"),
+                     names(near));
+        // 0.02 degrees of longitude at 30 degrees south is about 1.9 km
+        assertTrue(Math.abs(near.get(0)
+                                    .getDistance() - 1.926) < 0.01);
+
+        List<NearbyItem> within = itemService.findWithin(-31,
+                                                         179.8,
+                                                         -29,
+                                                         -179.8,
+                                                         null,
+                                                         null,
+                                                         0,
+                                                         10);
+        assertEquals(5,
+                     within.size());
+        assertEquals("far tent",
+                     within.get(4)
+                             .getItem()
+                             .getItemname());
+
+        // the second page starts where the first left off
+        assertEquals(Arrays.asList("east tent"),
+                     names(itemService.findNear(-30.0,
+                                                179.97,
+                                                100,
+                                                "tent",
+                                                true,
+                                                1,
+                                                1)));
+    }
+
+    @Test
+    public void movedAndDeletedItemsAreFoundWhereTheyAreNow()
+    {
+        Item item = saveItem("moving tent",
+                             "tent",
+                             true,
+                             -60.0,
+                             -100.0);
+        assertEquals(1,
+                     itemService.findNear(-60.0,
+                                          -100.0,
+                                          1,
+                                          null,
+                                          null,
+                                          0,
+                                          10)
+                             .size());
+
+        item.setLatitude(-61.0);
+        itemService.save(item);
+        assertEquals(0,
+                     itemService.findNear(-60.0,
+                                          -100.0,
+                                          1,
+                                          null,
+                                          null,
+                                          0,
+                                          10)
+                             .size());
+        assertEquals(1,
+                     itemService.findNear(-61.0,
+                                          -100.0,
+                                          1,
+                                          null,
+                                          null,
+                                          0,
+                                          10)
+                             .size());
+
+        itemService.delete(item.getItemid());
+        assertEquals(0,
+                     itemService.findNear(-61.0,
+                                          -100.0,
+                                          1,
+                                          null,
+                                          null,
+                                          0,
+                                          10)
+                             .size());
+    }
+
+    @Test
+    public void farPagesAreEmpty()
+    {
+        // page times size is well past the largest int, and the heap is not sized for it
+        assertEquals(0,
+                     locationIndex.within(-90,
+                                          -180,
+                                          90,
+                                          180,
+                                          null,
+                                          null,
+                                          Integer.MAX_VALUE,
+                                          500)
+                             .size());
+    }
+
+    @Test(expected = ResourceFoundException.class)
+    public void pageTooFar()
+    {
+        itemService.findNear(0,
+                             0,
+                             10,
+                             null,
+                             null,
+                             Integer.MAX_VALUE,
+                             500);
+    }
+}
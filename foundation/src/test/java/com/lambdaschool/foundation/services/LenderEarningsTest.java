@@ -0,0 +1,267 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.models.Contract;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.LenderStats;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class LenderEarningsTest
+{
+    @Autowired
+    private LenderEarnings earnings;
+
+    @Autowired
+    private ContractService contractService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ContractExpiry expiry;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Item saveItem(String name)
+    {
+        return itemService.save(new Item(name,
+                                         "Drill",
+                                         "a drill to be rented",
+                                         "Boise",
+                                         true,
+                                         10f,
+                                         "https://example.com/drill.png",
+                                         userService.findByName("admin")));
+    }
+
+    private Contract saveContract(
+            Item item,
+            boolean accepted)
+    {
+        Contract contract = new Contract(3);
+        contract.setItem(item);
+        contract.setRentee(userService.findByName("cinnamon"));
+        contract.setRenteeaccept(accepted);
+        contract.setLenderaccept(accepted);
+        return contractService.save(contract);
+    }
+
+    private static void assertTotals(
+            LenderStats expected,
+            LenderStats actual)
+    {
+        assertEquals(expected.getItems(),
+                     actual.getItems());
+        assertEquals(expected.getContracts(),
+                     actual.getContracts());
+        assertEquals(expected.getActivecontracts(),
+                     actual.getActivecontracts());
+        assertEquals(expected.getRevenuecents(),
+                     actual.getRevenuecents());
+        assertEquals(expected.getBookeddays(),
+                     actual.getBookeddays());
+    }
+
+    @Test
+    public void contractsChangeTotals()
+    {
+        long adminid = userService.findByName("admin")
+                .getUserid();
+        LenderStats before = earnings.dashboard(adminid)
+                .getTotals();
+
+        Item item = saveItem("Earning Drill");
+        saveContract(item,
+                     false);
+        Contract started = saveContract(saveItem("Booked Drill"),
+                                        true);
+
+        LenderStats after = earnings.dashboard(adminid)
+                .getTotals();
+        assertEquals(before.getItems() + 2,
+                     after.getItems());
+        assertEquals(before.getContracts() + 2,
+                     after.getContracts());
+        assertEquals(before.getActivecontracts() + 1,
+                     after.getActivecontracts());
+        assertEquals(before.getRevenuecents() + 3000,
+                     after.getRevenuecents());
+        assertEquals(before.getBookeddays() + 3,
+                     after.getBookeddays());
+
+        contractService.delete(started.getContractid());
+        LenderStats deleted = earnings.dashboard(adminid)
+                .getTotals();
+        assertEquals(before.getContracts() + 1,
+                     deleted.getContracts());
+        assertEquals(before.getActivecontracts(),
+                     deleted.getActivecontracts());
+        assertEquals(before.getRevenuecents(),
+                     deleted.getRevenuecents());
+    }
+
+    @Test
+    public void revenueUsesRateOnFile()
+    {
+        long adminid = userService.findByName("admin")
+                .getUserid();
+        Item item = saveItem("Priced Drill");
+        LenderStats before = earnings.dashboard(adminid)
+                .getTotals();
+
+        // the client sends the item with a rate of its own
+        Item cheap = new Item();
+        cheap.setItemid(item.getItemid());
+        cheap.setItemratecents(1);
+        Contract started = saveContract(cheap,
+                                        true);
+
+        assertEquals(3000,
+                     started.getContractfeecents());
+        assertEquals(before.getRevenuecents() + 3000,
+                     earnings.dashboard(adminid)
+                             .getTotals()
+                             .getRevenuecents());
+    }
+
+    @Test
+    public void firstWritesOfALenderDoNotCollide() throws Exception
+    {
+        long lenderid = 990010;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<?>> second = new AtomicReference<>();
+        try
+        {
+            transaction.executeWithoutResult(status ->
+                                             {
+                                                 earnings.itemsAdded(lenderid,
+                                                                     List.of(990011L));
+                                                 // the second first write runs while this one is not committed yet
+                                                 second.set(other.submit(() -> transaction.executeWithoutResult(s -> earnings.itemsAdded(lenderid,
+                                                                                                                                       List.of(990012L)))));
+                                                 try
+                                                 {
+                                                     Thread.sleep(200);
+                                                 } catch (InterruptedException e)
+                                                 {
+                                                     Thread.currentThread()
+                                                             .interrupt();
+                                                 }
+                                             });
+            second.get()
+                    .get();
+
+            assertEquals(2,
+                         earnings.dashboard(lenderid)
+                                 .getTotals()
+                                 .getItems());
+        } finally
+        {
+            other.shutdown();
+            jdbcTemplate.update("DELETE FROM itemstats WHERE lenderid = ?",
+                                lenderid);
+            jdbcTemplate.update("DELETE FROM lenderstats WHERE lenderid = ?",
+                                lenderid);
+        }
+    }
+
+    @Test
+    public void reconcileMatchesRunningTotals()
+    {
+        Item item = saveItem("Reconciled Drill");
+        saveContract(item,
+                     true);
+        long adminid = userService.findByName("admin")
+                .getUserid();
+        LenderStats running = earnings.dashboard(adminid)
+                .getTotals();
+
+        earnings.reconcile();
+
+        assertTotals(running,
+                     earnings.dashboard(adminid)
+                             .getTotals());
+    }
+
+    @Test
+    @WithMockUser(username = "admin",
+            roles = {"ADMIN"})
+    public void expiryOnlyEndsRunningContracts()
+    {
+        long adminid = userService.findByName("admin")
+                .getUserid();
+        Contract settled = saveContract(saveItem("Settled Drill"),
+                                        true);
+        Contract running = saveContract(saveItem("Expiring Drill"),
+                                        true);
+        LenderStats before = earnings.dashboard(adminid)
+                .getTotals();
+
+        // completed by both sides while its end date is still queued
+        Contract complete = new Contract();
+        complete.setLendercomplete(true);
+        complete.setRenteecomplete(true);
+        contractService.update(complete,
+                               settled.getContractid(),
+                               userService.findByName("admin"),
+                               null);
+        contractService.update(complete,
+                               settled.getContractid(),
+                               userService.findByName("cinnamon"),
+                               null);
+
+        Instant past = Instant.now()
+                .minusSeconds(60);
+        jdbcTemplate.update("UPDATE contracts SET raw_contractenddate = ? WHERE contractid = ?",
+                            Timestamp.from(past),
+                            running.getContractid());
+        expiry.scheduleAfterCommit(settled.getContractid(),
+                                   settled.getItem()
+                                           .getItemid(),
+                                   past);
+        expiry.scheduleAfterCommit(running.getContractid(),
+                                   running.getItem()
+                                           .getItemid(),
+                                   past);
+        expiry.expireDue();
+
+        LenderStats after = earnings.dashboard(adminid)
+                .getTotals();
+        assertEquals(before.getActivecontracts() - 2,
+                     after.getActivecontracts());
+        earnings.reconcile();
+        assertTotals(after,
+                     earnings.dashboard(adminid)
+                             .getTotals());
+    }
+}
@@ -0,0 +1,155 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.OutboxEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {FoundationApplication.class, OutboxRelayTest.Subscribers.class},
+    properties = {"outbox.relay.enabled=true", "outbox.relay.backoff=10"})
+public class OutboxRelayTest
+{
+    /**
+     * Records every event, and fails the first time it sees an event for an item named flaky
+     */
+    static class RecordingSubscriber
+            implements OutboxSubscriber
+    {
+        final List<OutboxEvent> events = new CopyOnWriteArrayList<>();
+
+        final Set<Long> failedOnce = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void onEvent(OutboxEvent event)
+        {
+            events.add(event);
+            if (event.getPayload()
+                    .contains("\"itemname\":\"flaky") && failedOnce.add(event.getEventid()))
+            {
+                throw new IllegalStateException("not this time");
+            }
+        }
+
+        List<String> eventtypes(long itemid)
+        {
+            List<String> types = new ArrayList<>();
+            for (OutboxEvent event : events)
+            {
+                if (Outbox.ITEM.equals(event.getAggregatetype()) && event.getAggregateid() == itemid)
+                {
+                    types.add(event.getEventtype());
+                }
+            }
+            return types;
+        }
+    }
+
+    @TestConfiguration
+    static class Subscribers
+    {
+        @Bean
+        RecordingSubscriber recordingSubscriber()
+        {
+            return new RecordingSubscriber();
+        }
+    }
+
+    @Autowired
+    private RecordingSubscriber subscriber;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    @Qualifier("jdbcCustom")
+    private JdbcTemplate jdbcTemplate;
+
+    private Item saveItem(String name)
+    {
+        return itemService.save(new Item(name,
+                                         "Saw",
+                                         "a saw for cutting wood",
+                                         "Boise",
+                                         true,
+                                         4f,
+                                         "https://example.com/saw.png",
+                                         userService.findByName("admin")));
+    }
+
+    private long outboxRows(long itemid)
+    {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox WHERE aggregatetype = 'item' AND aggregateid = ?",
+                                           Long.class,
+                                           itemid);
+    }
+
+    private void await(
+            long itemid,
+            int events)
+            throws
+            InterruptedException
+    {
+        for (int i = 0; i < 100 && (subscriber.eventtypes(itemid)
+                .size() < events || outboxRows(itemid) > 0); i++)
+        {
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    public void eventsOfAnItemArriveInOrder()
+            throws
+            InterruptedException
+    {
+        Item item = saveItem("Ordered Saw");
+        item.setItemdescr("a sharper saw for cutting wood");
+        itemService.save(item);
+        itemService.delete(item.getItemid());
+
+        await(item.getItemid(),
+              3);
+        assertEquals(Arrays.asList("item.created",
+                                   "item.updated",
+                                   "item.deleted"),
+                     subscriber.eventtypes(item.getItemid()));
+        assertEquals(0,
+                     outboxRows(item.getItemid()));
+    }
+
+    @Test
+    public void failedEventIsSentAgain()
+            throws
+            InterruptedException
+    {
+        Item item = saveItem("Flaky Saw");
+
+        await(item.getItemid(),
+              2);
+        assertEquals(Arrays.asList("item.created",
+                                   "item.created"),
+                     subscriber.eventtypes(item.getItemid()));
+        assertEquals(0,
+                     outboxRows(item.getItemid()));
+    }
+}
@@ -0,0 +1,100 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import com.lambdaschool.foundation.models.Item;
+import com.lambdaschool.foundation.models.Quote;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class,
+    properties = {"contracts.pricing.week.discount=1000", "contracts.pricing.month.discount=2500"})
+public class PricingEngineTest
+{
+    @Autowired
+    private PricingEngine pricing;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    public void fee()
+    {
+        // 10.00 a day, 63.00 a week, 225.00 a month
+        assertEquals(1000,
+                     pricing.fee(1000,
+                                 1));
+        assertEquals(6300,
+                     pricing.fee(1000,
+                                 7));
+        assertEquals(8300,
+                     pricing.fee(1000,
+                                 9));
+        assertEquals(6000,
+                     pricing.fee(1000,
+                                 6));
+        // four weeks and a day cost more than a month
+        assertEquals(22500,
+                     pricing.fee(1000,
+                                 29));
+        assertEquals(22500 + 6300 + 1000,
+                     pricing.fee(1000,
+                                 38));
+        assertEquals(0,
+                     pricing.fee(1000,
+                                 0));
+    }
+
+    @Test
+    public void feeRoundsHalfCentUp()
+    {
+        // a week of 0.05 a day is 0.35, less 10% is 0.315
+        assertEquals(32,
+                     pricing.fee(5,
+                                 7));
+    }
+
+    @Test
+    public void quote()
+    {
+        Item item = itemService.save(new Item("Quote Lamp",
+                                              "Lamp",
+                                              "a lamp to be quoted",
+                                              "Boise",
+                                              true,
+                                              12.5f,
+                                              "https://example.com/lamp.png",
+                                              userService.findByName("admin")));
+        List<Quote> quotes = pricing.quote(Arrays.asList(new Quote(item.getItemid(),
+                                                                   1),
+                                                         new Quote(item.getItemid(),
+                                                                   7)));
+
+        assertEquals(1250,
+                     quotes.get(0)
+                             .getContractfeecents());
+        assertEquals(7875,
+                     quotes.get(1)
+                             .getContractfeecents());
+    }
+
+    @Test(expected = ResourceNotFoundException.class)
+    public void quoteItemNotFound()
+    {
+        pricing.quote(Collections.singletonList(new Quote(999999,
+                                                          1)));
+    }
+}
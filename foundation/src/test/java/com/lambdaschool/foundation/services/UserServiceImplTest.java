@@ -2,6 +2,7 @@ package com.lambdaschool.foundation.services;
 
 import com.lambdaschool.foundation.FoundationApplication;
 import com.lambdaschool.foundation.exceptions.ResourceNotFoundException;
+import com.lambdaschool.foundation.models.Item;
 import com.lambdaschool.foundation.models.Role;
 import com.lambdaschool.foundation.models.User;
 import com.lambdaschool.foundation.models.UserRoles;
@@ -22,6 +23,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.ArrayList;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = FoundationApplication.class)
@@ -31,6 +34,12 @@ public class UserServiceImplTest
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemSearchIndex searchIndex;
+
     @Before
     public void setUp() throws
             Exception
@@ -44,10 +53,17 @@ public class UserServiceImplTest
     {
     }
 
+    // ids come from a sequence per table, so look users up by name instead of counting on their ids
+    private long userid(String username)
+    {
+        return userService.findByName(username)
+                .getUserid();
+    }
+
     @Test
     public void B_findUserById()
     {
-        assertEquals("admin", userService.findUserById(4)
+        assertEquals("admin", userService.findUserById(userid("admin"))
                 .getUsername());
     }
 
@@ -68,11 +84,44 @@ public class UserServiceImplTest
     @Test
     public void D_delete()
     {
-        userService.delete(13);
+        userService.delete(userid("puttat"));
         assertEquals(4, userService.findAll()
                 .size());
     }
 
+    @Test
+    public void DB_deleteLenderThenSearch()
+    {
+        User lender = userService.save(new User("hermit",
+                                                "ILuvMath!",
+                                                "hermit@school.lambda",
+                                                new ArrayList<>()));
+        Item item = itemService.save(new Item("a coracle",
+                                              "river coracle",
+                                              "a coracle for the river",
+                                              "Boise",
+                                              true,
+                                              5f,
+                                              "https://example.com/coracle.png",
+                                              lender));
+        assertTrue(searchIndex.search("coracle",
+                                      0,
+                                      10)
+                           .contains(item.getItemid()));
+
+        // the items of the lender go with the lender, and so do their search results
+        userService.delete(lender.getUserid());
+        assertFalse(searchIndex.search("coracle",
+                                       0,
+                                       10)
+                            .contains(item.getItemid()));
+        assertTrue(itemService.findByNameContaining("coracle",
+                                                    0,
+                                                    10)
+                           .stream()
+                           .noneMatch(found -> found.getItemid() == item.getItemid()));
+    }
+
     @Test(expected = ResourceNotFoundException.class)
     public void DA_notFoundDelete()
     {
@@ -135,7 +184,7 @@ public class UserServiceImplTest
         u2.getUseremails()
                 .add(new Useremail(u2, "bunny@email.thump"));
 
-        User updatedu2 = userService.update(u2, 7);
+        User updatedu2 = userService.update(u2, userid("cinnamon"));
 
         System.out.println("*** DATA ***");
         System.out.println(updatedu2);
@@ -164,7 +213,7 @@ public class UserServiceImplTest
         u2.getUseremails()
                 .add(new Useremail(u2, "bunny@email.thump"));
 
-        User updatedu2 = userService.update(u2, 8);
+        User updatedu2 = userService.update(u2, userid("barnbarn"));
 
         System.out.println("*** DATA ***");
         System.out.println(updatedu2);
@@ -180,7 +229,7 @@ public class UserServiceImplTest
     @Test(expected = ResourceNotFoundException.class)
     public void HA_deleteUserRoleRoleNotFound()
     {
-        userService.deleteUserRole(7, 50);
+        userService.deleteUserRole(userid("cinnamon"), 50);
     }
 
     @Test(expected = ResourceNotFoundException.class)
@@ -192,7 +241,7 @@ public class UserServiceImplTest
     @Test(expected = ResourceNotFoundException.class)
     public void IC_addUserRoleRoleNotFound()
     {
-        userService.addUserRole(7, 50);
+        userService.addUserRole(userid("cinnamon"), 50);
     }
 
     @Test(expected = ResourceNotFoundException.class)
@@ -0,0 +1,117 @@
+package com.lambdaschool.foundation.services;
+
+import com.lambdaschool.foundation.FoundationApplication;
+import com.lambdaschool.foundation.models.User;
+import com.lambdaschool.foundation.models.UserRoles;
+import com.lambdaschool.foundation.models.UserView;
+import com.lambdaschool.foundation.models.Useremail;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = FoundationApplication.class)
+public class UserViewStatementCountTest
+{
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp()
+    {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    private long countStatements(Runnable work)
+    {
+        // everything pending is written and forgotten so only the work itself is counted
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        work.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addUsers(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            ArrayList<UserRoles> roles = new ArrayList<>();
+            roles.add(new UserRoles(new User(),
+                                    roleService.findByName("user")));
+            User u = new User("counted" + i,
+                              "password",
+                              "counted" + i + "@school.lambda",
+                              roles);
+            u.getUseremails()
+                    .add(new Useremail(u,
+                                       "counted" + i + "@email.local"));
+            userService.save(u);
+        }
+    }
+
+    @Transactional
+    @Test
+    public void findAllViewsRunsTheSameStatementsWhateverTheRowCount()
+    {
+        List<UserView> views = new ArrayList<>();
+        long few = countStatements(() -> views.addAll(userService.findAllViews()));
+        int before = views.size();
+
+        addUsers(20);
+
+        views.clear();
+        long many = countStatements(() -> views.addAll(userService.findAllViews()));
+
+        assertEquals(before + 20,
+                     views.size());
+        assertEquals(4,
+                     few);
+        assertEquals(few,
+                     many);
+    }
+
+    @Transactional
+    @Test
+    public void findViewByNameRunsFourStatements()
+    {
+        List<UserView> views = new ArrayList<>();
+        long count = countStatements(() -> views.add(userService.findViewByName("admin")));
+
+        assertEquals(2,
+                     views.get(0)
+                             .getUseremails()
+                             .size());
+        assertEquals(3,
+                     views.get(0)
+                             .getRoles()
+                             .size());
+        assertEquals(4,
+                     count);
+    }
+}